@@ -60,13 +60,22 @@ import com.hp.hpl.jena.tdb.TDBFactory;
  * model.
  * 
  * This has been tested with graphs up to 6 million triples without crashing.
+ * 
+ * With the "stream" option, the graphs are instead read concurrently and
+ * streamed into the TDB bulk loader, and the triple counts are verified at the
+ * end. See StreamingCopier.
  */
 public class Sdb2Tdb {
 	private static final int LARGE_MODEL_THRESHOLD = 500_000;
+	private static final int DEFAULT_THREADS = 4;
+	private static final String THREADS_OPTION = "threads=";
+
 	private final String driverClassName;
 	private final String jdbcUrl;
 	private final String destination;
 	private final boolean force;
+	private final boolean stream;
+	private final int threads;
 
 	private Dataset sdbDataset;
 	private Dataset tdbDataset;
@@ -74,12 +83,25 @@ public class Sdb2Tdb {
 	public Sdb2Tdb(List<String> hardArgs) throws UsageException {
 		List<String> args = new ArrayList<>(hardArgs);
 
-		if (!args.isEmpty() && args.indexOf("force") == (args.size() - 1)) {
-			this.force = true;
+		boolean forceOption = false;
+		boolean streamOption = false;
+		int threadsOption = DEFAULT_THREADS;
+		while (!args.isEmpty()) {
+			String last = args.get(args.size() - 1);
+			if (last.equals("force")) {
+				forceOption = true;
+			} else if (last.equals("stream")) {
+				streamOption = true;
+			} else if (last.startsWith(THREADS_OPTION)) {
+				threadsOption = parseThreads(last);
+			} else {
+				break;
+			}
 			args.remove(args.size() - 1);
-		} else {
-			this.force = false;
 		}
+		this.force = forceOption;
+		this.stream = streamOption;
+		this.threads = threadsOption;
 
 		if (args.size() == 3) {
 			this.driverClassName = args.remove(0);
@@ -98,6 +120,19 @@ public class Sdb2Tdb {
 		checkDestination();
 	}
 
+	private static int parseThreads(String option) throws UsageException {
+		String value = option.substring(THREADS_OPTION.length());
+		try {
+			int count = Integer.parseInt(value);
+			if (count > 0) {
+				return count;
+			}
+		} catch (NumberFormatException e) {
+			// fall through
+		}
+		throw new UsageException("Invalid number of threads: '" + value + "'");
+	}
+
 	private void checkDriverClass() throws UsageException {
 		try {
 			Class.forName(this.driverClassName).newInstance();
@@ -146,11 +181,16 @@ public class Sdb2Tdb {
 		return Arrays.asList(filenames);
 	}
 
-	private void translate() throws SQLException, IOException {
+	private boolean translate() throws SQLException, IOException {
 		try {
 			sdbDataset = openSdbDataset();
 			tdbDataset = openTdbDataset();
-			copyGraphs();
+			if (stream) {
+				return streamGraphs();
+			} else {
+				copyGraphs();
+				return true;
+			}
 		} finally {
 			if (tdbDataset != null) {
 				tdbDataset.close();
@@ -162,13 +202,21 @@ public class Sdb2Tdb {
 	}
 
 	private Dataset openSdbDataset() throws SQLException {
+		return SDBFactory.connectDataset(openSdbStore());
+	}
+
+	/**
+	 * Each call opens a new JDBC connection, so the streaming copier can read
+	 * several graphs at once.
+	 */
+	Store openSdbStore() throws SQLException {
 		Connection conn = DriverManager.getConnection(this.jdbcUrl);
 		Store store = SDBFactory.connectStore(conn, makeSdbStoreDesc());
 
 		SDB.getContext().set(SDB.jdbcStream, Boolean.TRUE);
 		SDB.getContext().set(SDB.jdbcFetchSize, Integer.MIN_VALUE);
 
-		return SDBFactory.connectDataset(store);
+		return store;
 	}
 
 	private StoreDesc makeSdbStoreDesc() {
@@ -194,6 +242,19 @@ public class Sdb2Tdb {
 		}
 	}
 
+	private boolean streamGraphs() throws IOException {
+		List<String> graphNames = new ArrayList<>();
+		for (Iterator<String> modelNames = sdbDataset.listNames(); modelNames
+				.hasNext();) {
+			graphNames.add(modelNames.next());
+		}
+		System.out.println(String.format(
+				"Streaming %d graphs into TDB, using %d reader threads.",
+				graphNames.size(), threads));
+		return new StreamingCopier(this, graphNames, tdbDataset, threads)
+				.copy();
+	}
+
 	private void copySmallModel(String modelName, Model model) {
 		System.out.println(String.format("Copying %6d triples: %s",
 				model.size(), modelName));
@@ -222,15 +283,21 @@ public class Sdb2Tdb {
 	public static void main(String[] args) {
 		try {
 			Sdb2Tdb sdb2tdb = new Sdb2Tdb(Arrays.asList(args));
-			sdb2tdb.translate();
+			if (!sdb2tdb.translate()) {
+				System.out.println("\nWARNING: Triple counts do not match "
+						+ "for some graphs.\n");
+				System.exit(1);
+			}
 
 		} catch (UsageException e) {
 			System.out.println();
 			System.out.println(e.getMessage());
 			System.out.println(e.getProperUsage());
 			System.out.println();
-		} catch (SQLException | IOException e) {
+			System.exit(1);
+		} catch (SQLException | IOException | RuntimeException e) {
 			e.printStackTrace();
+			System.exit(1);
 		}
 	}
 
@@ -240,7 +307,7 @@ public class Sdb2Tdb {
 		}
 
 		public String getProperUsage() {
-			return "Usage is: java -jar sdb2tdb [driver_class] <jdbcUrl> <destination_directory> [force]";
+			return "Usage is: java -jar sdb2tdb [driver_class] <jdbcUrl> <destination_directory> [force] [stream] [threads=n]";
 		}
 	}
 
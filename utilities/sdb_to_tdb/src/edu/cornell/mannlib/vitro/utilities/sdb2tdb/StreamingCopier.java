@@ -0,0 +1,342 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.utilities.sdb2tdb;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.jena.riot.RDFDataMgr;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.NodeFactory;
+import com.hp.hpl.jena.query.Dataset;
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.query.QueryExecution;
+import com.hp.hpl.jena.query.QueryExecutionFactory;
+import com.hp.hpl.jena.query.QueryFactory;
+import com.hp.hpl.jena.query.QuerySolution;
+import com.hp.hpl.jena.query.ResultSet;
+import com.hp.hpl.jena.sdb.SDBFactory;
+import com.hp.hpl.jena.sdb.Store;
+import com.hp.hpl.jena.sparql.core.Quad;
+import com.hp.hpl.jena.tdb.store.DatasetGraphTDB;
+import com.hp.hpl.jena.tdb.store.bulkloader.BulkLoader;
+import com.hp.hpl.jena.tdb.sys.TDBInternal;
+
+/**
+ * Copy all of the graphs by streaming them into the TDB bulk loader, instead
+ * of copying them one at a time.
+ *
+ * <pre>
+ * Several reader threads, each with its own JDBC connection, read graphs from
+ * SDB using streaming result sets. They put batches of quads on a bounded
+ * queue.
+ *
+ * A writer thread takes the batches from the queue and writes them as N-Quads
+ * into a pipe.
+ *
+ * The calling thread runs the TDB bulk loader, which reads from the pipe.
+ * </pre>
+ *
+ * The queue and the pipe are bounded, so memory use does not depend on the
+ * size of the graphs.
+ *
+ * When the load is complete, the number of triples in each TDB graph is
+ * compared to the number that were read from SDB.
+ */
+class StreamingCopier {
+	private static final int BATCH_SIZE = 10_000;
+	private static final int QUEUE_CAPACITY = 16;
+	private static final int PIPE_SIZE = 1024 * 1024;
+
+	/** How long to wait for room on the queue before checking for failure. */
+	private static final long OFFER_SECONDS = 1;
+
+	private static final String QUERY_TEMPLATE = "" //
+			+ "SELECT ?s ?p ?o \n" //
+			+ "WHERE { \n" //
+			+ "   GRAPH <%s> { \n" //
+			+ "      ?s ?p ?o . \n" //
+			+ "   } \n" //
+			+ "}";
+
+	/** Put on the queue when all of the readers have finished. */
+	private static final List<Quad> END_OF_DATA = new ArrayList<>();
+
+	private final Sdb2Tdb parent;
+	private final List<String> graphNames;
+	private final Dataset tdbDataset;
+	private final int threadCount;
+
+	private final BlockingQueue<List<Quad>> queue = new ArrayBlockingQueue<>(
+			QUEUE_CAPACITY);
+	private final Map<String, Long> triplesRead = new ConcurrentHashMap<>();
+	private final AtomicReference<Throwable> failure = new AtomicReference<>();
+	private volatile boolean stopped;
+
+	StreamingCopier(Sdb2Tdb parent, List<String> graphNames,
+			Dataset tdbDataset, int threadCount) {
+		this.parent = parent;
+		this.graphNames = graphNames;
+		this.tdbDataset = tdbDataset;
+		this.threadCount = threadCount;
+	}
+
+	/**
+	 * Copy the graphs, and verify the counts. Return true if every graph in TDB
+	 * has the same number of triples that were read from SDB.
+	 */
+	boolean copy() throws IOException {
+		ExecutorService readers = Executors.newFixedThreadPool(threadCount);
+		PipedInputStream pipeIn = new PipedInputStream(PIPE_SIZE);
+		PipedOutputStream pipeOut = new PipedOutputStream(pipeIn);
+		Thread writer = new Thread(new QuadWriter(pipeOut), "Sdb2Tdb-writer");
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (String graphName : graphNames) {
+				futures.add(readers.submit(new GraphReader(graphName)));
+			}
+			Thread closer = new Thread(new QueueCloser(futures),
+					"Sdb2Tdb-closer");
+			closer.setDaemon(true);
+			closer.start();
+			writer.start();
+
+			DatasetGraphTDB dsg = TDBInternal
+					.getBaseDatasetGraphTDB(tdbDataset.asDatasetGraph());
+			BulkLoader.loadDataset(dsg, pipeIn, true);
+
+			writer.join();
+			closer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while copying", e);
+		} catch (RuntimeException e) {
+			fail(e);
+			throw e;
+		} finally {
+			// If the loader failed, nobody is taking from the queue.
+			stopped = true;
+			readers.shutdownNow();
+			pipeIn.close();
+		}
+
+		Throwable t = failure.get();
+		if (t != null) {
+			throw new IOException("Failed to copy the graphs", t);
+		}
+		return verifyCounts();
+	}
+
+	private boolean verifyCounts() {
+		boolean allMatch = true;
+		SortedMap<String, Long> sorted = new TreeMap<>(triplesRead);
+		for (Map.Entry<String, Long> entry : sorted.entrySet()) {
+			String graphName = entry.getKey();
+			long read = entry.getValue();
+			long written = tdbDataset.getNamedModel(graphName).size();
+			boolean match = (read == written);
+			allMatch &= match;
+			System.out.println(String.format("%s %9d read, %9d in TDB: %s",
+					(match ? "   " : "!!!"), read, written, graphName));
+		}
+		return allMatch;
+	}
+
+	private void fail(Throwable t) {
+		failure.compareAndSet(null, t);
+	}
+
+	/**
+	 * Put a batch on the queue, waiting for room unless the copy has stopped.
+	 * Return false if the batch was not queued.
+	 */
+	private boolean enqueue(List<Quad> batch) throws InterruptedException {
+		while (!stopped && failure.get() == null) {
+			if (queue.offer(batch, OFFER_SECONDS, TimeUnit.SECONDS)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper classes
+	// ----------------------------------------------------------------------
+
+	/**
+	 * Read one graph from SDB on its own connection, and put the quads on the
+	 * queue in batches.
+	 */
+	private class GraphReader implements Runnable {
+		private final String graphName;
+
+		GraphReader(String graphName) {
+			this.graphName = graphName;
+		}
+
+		@Override
+		public void run() {
+			Store store = null;
+			try {
+				store = parent.openSdbStore();
+				Dataset sdb = SDBFactory.connectDataset(store);
+				long count = readGraph(sdb);
+				triplesRead.put(graphName, count);
+				System.out.println(String.format("Read %9d triples: %s",
+						count, graphName));
+			} catch (SQLException | RuntimeException e) {
+				fail(e);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				if (store != null) {
+					store.close();
+					store.getConnection().close();
+				}
+			}
+		}
+
+		private long readGraph(Dataset sdb) throws InterruptedException {
+			Node g = NodeFactory.createURI(graphName);
+			Query q = QueryFactory.create(String.format(QUERY_TEMPLATE,
+					graphName));
+			QueryExecution qe = QueryExecutionFactory.create(q, sdb);
+			try {
+				ResultSet results = qe.execSelect();
+				long count = 0;
+				List<Quad> batch = new ArrayList<>(BATCH_SIZE);
+				while (results.hasNext()) {
+					QuerySolution solution = results.nextSolution();
+					batch.add(new Quad(g, solution.get("s").asNode(), solution
+							.get("p").asNode(), solution.get("o").asNode()));
+					count++;
+					if (batch.size() >= BATCH_SIZE) {
+						if (!enqueue(batch)) {
+							return count;
+						}
+						batch = new ArrayList<>(BATCH_SIZE);
+					}
+				}
+				if (!batch.isEmpty()) {
+					enqueue(batch);
+				}
+				return count;
+			} finally {
+				qe.close();
+			}
+		}
+	}
+
+	/**
+	 * When all of the readers have finished (or failed), tell the writer that
+	 * there is no more data. If the copy has failed, the writer may not be
+	 * listening, so don't wait for it.
+	 */
+	private class QueueCloser implements Runnable {
+		private final List<Future<?>> futures;
+
+		QueueCloser(List<Future<?>> futures) {
+			this.futures = futures;
+		}
+
+		@Override
+		public void run() {
+			try {
+				for (Future<?> future : futures) {
+					try {
+						future.get();
+					} catch (ExecutionException e) {
+						fail(e.getCause());
+					}
+				}
+				if (!enqueue(END_OF_DATA)) {
+					// Make room, in case the writer is still waiting.
+					queue.clear();
+					queue.offer(END_OF_DATA);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Write the batches from the queue into the pipe as N-Quads. Closing the
+	 * pipe tells the bulk loader that there is no more data.
+	 */
+	private class QuadWriter implements Runnable, Iterator<Quad> {
+		private final OutputStream out;
+		private Iterator<Quad> current = new ArrayList<Quad>().iterator();
+		private boolean finished;
+
+		QuadWriter(OutputStream out) {
+			this.out = out;
+		}
+
+		@Override
+		public void run() {
+			try {
+				RDFDataMgr.writeQuads(out, this);
+			} catch (RuntimeException e) {
+				fail(e);
+			} finally {
+				try {
+					out.close();
+				} catch (IOException e) {
+					fail(e);
+				}
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (!finished && !current.hasNext()) {
+				try {
+					List<Quad> batch = queue.take();
+					if (batch == END_OF_DATA) {
+						finished = true;
+					} else {
+						current = batch.iterator();
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					finished = true;
+				}
+			}
+			return current.hasNext();
+		}
+
+		@Override
+		public Quad next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return current.next();
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
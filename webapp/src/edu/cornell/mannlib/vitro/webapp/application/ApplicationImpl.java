@@ -10,6 +10,7 @@ import javax.servlet.ServletContextListener;
 
 import com.hp.hpl.jena.ontology.OntDocumentManager;
 
+import edu.cornell.mannlib.vitro.webapp.config.ConfigurationProperties;
 import edu.cornell.mannlib.vitro.webapp.modelaccess.ModelAccess;
 import edu.cornell.mannlib.vitro.webapp.modules.Application;
 import edu.cornell.mannlib.vitro.webapp.modules.ComponentStartupStatus;
@@ -220,6 +221,8 @@ public class ApplicationImpl implements Application {
 	// ----------------------------------------------------------------------
 
 	public static class ComponentsSetup implements ServletContextListener {
+		private static final String PROPERTY_QUERY_CACHE_MEGABYTES = "RDFService.queryCache.megabytes";
+
 		@Override
 		public void contextInitialized(ServletContextEvent sce) {
 			ServletContext ctx = sce.getServletContext();
@@ -253,7 +256,7 @@ public class ApplicationImpl implements Application {
 					+ configurationTripleSource);
 
 			configureJena();
-			prepareCombinedTripleSource(app, ctx);
+			prepareCombinedTripleSource(app, ctx, getQueryCacheBytes(ctx, ss));
 		}
 
 		private void configureJena() {
@@ -261,13 +264,35 @@ public class ApplicationImpl implements Application {
 			OntDocumentManager.getInstance().setProcessImports(false);
 		}
 
+		/**
+		 * The query cache is not used unless runtime.properties says how big
+		 * it should be.
+		 */
+		private long getQueryCacheBytes(ServletContext ctx, StartupStatus ss) {
+			String value = ConfigurationProperties.getBean(ctx).getProperty(
+					PROPERTY_QUERY_CACHE_MEGABYTES, "0");
+			try {
+				long megabytes = Long.parseLong(value.trim());
+				if (megabytes > 0) {
+					ss.info(this, "Caching query results: " + megabytes
+							+ " megabytes for each RDFService.");
+				}
+				return megabytes * 1024L * 1024L;
+			} catch (NumberFormatException e) {
+				ss.warning(this, "Query results will not be cached. The value "
+						+ "for " + PROPERTY_QUERY_CACHE_MEGABYTES
+						+ " is not a number: '" + value + "'");
+				return 0L;
+			}
+		}
+
 		private void prepareCombinedTripleSource(Application app,
-				ServletContext ctx) {
+				ServletContext ctx, long queryCacheBytes) {
 			ContentTripleSource contentSource = app.getContentTripleSource();
 			ConfigurationTripleSource configurationSource = app
 					.getConfigurationTripleSource();
 			BasicCombinedTripleSource source = new BasicCombinedTripleSource(
-					contentSource, configurationSource);
+					contentSource, configurationSource, queryCacheBytes);
 
 			RDFServiceUtils.setRDFServiceFactory(ctx,
 					contentSource.getRDFServiceFactory());
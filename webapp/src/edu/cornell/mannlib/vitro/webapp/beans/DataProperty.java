@@ -14,7 +14,7 @@ import edu.cornell.mannlib.vitro.webapp.auth.policy.bean.RoleRestrictedProperty;
  * @author bjl23
  *
  */
-public class DataProperty extends Property implements Comparable<DataProperty>, ResourceBean, RoleRestrictedProperty {
+public class DataProperty extends Property implements Comparable<DataProperty>, ResourceBean, Cloneable, RoleRestrictedProperty {
 
     private String name = null;
     private String publicName = null;
@@ -180,5 +180,39 @@ public class DataProperty extends Property implements Comparable<DataProperty>,
         else 
             return "DataProperty without URI(" + hashCode() + ")"; 
     }
+
+    @Override
+    public DataProperty clone()
+    {
+        DataProperty clone = new DataProperty();
+        clone.setURI(this.getURI());
+        clone.setAddLinkSuppressed(this.isAddLinkSuppressed());
+        clone.setCustomEntryForm(this.getCustomEntryForm());
+        clone.setDeleteLinkSuppressed(this.isDeleteLinkSuppressed());
+        clone.setDescription(this.getDescription());
+        clone.setDisplayLimit(this.getDisplayLimit());
+        clone.setDisplayTier(this.getDisplayTier());
+        clone.setDomainClassURI(this.getDomainClassURI());
+        clone.setEditLinkSuppressed(this.isEditLinkSuppressed());
+        clone.setExample(this.getExample());
+        clone.setExternalId(this.isExternalId());
+        clone.setFunctional(this.getFunctional());
+        clone.setGroupURI(this.getGroupURI());
+        clone.setHiddenFromDisplayBelowRoleLevel(this.getHiddenFromDisplayBelowRoleLevel());
+        clone.setHiddenFromPublishBelowRoleLevel(this.getHiddenFromPublishBelowRoleLevel());
+        clone.setLabel(this.getLabel());
+        clone.setLocalName(this.getLocalName());
+        clone.setLocalNameWithPrefix(this.getLocalNameWithPrefix());
+        clone.setName(this.getName());
+        clone.setNamespace(this.getNamespace());
+        clone.setPickListName(this.getPickListName());
+        clone.setProhibitedFromUpdateBelowRoleLevel(this.getProhibitedFromUpdateBelowRoleLevel());
+        clone.setPublicDescription(this.getPublicDescription());
+        clone.setPublicName(this.getPublicName());
+        clone.setRangeDatatypeURI(this.getRangeDatatypeURI());
+        clone.setRangeVClassURI(this.getRangeVClassURI());
+        clone.setStatusId(this.getStatusId());
+        return clone;
+    }
 }
 
@@ -627,7 +627,7 @@ public class ObjectProperty extends Property implements Comparable<ObjectPropert
         clone.setDomainEntitySortDirection(this.getDomainEntitySortDirection());
         clone.setDomainEntityURI(this.getDomainEntityURI());
         clone.setDomainPublic(this.getDomainPublic());
-        clone.setDomainVClass(this.getDomainVClass());
+        clone.setDomainVClass(copyOf(this.getDomainVClass()));
         clone.setDomainVClassURI(this.getDomainVClassURI());
         clone.setEditLinkSuppressed(this.isEditLinkSuppressed());
         clone.setExample(this.getExample());
@@ -653,7 +653,7 @@ public class ObjectProperty extends Property implements Comparable<ObjectPropert
         clone.setRangeEntitySortDirection(this.getRangeEntitySortDirection());
         clone.setRangeEntityURI(this.getRangeEntityURI());
         clone.setRangePublic(this.getRangePublic());
-        clone.setRangeVClass(this.getRangeVClass());
+        clone.setRangeVClass(copyOf(this.getRangeVClass()));
         clone.setRangeVClassURI(this.getRangeVClassURI());
         clone.setSelectFromExisting(this.getSelectFromExisting());
         clone.setStubObjectRelation(this.getStubObjectRelation());
@@ -663,4 +663,11 @@ public class ObjectProperty extends Property implements Comparable<ObjectPropert
         clone.setURIInverse(this.getURIInverse());
         return clone;     
     }
+
+    /**
+     * The domain and range classes are mutable, so the clone gets its own.
+     */
+    private static VClass copyOf(VClass vclass) {
+        return (vclass == null) ? null : vclass.copy();
+    }
 }
\ No newline at end of file
@@ -199,7 +199,7 @@ public class IndividualListController extends FreemarkerHttpServlet {
 			List<String> vclassURIs, String alpha, int page, int pageSize, IndividualDao indDao)
 			throws SearchEngineException {
 		 SearchQuery query = SearchQueryUtils.getQuery(vclassURIs, alpha, page, pageSize);
-		 IndividualListQueryResults results = IndividualListQueryResults.runQuery(query, indDao);
+		 IndividualListQueryResults results = IndividualListQueryResults.runPagedQuery(query, page, pageSize, indDao);
 		 log.debug("Executed search query for " + vclassURIs);
 		 if (results.getIndividuals().isEmpty()) { 
 			 log.debug("entities list is null for vclass " + vclassURIs);
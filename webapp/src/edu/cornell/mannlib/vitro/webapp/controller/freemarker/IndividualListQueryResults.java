@@ -18,6 +18,7 @@ import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchResponse;
 import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchResultDocument;
 import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchResultDocumentList;
 import edu.cornell.mannlib.vitro.webapp.search.VitroSearchTermNames;
+import edu.cornell.mannlib.vitro.webapp.utils.searchengine.SearchCursorPager;
 
 /**
  * Holds the Individuals that were found in a search query.
@@ -40,8 +41,22 @@ public class IndividualListQueryResults {
 			throws SearchEngineException {
 
 		SearchEngine search = ApplicationUtils.instance().getSearchEngine();
-		SearchResponse response = search.query(query);
+		return parseResponse(search.query(query), indDao);
+	}
+
+	/**
+	 * Run the query for one page of results. Deep pages are fetched by cursor.
+	 */
+	public static IndividualListQueryResults runPagedQuery(SearchQuery query,
+			int page, int pageSize, IndividualDao indDao)
+			throws SearchEngineException {
+		SearchEngine search = ApplicationUtils.instance().getSearchEngine();
+		return parseResponse(SearchCursorPager.getInstance().query(search,
+				query, page, pageSize), indDao);
+	}
 
+	private static IndividualListQueryResults parseResponse(
+			SearchResponse response, IndividualDao indDao) {
 		if (response == null) {
 			log.debug("response from search query was null");
 			return EMPTY_RESULT;
@@ -20,6 +20,8 @@ import edu.cornell.mannlib.vitro.webapp.beans.VClass;
 import edu.cornell.mannlib.vitro.webapp.controller.Controllers;
 import edu.cornell.mannlib.vitro.webapp.controller.VitroRequest;
 import edu.cornell.mannlib.vitro.webapp.controller.freemarker.IndividualListController.PageRecord;
+import edu.cornell.mannlib.vitro.webapp.controller.json.StreamingJsonObject;
+import edu.cornell.mannlib.vitro.webapp.controller.json.StreamingJsonObject.LazyArray;
 
 /**
  * Utility methods for procesing the paged results of a query for a list of Individuals.
@@ -36,7 +38,23 @@ public class IndividualListResultsUtils {
 	 */
 	public static JSONObject wrapIndividualListResultsInJson(IndividualListResults results, VitroRequest vreq,
 			boolean multipleVclasses) {
-		JSONObject rObj = new JSONObject();
+		try {
+			return streamIndividualListResultsAsJson(results, vreq,
+					multipleVclasses).toJSONObject();
+		} catch (Exception ex) {
+			log.error("Error occurred in processing JSON object", ex);
+			return new JSONObject();
+		}
+	}
+
+	/**
+	 * The same, but the individuals are not converted to JSON until the object
+	 * is written.
+	 */
+	public static StreamingJsonObject streamIndividualListResultsAsJson(
+			IndividualListResults results, VitroRequest vreq,
+			boolean multipleVclasses) {
+		StreamingJsonObject rObj = new StreamingJsonObject();
 
 		if (log.isDebugEnabled()) {
 			dumpParametersFromRequest(vreq);
@@ -125,15 +143,16 @@ public class IndividualListResultsUtils {
 		return wpages;
 	}
 
-	private static JSONArray packageIndividualsAsJson(VitroRequest vreq,
-			List<Individual> inds) throws JSONException {
+	private static LazyArray<Individual> packageIndividualsAsJson(
+			final VitroRequest vreq, List<Individual> inds) {
 		log.debug("Number of individuals returned from request: " + inds.size());
 
-		JSONArray jInds = new JSONArray();
-		for (Individual ind : inds) {
-			jInds.put(IndividualJsonWrapper.packageIndividualAsJson(vreq, ind));
-		}
-		return jInds;
+		return new LazyArray<Individual>(inds) {
+			@Override
+			protected Object convert(Individual ind) throws JSONException {
+				return IndividualJsonWrapper.packageIndividualAsJson(vreq, ind);
+			}
+		};
 	}
 
 	private static void dumpParametersFromRequest(VitroRequest vreq) {
@@ -5,8 +5,6 @@ package edu.cornell.mannlib.vitro.webapp.controller.jena;
 import static edu.cornell.mannlib.vitro.webapp.modelaccess.ModelNames.ABOX_ASSERTIONS;
 import static edu.cornell.mannlib.vitro.webapp.modelaccess.ModelNames.TBOX_ASSERTIONS;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -44,10 +42,9 @@ import edu.cornell.mannlib.vitro.webapp.dao.jena.event.BulkUpdateEvent;
 import edu.cornell.mannlib.vitro.webapp.dao.jena.event.EditEvent;
 import edu.cornell.mannlib.vitro.webapp.modelaccess.ModelAccess;
 import edu.cornell.mannlib.vitro.webapp.modelaccess.ModelAccess.WhichService;
-import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeSet;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
-import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
-import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.RDFServiceUtils;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.ChunkedChangeSetWriter;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.ChunkedChangeSetWriter.Operation;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.jena.model.RDFServiceModel;
 
 public class RDFUploadController extends JenaIngestController {
@@ -111,21 +108,32 @@ public class RDFUploadController extends JenaIngestController {
                 "mode")));
           
         String uploadDesc ="";        
+        long directStmtCount = 0L;
                 
+        // a direct read streams the triples into the ABox, so it doesn't
+        // need a model
         OntModel uploadModel = (directRead) 
-            ? getABoxModel(getServletContext())
+            ? null
             : ModelFactory.createOntologyModel(OntModelSpec.OWL_MEM);
             
         /* ********************* GET RDF by URL ********************** */
         String RDFUrlStr =  request.getParameter("rdfUrl");
         if (RDFUrlStr != null && RDFUrlStr.length() > 0) {
             try {
-                uploadModel.enterCriticalSection(Lock.WRITE);
-                try {
-                    uploadModel.read(RDFUrlStr, languageStr); 
-                    // languageStr may be null and default would be RDF/XML
-                } finally {
-                    uploadModel.leaveCriticalSection();
+                if (directRead) {
+                    try (InputStream in = new URL(RDFUrlStr).openStream()) {
+                        directStmtCount = addUsingRDFService(in, RDFUrlStr,
+                                languageStr, request.getRDFService(),
+                                loginBean.getUserURI());
+                    }
+                } else {
+                    uploadModel.enterCriticalSection(Lock.WRITE);
+                    try {
+                        uploadModel.read(RDFUrlStr, languageStr); 
+                        // languageStr may be null and default would be RDF/XML
+                    } finally {
+                        uploadModel.leaveCriticalSection();
+                    }
                 }
                 uploadDesc = verb + " RDF from " + RDFUrlStr;                
             } catch (JenaException ex){
@@ -144,8 +152,9 @@ public class RDFUploadController extends JenaIngestController {
                 FileItem rdfStream = fileStreams.get("rdfStream").get(0);
                 try {
                     if (directRead) {
-                        addUsingRDFService(rdfStream.getInputStream(), languageStr,
-                                request.getRDFService());
+                        directStmtCount = addUsingRDFService(
+                                fileItemSource(rdfStream), null, languageStr,
+                                request.getRDFService(), loginBean.getUserURI());
                     } else {
                         uploadModel.enterCriticalSection(Lock.WRITE);
                         try {
@@ -209,7 +218,8 @@ public class RDFUploadController extends JenaIngestController {
             request.setAttribute("uploadDesc", uploadDesc + ". " + verb + " " + 
                     (tboxstmtCount + aboxstmtCount) + "  statements.");
         } else {
-            request.setAttribute("uploadDesc", "RDF upload successful.");
+            request.setAttribute("uploadDesc", "RDF upload successful. " + 
+                    verb + " " + directStmtCount + "  statements.");
         }
         
         RequestDispatcher rd = request.getRequestDispatcher(
@@ -225,22 +235,49 @@ public class RDFUploadController extends JenaIngestController {
         }
     }
 
-    private void addUsingRDFService(InputStream in, String languageStr, 
-            RDFService rdfService) {
-        ChangeSet changeSet = rdfService.manufactureChangeSet();
-        RDFService.ModelSerializationFormat format = 
-                ("RDF/XML".equals(languageStr) 
-                        || "RDF/XML-ABBREV".equals(languageStr))
-                                ? RDFService.ModelSerializationFormat.RDFXML
-                                : RDFService.ModelSerializationFormat.N3;
-        changeSet.addAddition(in, format, 
-                ABOX_ASSERTIONS);
-        try {
-            rdfService.changeSetUpdate(changeSet);
-        } catch (RDFServiceException rdfse) {
-            log.error(rdfse);
-            throw new RuntimeException(rdfse);
-        }
+    /**
+     * Parse the triples straight into the ABox, a chunk at a time, as one 
+     * bulk update. Returns the number of triples. If the data can't be 
+     * parsed, nothing is added.
+     */
+    private long addUsingRDFService(ChunkedChangeSetWriter.Source source, 
+            String baseURI, String languageStr, RDFService rdfService, 
+            String userURI) throws IOException {
+        return bulkWriter(rdfService, ABOX_ASSERTIONS, userURI).read(source, 
+                baseURI, languageStr);
+    }
+    
+    /**
+     * The same, for a download. The writer reads the data twice, so it 
+     * copies the stream to a temporary file first.
+     */
+    private long addUsingRDFService(InputStream in, String baseURI, 
+            String languageStr, RDFService rdfService, String userURI) 
+                    throws IOException {
+        return bulkWriter(rdfService, ABOX_ASSERTIONS, userURI).read(in, 
+                baseURI, languageStr);
+    }
+    
+    /**
+     * The BulkUpdateEvents tell the reasoner and the search indexer to treat 
+     * the whole upload as one update, rather than reacting to each chunk. 
+     * Before the uploads were streamed, these paths sent no events.
+     */
+    private static ChunkedChangeSetWriter bulkWriter(RDFService rdfService, 
+            String graphURI, String userURI) {
+        return new ChunkedChangeSetWriter(rdfService, graphURI, Operation.ADD)
+                .setEvents(new BulkUpdateEvent(userURI, true), 
+                        new BulkUpdateEvent(userURI, false));
+    }
+    
+    private static ChunkedChangeSetWriter.Source fileItemSource(
+            final FileItem fileItem) {
+        return new ChunkedChangeSetWriter.Source() {
+            @Override
+            public InputStream openStream() throws IOException {
+                return fileItem.getInputStream();
+            }
+        };
     }
     
     public void loadRDF(VitroRequest request, HttpServletResponse response) 
@@ -258,8 +295,10 @@ public class RDFUploadController extends JenaIngestController {
             request.setAttribute("bodyJsp",LOAD_RDF_DATA_JSP);  
         } else {          
             RDFService rdfService = getRDFService(request, maker, modelName);
+            String userURI = LoginStatusBean.getBean(request).getUserURI();
             try {
-                doLoadRDFData(modelName, docLoc, filePath, languageStr, rdfService);
+                doLoadRDFData(modelName, docLoc, filePath, languageStr, 
+                        rdfService, userURI);
             } finally {
                 rdfService.close();
             }
@@ -331,16 +370,8 @@ public class RDFUploadController extends JenaIngestController {
             try {                                                 
                 if (remove) {
                     RDFService rdfService = new RDFServiceModel(mainModel);
-                    ByteArrayOutputStream out = new ByteArrayOutputStream();
-                    changesModel.write(out, "N-TRIPLE");
-                    ChangeSet cs = rdfService.manufactureChangeSet();
-                    ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
-                    cs.addRemoval(in, RDFService.ModelSerializationFormat.NTRIPLE, null);
-                    try {
-                        rdfService.changeSetUpdate(cs);
-                    } catch (RDFServiceException e) {
-                        throw new RuntimeException(e);
-                    }
+                    new ChunkedChangeSetWriter(rdfService, null, 
+                            Operation.REMOVE).write(changesModel);
                     //mainModel.remove(changesModel);
                 } else {
                     mainModel.add(changesModel);
@@ -361,12 +392,14 @@ public class RDFUploadController extends JenaIngestController {
                                String docLoc, 
                                String filePath, 
                                String language, 
-                               RDFService rdfService) {
+                               RDFService rdfService,
+                               String userURI) {
         try {
             if ( (docLoc != null) && (docLoc.length()>0) ) {
-                URL docLocURL = new URL(docLoc);
-                InputStream in = docLocURL.openStream();
-                readIntoModel(in, language, rdfService, modelName);
+                try (InputStream in = new URL(docLoc).openStream()) {
+                    bulkWriter(rdfService, modelName, userURI).read(in, docLoc, 
+                            language);
+                }
             } else if ( (filePath != null) && (filePath.length()>0) ) {
                 File file = new File(filePath);
                 File[] files;
@@ -380,8 +413,8 @@ public class RDFUploadController extends JenaIngestController {
                     File currentFile = files[i];
                     log.debug("Reading file " + currentFile.getName());
                     try {
-                        readIntoModel(fileStream.getInputStream(), language, 
-                                rdfService, modelName);
+                        bulkWriter(rdfService, modelName, userURI).read(
+                                fileItemSource(fileStream), null, language);
                         fileStream.delete();
                     } catch (IOException ioe) {
                         String errMsg = "Error loading RDF from " + 
@@ -396,18 +429,6 @@ public class RDFUploadController extends JenaIngestController {
         }
     }
     
-    private void readIntoModel(InputStream in, String language, 
-            RDFService rdfService, String modelName) {
-        ChangeSet cs = rdfService.manufactureChangeSet();
-        cs.addAddition(in, RDFServiceUtils.getSerializationFormatFromJenaString(
-                        language), modelName);
-        try {
-            rdfService.changeSetUpdate(cs);
-        } catch (RDFServiceException e) {
-            throw new RuntimeException(e);
-        }
-    }
-    
      private void forwardToFileUploadError( String errrorMsg , 
                                             HttpServletRequest req, 
                                             HttpServletResponse response) 
@@ -8,12 +8,12 @@ import java.util.Map;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import edu.cornell.mannlib.vitro.webapp.beans.Individual;
 import edu.cornell.mannlib.vitro.webapp.controller.VitroRequest;
+import edu.cornell.mannlib.vitro.webapp.controller.json.StreamingJsonObject.LazyArray;
 import edu.cornell.mannlib.vitro.webapp.dao.IndividualDao;
 import edu.cornell.mannlib.vitro.webapp.services.shortview.ShortViewService;
 import edu.cornell.mannlib.vitro.webapp.services.shortview.ShortViewService.ShortViewContext;
@@ -36,8 +36,8 @@ public class GetRandomSearchIndividualsByVClass extends GetSearchIndividualsByVC
 	 * Search for individuals by VClass. 
 	 */
 	@Override
-	protected JSONObject process() throws Exception {
-		JSONObject rObj = null;
+	protected StreamingJsonObject processStreaming() throws Exception {
+		StreamingJsonObject rObj = null;
 		
 		//This gets the first vclass value and sets that as display type.
 		List<String> vclassIds = super.getVclassIds(vreq);
@@ -47,23 +47,29 @@ public class GetRandomSearchIndividualsByVClass extends GetSearchIndividualsByVC
 		
 		//This will get all the solr individuals by VClass (if one value) or the intersection
 		//i.e. individuals that have all the types for the different vclasses entered
-		rObj = super.process();
+		rObj = super.processStreaming();
 		addShortViewRenderings(rObj);
 		return rObj;
 	}
 	
 	/**
 	 * Look through the return object. For each individual, render the short
-	 * view and insert the resulting HTML into the object.
+	 * view and insert the resulting HTML into the object. The rendering is
+	 * done as each individual is written.
 	 */
-	private void addShortViewRenderings(JSONObject rObj) throws JSONException {
-		JSONArray individuals = rObj.getJSONArray("individuals");
-		String vclassName = rObj.getJSONObject("vclass").getString("name");
-		for (int i = 0; i < individuals.length(); i++) {
-			JSONObject individual = individuals.getJSONObject(i);
-			individual.put("shortViewHtml",
-					renderShortView(individual.getString("URI"), vclassName));
-		}
+	private void addShortViewRenderings(StreamingJsonObject rObj)
+			throws JSONException {
+		Iterable<?> individuals = rObj.getIterable("individuals");
+		final String vclassName = rObj.getJSONObject("vclass").getString("name");
+		rObj.put("individuals", new LazyArray<Object>(individuals) {
+			@Override
+			protected Object convert(Object element) throws JSONException {
+				JSONObject individual = (JSONObject) element;
+				individual.put("shortViewHtml",
+						renderShortView(individual.getString("URI"), vclassName));
+				return individual;
+			}
+		});
 	}
 
 	private String renderShortView(String individualUri, String vclassName) {
@@ -22,6 +22,11 @@ public class GetSearchIndividualsByVClass extends JsonObjectProducer {
 
 	@Override
 	protected JSONObject process() throws Exception {
+		return processStreaming().toJSONObject();
+	}
+
+	@Override
+	protected StreamingJsonObject processStreaming() throws Exception {
         VClass vclass=null;
         
         String queryType = (String) vreq.getAttribute("queryType");
@@ -39,9 +44,9 @@ public class GetSearchIndividualsByVClass extends JsonObjectProducer {
         
         vreq.setAttribute("displayType", vitroClassIdStr);
         if ( queryType != null && queryType.equals("random")){
-            return JsonServlet.getRandomSearchIndividualsByVClass(vclass.getURI(), vreq);             
+            return JsonServlet.streamRandomSearchIndividualsByVClass(vclass.getURI(), vreq);             
         } else {
-            return JsonServlet.getSearchIndividualsByVClass(vclass.getURI(), vreq);
+            return JsonServlet.streamSearchIndividualsByVClass(vclass.getURI(), vreq);
         }
     }
 
@@ -26,6 +26,11 @@ public class GetSearchIndividualsByVClasses extends JsonObjectProducer {
 
 	@Override
 	protected JSONObject process() throws Exception {
+		return processStreaming().toJSONObject();
+	}
+
+	@Override
+	protected StreamingJsonObject processStreaming() throws Exception {
     log.debug("Executing retrieval of individuals by vclasses");
         VClass vclass=null;
         log.debug("Retrieving search individuals by vclasses");
@@ -45,7 +50,7 @@ public class GetSearchIndividualsByVClasses extends JsonObjectProducer {
             throw new Exception("parameter vclassId URI parameter expected ");
         }
         List<String> vclassIds = Arrays.asList(vitroClassIdStr);
-        return JsonServlet.getSearchIndividualsByVClasses(vclassIds, vreq);
+        return JsonServlet.streamSearchIndividualsByVClasses(vclassIds, vreq);
     }
 
 }
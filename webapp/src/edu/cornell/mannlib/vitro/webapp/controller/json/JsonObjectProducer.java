@@ -26,6 +26,9 @@ import edu.cornell.mannlib.vitro.webapp.controller.VitroRequest;
  * contain the exception message and the response status will be set to 500
  * (server error). Normally, "errorMessage" will be empty, and the status will
  * default to 200 (OK).
+ *
+ * A sub-class may produce a StreamingJsonObject instead, so a large result is
+ * not held in memory. Exceptions while producing it are handled as above.
  */
 public abstract class JsonObjectProducer extends JsonProducer {
 	private static final Log log = LogFactory.getLog(JsonObjectProducer.class);
@@ -44,18 +47,36 @@ public abstract class JsonObjectProducer extends JsonProducer {
 	 */
 	protected abstract JSONObject process() throws Exception;
 
+	/**
+	 * Sub-classes whose results may be large can override this method to
+	 * produce an object that is written to the response a piece at a time. If
+	 * this returns null, process() is called instead.
+	 */
+	protected StreamingJsonObject processStreaming() throws Exception {
+		return null;
+	}
+
 	public final void process(HttpServletResponse resp) throws IOException {
 		JSONObject jsonObject = null;
+		StreamingJsonObject streamingObject = null;
 		String errorMessage = "";
 
 		try {
-			jsonObject = process();
+			streamingObject = processStreaming();
+			if (streamingObject == null) {
+				jsonObject = process();
+			}
 		} catch (Exception e) {
 			log.error("Failed to create JSON response", e);
 			errorMessage = e.toString();
 			resp.setStatus(500 /* HttpURLConnection.HTTP_SERVER_ERROR */);
 		}
 
+		if (streamingObject != null) {
+			writeStreamingObject(resp, streamingObject);
+			return;
+		}
+
 		if (jsonObject == null) {
 			jsonObject = new JSONObject();
 		}
@@ -73,4 +94,24 @@ public abstract class JsonObjectProducer extends JsonProducer {
 			log.error(e, e);
 		}
 	}
+
+	/**
+	 * Once we start writing, the status has been sent, so a failure can only
+	 * be logged.
+	 */
+	private void writeStreamingObject(HttpServletResponse resp,
+			StreamingJsonObject streamingObject) throws IOException {
+		log.debug("Streaming response to JSON request.");
+
+		try {
+			resp.setCharacterEncoding("UTF-8");
+			resp.setContentType("application/json;charset=UTF-8");
+			Writer writer = resp.getWriter();
+
+			streamingObject.put("errorMessage", "");
+			streamingObject.write(writer);
+		} catch (JSONException | RuntimeException e) {
+			log.error("Failed while writing JSON response", e);
+		}
+	}
 }
@@ -81,21 +81,29 @@ public class JsonServlet extends VitroHttpServlet {
     
 
     public static JSONObject getSearchIndividualsByVClass(String vclassURI, HttpServletRequest req) throws Exception {
+        return streamSearchIndividualsByVClass(vclassURI, req).toJSONObject();
+    }
+
+    public static StreamingJsonObject streamSearchIndividualsByVClass(String vclassURI, HttpServletRequest req) throws Exception {
         List<String> vclassURIs = Collections.singletonList(vclassURI);
         VitroRequest vreq = new VitroRequest(req);        
         
         IndividualListResults vcResults = getSearchVClassIntersectionResults(vclassURIs, vreq);
         //last parameter indicates single vclass instead of multiple vclasses
-        return IndividualListResultsUtils.wrapIndividualListResultsInJson(vcResults, vreq, false);                    
+        return IndividualListResultsUtils.streamIndividualListResultsAsJson(vcResults, vreq, false);                    
     }
 
     public static JSONObject getSearchIndividualsByVClasses(List<String> vclassURIs, HttpServletRequest req) throws Exception {
+        return streamSearchIndividualsByVClasses(vclassURIs, req).toJSONObject();
+    }
+
+    public static StreamingJsonObject streamSearchIndividualsByVClasses(List<String> vclassURIs, HttpServletRequest req) throws Exception {
    	 	VitroRequest vreq = new VitroRequest(req);   
    	 	log.debug("Retrieve search results for vclasses" + vclassURIs.toString());
         IndividualListResults vcResults = getSearchVClassIntersectionResults(vclassURIs, vreq);
         log.debug("Results returned from search engine for " + vclassURIs.toString() + " are of size " + vcResults.getTotalCount());
         
-        return IndividualListResultsUtils.wrapIndividualListResultsInJson(vcResults, vreq, true);        
+        return IndividualListResultsUtils.streamIndividualListResultsAsJson(vcResults, vreq, true);        
    }
     
     //Including version for search query for Vclass Intersections
@@ -125,11 +133,15 @@ public class JsonServlet extends VitroHttpServlet {
     }
     
     public static JSONObject getRandomSearchIndividualsByVClass(String vclassURI, HttpServletRequest req) throws Exception {
+        return streamRandomSearchIndividualsByVClass(vclassURI, req).toJSONObject();
+    }
+
+    public static StreamingJsonObject streamRandomSearchIndividualsByVClass(String vclassURI, HttpServletRequest req) throws Exception {
         VitroRequest vreq = new VitroRequest(req);        
         
         IndividualListResults vcResults = getRandomSearchVClassResults(vclassURI, vreq);
         //last parameter indicates single vclass instead of multiple vclasses
-        return IndividualListResultsUtils.wrapIndividualListResultsInJson(vcResults, vreq, false);                            
+        return IndividualListResultsUtils.streamIndividualListResultsAsJson(vcResults, vreq, false);                            
     }
 
      //Including version for Random search query for Vclass Intersections
@@ -0,0 +1,224 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.controller.json;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * A JSON object that can be written to a Writer a piece at a time, instead of
+ * being built in memory and then converted to a String.
+ *
+ * The values are the same as for a JSONObject, except that a value may also be
+ * an Iterable, which is written as a JSON array. Each element is serialized
+ * and written as soon as the Iterable produces it, so a LazyArray never holds
+ * more than one element in memory.
+ *
+ * The text that is written is the same text that JSONObject.toString() would
+ * produce from the same fields, put in the same order. The keys are written in
+ * the order that a JSONObject would iterate them, and the values are
+ * serialized by JSONObject and JSONArray.
+ *
+ * An Iterable may not be repeatable, so write the object only once.
+ */
+public class StreamingJsonObject {
+	/** Insertion order, so we can reproduce the order of a JSONObject. */
+	private final Map<String, Object> fields = new LinkedHashMap<>();
+
+	/**
+	 * Same as JSONObject.put(): a null value removes the key.
+	 */
+	public StreamingJsonObject put(String key, Object value)
+			throws JSONException {
+		if (key == null) {
+			throw new JSONException("Null key.");
+		}
+		if (value == null) {
+			fields.remove(key);
+		} else {
+			fields.put(key, value);
+		}
+		return this;
+	}
+
+	public boolean has(String key) {
+		return fields.containsKey(key);
+	}
+
+	public Object get(String key) throws JSONException {
+		Object value = fields.get(key);
+		if (value == null) {
+			throw new JSONException("JSONObject[" + JSONObject.quote(key)
+					+ "] not found.");
+		}
+		return value;
+	}
+
+	public JSONObject getJSONObject(String key) throws JSONException {
+		Object value = get(key);
+		if (value instanceof JSONObject) {
+			return (JSONObject) value;
+		}
+		throw new JSONException("JSONObject[" + JSONObject.quote(key)
+				+ "] is not a JSONObject.");
+	}
+
+	public Iterable<?> getIterable(String key) throws JSONException {
+		Object value = get(key);
+		if (value instanceof Iterable) {
+			return (Iterable<?>) value;
+		}
+		throw new JSONException("JSONObject[" + JSONObject.quote(key)
+				+ "] is not an Iterable.");
+	}
+
+	/**
+	 * Write the object, running through any Iterables as we go.
+	 */
+	public void write(Writer writer) throws IOException, JSONException {
+		writer.write('{');
+		boolean first = true;
+		for (Iterator<?> keys = jsonObjectKeyOrder(); keys.hasNext();) {
+			String key = (String) keys.next();
+			Object value = fields.get(key);
+
+			if (!first) {
+				writer.write(',');
+			}
+			first = false;
+
+			if (value instanceof Iterable) {
+				writer.write(JSONObject.quote(key));
+				writer.write(':');
+				writeArray(writer, (Iterable<?>) value);
+			} else {
+				writer.write(serializeField(key, value));
+			}
+		}
+		writer.write('}');
+	}
+
+	/**
+	 * Build the whole thing in memory, for callers that want a JSONObject.
+	 */
+	public JSONObject toJSONObject() throws JSONException {
+		JSONObject jo = new JSONObject();
+		for (Map.Entry<String, Object> entry : fields.entrySet()) {
+			Object value = entry.getValue();
+			if (value instanceof Iterable) {
+				JSONArray ja = new JSONArray();
+				for (Object element : (Iterable<?>) value) {
+					ja.put(element);
+				}
+				value = ja;
+			}
+			jo.put(entry.getKey(), value);
+		}
+		return jo;
+	}
+
+	/**
+	 * A JSONObject keeps its fields in a HashMap. Put the same keys into one,
+	 * in the same order, and it will iterate them in the order it would have
+	 * written them.
+	 */
+	private Iterator<?> jsonObjectKeyOrder() throws JSONException {
+		JSONObject template = new JSONObject();
+		for (String key : fields.keySet()) {
+			template.put(key, Boolean.TRUE);
+		}
+		return template.keys();
+	}
+
+	private void writeArray(Writer writer, Iterable<?> elements)
+			throws IOException, JSONException {
+		writer.write('[');
+		boolean first = true;
+		for (Object element : elements) {
+			if (!first) {
+				writer.write(',');
+			}
+			first = false;
+			writer.write(serializeElement(element));
+		}
+		writer.write(']');
+	}
+
+	/**
+	 * Let JSONObject serialize the field, and strip off the braces.
+	 */
+	private String serializeField(String key, Object value)
+			throws JSONException {
+		String text = new JSONObject().put(key, value).toString();
+		if (text == null) {
+			throw new JSONException("Failed to serialize the value of "
+					+ JSONObject.quote(key));
+		}
+		return text.substring(1, text.length() - 1);
+	}
+
+	/**
+	 * Let JSONArray serialize the element, and strip off the brackets.
+	 */
+	private String serializeElement(Object element) throws JSONException {
+		String text = new JSONArray().put(element).toString();
+		if (text == null) {
+			throw new JSONException("Failed to serialize an array element: "
+					+ element);
+		}
+		return text.substring(1, text.length() - 1);
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper class
+	// ----------------------------------------------------------------------
+
+	/**
+	 * An Iterable that converts each element of another Iterable when it is
+	 * asked for it.
+	 *
+	 * If a conversion fails, the JSONException is wrapped in an
+	 * IllegalStateException, since Iterator.next() can't throw it.
+	 */
+	public abstract static class LazyArray<T> implements Iterable<Object> {
+		private final Iterable<? extends T> source;
+
+		public LazyArray(Iterable<? extends T> source) {
+			this.source = source;
+		}
+
+		protected abstract Object convert(T element) throws JSONException;
+
+		@Override
+		public Iterator<Object> iterator() {
+			final Iterator<? extends T> inner = source.iterator();
+			return new Iterator<Object>() {
+				@Override
+				public boolean hasNext() {
+					return inner.hasNext();
+				}
+
+				@Override
+				public Object next() {
+					try {
+						return convert(inner.next());
+					} catch (JSONException e) {
+						throw new IllegalStateException(e);
+					}
+				}
+
+				@Override
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+	}
+}
@@ -0,0 +1,202 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.dao.jena;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.hp.hpl.jena.ontology.OntModel;
+import com.hp.hpl.jena.rdf.model.Literal;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.rdf.model.ResourceFactory;
+import com.hp.hpl.jena.rdf.model.Statement;
+import com.hp.hpl.jena.shared.Lock;
+
+import edu.cornell.mannlib.vitro.webapp.dao.InsertException;
+import edu.cornell.mannlib.vitro.webapp.dao.VitroVocabulary;
+import edu.cornell.mannlib.vitro.webapp.utils.jena.URIUtils;
+
+/**
+ * Mint new URIs like namespace + "n2147483712" without probing the model for
+ * each one.
+ *
+ * Each namespace has a counter, persisted in the application metadata model.
+ * When a block of values is needed, the counter is advanced by the size of the
+ * block, in a single write. The values in the block are then handed out from
+ * memory.
+ *
+ * The counter starts at 2^31, above the range of the random local names that
+ * were used before (and which are still used for other purposes), so the
+ * minted names shouldn't collide with them. As a safety net, each URI is
+ * checked against the full model as it is handed out. A URI that is already in
+ * use is skipped, and the next one is tried, reserving more blocks as needed.
+ *
+ * The counter statements are written to the application metadata model, but
+ * they are not property metadata: PropertyMetadataCache ignores them (see
+ * isCounterPredicate()).
+ *
+ * A block is reserved from the counter in one model, so it may only be used
+ * with that model: the blocks are kept by counter model and namespace. A
+ * counter model's blocks are forgotten when the model is garbage-collected.
+ * Reservation is synchronized, so concurrent requests never receive the same
+ * URI. Values that are reserved but never used (for example, at shutdown, or
+ * when a counter model is discarded) are simply lost.
+ */
+public class BlockReservingURIMinter {
+	private static final Log log = LogFactory
+			.getLog(BlockReservingURIMinter.class);
+
+	public static final long FIRST_VALUE = 1L << 31;
+	public static final int DEFAULT_BLOCK_SIZE = 100;
+
+	private static final String COUNTER_URI_BASE = VitroVocabulary.vitroURI
+			+ "uriMintingCounter_";
+	private static final Property MINTING_NAMESPACE = ResourceFactory
+			.createProperty(VitroVocabulary.vitroURI + "uriMintingNamespace");
+	private static final Property MINTING_NEXT_VALUE = ResourceFactory
+			.createProperty(VitroVocabulary.vitroURI + "uriMintingNextValue");
+
+	/**
+	 * Is this one of the predicates that the counters are written with? A
+	 * change to these says nothing about the ontology.
+	 */
+	public static boolean isCounterPredicate(String predicateUri) {
+		return MINTING_NEXT_VALUE.getURI().equals(predicateUri)
+				|| MINTING_NAMESPACE.getURI().equals(predicateUri);
+	}
+
+	private static final BlockReservingURIMinter INSTANCE = new BlockReservingURIMinter(
+			DEFAULT_BLOCK_SIZE);
+
+	public static BlockReservingURIMinter getInstance() {
+		return INSTANCE;
+	}
+
+	private final int blockSize;
+
+	/**
+	 * Blocks by namespace, for each counter model. All access to the blocks
+	 * must be synchronized.
+	 */
+	private final Map<OntModel, Map<String, Block>> blocks = new WeakHashMap<>();
+
+	public BlockReservingURIMinter(int blockSize) {
+		if (blockSize <= 0) {
+			throw new IllegalArgumentException("blockSize must be positive: "
+					+ blockSize);
+		}
+		this.blockSize = blockSize;
+	}
+
+	/**
+	 * Get a new URI in this namespace.
+	 *
+	 * @param namespace
+	 *            the namespace of the new URI. May not be null or empty.
+	 * @param counterModel
+	 *            the model that holds the persisted counter (normally the
+	 *            application metadata model).
+	 * @param checkModel
+	 *            the model that the new URI must not already appear in
+	 *            (normally the full model).
+	 */
+	public synchronized String mintURI(String namespace, OntModel counterModel,
+			OntModel checkModel) throws InsertException {
+		if (namespace == null || namespace.isEmpty()) {
+			throw new InsertException("Can't mint a URI without a namespace.");
+		}
+
+		Map<String, Block> blocksForCounter = blocks.get(counterModel);
+		if (blocksForCounter == null) {
+			blocksForCounter = new HashMap<>();
+			blocks.put(counterModel, blocksForCounter);
+		}
+
+		int skipped = 0;
+		while (true) {
+			Block block = blocksForCounter.get(namespace);
+			if (block == null || block.isExhausted()) {
+				block = reserveBlock(namespace, counterModel);
+				blocksForCounter.put(namespace, block);
+			}
+
+			String uri = namespace + "n" + block.next();
+			if (!URIUtils.hasExistingURI(uri, checkModel)) {
+				if (skipped > 0) {
+					log.warn("Skipped " + skipped + " URIs in namespace '"
+							+ namespace + "' that were already in use.");
+				}
+				return uri;
+			}
+			skipped++;
+		}
+	}
+
+	private Block reserveBlock(String namespace, OntModel counterModel) {
+		long start = advanceCounter(namespace, counterModel);
+		Block block = new Block(start, start + blockSize);
+		log.debug("Reserved block " + block + " for " + namespace);
+		return block;
+	}
+
+	/**
+	 * Read the counter, advance it by a block, and return the value that was
+	 * read.
+	 */
+	private long advanceCounter(String namespace, OntModel counterModel) {
+		counterModel.enterCriticalSection(Lock.WRITE);
+		try {
+			Resource counter = counterModel.getResource(COUNTER_URI_BASE
+					+ DigestUtils.md5Hex(namespace));
+			long start = FIRST_VALUE;
+			Statement stmt = counter.getProperty(MINTING_NEXT_VALUE);
+			if (stmt != null && stmt.getObject().isLiteral()) {
+				Literal value = stmt.getObject().asLiteral();
+				start = Math.max(FIRST_VALUE, value.getLong());
+			}
+
+			counter.removeAll(MINTING_NEXT_VALUE);
+			counter.addLiteral(MINTING_NEXT_VALUE, start + blockSize);
+			if (!counter.hasProperty(MINTING_NAMESPACE)) {
+				counter.addProperty(MINTING_NAMESPACE, namespace);
+			}
+			return start;
+		} finally {
+			counterModel.leaveCriticalSection();
+		}
+	}
+
+	/**
+	 * A range of reserved values: from first (inclusive) to limit (exclusive).
+	 */
+	private static class Block {
+		private final long first;
+		private final long limit;
+		private long next;
+
+		Block(long first, long limit) {
+			this.first = first;
+			this.limit = limit;
+			this.next = first;
+		}
+
+		boolean isExhausted() {
+			return next >= limit;
+		}
+
+		long next() {
+			return next++;
+		}
+
+		@Override
+		public String toString() {
+			return "[" + first + ", " + limit + ")";
+		}
+	}
+}
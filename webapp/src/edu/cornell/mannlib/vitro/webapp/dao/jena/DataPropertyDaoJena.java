@@ -470,13 +470,26 @@ public class DataPropertyDaoJena extends PropertyDaoJena implements
     }
     
     public DataProperty getDataPropertyByURI(String dataPropertyURI) {
+        PropertyMetadataCache.Snapshot metadata = getWebappDaoFactory().getPropertyMetadata();
+        if (metadata != null && dataPropertyURI != null) {
+            DataProperty cached = metadata.getDataProperty(dataPropertyURI, PREFERRED_LANGUAGES);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        DataProperty dp;
         OntModel tboxModel = getOntModelSelector().getTBoxModel();
         tboxModel.enterCriticalSection(Lock.READ);
         try {
-            return datapropFromOntProperty(tboxModel.getDatatypeProperty(dataPropertyURI));
+            dp = datapropFromOntProperty(tboxModel.getDatatypeProperty(dataPropertyURI));
         } finally {
             tboxModel.leaveCriticalSection();
         }
+        if (metadata != null && dp != null) {
+            metadata.putDataProperty(dataPropertyURI, PREFERRED_LANGUAGES, dp);
+        }
+        return dp;
     }
 
     public String insertDataProperty(DataProperty dtp) throws InsertException{
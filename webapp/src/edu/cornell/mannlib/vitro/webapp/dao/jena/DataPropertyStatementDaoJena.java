@@ -63,8 +63,9 @@ public class DataPropertyStatementDaoJena extends JenaBaseDao implements DataPro
     public void deleteDataPropertyStatement( DataPropertyStatement dataPropertyStatement )
     {
         OntModel ontModel = getOntModelSelector().getABoxModel();
+        ontModel.enterCriticalSection(Lock.WRITE);
+        RDFServiceUnitOfWork unit = RDFServiceUnitOfWork.begin();
         try {
-            ontModel.enterCriticalSection(Lock.WRITE);
             getOntModel().getBaseModel().notifyEvent(
                     new IndividualUpdateEvent(
                             getWebappDaoFactory().getUserURI(),
@@ -91,7 +92,11 @@ public class DataPropertyStatementDaoJena extends JenaBaseDao implements DataPro
                             getWebappDaoFactory().getUserURI(),
                             false,
                             dataPropertyStatement.getIndividualURI()));
-            ontModel.leaveCriticalSection();       
+            try {
+                unit.close();
+            } finally {
+                ontModel.leaveCriticalSection();
+            }
         }
     }
 
@@ -157,11 +162,12 @@ public class DataPropertyStatementDaoJena extends JenaBaseDao implements DataPro
             OntModel ontModel) {
         
         ontModel.enterCriticalSection(Lock.WRITE);
-        getOntModel().getBaseModel().notifyEvent(new IndividualUpdateEvent(
-                getWebappDaoFactory().getUserURI(),
-                true,
-                individualURI));
+        RDFServiceUnitOfWork unit = RDFServiceUnitOfWork.begin();
         try {
+            getOntModel().getBaseModel().notifyEvent(new IndividualUpdateEvent(
+                    getWebappDaoFactory().getUserURI(),
+                    true,
+                    individualURI));
             Resource indRes = ResourceFactory.createResource(individualURI);
             Property datatypeProperty = ResourceFactory.createProperty(
                     dataPropertyURI);
@@ -175,7 +181,11 @@ public class DataPropertyStatementDaoJena extends JenaBaseDao implements DataPro
         	        getWebappDaoFactory().getUserURI(),
         	        false,
         	        individualURI));
-            ontModel.leaveCriticalSection();
+            try {
+                unit.close();
+            } finally {
+                ontModel.leaveCriticalSection();
+            }
         }
         
     }
@@ -282,14 +292,15 @@ public class DataPropertyStatementDaoJena extends JenaBaseDao implements DataPro
     }
 
     public int insertNewDataPropertyStatement(DataPropertyStatement dataPropertyStmt, OntModel ontModel) {
-        ontModel.enterCriticalSection(Lock.WRITE);
-        getOntModel().getBaseModel().notifyEvent(new IndividualUpdateEvent(getWebappDaoFactory().getUserURI(),true,dataPropertyStmt.getIndividualURI()));
 		DataProperty dp = getWebappDaoFactory().getDataPropertyDao().getDataPropertyByURI(dataPropertyStmt.getDatapropURI());
 		if ( (dataPropertyStmt.getDatatypeURI() == null) && (dp != null) && (dp.getRangeDatatypeURI() != null) ) {
 			dataPropertyStmt.setDatatypeURI(dp.getRangeDatatypeURI());
 		}
-        Property prop = ontModel.getProperty(dataPropertyStmt.getDatapropURI());
+        ontModel.enterCriticalSection(Lock.WRITE);
+        RDFServiceUnitOfWork unit = RDFServiceUnitOfWork.begin();
         try {
+            getOntModel().getBaseModel().notifyEvent(new IndividualUpdateEvent(getWebappDaoFactory().getUserURI(),true,dataPropertyStmt.getIndividualURI()));
+            Property prop = ontModel.getProperty(dataPropertyStmt.getDatapropURI());
             Resource res = ontModel.getResource(dataPropertyStmt.getIndividualURI());
             Literal literal = jenaLiteralFromDataPropertyStatement(dataPropertyStmt,ontModel);
             if (res != null && prop != null && literal != null && dataPropertyStmt.getData().length()>0) {
@@ -299,7 +310,11 @@ public class DataPropertyStatementDaoJena extends JenaBaseDao implements DataPro
         	log.error("Error occurred in adding a data property for " + dataPropertyStmt.toString());
         }finally {
         	getOntModel().getBaseModel().notifyEvent(new IndividualUpdateEvent(getWebappDaoFactory().getUserURI(),false,dataPropertyStmt.getIndividualURI()));
-            ontModel.leaveCriticalSection();
+            try {
+                unit.close();
+            } finally {
+                ontModel.leaveCriticalSection();
+            }
         }
         return 0;
     }
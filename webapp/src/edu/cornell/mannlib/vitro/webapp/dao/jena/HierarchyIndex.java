@@ -0,0 +1,183 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.dao.jena;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.RDFNode;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.rdf.model.Statement;
+import com.hp.hpl.jena.rdf.model.StmtIterator;
+import com.hp.hpl.jena.shared.Lock;
+import com.hp.hpl.jena.vocabulary.RDFS;
+
+/**
+ * An immutable snapshot of the class hierarchy and the property hierarchy,
+ * with the transitive closures already computed.
+ *
+ * Each URI is interned to an int, and the ancestors and descendants of each
+ * URI are held as BitSets of those ints. So asking whether one class is an
+ * ancestor of another is a constant-time lookup, and listing the ancestors or
+ * descendants doesn't touch the model.
+ *
+ * Only statements between named resources are considered. Anonymous classes
+ * (restrictions, unions, etc.) are ignored.
+ */
+public class HierarchyIndex {
+	private final Closure classes;
+	private final Closure properties;
+
+	/**
+	 * Read the rdfs:subClassOf and rdfs:subPropertyOf statements from the
+	 * model, and compute the closures.
+	 */
+	public static HierarchyIndex build(Model model) {
+		model.enterCriticalSection(Lock.READ);
+		try {
+			return new HierarchyIndex(new Closure(model, RDFS.subClassOf),
+					new Closure(model, RDFS.subPropertyOf));
+		} finally {
+			model.leaveCriticalSection();
+		}
+	}
+
+	private HierarchyIndex(Closure classes, Closure properties) {
+		this.classes = classes;
+		this.properties = properties;
+	}
+
+	public Closure getClassHierarchy() {
+		return classes;
+	}
+
+	public Closure getPropertyHierarchy() {
+		return properties;
+	}
+
+	@Override
+	public String toString() {
+		return "HierarchyIndex[classes=" + classes + ", properties="
+				+ properties + "]";
+	}
+
+	/**
+	 * The transitive closure of one hierarchy. A URI is never its own ancestor
+	 * or descendant, even if there is a cycle.
+	 */
+	public static class Closure {
+		private final Map<String, Integer> ids = new HashMap<>();
+		private final List<String> uris = new ArrayList<>();
+		private final BitSet[] ancestors;
+		private final BitSet[] descendants;
+
+		private Closure(Model model, Property property) {
+			List<BitSet> parents = new ArrayList<>();
+			StmtIterator stmts = model.listStatements((Resource) null,
+					property, (RDFNode) null);
+			try {
+				while (stmts.hasNext()) {
+					Statement stmt = stmts.next();
+					if (stmt.getSubject().isURIResource()
+							&& stmt.getObject().isURIResource()) {
+						int child = intern(stmt.getSubject().getURI(), parents);
+						int parent = intern(stmt.getObject().asResource()
+								.getURI(), parents);
+						if (child != parent) {
+							parents.get(child).set(parent);
+						}
+					}
+				}
+			} finally {
+				stmts.close();
+			}
+
+			int size = uris.size();
+			this.ancestors = new BitSet[size];
+			this.descendants = new BitSet[size];
+			for (int i = 0; i < size; i++) {
+				descendants[i] = new BitSet();
+			}
+			for (int i = 0; i < size; i++) {
+				ancestors[i] = computeAncestors(i, parents);
+				for (int a = ancestors[i].nextSetBit(0); a >= 0; a = ancestors[i]
+						.nextSetBit(a + 1)) {
+					descendants[a].set(i);
+				}
+			}
+		}
+
+		private int intern(String uri, List<BitSet> parents) {
+			Integer id = ids.get(uri);
+			if (id == null) {
+				id = uris.size();
+				ids.put(uri, id);
+				uris.add(uri);
+				parents.add(new BitSet());
+			}
+			return id;
+		}
+
+		/** Breadth-first search up from this node. */
+		private BitSet computeAncestors(int start, List<BitSet> parents) {
+			BitSet found = new BitSet();
+			BitSet frontier = (BitSet) parents.get(start).clone();
+			while (!frontier.isEmpty()) {
+				found.or(frontier);
+				BitSet next = new BitSet();
+				for (int i = frontier.nextSetBit(0); i >= 0; i = frontier
+						.nextSetBit(i + 1)) {
+					next.or(parents.get(i));
+				}
+				next.andNot(found);
+				frontier = next;
+			}
+			found.clear(start);
+			return found;
+		}
+
+		/** Does the hierarchy include any statements about this URI? */
+		public boolean contains(String uri) {
+			return ids.containsKey(uri);
+		}
+
+		public boolean isAncestor(String ancestorURI, String descendantURI) {
+			Integer a = ids.get(ancestorURI);
+			Integer d = ids.get(descendantURI);
+			return (a != null) && (d != null) && ancestors[d].get(a);
+		}
+
+		/** All of the ancestors, not including the URI itself. */
+		public List<String> getAncestors(String uri) {
+			Integer id = ids.get(uri);
+			return (id == null) ? Collections.<String> emptyList()
+					: toUris(ancestors[id]);
+		}
+
+		/** All of the descendants, not including the URI itself. */
+		public List<String> getDescendants(String uri) {
+			Integer id = ids.get(uri);
+			return (id == null) ? Collections.<String> emptyList()
+					: toUris(descendants[id]);
+		}
+
+		private List<String> toUris(BitSet bits) {
+			List<String> list = new ArrayList<>(bits.cardinality());
+			for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+				list.add(uris.get(i));
+			}
+			return list;
+		}
+
+		@Override
+		public String toString() {
+			return uris.size() + " URIs";
+		}
+	}
+}
@@ -0,0 +1,190 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.dao.jena;
+
+import static edu.cornell.mannlib.vitro.webapp.modelaccess.ModelNames.TBOX_ASSERTIONS;
+import static edu.cornell.mannlib.vitro.webapp.modelaccess.ModelNames.TBOX_INFERENCES;
+import static edu.cornell.mannlib.vitro.webapp.modelaccess.ModelNames.TBOX_UNION;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.vocabulary.RDFS;
+
+import edu.cornell.mannlib.vitro.webapp.modelaccess.ModelAccess;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeListener;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.RDFServiceUtils;
+import edu.cornell.mannlib.vitro.webapp.servlet.setup.FileGraphSetup;
+import edu.cornell.mannlib.vitro.webapp.startup.StartupStatus;
+
+/**
+ * Holds the current HierarchyIndex for the TBox (assertions and inferences),
+ * and replaces it when the hierarchy changes.
+ *
+ * A change to rdfs:subClassOf or rdfs:subPropertyOf in one of the TBox graphs
+ * marks the index as stale. The next request for the index builds a new one
+ * and swaps it in. Only one request builds at a time. Requests that arrive
+ * during the build get the previous index, or null if there is none yet, so
+ * the DAO reads the hierarchy from the model. They don't wait, so a DAO that
+ * holds a write lock on the TBox can never deadlock with the builder.
+ *
+ * The WebappDaoFactories for assertions and inferences get the index from
+ * here. Others (assertions only, or with switched models) don't use it.
+ */
+public class HierarchyIndexCache implements ChangeListener {
+	private static final Log log = LogFactory.getLog(HierarchyIndexCache.class);
+
+	private static final String TBOX_FILEGRAPH_ROOT = FileGraphSetup.FILEGRAPH_URI_ROOT
+			+ "tbox/";
+	private static final String SUBCLASS_OF = "<" + RDFS.subClassOf.getURI()
+			+ ">";
+	private static final String SUBPROPERTY_OF = "<"
+			+ RDFS.subPropertyOf.getURI() + ">";
+
+	private static volatile HierarchyIndexCache instance;
+
+	/**
+	 * The current index for the TBox, or null if the cache has not been set
+	 * up.
+	 */
+	public static HierarchyIndex getCurrentIndex() {
+		HierarchyIndexCache cache = instance;
+		return (cache == null) ? null : cache.getIndex();
+	}
+
+	private final Model tboxModel;
+
+	/** Incremented each time the hierarchy changes. */
+	private final AtomicLong version = new AtomicLong();
+
+	/** The index and the version it was built from. Replaced together. */
+	private volatile Snapshot snapshot = new Snapshot(-1L, null);
+
+	/** Is a request building a new index? Guarded by this. */
+	private boolean building;
+
+	public HierarchyIndexCache(Model tboxModel) {
+		this.tboxModel = tboxModel;
+	}
+
+	public HierarchyIndex getIndex() {
+		Snapshot current = snapshot;
+		long v = version.get();
+		if (current.version == v) {
+			return current.index;
+		}
+
+		synchronized (this) {
+			if (building) {
+				log.debug("Another request is building the index.");
+				return current.index;
+			}
+			building = true;
+		}
+
+		try {
+			long start = System.currentTimeMillis();
+			HierarchyIndex index = HierarchyIndex.build(tboxModel);
+			log.debug("Built " + index + " in "
+					+ (System.currentTimeMillis() - start) + " ms");
+
+			synchronized (this) {
+				if (snapshot.version < v) {
+					snapshot = new Snapshot(v, index);
+				}
+			}
+			return index;
+		} finally {
+			synchronized (this) {
+				building = false;
+			}
+		}
+	}
+
+	private void noteChange(String serializedTriple, String graphURI) {
+		if (isTBoxGraph(graphURI)
+				&& (serializedTriple.contains(SUBCLASS_OF) || serializedTriple
+						.contains(SUBPROPERTY_OF))) {
+			version.incrementAndGet();
+		}
+	}
+
+	private boolean isTBoxGraph(String graphURI) {
+		return TBOX_ASSERTIONS.equals(graphURI)
+				|| TBOX_INFERENCES.equals(graphURI)
+				|| (graphURI != null && graphURI.startsWith(TBOX_FILEGRAPH_ROOT));
+	}
+
+	@Override
+	public void addedStatement(String serializedTriple, String graphURI) {
+		noteChange(serializedTriple, graphURI);
+	}
+
+	@Override
+	public void removedStatement(String serializedTriple, String graphURI) {
+		noteChange(serializedTriple, graphURI);
+	}
+
+	@Override
+	public void notifyEvent(String graphURI, Object event) {
+		// Nothing to do.
+	}
+
+	private static class Snapshot {
+		final long version;
+		final HierarchyIndex index;
+
+		Snapshot(long version, HierarchyIndex index) {
+			this.version = version;
+			this.index = index;
+		}
+	}
+
+	// ----------------------------------------------------------------------
+	// Setup
+	// ----------------------------------------------------------------------
+
+	public static class Setup implements ServletContextListener {
+		private HierarchyIndexCache cache;
+
+		@Override
+		public void contextInitialized(ServletContextEvent sce) {
+			ServletContext ctx = sce.getServletContext();
+			StartupStatus ss = StartupStatus.getBean(ctx);
+
+			cache = new HierarchyIndexCache(ModelAccess.on(ctx).getOntModel(
+					TBOX_UNION));
+			try {
+				RDFServiceUtils.getRDFServiceFactory(ctx).registerListener(
+						cache);
+				instance = cache;
+				ss.info(this, "Set up the HierarchyIndexCache.");
+			} catch (RDFServiceException e) {
+				ss.warning(this, "Failed to register the HierarchyIndexCache. "
+						+ "Class and property hierarchies will be read "
+						+ "from the model.", e);
+			}
+		}
+
+		@Override
+		public void contextDestroyed(ServletContextEvent sce) {
+			instance = null;
+			if (cache != null) {
+				try {
+					RDFServiceUtils.getRDFServiceFactory(
+							sce.getServletContext()).unregisterListener(cache);
+				} catch (RDFServiceException e) {
+					log.warn("Failed to unregister the HierarchyIndexCache.", e);
+				}
+			}
+		}
+	}
+}
@@ -10,7 +10,6 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Random;
 import java.util.Set;
 
 import org.apache.commons.lang.NotImplementedException;
@@ -49,9 +48,6 @@ import edu.cornell.mannlib.vitro.webapp.dao.jena.event.IndividualUpdateEvent;
 import edu.cornell.mannlib.vitro.webapp.edit.EditLiteral;
 
 public class IndividualDaoJena extends JenaBaseDao implements IndividualDao {
-	//For random number generation, creating it everytime the method is called lead to nextInt being about the same
-	//if calls were made close together in time
-	private Random random = new Random(System.currentTimeMillis());
     public IndividualDaoJena(WebappDaoFactoryJena wadf) {
         super(wadf);
     }
@@ -97,29 +93,39 @@ public class IndividualDaoJena extends JenaBaseDao implements IndividualDao {
     public void addVClass(String individualURI, String vclassURI) {
     	OntModel ontModel = getOntModelSelector().getABoxModel();
         ontModel.enterCriticalSection(Lock.WRITE);
-        ontModel.getBaseModel().notifyEvent(new IndividualUpdateEvent(getWebappDaoFactory().getUserURI(),true,individualURI));
+        RDFServiceUnitOfWork unit = RDFServiceUnitOfWork.begin();
         try {
+            ontModel.getBaseModel().notifyEvent(new IndividualUpdateEvent(getWebappDaoFactory().getUserURI(),true,individualURI));
             Resource indRes = ontModel.getResource(individualURI);
             ontModel.add(indRes, RDF.type, ontModel.getResource(vclassURI));
             updatePropertyDateTimeValue(indRes, MODTIME, Calendar.getInstance().getTime(),ontModel);
         } finally {
             ontModel.getBaseModel().notifyEvent(new IndividualUpdateEvent(getWebappDaoFactory().getUserURI(),false,individualURI));
-            ontModel.leaveCriticalSection();
+            try {
+                unit.close();
+            } finally {
+                ontModel.leaveCriticalSection();
+            }
         }
     }
 
     public void removeVClass(String individualURI, String vclassURI) {
     	OntModel ontModel = getOntModelSelector().getABoxModel();
         ontModel.enterCriticalSection(Lock.WRITE);
-        Object event = new IndividualUpdateEvent(getWebappDaoFactory().getUserURI(),true,individualURI);
-        ontModel.getBaseModel().notifyEvent(event);
+        RDFServiceUnitOfWork unit = RDFServiceUnitOfWork.begin();
         try {
+            Object event = new IndividualUpdateEvent(getWebappDaoFactory().getUserURI(),true,individualURI);
+            ontModel.getBaseModel().notifyEvent(event);
             Resource indRes = ontModel.getResource(individualURI);
             getOntModel().remove(indRes, RDF.type, ontModel.getResource(vclassURI));
             updatePropertyDateTimeValue(indRes, MODTIME, Calendar.getInstance().getTime(), ontModel);
         } finally {
             ontModel.getBaseModel().notifyEvent(new IndividualUpdateEvent(getWebappDaoFactory().getUserURI(),false,individualURI));
-            ontModel.leaveCriticalSection();
+            try {
+                unit.close();
+            } finally {
+                ontModel.leaveCriticalSection();
+            }
         }
     }
 
@@ -217,6 +223,7 @@ public class IndividualDaoJena extends JenaBaseDao implements IndividualDao {
                          // Individuals cannot be untyped.
         
         ontModel.enterCriticalSection(Lock.WRITE);
+        RDFServiceUnitOfWork unit = RDFServiceUnitOfWork.begin();
         try {
          
             entURI = new String(preferredURI);          
@@ -253,7 +260,11 @@ public class IndividualDaoJena extends JenaBaseDao implements IndividualDao {
             }
         } finally {
             ontModel.getBaseModel().notifyEvent(new IndividualCreationEvent(getWebappDaoFactory().getUserURI(),false,entURI));
-            ontModel.leaveCriticalSection();
+            try {
+                unit.close();
+            } finally {
+                ontModel.leaveCriticalSection();
+            }
         }
         return entURI;
     }
@@ -285,6 +296,7 @@ public class IndividualDaoJena extends JenaBaseDao implements IndividualDao {
 
     public int updateIndividual(Individual ent, OntModel ontModel) {
         ontModel.enterCriticalSection(Lock.WRITE);
+        RDFServiceUnitOfWork unit = RDFServiceUnitOfWork.begin();
         try {
             ontModel.getBaseModel().notifyEvent(new IndividualUpdateEvent(getWebappDaoFactory().getUserURI(),true,ent.getURI()));
             com.hp.hpl.jena.ontology.Individual ind = ontModel.getIndividual(ent.getURI());
@@ -349,7 +361,11 @@ public class IndividualDaoJena extends JenaBaseDao implements IndividualDao {
             }
         } finally {
             ontModel.getBaseModel().notifyEvent(new IndividualUpdateEvent(getWebappDaoFactory().getUserURI(),false,ent.getURI()));
-            ontModel.leaveCriticalSection();
+            try {
+                unit.close();
+            } finally {
+                ontModel.leaveCriticalSection();
+            }
         }
     }
 
@@ -359,13 +375,18 @@ public class IndividualDaoJena extends JenaBaseDao implements IndividualDao {
 
     public void markModified(Individual ind, OntModel ontModel) {
         ontModel.enterCriticalSection(Lock.WRITE);
+        RDFServiceUnitOfWork unit = RDFServiceUnitOfWork.begin();
         try {
             com.hp.hpl.jena.ontology.Individual jind = ontModel.getIndividual(ind.getURI());
             if (jind != null) {
                 updatePropertyDateTimeValue(jind,MODTIME,Calendar.getInstance().getTime(),ontModel);
             }
         } finally {
-            ontModel.leaveCriticalSection();
+            try {
+                unit.close();
+            } finally {
+                ontModel.leaveCriticalSection();
+            }
         }
     }
 
@@ -375,6 +396,7 @@ public class IndividualDaoJena extends JenaBaseDao implements IndividualDao {
 
     public int deleteIndividual(String URI, OntModel ontModel) {
         ontModel.enterCriticalSection(Lock.WRITE);
+        RDFServiceUnitOfWork unit = RDFServiceUnitOfWork.begin();
         try {
             if (URI == null) {
                 log.debug("Cannot remove individual with null URI");
@@ -396,7 +418,11 @@ public class IndividualDaoJena extends JenaBaseDao implements IndividualDao {
             }
         } finally {
             ontModel.getBaseModel().notifyEvent(new IndividualDeletionEvent(getWebappDaoFactory().getUserURI(),false,URI));
-            ontModel.leaveCriticalSection();
+            try {
+                unit.close();
+            } finally {
+                ontModel.leaveCriticalSection();
+            }
         }
         return 0;
     }
@@ -675,19 +701,11 @@ public class IndividualDaoJena extends JenaBaseDao implements IndividualDao {
 			/* else try namespace + n2343 */ 			
 		}
 		
-		int attempts = 0;
-		
-		while( uriIsGood == false && attempts < 30 ){	
-			log.debug("While loop: Uri is good false, attempt=" + attempts);
-			String localName = "n" + random.nextInt( Math.min(Integer.MAX_VALUE,(int)Math.pow(2,attempts + 13)) );
-			uri = namespace + localName;
-			log.debug("Trying URI " + uri);
-			errMsg = getWebappDaoFactory().checkURI(uri);
-			if(  errMsg != null)
-				uri = null;
-			else
-				uriIsGood = true;		
-			attempts++;
+		if( uriIsGood == false ){
+			uri = BlockReservingURIMinter.getInstance().mintURI(namespace,
+					getOntModelSelector().getApplicationMetadataModel(),
+					getOntModel());
+			log.debug("Minted URI " + uri);
 		}
 		
 		if( uri == null )
@@ -290,6 +290,22 @@ public class ObjectPropertyDaoJena extends PropertyDaoJena implements ObjectProp
         
         if( propertyURI == null ) return null;
         
+        PropertyMetadataCache.Snapshot metadata = getWebappDaoFactory().getPropertyMetadata();
+        if (metadata != null) {
+            ObjectProperty cached = metadata.getObjectProperty(propertyURI, PREFERRED_LANGUAGES);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        
+        ObjectProperty op = buildObjectPropertyByURI(propertyURI);
+        if (metadata != null && op != null) {
+            metadata.putObjectProperty(propertyURI, PREFERRED_LANGUAGES, op);
+        }
+        return op;
+    }
+    
+    private ObjectProperty buildObjectPropertyByURI(String propertyURI) {
         OntModel ontModel = getOntModel();
         OntModel localModel = ModelFactory.createOntologyModel(OntModelSpec.OWL_MEM);
         
@@ -74,8 +74,9 @@ public class ObjectPropertyStatementDaoJena extends JenaBaseDao implements Objec
 
     public void deleteObjectPropertyStatement(ObjectPropertyStatement objPropertyStmt, OntModel ontModel) {
         ontModel.enterCriticalSection(Lock.WRITE);
-        getOntModel().getBaseModel().notifyEvent(new IndividualUpdateEvent(getWebappDaoFactory().getUserURI(),true,objPropertyStmt.getSubjectURI()));
+        RDFServiceUnitOfWork unit = RDFServiceUnitOfWork.begin();
         try {
+            getOntModel().getBaseModel().notifyEvent(new IndividualUpdateEvent(getWebappDaoFactory().getUserURI(),true,objPropertyStmt.getSubjectURI()));
             Resource s = ontModel.getResource(objPropertyStmt.getSubjectURI());
             com.hp.hpl.jena.rdf.model.Property p = ontModel.getProperty(objPropertyStmt.getPropertyURI());
             Resource o = ontModel.getResource(objPropertyStmt.getObjectURI());
@@ -86,7 +87,11 @@ public class ObjectPropertyStatementDaoJena extends JenaBaseDao implements Objec
             ontModel.remove(dependentResources);
         } finally {
         	getOntModel().getBaseModel().notifyEvent(new IndividualUpdateEvent(getWebappDaoFactory().getUserURI(),false,objPropertyStmt.getSubjectURI()));
-            ontModel.leaveCriticalSection();
+            try {
+                unit.close();
+            } finally {
+                ontModel.leaveCriticalSection();
+            }
         }
     }
 
@@ -252,8 +257,9 @@ public class ObjectPropertyStatementDaoJena extends JenaBaseDao implements Objec
 
     public int insertNewObjectPropertyStatement(ObjectPropertyStatement objPropertyStmt, OntModel ontModel) {
         ontModel.enterCriticalSection(Lock.WRITE);
-        getOntModel().getBaseModel().notifyEvent(new IndividualUpdateEvent(getWebappDaoFactory().getUserURI(),true,objPropertyStmt.getSubjectURI()));
+        RDFServiceUnitOfWork unit = RDFServiceUnitOfWork.begin();
         try {
+            getOntModel().getBaseModel().notifyEvent(new IndividualUpdateEvent(getWebappDaoFactory().getUserURI(),true,objPropertyStmt.getSubjectURI()));
             Resource s = ontModel.getResource(objPropertyStmt.getSubjectURI());
             com.hp.hpl.jena.rdf.model.Property p = ontModel.getProperty(objPropertyStmt.getPropertyURI());
             Resource o = ontModel.getResource(objPropertyStmt.getObjectURI());
@@ -262,7 +268,11 @@ public class ObjectPropertyStatementDaoJena extends JenaBaseDao implements Objec
             }
         } finally {
         	getOntModel().getBaseModel().notifyEvent(new IndividualUpdateEvent(getWebappDaoFactory().getUserURI(),false,objPropertyStmt.getSubjectURI()));
-            ontModel.leaveCriticalSection();
+            try {
+                unit.close();
+            } finally {
+                ontModel.leaveCriticalSection();
+            }
         }
         return 0;
     }
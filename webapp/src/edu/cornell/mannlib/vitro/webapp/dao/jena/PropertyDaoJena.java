@@ -177,6 +177,11 @@ public class PropertyDaoJena extends JenaBaseDao implements PropertyDao {
 
     @Override
     public List<String> getAllSubPropertyURIs(String propertyURI) {
+        HierarchyIndex index = getWebappDaoFactory().getHierarchyIndex();
+        if (index != null && propertyURI != null) {
+            return new LinkedList<String>(
+                    index.getPropertyHierarchy().getDescendants(propertyURI));
+        }
     	HashSet<String> nodeSet = new HashSet<String>();
     	nodeSet.add(propertyURI);
     	getAllSubPropertyURIs(propertyURI, nodeSet);
@@ -220,6 +225,11 @@ public class PropertyDaoJena extends JenaBaseDao implements PropertyDao {
 
     @Override
     public List<String> getAllSuperPropertyURIs(String propertyURI) {
+        HierarchyIndex index = getWebappDaoFactory().getHierarchyIndex();
+        if (index != null && propertyURI != null) {
+            return new LinkedList<String>(
+                    index.getPropertyHierarchy().getAncestors(propertyURI));
+        }
     	HashSet<String> nodeSet = new HashSet<String>();
     	nodeSet.add(propertyURI);
     	getAllSuperPropertyURIs(propertyURI, nodeSet);
@@ -0,0 +1,225 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.dao.jena;
+
+import static edu.cornell.mannlib.vitro.webapp.modelaccess.ModelAccess.WhichService.CONFIGURATION;
+import static edu.cornell.mannlib.vitro.webapp.modelaccess.ModelAccess.WhichService.CONTENT;
+import static edu.cornell.mannlib.vitro.webapp.modelaccess.ModelNames.APPLICATION_METADATA;
+import static edu.cornell.mannlib.vitro.webapp.modelaccess.ModelNames.DISPLAY;
+import static edu.cornell.mannlib.vitro.webapp.modelaccess.ModelNames.TBOX_ASSERTIONS;
+import static edu.cornell.mannlib.vitro.webapp.modelaccess.ModelNames.TBOX_INFERENCES;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import edu.cornell.mannlib.vitro.webapp.beans.DataProperty;
+import edu.cornell.mannlib.vitro.webapp.beans.ObjectProperty;
+import edu.cornell.mannlib.vitro.webapp.modelaccess.ModelAccess.WhichService;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeListener;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.RDFServiceUtils;
+import edu.cornell.mannlib.vitro.webapp.servlet.setup.FileGraphSetup;
+import edu.cornell.mannlib.vitro.webapp.startup.StartupStatus;
+import edu.cornell.mannlib.vitro.webapp.utils.cache.SerializedTriples;
+
+/**
+ * Holds the ObjectProperty and DataProperty beans that the DAOs have built
+ * from the TBox, so they need not be built again on every request.
+ *
+ * The beans are held in a Snapshot. Any change to the TBox, the display model
+ * or the application metadata (other than the URI minting counters) marks the
+ * Snapshot as stale, and the next request gets a new, empty one. Beans that
+ * were built from the old models can only be stored in the old Snapshot, so
+ * they are never seen again.
+ *
+ * The Snapshot stores a copy of each bean it is given, and hands out a fresh
+ * copy each time it is asked. The caller may modify the copy freely.
+ *
+ * Labels depend on the preferred languages of the request, so the languages
+ * are part of the key.
+ */
+public class PropertyMetadataCache implements ChangeListener {
+	private static final Log log = LogFactory
+			.getLog(PropertyMetadataCache.class);
+
+	private static final String TBOX_FILEGRAPH_ROOT = FileGraphSetup.FILEGRAPH_URI_ROOT
+			+ "tbox/";
+
+	private static volatile PropertyMetadataCache instance;
+
+	/**
+	 * The current snapshot of the property metadata, or null if the cache has
+	 * not been set up.
+	 */
+	public static Snapshot getCurrentSnapshot() {
+		PropertyMetadataCache cache = instance;
+		return (cache == null) ? null : cache.getSnapshot();
+	}
+
+	/** Incremented each time the metadata changes. */
+	private final AtomicLong version = new AtomicLong();
+
+	private volatile Snapshot snapshot = new Snapshot(0L);
+
+	public Snapshot getSnapshot() {
+		Snapshot current = snapshot;
+		long v = version.get();
+		if (current.version >= v) {
+			return current;
+		}
+
+		synchronized (this) {
+			if (snapshot.version < v) {
+				log.debug("Discarding " + snapshot);
+				snapshot = new Snapshot(v);
+			}
+			return snapshot;
+		}
+	}
+
+	private void noteChange(String serializedTriple, String graphURI) {
+		if (isMetadataGraph(graphURI) && !isUriMintingCounter(serializedTriple)) {
+			version.incrementAndGet();
+		}
+	}
+
+	/**
+	 * The URI minter keeps its counters in the application metadata, and
+	 * advances them whenever an individual is created. They aren't metadata.
+	 */
+	private boolean isUriMintingCounter(String serializedTriple) {
+		return BlockReservingURIMinter.isCounterPredicate(SerializedTriples
+				.predicate(serializedTriple));
+	}
+
+	private boolean isMetadataGraph(String graphURI) {
+		return TBOX_ASSERTIONS.equals(graphURI)
+				|| TBOX_INFERENCES.equals(graphURI)
+				|| DISPLAY.equals(graphURI)
+				|| APPLICATION_METADATA.equals(graphURI)
+				|| (graphURI != null && graphURI.startsWith(TBOX_FILEGRAPH_ROOT));
+	}
+
+	@Override
+	public void addedStatement(String serializedTriple, String graphURI) {
+		noteChange(serializedTriple, graphURI);
+	}
+
+	@Override
+	public void removedStatement(String serializedTriple, String graphURI) {
+		noteChange(serializedTriple, graphURI);
+	}
+
+	@Override
+	public void notifyEvent(String graphURI, Object event) {
+		// Nothing to do.
+	}
+
+	/**
+	 * The beans that were built from one version of the metadata.
+	 */
+	public static class Snapshot {
+		private final long version;
+		private final ConcurrentMap<String, ObjectProperty> objectProperties = new ConcurrentHashMap<>();
+		private final ConcurrentMap<String, DataProperty> dataProperties = new ConcurrentHashMap<>();
+
+		private Snapshot(long version) {
+			this.version = version;
+		}
+
+		/** A copy of the cached bean, or null if there is none. */
+		public ObjectProperty getObjectProperty(String uri,
+				List<String> languages) {
+			ObjectProperty op = objectProperties.get(key(uri, languages));
+			return (op == null) ? null : op.clone();
+		}
+
+		public void putObjectProperty(String uri, List<String> languages,
+				ObjectProperty op) {
+			objectProperties.put(key(uri, languages), op.clone());
+		}
+
+		/** A copy of the cached bean, or null if there is none. */
+		public DataProperty getDataProperty(String uri, List<String> languages) {
+			DataProperty dp = dataProperties.get(key(uri, languages));
+			return (dp == null) ? null : dp.clone();
+		}
+
+		public void putDataProperty(String uri, List<String> languages,
+				DataProperty dp) {
+			dataProperties.put(key(uri, languages), dp.clone());
+		}
+
+		private String key(String uri, List<String> languages) {
+			return uri + " " + languages;
+		}
+
+		@Override
+		public String toString() {
+			return "PropertyMetadataCache.Snapshot[version=" + version
+					+ ", objectProperties=" + objectProperties.size()
+					+ ", dataProperties=" + dataProperties.size() + "]";
+		}
+	}
+
+	// ----------------------------------------------------------------------
+	// Setup
+	// ----------------------------------------------------------------------
+
+	public static class Setup implements ServletContextListener {
+		private PropertyMetadataCache cache;
+
+		@Override
+		public void contextInitialized(ServletContextEvent sce) {
+			ServletContext ctx = sce.getServletContext();
+			StartupStatus ss = StartupStatus.getBean(ctx);
+
+			// The display model is in the CONFIGURATION triple source, so listen
+			// to both.
+			cache = new PropertyMetadataCache();
+			try {
+				RDFServiceUtils.getRDFServiceFactory(ctx, CONTENT)
+						.registerListener(cache);
+				RDFServiceUtils.getRDFServiceFactory(ctx, CONFIGURATION)
+						.registerListener(cache);
+				instance = cache;
+				ss.info(this, "Set up the PropertyMetadataCache.");
+			} catch (RDFServiceException e) {
+				unregister(ctx);
+				cache = null;
+				ss.warning(this, "Failed to register the PropertyMetadataCache. "
+						+ "Property beans will be built on each request.", e);
+			}
+		}
+
+		@Override
+		public void contextDestroyed(ServletContextEvent sce) {
+			instance = null;
+			if (cache != null) {
+				unregister(sce.getServletContext());
+			}
+		}
+
+		private void unregister(ServletContext ctx) {
+			for (WhichService which : new WhichService[] { CONTENT,
+					CONFIGURATION }) {
+				try {
+					RDFServiceUtils.getRDFServiceFactory(ctx, which)
+							.unregisterListener(cache);
+				} catch (RDFServiceException e) {
+					log.warn("Failed to unregister the PropertyMetadataCache "
+							+ "from " + which, e);
+				}
+			}
+		}
+	}
+}
@@ -3,9 +3,13 @@
 package edu.cornell.mannlib.vitro.webapp.dao.jena;
 
 import java.io.InputStream;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -31,9 +35,12 @@ import com.hp.hpl.jena.shared.PrefixMapping;
 import com.hp.hpl.jena.shared.impl.PrefixMappingImpl;
 import com.hp.hpl.jena.sparql.resultset.JSONInput;
 import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+import com.hp.hpl.jena.util.iterator.NiceIterator;
 import com.hp.hpl.jena.util.iterator.SingletonIterator;
 import com.hp.hpl.jena.util.iterator.WrappedIterator;
 
+import edu.cornell.mannlib.vitro.webapp.dao.jena.RDFServiceUnitOfWork.PendingChanges;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeListener;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeSet;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
@@ -41,15 +48,33 @@ import edu.cornell.mannlib.vitro.webapp.rdfservice.adapters.VitroModelFactory;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.RDFServiceUtils;
 import edu.cornell.mannlib.vitro.webapp.utils.logging.ToString;
 
+/**
+ * A Jena Graph that reads and writes through an RDFService.
+ * 
+ * find() reads the matching triples a page at a time, as the iterator asks for
+ * them. The RDFService reads each result into memory, so paging is what keeps
+ * a large find() from doing the same. The pages are ordered, so LIMIT and
+ * OFFSET step through them consistently. If the graph is changed while a
+ * find() is still reading, a later page may skip or repeat a few triples.
+ * 
+ * size() asks the RDFService for a count. The count is remembered until the
+ * RDFService reports a change to this graph.
+ */
 public class RDFServiceGraph implements GraphWithPerform {
     
     private RDFService rdfService;
     private String graphURI;
     private static final Log log = LogFactory.getLog(RDFServiceGraph.class);
     
+    private static final int DEFAULT_FIND_PAGE_SIZE = 10000;
+    
     private BulkUpdateHandler bulkUpdateHandler;
     private PrefixMapping prefixMapping = new PrefixMappingImpl();
     private GraphEventManager eventManager;
+    
+    private int findPageSize = DEFAULT_FIND_PAGE_SIZE;
+    private final AtomicLong changeCount = new AtomicLong();
+    private volatile CachedSize cachedSize;
 
     /**
      * Returns a SparqlGraph for the union of named graphs in a remote repository 
@@ -76,13 +101,41 @@ public class RDFServiceGraph implements GraphWithPerform {
     public String getGraphURI() {
         return graphURI;
     }
+    
+    /**
+     * How many triples does find() read from the RDFService at a time?
+     */
+    void setFindPageSize(int findPageSize) {
+        if (findPageSize < 1) {
+            throw new IllegalArgumentException(
+                    "findPageSize must be positive: " + findPageSize);
+        }
+        this.findPageSize = findPageSize;
+    }
+    
+    /**
+     * Something was written through this graph, so the size must be counted
+     * again.
+     */
+    void graphChanged() {
+        changeCount.incrementAndGet();
+        forgetSize();
+    }
+    
+    private void forgetSize() {
+        CachedSize cached = cachedSize;
+        cachedSize = null;
+        if (cached != null) {
+            cached.discard();
+        }
+    }
 
     @Override
     public void add(Triple arg0) throws AddDeniedException {
         performAdd(arg0);
     }
     
-    private String serialize(Triple t) {
+    static String serialize(Triple t) {
         StringBuffer sb = new StringBuffer();
         sb.append(sparqlNodeUpdate(t.getSubject(), "")).append(" ") 
                .append(sparqlNodeUpdate(t.getPredicate(), "")).append(" ") 
@@ -90,8 +143,18 @@ public class RDFServiceGraph implements GraphWithPerform {
         return sb.toString();
     }
     
+    /**
+     * If there is a unit of work on this thread, the change is buffered until
+     * the unit of work is closed.
+     */
     @Override
     public void performAdd(Triple t) {
+        graphChanged();
+        RDFServiceUnitOfWork unit = RDFServiceUnitOfWork.current();
+        if (unit != null) {
+            unit.add(rdfService, graphURI, t);
+            return;
+        }
         
         ChangeSet changeSet = rdfService.manufactureChangeSet();
         try {
@@ -106,6 +169,13 @@ public class RDFServiceGraph implements GraphWithPerform {
     
     @Override
     public void performDelete(Triple t) {
+        graphChanged();
+        RDFServiceUnitOfWork unit = RDFServiceUnitOfWork.current();
+        if (unit != null) {
+            unit.remove(rdfService, graphURI, t);
+            return;
+        }
+        
         ChangeSet changeSet = rdfService.manufactureChangeSet();
         try {
             changeSet.addRemoval(RDFServiceUtils.toInputStream(serialize(t)), 
@@ -121,6 +191,11 @@ public class RDFServiceGraph implements GraphWithPerform {
         if (graphURI == null) {
             return;
         }
+        graphChanged();
+        RDFServiceUnitOfWork unit = RDFServiceUnitOfWork.current();
+        if (unit != null) {
+            unit.flush();
+        }
         String constructStr = "CONSTRUCT { ?s ?p ?o } WHERE { GRAPH <" + graphURI + "> { ?s ?p ?o } }";
         try {
             InputStream model = rdfService.sparqlConstructQuery(
@@ -150,6 +225,18 @@ public class RDFServiceGraph implements GraphWithPerform {
 				|| (object != null && object.isBlank())) {
             return false;
         }
+        RDFServiceUnitOfWork unit = RDFServiceUnitOfWork.current();
+        if (unit != null && unit.hasPendingChanges(rdfService, graphURI)) {
+            if (unit.hasPendingAddition(rdfService, graphURI, subject, predicate, object)) {
+                return true;
+            }
+            if (unit.hasPendingRemoval(rdfService, graphURI, subject, predicate, object)) {
+                if (!isVar(subject) && !isVar(predicate) && !isVar(object)) {
+                    return false;
+                }
+                return find(subject, predicate, object).hasNext();
+            }
+        }
         StringBuffer containsQuery = new StringBuffer("SELECT * WHERE { \n");
         if (graphURI != null) {
             containsQuery.append("  GRAPH <" + graphURI + "> { ");
@@ -253,28 +340,37 @@ public class RDFServiceGraph implements GraphWithPerform {
             findQuery.append("  } ");
         }
         findQuery.append("\n}");
+        findQuery.append(orderBy(subject, predicate, object));
         
         String queryString = findQuery.toString();
         
-        ResultSet rs = execSelect(queryString);
-        
-        List<Triple> triplist = new ArrayList<Triple>();
-        while (rs.hasNext()) {
-            QuerySolution soln = rs.nextSolution();
-            Triple t = new Triple(isVar(subject) ? soln.get("?s").asNode() : subject, 
-                                  isVar(predicate) ? soln.get("?p").asNode() : predicate, 
-                                  isVar(object) ? soln.get("?o").asNode() : object);
-            //log.info(t);
-            triplist.add(t);
-        }
-        //log.info(triplist.size() + " results");
-        return WrappedIterator.create(triplist.iterator());
+        PendingChanges pending = null;
+        RDFServiceUnitOfWork unit = RDFServiceUnitOfWork.current();
+        if (unit != null && unit.hasPendingChanges(rdfService, graphURI)) {
+            pending = unit.getPendingChanges(rdfService, graphURI);
+        }
+        return new FindIterator(queryString, subject, predicate, object, 
+                pending);
     }
 
     private boolean isVar(Node node) {
         return (node == null || node.isVariable() || node == Node.ANY);
     }
     
+    private String orderBy(Node subject, Node predicate, Node object) {
+        StringBuilder orderBy = new StringBuilder("\nORDER BY");
+        if (isVar(subject)) {
+            orderBy.append(" ?s");
+        }
+        if (isVar(predicate)) {
+            orderBy.append(" ?p");
+        }
+        if (isVar(object)) {
+            orderBy.append(" ?o");
+        }
+        return orderBy.toString();
+    }
+    
     @Override
     @Deprecated
     public BulkUpdateHandler getBulkUpdateHandler() {
@@ -330,9 +426,71 @@ public class RDFServiceGraph implements GraphWithPerform {
         		"by SPARQL graphs");
     }
 
+    /**
+     * If there are pending changes to this graph, we must count them as we
+     * find them. Otherwise, the RDFService can count.
+     * 
+     * The count is kept until a listener on the RDFService hears of a change
+     * to this graph. The listener is registered before counting, so a change
+     * made while counting is not missed.
+     */
     @Override
     public int size() {
-        int size = find(null, null, null).toList().size();
+        RDFServiceUnitOfWork unit = RDFServiceUnitOfWork.current();
+        if (unit != null && unit.hasPendingChanges(rdfService, graphURI)) {
+            return countByFinding();
+        }
+        
+        CachedSize cached = cachedSize;
+        if (cached != null && cached.isValid()) {
+            return cached.size;
+        }
+        
+        long changesBefore = changeCount.get();
+        CachedSize counting = CachedSize.listen(this);
+        int size = countByQuery();
+        if (counting != null) {
+            counting.size = size;
+            if (changeCount.get() == changesBefore && counting.isValid()) {
+                forgetSize();
+                cachedSize = counting;
+            } else {
+                counting.discard();
+            }
+        }
+        return size;
+    }
+    
+    private int countByQuery() {
+        StringBuffer countQuery = new StringBuffer(
+                "SELECT (COUNT(*) AS ?count) WHERE { \n");
+        if (graphURI != null) {
+            countQuery.append("  GRAPH <" + graphURI + "> { ");
+        }
+        countQuery.append("?s ?p ?o");
+        if (graphURI != null) {
+            countQuery.append("  } ");
+        }
+        countQuery.append("\n}");
+        
+        ResultSet rs = execSelect(countQuery.toString());
+        if (!rs.hasNext()) {
+            return 0;
+        }
+        return rs.nextSolution().getLiteral("count").getInt();
+    }
+    
+    private int countByFinding() {
+        int size = 0;
+        ExtendedIterator<Triple> triples = find(null, null, null);
+        try {
+            while (triples.hasNext()) {
+                triples.next();
+                size++;
+            }
+        } finally {
+            triples.close();
+        }
         return size;
     }
     
@@ -451,6 +609,11 @@ public class RDFServiceGraph implements GraphWithPerform {
         m.register(new StatementListener() {
             @Override 
             public void notifyEvent(Model m, Object event) {
+                RDFServiceUnitOfWork unit = RDFServiceUnitOfWork.current();
+                if (unit != null) {
+                    unit.addEvent(g.getRDFService(), event);
+                    return;
+                }
                 ChangeSet changeSet = g.getRDFService().manufactureChangeSet();
                 changeSet.addPreChangeEvent(event);
                 try {
@@ -469,5 +632,187 @@ public class RDFServiceGraph implements GraphWithPerform {
 		return "RDFServiceGraph[" + ToString.hashHex(this) + ", " + rdfService
 				+ ", graphURI=" + ToString.modelName(graphURI) + "]";
 	}
+	
+    // ----------------------------------------------------------------------
+    // Helper classes
+    // ----------------------------------------------------------------------
+	
+    /**
+     * Runs the find query with LIMIT and OFFSET, reading the next page only
+     * when the previous one has been used up.
+     * 
+     * If there were pending changes when the iterator was created, triples
+     * from the RDFService that are pending removal (or addition) are skipped,
+     * and the matching pending additions are returned at the end.
+     */
+    private class FindIterator extends NiceIterator<Triple> {
+        private final String queryString;
+        private final Node subject;
+        private final Node predicate;
+        private final Node object;
+        private final PendingChanges pending;
+        private final int pageSize;
+        
+        private Iterator<Triple> page = Collections.<Triple>emptyIterator();
+        private int offset = 0;
+        private boolean lastPage = false;
+        private Iterator<Triple> additions;
+        private Triple nextTriple;
+        private boolean closed;
+        
+        FindIterator(String queryString, Node subject, Node predicate,
+                Node object, PendingChanges pending) {
+            this.queryString = queryString;
+            this.subject = subject;
+            this.predicate = predicate;
+            this.object = object;
+            this.pending = pending;
+            this.pageSize = findPageSize;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            if (nextTriple == null && !closed) {
+                nextTriple = advance();
+            }
+            return nextTriple != null;
+        }
+        
+        @Override
+        public Triple next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Triple t = nextTriple;
+            nextTriple = null;
+            return t;
+        }
+        
+        private Triple advance() {
+            while (true) {
+                if (page.hasNext()) {
+                    Triple t = page.next();
+                    if (pending == null || !pending.hides(t)) {
+                        return t;
+                    }
+                } else if (!lastPage) {
+                    page = readPage();
+                } else {
+                    if (additions == null && pending != null) {
+                        additions = pending.findAdditions(subject, predicate, 
+                                object).iterator();
+                    }
+                    if (additions != null && additions.hasNext()) {
+                        return additions.next();
+                    }
+                    close();
+                    return null;
+                }
+            }
+        }
+        
+        private Iterator<Triple> readPage() {
+            ResultSet rs = execSelect(queryString + "\nLIMIT " + pageSize 
+                    + " OFFSET " + offset);
+            List<Triple> triples = new ArrayList<Triple>(); 
+            while (rs.hasNext()) {
+                QuerySolution soln = rs.nextSolution();
+                triples.add(new Triple(
+                        isVar(subject) ? soln.get("?s").asNode() : subject, 
+                        isVar(predicate) ? soln.get("?p").asNode() : predicate, 
+                        isVar(object) ? soln.get("?o").asNode() : object));
+            }
+            
+            offset += pageSize;
+            lastPage = triples.size() < pageSize;
+            return triples.iterator();
+        }
+        
+        /** 
+         * Release the page, and don't read any more.
+         */
+        @Override
+        public void close() {
+            closed = true;
+            nextTriple = null;
+            page = Collections.<Triple>emptyIterator();
+            additions = null;
+        }
+    }
+    
+    /**
+     * The size of a graph, and a listener that says whether it is still good.
+     * 
+     * The listener is removed as soon as this graph changes, or when it hears
+     * of any change after the graph has been discarded.
+     */
+    private static class CachedSize implements ChangeListener {
+        /**
+         * Register a listener for this graph, or return null if the
+         * RDFService won't take one.
+         */
+        static CachedSize listen(RDFServiceGraph graph) {
+            CachedSize cached = new CachedSize(graph);
+            try {
+                graph.rdfService.registerListener(cached);
+                return cached;
+            } catch (RDFServiceException e) {
+                log.warn("Can't listen for changes to " + graph
+                        + "; its size will not be remembered.", e);
+                return null;
+            }
+        }
+        
+        private final RDFService rdfService;
+        private final String graphURI;
+        private final WeakReference<RDFServiceGraph> graphRef;
+        private volatile boolean valid = true;
+        volatile int size;
+        
+        private CachedSize(RDFServiceGraph graph) {
+            this.rdfService = graph.rdfService;
+            this.graphURI = graph.graphURI;
+            this.graphRef = new WeakReference<RDFServiceGraph>(graph);
+        }
+        
+        boolean isValid() {
+            return valid;
+        }
+        
+        @Override
+        public void addedStatement(String serializedTriple, String changedGraph) {
+            changed(changedGraph);
+        }
+        
+        @Override
+        public void removedStatement(String serializedTriple, String changedGraph) {
+            changed(changedGraph);
+        }
+        
+        @Override
+        public void notifyEvent(String changedGraph, Object event) {
+            // Events don't change the triples.
+        }
+        
+        private void changed(String changedGraph) {
+            if (graphURI == null || graphURI.equals(changedGraph)
+                    || graphRef.get() == null) {
+                discard();
+            }
+        }
+        
+        void discard() {
+            if (!valid) {
+                return;
+            }
+            valid = false;
+            try {
+                rdfService.unregisterListener(this);
+            } catch (RDFServiceException e) {
+                log.warn("Failed to unregister the size listener for "
+                        + graphURI, e);
+            }
+        }
+    }
     
 }
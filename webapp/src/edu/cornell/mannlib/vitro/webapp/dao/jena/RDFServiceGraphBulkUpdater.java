@@ -157,6 +157,16 @@ public class RDFServiceGraphBulkUpdater implements BulkUpdateHandler {
     }
     
     public void addModel(Model model) {
+        graph.graphChanged();
+        RDFServiceUnitOfWork unit = RDFServiceUnitOfWork.current();
+        if (unit != null) {
+            StmtIterator stmts = model.listStatements();
+            while (stmts.hasNext()) {
+                unit.add(graph.getRDFService(), graph.getGraphURI(), 
+                        stmts.nextStatement().asTriple());
+            }
+            return;
+        }
         ChangeSet changeSet = graph.getRDFService().manufactureChangeSet();
         ByteArrayOutputStream out = new ByteArrayOutputStream();
         model.write(out, "N-TRIPLE");    
@@ -171,6 +181,16 @@ public class RDFServiceGraphBulkUpdater implements BulkUpdateHandler {
     }
     
     public void deleteModel(Model model) {
+        graph.graphChanged();
+        RDFServiceUnitOfWork unit = RDFServiceUnitOfWork.current();
+        if (unit != null) {
+            StmtIterator stmts = model.listStatements();
+            while (stmts.hasNext()) {
+                unit.remove(graph.getRDFService(), graph.getGraphURI(), 
+                        stmts.nextStatement().asTriple());
+            }
+            return;
+        }
         ChangeSet changeSet = graph.getRDFService().manufactureChangeSet();
         ByteArrayOutputStream out = new ByteArrayOutputStream();
         model.write(out, "N-TRIPLE");    
@@ -213,6 +233,13 @@ public class RDFServiceGraphBulkUpdater implements BulkUpdateHandler {
         
         RDFServiceGraph graph = (RDFServiceGraph) g;
         String graphURI = graph.getGraphURI();
+        graph.graphChanged();
+        
+        // The query below must see any pending changes.
+        RDFServiceUnitOfWork unit = RDFServiceUnitOfWork.current();
+        if (unit != null) {
+            unit.flush();
+        }
         
         StringBuffer findPattern = new StringBuffer()
         .append(sparqlNode(s, "?s"))
@@ -0,0 +1,342 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.dao.jena;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.sparql.graph.GraphFactory;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeSet;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.RDFServiceUtils;
+
+/**
+ * Buffer the writes that are made through RDFServiceGraphs, and send them to
+ * the RDFService as a single ChangeSet when the unit of work is closed.
+ *
+ * <pre>
+ * try (RDFServiceUnitOfWork unit = RDFServiceUnitOfWork.begin()) {
+ *     ontModel.add(...);
+ *     ontModel.remove(...);
+ * }
+ * </pre>
+ *
+ * Without a unit of work, each triple that is added or removed becomes a
+ * separate ChangeSet, and each ChangeSet is sent to the listeners, the
+ * reasoner and the search indexer.
+ *
+ * The unit of work belongs to the current thread. Writes from other threads
+ * are not affected. If a unit of work is begun while another is active, the
+ * inner one joins the outer one, and the changes are sent when the outer one is
+ * closed.
+ *
+ * The changes are grouped by graph. Within each graph, the removals are
+ * applied before the additions. Adding and then removing a triple (or vice
+ * versa) cancels out, so the net effect is the same as if the changes had been
+ * applied one at a time. If a change or an event goes to a different
+ * RDFService, the pending changes for the first RDFService are sent before it
+ * is recorded.
+ *
+ * Events that are sent before the first change become pre-change events of the
+ * ChangeSet. Events that are sent after a change become post-change events. If
+ * another change follows a post-change event, the pending ChangeSet is sent
+ * first, so the listeners see the events and changes in their original order.
+ *
+ * Reads from an RDFServiceGraph for a single graph see the pending changes for
+ * that graph. Reads from the union of all graphs cause the pending changes to
+ * be sent first.
+ */
+public class RDFServiceUnitOfWork implements AutoCloseable {
+	private static final Log log = LogFactory
+			.getLog(RDFServiceUnitOfWork.class);
+
+	private static final ThreadLocal<RDFServiceUnitOfWork> CURRENT = new ThreadLocal<>();
+
+	/**
+	 * Begin a unit of work on this thread, or join the one that is already
+	 * active.
+	 */
+	public static RDFServiceUnitOfWork begin() {
+		RDFServiceUnitOfWork unit = CURRENT.get();
+		if (unit == null) {
+			unit = new RDFServiceUnitOfWork();
+			CURRENT.set(unit);
+		} else {
+			unit.depth++;
+		}
+		return unit;
+	}
+
+	/**
+	 * The unit of work that is active on this thread, or null.
+	 */
+	static RDFServiceUnitOfWork current() {
+		return CURRENT.get();
+	}
+
+	private int depth = 1;
+
+	/**
+	 * RDFService does not override equals(), so this is by identity. There is
+	 * never more than one Batch at a time.
+	 */
+	private final Map<RDFService, Batch> batches = new LinkedHashMap<>();
+
+	private RDFServiceUnitOfWork() {
+		// Use begin()
+	}
+
+	// ----------------------------------------------------------------------
+	// Recording changes
+	// ----------------------------------------------------------------------
+
+	void add(RDFService rdfService, String graphURI, Triple t) {
+		PendingChanges pending = pendingChangesForWrite(rdfService, graphURI);
+		pending.removals.delete(t);
+		pending.additions.add(t);
+	}
+
+	void remove(RDFService rdfService, String graphURI, Triple t) {
+		PendingChanges pending = pendingChangesForWrite(rdfService, graphURI);
+		pending.additions.delete(t);
+		pending.removals.add(t);
+	}
+
+	void addEvent(RDFService rdfService, Object event) {
+		Batch batch = getBatch(rdfService);
+		if (batch.hasChanges()) {
+			batch.postChangeEvents.add(event);
+		} else {
+			batch.preChangeEvents.add(event);
+		}
+	}
+
+	private PendingChanges pendingChangesForWrite(RDFService rdfService,
+			String graphURI) {
+		Batch batch = getBatch(rdfService);
+		if (!batch.postChangeEvents.isEmpty()) {
+			flush(rdfService);
+			batch = getBatch(rdfService);
+		}
+		PendingChanges pending = batch.graphs.get(graphURI);
+		if (pending == null) {
+			pending = new PendingChanges();
+			batch.graphs.put(graphURI, pending);
+		}
+		return pending;
+	}
+
+	private Batch getBatch(RDFService rdfService) {
+		Batch batch = batches.get(rdfService);
+		if (batch == null) {
+			flush();
+			batch = new Batch();
+			batches.put(rdfService, batch);
+		}
+		return batch;
+	}
+
+	// ----------------------------------------------------------------------
+	// Reading through the pending changes
+	// ----------------------------------------------------------------------
+
+	/**
+	 * Are there pending changes in this graph? If the graph is the union of all
+	 * graphs (graphURI is null), the pending changes are sent instead, and the
+	 * answer is false.
+	 */
+	boolean hasPendingChanges(RDFService rdfService, String graphURI) {
+		Batch batch = batches.get(rdfService);
+		if (batch == null || !batch.hasChanges()) {
+			return false;
+		}
+		if (graphURI == null) {
+			flush(rdfService);
+			return false;
+		}
+		PendingChanges pending = batch.graphs.get(graphURI);
+		return pending != null && !pending.isEmpty();
+	}
+
+	/**
+	 * The pending changes for this graph, for a reader to apply as it goes.
+	 * The object is not cleared when the changes are sent.
+	 */
+	PendingChanges getPendingChanges(RDFService rdfService, String graphURI) {
+		return batches.get(rdfService).graphs.get(graphURI);
+	}
+
+	/**
+	 * Is a triple that matches this pattern pending removal?
+	 */
+	boolean hasPendingRemoval(RDFService rdfService, String graphURI, Node s,
+			Node p, Node o) {
+		PendingChanges pending = batches.get(rdfService).graphs.get(graphURI);
+		return pending.removals.contains(s, p, o);
+	}
+
+	/**
+	 * Is a triple that matches this pattern pending addition?
+	 */
+	boolean hasPendingAddition(RDFService rdfService, String graphURI, Node s,
+			Node p, Node o) {
+		PendingChanges pending = batches.get(rdfService).graphs.get(graphURI);
+		return pending.additions.contains(s, p, o);
+	}
+
+	// ----------------------------------------------------------------------
+	// Sending the changes
+	// ----------------------------------------------------------------------
+
+	/**
+	 * Send any pending changes now, and continue the unit of work.
+	 */
+	public void flush() {
+		for (RDFService rdfService : new ArrayList<>(batches.keySet())) {
+			flush(rdfService);
+		}
+	}
+
+	private void flush(RDFService rdfService) {
+		Batch batch = batches.remove(rdfService);
+		if (batch == null || batch.isEmpty()) {
+			return;
+		}
+
+		ChangeSet changeSet = rdfService.manufactureChangeSet();
+		for (Object event : batch.preChangeEvents) {
+			changeSet.addPreChangeEvent(event);
+		}
+		for (Map.Entry<String, PendingChanges> entry : batch.graphs.entrySet()) {
+			String graphURI = entry.getKey();
+			PendingChanges pending = entry.getValue();
+			if (!pending.removals.isEmpty()) {
+				changeSet.addRemoval(serialize(pending.removals),
+						RDFService.ModelSerializationFormat.N3, graphURI);
+			}
+			if (!pending.additions.isEmpty()) {
+				changeSet.addAddition(serialize(pending.additions),
+						RDFService.ModelSerializationFormat.N3, graphURI);
+			}
+		}
+		for (Object event : batch.postChangeEvents) {
+			changeSet.addPostChangeEvent(event);
+		}
+
+		try {
+			log.debug("Flushing " + batch + " to " + rdfService);
+			rdfService.changeSetUpdate(changeSet);
+		} catch (RDFServiceException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private InputStream serialize(Graph g) {
+		StringBuilder sb = new StringBuilder();
+		Iterator<Triple> triples = g.find(Node.ANY, Node.ANY, Node.ANY);
+		while (triples.hasNext()) {
+			sb.append(RDFServiceGraph.serialize(triples.next())).append("\n");
+		}
+		return RDFServiceUtils.toInputStream(sb.toString());
+	}
+
+	/**
+	 * If this is the outermost unit of work, send the changes.
+	 */
+	@Override
+	public void close() {
+		depth--;
+		if (depth > 0) {
+			return;
+		}
+		CURRENT.remove();
+		flush();
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper classes
+	// ----------------------------------------------------------------------
+
+	/** The changes for one RDFService. */
+	private static class Batch {
+		final List<Object> preChangeEvents = new ArrayList<>();
+		final Map<String, PendingChanges> graphs = new LinkedHashMap<>();
+		final List<Object> postChangeEvents = new ArrayList<>();
+
+		boolean hasChanges() {
+			for (PendingChanges pending : graphs.values()) {
+				if (!pending.isEmpty()) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		boolean isEmpty() {
+			return preChangeEvents.isEmpty() && postChangeEvents.isEmpty()
+					&& !hasChanges();
+		}
+
+		@Override
+		public String toString() {
+			int additions = 0;
+			int removals = 0;
+			for (PendingChanges pending : graphs.values()) {
+				additions += pending.additions.size();
+				removals += pending.removals.size();
+			}
+			return "Batch[" + additions + " additions, " + removals
+					+ " removals, " + graphs.size() + " graphs, "
+					+ preChangeEvents.size() + " pre-change events, "
+					+ postChangeEvents.size() + " post-change events]";
+		}
+	}
+
+	/** The changes for one graph. */
+	static class PendingChanges {
+		final Graph additions = GraphFactory.createPlainGraph();
+		final Graph removals = GraphFactory.createPlainGraph();
+
+		boolean isEmpty() {
+			return additions.isEmpty() && removals.isEmpty();
+		}
+
+		/**
+		 * Should a reader skip this triple, found in the RDFService? It is
+		 * either pending removal, or pending addition, in which case it will
+		 * be read from the additions.
+		 */
+		boolean hides(Triple t) {
+			return removals.contains(t) || additions.contains(t);
+		}
+
+		/**
+		 * The pending additions that match this pattern.
+		 */
+		List<Triple> findAdditions(Node s, Node p, Node o) {
+			List<Triple> result = new ArrayList<>();
+			ExtendedIterator<Triple> added = additions.find(s, p, o);
+			try {
+				while (added.hasNext()) {
+					result.add(added.next());
+				}
+			} finally {
+				added.close();
+			}
+			return result;
+		}
+	}
+}
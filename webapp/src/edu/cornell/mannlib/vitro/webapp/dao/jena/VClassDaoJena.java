@@ -399,6 +399,11 @@ public class VClassDaoJena extends JenaBaseDao implements VClassDao {
     }
 
     public List<String> getAllSubClassURIs(String classURI) {
+        HierarchyIndex index = getWebappDaoFactory().getHierarchyIndex();
+        if (index != null && classURI != null) {
+            return new ArrayList<String>(
+                    index.getClassHierarchy().getDescendants(classURI));
+        }
         HashSet<String> nodeSet = new HashSet<String>();
         nodeSet.add(classURI);
         getAllSubClassURIs(classURI, nodeSet);
@@ -422,6 +427,15 @@ public class VClassDaoJena extends JenaBaseDao implements VClassDao {
 
     public List<String> getAllSuperClassURIs(String classURI) {
 
+        HierarchyIndex index = getWebappDaoFactory().getHierarchyIndex();
+        if (index != null && classURI != null) {
+            List<String> superclassURIs = new ArrayList<String>();
+            superclassURIs.add(classURI);
+            superclassURIs.addAll(
+                    index.getClassHierarchy().getAncestors(classURI));
+            return superclassURIs;
+        }
+
         List<String> superclassURIs = null;
 
         if (isUnderlyingStoreReasoned()) {	
@@ -1,6 +1,7 @@
 /* $This file is distributed under the terms of the license in /doc/license.txt$ */
 package edu.cornell.mannlib.vitro.webapp.dao.jena;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -53,6 +54,13 @@ import edu.cornell.mannlib.vitro.webapp.utils.threads.VitroBackgroundThread;
  * The cache is updated asynchronously by the thread RebuildGroupCacheThread. 
  * A synchronous rebuild can be performed with VClassGroupCache.doSynchronousRebuild() 
  * 
+ * A change to the class groups, their classes or their names requires a full
+ * rebuild, reading the groups from the model. When the search indexer commits
+ * its changes, only the counts can have changed, so the thread copies the
+ * current groups and gets new counts for them. Either way, all of the counts
+ * come from a single faceted query, and the new groups replace the old ones
+ * only when they are complete. Until then, requests see the previous groups.
+ * 
  * This class should handle the condition where the search engine is not available.  
  * It will not throw an exception but it will return a empty list of classes
  * or class groups.
@@ -161,10 +169,24 @@ public class VClassGroupCache implements SearchIndexer.Listener {
         VclassMap = classMap;
     }
     
+    /** The groups as they are now, or null if they have not been built. */
+    protected synchronized List<VClassGroup> getCurrentGroups() {
+        return _groupList;
+    }
+
     public void requestCacheUpdate() {
         log.debug("requesting update");        
         _cacheRebuildThread.informOfQueueChange();
     }
+
+    /**
+     * The groups and classes are the same, but the number of individuals may
+     * have changed.
+     */
+    public void requestCountUpdate() {
+        log.debug("requesting count update");
+        _cacheRebuildThread.informOfCountChange();
+    }
     
     protected void requestStop() {
         if (_cacheRebuildThread != null) {
@@ -210,9 +232,9 @@ public class VClassGroupCache implements SearchIndexer.Listener {
     @Override
 	public void receiveSearchIndexerEvent(Event event) {
     	switch (event.getType()) {
-    	case STOP_URIS:
-            log.debug("rebuilding because of IndexBuilder " + event.getType());
-            requestCacheUpdate();
+    	case COMMIT:
+            log.debug("updating counts because of IndexBuilder " + event.getType());
+            requestCountUpdate();
             break;            
         default: 
             log.debug("ignoring event type " + event.getType());
@@ -273,68 +295,116 @@ public class VClassGroupCache implements SearchIndexer.Listener {
     }      
 
     
+    /**
+     * Get new counts for the groups that are in the cache now. The groups are
+     * copied, so requests that are using the current groups don't see the
+     * counts change.
+     */
+    protected static void refreshCountsUsingSearch( VClassGroupCache cache ) throws SearchEngineException{
+        List<VClassGroup> current = cache.getCurrentGroups();
+        if (current == null) {
+            rebuildCacheUsingSearch(cache);
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        List<VClassGroup> groups = copyGroups(current);
+        addCountsUsingSearch(groups, ApplicationUtils.instance().getSearchEngine());
+        cache.setCache(groups, classMapForGroups(groups));
+
+        log.debug("msec to update counts: " + (System.currentTimeMillis() - start));
+    }
+
+    protected static List<VClassGroup> copyGroups(List<VClassGroup> groups) {
+        List<VClassGroup> copies = new ArrayList<VClassGroup>(groups.size());
+        for (VClassGroup group : groups) {
+            VClassGroup groupCopy = new VClassGroup(group);
+            for (VClass vclass : group) {
+                VClass classCopy = vclass.copy();
+                classCopy.setGroup(groupCopy);
+                groupCopy.add(classCopy);
+            }
+            copies.add(groupCopy);
+        }
+        return copies;
+    }
+
     /**
      * Add the Individual count to classes in groups.
+     * 
+     * One query gets the counts for all groups and all classes, by faceting
+     * on both fields. A class belongs to only one group, and every individual
+     * of that class is indexed with that group, so counting the class across
+     * the whole index gives the same answer as counting it within its group.
+     * 
      * @throws SearchEngineException 
      */
     protected static void addCountsUsingSearch(List<VClassGroup> groups, SearchEngine searchEngine) 
     throws SearchEngineException {        
         if( groups == null || searchEngine == null ) 
             return;       
-        for( VClassGroup group : groups){            
-            addClassCountsToGroup(group, searchEngine);            
-        }
-    }    
-    
-    protected static void addClassCountsToGroup(VClassGroup group, SearchEngine searchEngine)
-    throws SearchEngineException {
-        if( group == null ) return;
-        
-        String groupUri = group.getURI();
-        String facetOnField = VitroSearchTermNames.RDFTYPE;
-        
-        SearchQuery query = searchEngine.createQuery().
+
+        SearchQuery query = searchEngine.createQuery("*:*").
             setRows(0).
-            setQuery(VitroSearchTermNames.CLASSGROUP_URI + ":" + groupUri ).        
-            addFacetFields( facetOnField ). //facet on type to get counts for classes in classgroup
-            setFacetMinCount(0);
-        
+            addFacetFields( VitroSearchTermNames.CLASSGROUP_URI, VitroSearchTermNames.RDFTYPE ).
+            setFacetLimit(-1).
+            setFacetMinCount(1);
+
         log.debug("query: " + query);
-        
+
         SearchResponse rsp = searchEngine.query(query);
+        applyCounts(groups,
+                countsFromFacet(rsp.getFacetField(VitroSearchTermNames.CLASSGROUP_URI)),
+                countsFromFacet(rsp.getFacetField(VitroSearchTermNames.RDFTYPE)));
+    }    
 
-        //Get individual count
-        long individualCount = rsp.getResults().getNumFound();
-        log.debug("Number of individuals found " + individualCount);
-        group.setIndividualCount((int) individualCount);
-        
-        //get counts for classes
-        SearchFacetField ff = rsp.getFacetField( facetOnField );
-        if( ff != null ){
-            List<Count> counts = ff.getValues();
-            if( counts != null ){
-                for( Count ct: counts){
-                    if( ct != null ){
-                        String classUri = ct.getName();
-                        long individualsInClass = ct.getCount();            
-                        setClassCount( group, classUri, individualsInClass);
-                    }
+    protected static Map<String, Long> countsFromFacet(SearchFacetField ff) {
+        Map<String, Long> countMap = new HashMap<String, Long>();
+        if( ff == null ){
+            log.debug("no FacetField found");
+            return countMap;
+        }
+        List<Count> counts = ff.getValues();
+        if( counts != null ){
+            for( Count ct: counts){
+                if( ct != null ){
+                    countMap.put(ct.getName(), ct.getCount());
                 }
-            }else{
-               log.debug("no Counts found for FacetField " + facetOnField);   
-            }            
+            }
         }else{
-            log.debug("no FaccetField found for " + facetOnField);
+            log.debug("no Counts found for FacetField " + ff.getName());
         }
+        return countMap;
     }
 
-    protected static void setClassCount(VClassGroup group, String classUri,
-            long individualsInClass) {
-        for( VClass clz : group){
-            if( clz.getURI().equals(classUri)){
-                clz.setEntityCount( (int) individualsInClass );
+    /**
+     * Set the count on each group and class. Anything that doesn't appear in
+     * the facets has no individuals.
+     */
+    protected static void applyCounts(List<VClassGroup> groups,
+            Map<String, Long> groupCounts, Map<String, Long> classCounts) {
+        for (VClassGroup group : groups) {
+            group.setIndividualCount(countFor(groupCounts, group.getURI()));
+            for (VClass clz : group) {
+                clz.setEntityCount(countFor(classCounts, clz.getURI()));
             }
-        }        
+        }
+    }
+
+    private static int countFor(Map<String, Long> counts, String uri) {
+        Long count = counts.get(uri);
+        return (count == null) ? 0 : count.intValue();
+    }
+
+    /**
+     * Is this statement declaring a class? The rdf:type of an individual
+     * affects only the counts, and those come from the search index when the
+     * individual is indexed.
+     */
+    protected static boolean isClassDeclaration(Statement stmt) {
+        return RDF.type.equals(stmt.getPredicate())
+                && (OWL.Class.equals(stmt.getObject()) || RDFS.Class
+                        .equals(stmt.getObject()));
     }
 
     protected static boolean isClassNameChange(Statement stmt, OntModel jenaOntModel) {
@@ -361,6 +431,7 @@ public class VClassGroupCache implements SearchIndexer.Listener {
         private final VClassGroupCache cache;
         private long queueChangeMillis = 0L; 
         private boolean rebuildRequested = false;
+        private boolean countsRequested = false;
         private volatile boolean die = false;
         private int failedAttempts = 0;
         private final int maxFailedAttempts = 5;
@@ -375,7 +446,7 @@ public class VClassGroupCache implements SearchIndexer.Listener {
             while (!die) {
                 int delay;
 
-                if ( !rebuildRequested ) {
+                if ( !rebuildRequested && !countsRequested ) {
                     log.debug("rebuildGroupCacheThread.run() -- nothing to do, sleep");
                     delay = 1000 * 60;
                 } else if ((System.currentTimeMillis() - queueChangeMillis ) < 500) {
@@ -383,10 +454,20 @@ public class VClassGroupCache implements SearchIndexer.Listener {
                     delay = 500;
                 } else {                                        
                     setWorkLevel(WorkLevel.WORKING);
-                    rebuildRequested = false;                    
+                    boolean fullRebuild;
+                    synchronized (this) {
+                        fullRebuild = rebuildRequested;
+                        rebuildRequested = false;
+                        countsRequested = false;
+                    }
                     try {
-                        rebuildCacheUsingSearch( cache );                        
-                        log.debug("rebuildGroupCacheThread.run() -- rebuilt cache ");
+                        if (fullRebuild) {
+                            rebuildCacheUsingSearch( cache );                        
+                            log.debug("rebuildGroupCacheThread.run() -- rebuilt cache ");
+                        } else {
+                            refreshCountsUsingSearch( cache );
+                            log.debug("rebuildGroupCacheThread.run() -- updated counts ");
+                        }
                         failedAttempts = 0;
                         delay = 100;
                     } catch (SearchEngineException e) {                        
@@ -431,6 +512,12 @@ public class VClassGroupCache implements SearchIndexer.Listener {
             this.notifyAll();
         }
 
+        synchronized void informOfCountChange() {
+            queueChangeMillis = System.currentTimeMillis();
+            countsRequested = true;
+            this.notifyAll();
+        }
+
         synchronized void kill() {
             die = true;
             this.notifyAll();
@@ -461,7 +548,9 @@ public class VClassGroupCache implements SearchIndexer.Listener {
                 log.debug("predicate: " + stmt.getPredicate().getURI());
             }
             if (RDF.type.getURI().equals(stmt.getPredicate().getURI())) {
-                requestCacheUpdate();
+                if (isClassDeclaration(stmt)) {
+                    requestCacheUpdate();
+                }
             } else if (VitroVocabulary.IN_CLASSGROUP.equals(stmt.getPredicate().getURI())) {
                 requestCacheUpdate();
             } else if(VitroVocabulary.DISPLAY_RANK.equals(stmt.getPredicate().getURI())){
@@ -80,6 +80,19 @@ public class WebappDaoFactoryJena implements WebappDaoFactory {
 	
 	protected RDFService rdfService;
 	
+	/**
+	 * True only if the TBox of this factory is the full TBox (assertions and
+	 * inferences), which is what the shared HierarchyIndex describes.
+	 */
+	protected boolean useHierarchyIndex = false;
+	
+	/**
+	 * True only if the TBox of this factory is the full TBox (assertions and
+	 * inferences), which is what the beans in the shared PropertyMetadataCache
+	 * were built from.
+	 */
+	protected boolean usePropertyMetadataCache = false;
+	
     /* **************** constructors **************** */
 
     public WebappDaoFactoryJena(WebappDaoFactoryJena base, String userURI) {
@@ -87,6 +100,8 @@ public class WebappDaoFactoryJena implements WebappDaoFactory {
         this.config = base.config;
         this.userURI = userURI;
         this.dwf = base.dwf;
+        this.useHierarchyIndex = base.useHierarchyIndex;
+        this.usePropertyMetadataCache = base.usePropertyMetadataCache;
     }
 
     public WebappDaoFactoryJena(OntModelSelector ontModelSelector, 
@@ -151,6 +166,22 @@ public class WebappDaoFactoryJena implements WebappDaoFactory {
     public OntModel getOntModel() {
     	return this.ontModelSelector.getFullModel();
     }
+    
+    /**
+     * The precomputed class and property hierarchies, or null if the DAOs
+     * should read the hierarchies from the model.
+     */
+    public HierarchyIndex getHierarchyIndex() {
+        return useHierarchyIndex ? HierarchyIndexCache.getCurrentIndex() : null;
+    }
+
+    /**
+     * The cached property beans for the current TBox, or null if the DAOs
+     * should build the beans from the model.
+     */
+    public PropertyMetadataCache.Snapshot getPropertyMetadata() {
+        return usePropertyMetadataCache ? PropertyMetadataCache.getCurrentSnapshot() : null;
+    }
        
     public static Dataset makeInMemoryDataset(Model assertions, 
                                               Model inferences) {
@@ -505,6 +536,10 @@ public class WebappDaoFactoryJena implements WebappDaoFactory {
     	//Can we get the "original" models here from somewhere?
     	OntModelSelector originalSelector = this.getOntModelSelector();
     	
+    	// The special models have their own hierarchies and property metadata.
+    	useHierarchyIndex = false;
+    	usePropertyMetadataCache = false;
+    	
     	// Set up model selector for this special WDF
     	// The selector is used by the object property DAO, therefore should be
     	// set up even though we use the new webapp dao factory object to 
@@ -48,6 +48,10 @@ public class WebappDaoFactorySDB extends WebappDaoFactoryJena {
         if (datasetMode != null) {
             this.datasetMode = datasetMode;
         }
+        this.useHierarchyIndex = 
+                (this.datasetMode == SDBDatasetMode.ASSERTIONS_AND_INFERENCES);
+        this.usePropertyMetadataCache = 
+                (this.datasetMode == SDBDatasetMode.ASSERTIONS_AND_INFERENCES);
     }
     
 	@Override
@@ -63,6 +67,8 @@ public class WebappDaoFactorySDB extends WebappDaoFactoryJena {
         this.userURI = userURI;
         this.dwf = base.dwf;
         this.rdfService = base.rdfService;
+        this.useHierarchyIndex = base.useHierarchyIndex;
+        this.usePropertyMetadataCache = base.usePropertyMetadataCache;
     }
 	
 	@Override
@@ -0,0 +1,154 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.edit.n3editing.VTwo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.cornell.mannlib.vitro.webapp.dao.vclassgroup.ProhibitedFromSearch;
+import edu.cornell.mannlib.vitro.webapp.edit.n3editing.configuration.preprocessors.ModelChangePreprocessor;
+
+/**
+ * The parts of an EditConfigurationVTwo that are the same no matter which
+ * subject or object is being edited: the N3, the variable names, the SPARQL
+ * queries, the Freemarker template, and so on.
+ *
+ * A generator fills in a prototype EditConfigurationVTwo with those parts and
+ * nothing else, and makes a template from it. The template is immutable, so
+ * it can be cached and shared between requests. Each request gets a new
+ * EditConfigurationVTwo from newConfiguration(), and adds the subject, the
+ * object, the fields and anything else that belongs to that request.
+ *
+ * Validators, model change preprocessors and the ProhibitedFromSearch are
+ * shared by all of the configurations, so the prototype should only contain
+ * those that hold no per-request state.
+ */
+public final class EditConfigurationTemplate {
+	private final String template;
+	private final String urlPatternToReturnTo;
+	private final String varNameForSubject;
+	private final String varNameForPredicate;
+	private final String varNameForObject;
+
+	private final List<String> n3Required;
+	private final List<String> n3Optional;
+	private final List<String> urisOnForm;
+	private final List<String> literalsOnForm;
+	private final List<String> filesOnForm;
+
+	private final Map<String, String> newResources;
+	private final Map<String, String> sparqlForAdditionalUrisInScope;
+	private final Map<String, String> sparqlForAdditionalLiteralsInScope;
+	private final Map<String, String> sparqlForExistingLiterals;
+	private final Map<String, String> sparqlForExistingUris;
+
+	private final List<N3ValidatorVTwo> validators;
+	private final List<ModelChangePreprocessor> modelChangePreprocessors;
+	private final ProhibitedFromSearch prohibitedFromSearch;
+
+	public EditConfigurationTemplate(EditConfigurationVTwo prototype) {
+		this.template = prototype.getTemplate();
+		this.urlPatternToReturnTo = prototype.getUrlPatternToReturnTo();
+		this.varNameForSubject = prototype.getVarNameForSubject();
+		this.varNameForPredicate = prototype.getVarNameForPredicate();
+		this.varNameForObject = prototype.getVarNameForObject();
+
+		this.n3Required = frozen(prototype.getN3Required());
+		this.n3Optional = frozen(prototype.getN3Optional());
+		this.urisOnForm = frozen(prototype.getUrisOnform());
+		this.literalsOnForm = frozen(prototype.getLiteralsOnForm());
+		this.filesOnForm = frozen(prototype.getFilesOnForm());
+
+		this.newResources = frozen(prototype.getNewResources());
+		this.sparqlForAdditionalUrisInScope = frozen(prototype
+				.getSparqlForAdditionalUrisInScope());
+		this.sparqlForAdditionalLiteralsInScope = frozen(prototype
+				.getSparqlForAdditionalLiteralsInScope());
+		this.sparqlForExistingLiterals = frozen(prototype
+				.getSparqlForExistingLiterals());
+		this.sparqlForExistingUris = frozen(prototype.getSparqlForExistingUris());
+
+		this.validators = frozen(prototype.getValidators());
+		this.modelChangePreprocessors = frozen(prototype
+				.getModelChangePreprocessors());
+		this.prohibitedFromSearch = prototype.getProhibitedFromSearch();
+	}
+
+	/**
+	 * A new configuration with the parts from the template. The lists and maps
+	 * are copies, so the configuration may change them freely.
+	 */
+	public EditConfigurationVTwo newConfiguration() {
+		EditConfigurationVTwo config = new EditConfigurationVTwo();
+		config.setTemplate(template);
+		config.setUrlPatternToReturnTo(urlPatternToReturnTo);
+		config.setVarNameForSubject(varNameForSubject);
+		config.setVarNameForPredicate(varNameForPredicate);
+		config.setVarNameForObject(varNameForObject);
+
+		config.setN3Required(new ArrayList<String>(n3Required));
+		config.setN3Optional(new ArrayList<String>(n3Optional));
+		config.setUrisOnform(new ArrayList<String>(urisOnForm));
+		config.setLiteralsOnForm(new ArrayList<String>(literalsOnForm));
+		config.setFilesOnForm(new ArrayList<String>(filesOnForm));
+
+		config.setNewResources(new HashMap<String, String>(newResources));
+		config.setSparqlForAdditionalUrisInScope(new HashMap<String, String>(
+				sparqlForAdditionalUrisInScope));
+		config.setSparqlForAdditionalLiteralsInScope(new HashMap<String, String>(
+				sparqlForAdditionalLiteralsInScope));
+		config.setSparqlForExistingLiterals(new HashMap<String, String>(
+				sparqlForExistingLiterals));
+		config.setSparqlForExistingUris(new HashMap<String, String>(
+				sparqlForExistingUris));
+
+		for (N3ValidatorVTwo validator : validators) {
+			config.addValidator(validator);
+		}
+		for (ModelChangePreprocessor preprocessor : modelChangePreprocessors) {
+			config.addModelChangePreprocessor(preprocessor);
+		}
+		config.setProhibitedFromSearch(prohibitedFromSearch);
+		return config;
+	}
+
+	public List<String> getN3Required() {
+		return n3Required;
+	}
+
+	public List<String> getN3Optional() {
+		return n3Optional;
+	}
+
+	public String getTemplate() {
+		return template;
+	}
+
+	public ProhibitedFromSearch getProhibitedFromSearch() {
+		return prohibitedFromSearch;
+	}
+
+	private static <T> List<T> frozen(List<T> list) {
+		if (list == null) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(new ArrayList<T>(list));
+	}
+
+	private static Map<String, String> frozen(Map<String, String> map) {
+		if (map == null) {
+			return Collections.emptyMap();
+		}
+		return Collections.unmodifiableMap(new HashMap<String, String>(map));
+	}
+
+	@Override
+	public String toString() {
+		return "EditConfigurationTemplate[template=" + template
+				+ ", n3Required=" + n3Required + ", n3Optional=" + n3Optional
+				+ "]";
+	}
+}
@@ -0,0 +1,383 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.edit.n3editing.VTwo;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.NodeFactory;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.model.Literal;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.StmtIterator;
+import com.hp.hpl.jena.vocabulary.RDF;
+
+/**
+ * One N3 string from an EditConfiguration, parsed once into triple patterns
+ * with a slot for each ?variable.
+ *
+ * Instantiating the template gives the same triples as substituting the
+ * values into the N3 text and parsing the result, but without the text
+ * substitution or the parse:
+ * <ul>
+ * <li>If a variable has no value, nothing is produced, just as the N3 with a
+ * ?variable left in it would not parse.</li>
+ * <li>A variable with several values produces a triple for each value, but
+ * only in the object position. Anywhere else, nothing is produced.</li>
+ * <li>Blank nodes in the template are new for each instantiation.</li>
+ * </ul>
+ *
+ * Some N3 can't be compiled, for example when a ?variable appears inside a
+ * quoted string, or in an RDF list. compile() returns null for those, and the
+ * caller should use the text substitution instead.
+ *
+ * Templates are kept by their text, so each distinct N3 string is compiled
+ * only once, no matter how many EditConfigurations use it.
+ */
+public class N3Template {
+	private static final Log log = LogFactory.getLog(N3Template.class);
+
+	/** Variable names, as EditN3GeneratorVTwo would find them. */
+	private static final Pattern VARIABLE = Pattern.compile("\\?([\\w\\-]+)");
+
+	private static final String SLOT_PREFIX = "urn:x-vitro-n3-variable:";
+
+	private static final int MAX_CACHED_TEMPLATES = 2000;
+
+	/** Marks N3 that can't be compiled, so we don't try again. */
+	private static final N3Template UNCOMPILABLE = new N3Template("",
+			Collections.<Triple> emptyList(), Collections.<String> emptySet());
+
+	private static final Map<String, N3Template> cache = new LinkedHashMap<String, N3Template>(
+			16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, N3Template> eldest) {
+			return size() > MAX_CACHED_TEMPLATES;
+		}
+	};
+
+	/**
+	 * Get the compiled template for this N3, or null if it can't be compiled.
+	 */
+	public static N3Template compile(String n3) {
+		if (n3 == null) {
+			return null;
+		}
+		N3Template template;
+		synchronized (cache) {
+			template = cache.get(n3);
+		}
+		if (template == null) {
+			template = doCompile(n3);
+			synchronized (cache) {
+				cache.put(n3, template);
+			}
+		}
+		return (template == UNCOMPILABLE) ? null : template;
+	}
+
+	private static N3Template doCompile(String n3) {
+		Set<String> variables = new HashSet<String>();
+		Matcher m = VARIABLE.matcher(n3);
+		while (m.find()) {
+			variables.add(m.group(1));
+		}
+
+		// Longest names first, so ?ab is not replaced as ?a followed by "b".
+		List<String> names = new ArrayList<String>(variables);
+		Collections.sort(names, new Comparator<String>() {
+			@Override
+			public int compare(String a, String b) {
+				return b.length() - a.length();
+			}
+		});
+		String withSlots = n3;
+		for (String name : names) {
+			withSlots = withSlots.replaceAll("\\?" + Pattern.quote(name)
+					+ "(?=\\p{Punct}|\\p{Space}|$)",
+					Matcher.quoteReplacement("<" + SLOT_PREFIX + name + ">"));
+		}
+
+		Model model = ModelFactory.createDefaultModel();
+		try {
+			model.read(new StringReader(withSlots), "", "N3");
+		} catch (Throwable t) {
+			log.debug("Can't compile N3, will substitute text instead: " + n3);
+			return UNCOMPILABLE;
+		}
+
+		List<Triple> patterns = new ArrayList<Triple>();
+		StmtIterator stmts = model.listStatements();
+		try {
+			while (stmts.hasNext()) {
+				Triple t = stmts.next().asTriple();
+				if (!isCompilable(t, variables)) {
+					log.debug("Can't compile N3, will substitute text instead: "
+							+ n3);
+					return UNCOMPILABLE;
+				}
+				patterns.add(t);
+			}
+		} finally {
+			stmts.close();
+		}
+		return new N3Template(n3, patterns, variables);
+	}
+
+	/**
+	 * A slot hidden in a literal or in a longer URI, or an RDF list of values,
+	 * can't be filled from the triple patterns.
+	 */
+	private static boolean isCompilable(Triple t, Set<String> variables) {
+		for (Node n : new Node[] { t.getSubject(), t.getPredicate(),
+				t.getObject() }) {
+			if (n.isLiteral()) {
+				String dt = n.getLiteralDatatypeURI();
+				if (n.getLiteralLexicalForm().contains(SLOT_PREFIX)
+						|| (dt != null && dt.contains(SLOT_PREFIX))) {
+					return false;
+				}
+			} else if (n.isURI() && n.getURI().contains(SLOT_PREFIX)) {
+				if (!isSlot(n) || !variables.contains(slotName(n))) {
+					return false;
+				}
+			}
+		}
+		return !(isSlot(t.getObject()) && RDF.first.getURI().equals(
+				t.getPredicate().getURI()));
+	}
+
+	private static boolean isSlot(Node n) {
+		return n.isURI() && n.getURI().startsWith(SLOT_PREFIX);
+	}
+
+	private static String slotName(Node n) {
+		return n.getURI().substring(SLOT_PREFIX.length());
+	}
+
+	private final String n3;
+	private final List<Triple> patterns;
+	private final Set<String> variables;
+
+	private N3Template(String n3, List<Triple> patterns, Set<String> variables) {
+		this.n3 = n3;
+		this.patterns = patterns;
+		this.variables = Collections.unmodifiableSet(variables);
+	}
+
+	public String getN3() {
+		return n3;
+	}
+
+	public Set<String> getVariables() {
+		return variables;
+	}
+
+	/**
+	 * Would text substitution of these variable names give the same result as
+	 * filling the slots? Not if a name matches only part of a variable in the
+	 * N3, like "a" in "?a_b".
+	 */
+	public boolean isCompatibleWith(Set<String> names) {
+		for (String name : names) {
+			if (!variables.contains(name)) {
+				if (n3.contains("?" + name)) {
+					return false;
+				}
+				continue;
+			}
+			for (String variable : variables) {
+				if (variable.length() > name.length()
+						&& variable.startsWith(name)
+						&& !Character.isLetterOrDigit(variable.charAt(name
+								.length()))) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Fill the slots with these values.
+	 *
+	 * @return a Model of the triples, or null if a variable has no value, or a
+	 *         value is not allowed where the variable appears.
+	 */
+	public Model instantiate(Bindings bindings) {
+		Map<Node, Node> blankNodes = new HashMap<Node, Node>();
+		Model model = ModelFactory.createDefaultModel();
+		for (Triple pattern : patterns) {
+			Node s = single(pattern.getSubject(), bindings, blankNodes);
+			Node p = single(pattern.getPredicate(), bindings, blankNodes);
+			if (s == null || p == null || s.isLiteral() || !p.isURI()) {
+				return null;
+			}
+			List<Node> objects = multiple(pattern.getObject(), bindings,
+					blankNodes);
+			if (objects == null) {
+				return null;
+			}
+			for (Node o : objects) {
+				model.getGraph().add(Triple.create(s, p, o));
+			}
+		}
+		return model;
+	}
+
+	private Node single(Node n, Bindings bindings, Map<Node, Node> blankNodes) {
+		List<Node> values = multiple(n, bindings, blankNodes);
+		return (values == null || values.size() != 1) ? null : values.get(0);
+	}
+
+	private List<Node> multiple(Node n, Bindings bindings,
+			Map<Node, Node> blankNodes) {
+		if (isSlot(n)) {
+			List<Node> values = bindings.get(slotName(n));
+			return (values == null || values.isEmpty()) ? null : values;
+		}
+		if (n.isBlank()) {
+			Node fresh = blankNodes.get(n);
+			if (fresh == null) {
+				fresh = NodeFactory.createAnon();
+				blankNodes.put(n, fresh);
+			}
+			return Collections.singletonList(fresh);
+		}
+		return Collections.singletonList(n);
+	}
+
+	@Override
+	public String toString() {
+		return "N3Template[" + n3 + "]";
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper class
+	// ----------------------------------------------------------------------
+
+	/**
+	 * The values for the variables, in order of precedence: once a variable has
+	 * a value, later values for it are ignored, as they would be by text
+	 * substitution. The rules for skipping values are those of
+	 * EditN3GeneratorVTwo.
+	 *
+	 * If a value would not survive substitution and parsing unchanged, like a
+	 * relative URI, the bindings are marked as unusable, and the caller should
+	 * substitute text instead.
+	 */
+	public static class Bindings {
+		private static final Pattern ABSOLUTE_URI = Pattern
+				.compile("^[A-Za-z][A-Za-z0-9+.\\-]*:[^\\s<>\"{}|^`\\\\]*$");
+
+		private final Map<String, List<Node>> values = new HashMap<String, List<Node>>();
+		private final Set<String> names = new HashSet<String>();
+		private boolean usable = true;
+
+		public Bindings addUris(Map<String, String> uris) {
+			if (uris == null) {
+				return this;
+			}
+			for (Map.Entry<String, String> entry : uris.entrySet()) {
+				String uri = entry.getValue();
+				if (uri == null || uri.isEmpty()) {
+					continue;
+				}
+				put(entry.getKey(), Collections.singletonList(uri), true);
+			}
+			return this;
+		}
+
+		public Bindings addMultiUris(Map<String, List<String>> uris) {
+			if (uris == null) {
+				return this;
+			}
+			for (Map.Entry<String, List<String>> entry : uris.entrySet()) {
+				List<String> list = entry.getValue();
+				if (list == null || list.contains(null) || list.contains("")) {
+					continue;
+				}
+				put(entry.getKey(), list, true);
+			}
+			return this;
+		}
+
+		public Bindings addMultiLiterals(Map<String, List<Literal>> literals) {
+			if (literals == null) {
+				return this;
+			}
+			for (Map.Entry<String, List<Literal>> entry : literals.entrySet()) {
+				List<Literal> list = entry.getValue();
+				if (list == null) {
+					continue;
+				}
+				List<Object> nonNull = new ArrayList<Object>(list.size());
+				for (Literal literal : list) {
+					if (literal != null) {
+						nonNull.add(literal);
+					}
+				}
+				put(entry.getKey(), nonNull, false);
+			}
+			return this;
+		}
+
+		private void put(String name, List<?> list, boolean uris) {
+			if (name == null || name.isEmpty()) {
+				return;
+			}
+			names.add(name);
+			if (values.containsKey(name)) {
+				return;
+			}
+			if (uris && list.isEmpty()) {
+				// Substitution would produce <>, a relative URI.
+				usable = false;
+				return;
+			}
+
+			List<Node> nodes = new ArrayList<Node>(list.size());
+			for (Object value : list) {
+				if (value instanceof Literal) {
+					nodes.add(((Literal) value).asNode());
+				} else {
+					String uri = String.valueOf(value);
+					if (!ABSOLUTE_URI.matcher(uri).matches()) {
+						usable = false;
+						return;
+					}
+					nodes.add(NodeFactory.createURI(uri));
+				}
+			}
+			values.put(name, nodes);
+		}
+
+		List<Node> get(String name) {
+			return values.get(name);
+		}
+
+		/** The names of all variables that were offered, with or without values. */
+		public Set<String> getNames() {
+			return names;
+		}
+
+		public boolean isUsable() {
+			return usable;
+		}
+	}
+}
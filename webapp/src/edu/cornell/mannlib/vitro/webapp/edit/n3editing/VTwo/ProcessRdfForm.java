@@ -115,8 +115,17 @@ public class ProcessRdfForm {
         List<String> requiredN3 = configuration.getN3Required();
         List<String> optionalN3 = configuration.getN3Optional();                        
         
+        urisForNewResources = URIsForNewRsources(configuration, newURIMaker);
+        
+        /* fill the compiled N3 templates, if they can be used for this submission */
+        AdditionsAndRetractions changes = instantiateN3Templates(
+                configuration, submission, urisForNewResources, false);
+        if( changes != null )
+            return changes;
+        
         /* substitute in the form values and existing values */
-        subInValuesToN3( configuration, submission, requiredN3, optionalN3, null , null);
+        subInValuesToN3( configuration, submission, urisForNewResources, 
+                requiredN3, optionalN3, null , null);
                    
         /* parse N3 to RDF Models, No retractions since all of the statements are new. */         
         return parseN3ToChange(requiredN3, optionalN3, null, null);        
@@ -157,7 +166,14 @@ public class ProcessRdfForm {
         List<String> N3RequiredRetract = editConfig.getN3Required();        
         List<String> N3OptionalRetract = editConfig.getN3Optional();
 
-        subInValuesToN3(editConfig, submission, 
+        urisForNewResources = URIsForNewRsources(editConfig, newURIMaker);
+        
+        AdditionsAndRetractions changes = instantiateN3Templates(
+                editConfig, submission, urisForNewResources, true);
+        if( changes != null )
+            return changes;
+        
+        subInValuesToN3(editConfig, submission, urisForNewResources,
                 N3RequiredAssert, N3OptionalAssert, 
                 N3RequiredRetract, N3OptionalRetract);
                                   
@@ -166,17 +182,26 @@ public class ProcessRdfForm {
                 N3RequiredRetract, N3OptionalRetract);        
     }    
     
-    @SuppressWarnings("unchecked")
     protected void subInValuesToN3(
             EditConfigurationVTwo editConfig, MultiValueEditSubmission submission, 
             List<String> requiredAsserts, List<String> optionalAsserts,
             List<String> requiredRetracts, List<String> optionalRetracts ) throws InsertException{
+        urisForNewResources = URIsForNewRsources(editConfig, newURIMaker);
+        subInValuesToN3(editConfig, submission, urisForNewResources, 
+                requiredAsserts, optionalAsserts, requiredRetracts, optionalRetracts);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private void subInValuesToN3(
+            EditConfigurationVTwo editConfig, MultiValueEditSubmission submission, 
+            Map<String,String> urisForNewResources,
+            List<String> requiredAsserts, List<String> optionalAsserts,
+            List<String> requiredRetracts, List<String> optionalRetracts ) {
         
         //need to substitute into the return to URL becase it may need new resource URIs
         List<String> URLToReturnTo = Arrays.asList(submission.getEntityToReturnTo());
         
         /* *********** Check if new resource needs to be forcibly created ******** */
-        urisForNewResources = URIsForNewRsources(editConfig, newURIMaker);
         substituteInForcedNewURIs(urisForNewResources, submission.getUrisFromForm(), requiredAsserts, optionalAsserts, URLToReturnTo);
         logSubstitue( "Added form URIs that required new URIs", requiredAsserts, optionalAsserts, requiredRetracts, optionalRetracts);
 
@@ -220,6 +245,107 @@ public class ProcessRdfForm {
 
 
 
+    /**
+     * Fill the compiled N3 templates with the same values, in the same order
+     * of precedence, that subInValuesToN3() would substitute into the text.
+     * 
+     * Returns null if any of the N3 can't be compiled, if the values
+     * would not come through text substitution unchanged, or if the 
+     * configuration has its own N3 generator. The caller should
+     * substitute into the text instead.
+     * 
+     * @throws Exception if the required N3 can't be filled.
+     */
+    protected AdditionsAndRetractions instantiateN3Templates(
+            EditConfigurationVTwo editConfig, MultiValueEditSubmission submission,
+            Map<String,String> urisForNewResources, boolean isUpdate) throws Exception {
+        //A subclass of the generator may substitute differently.
+        if( populator == null || populator.getClass() != EditN3GeneratorVTwo.class )
+            return null;
+        
+        List<N3Template> required = compileN3(editConfig.getN3Required());
+        List<N3Template> optional = compileN3(editConfig.getN3Optional());
+        if( required == null || optional == null )
+            return null;
+        
+        N3Template.Bindings assertions = new N3Template.Bindings()
+            .addMultiUris(forcedNewURIs(urisForNewResources, submission.getUrisFromForm()))
+            .addMultiUris(submission.getUrisFromForm())
+            .addMultiLiterals(submission.getLiteralsFromForm())
+            .addUris(getSubPedObjVarMap(editConfig))
+            .addMultiUris(editConfig.getUrisInScope())
+            .addMultiLiterals(editConfig.getLiteralsInScope())
+            .addUris(urisForNewResources);
+        //Retractions do NOT get values from the form, or new resources.
+        N3Template.Bindings retractions = new N3Template.Bindings()
+            .addUris(getSubPedObjVarMap(editConfig))
+            .addMultiUris(editConfig.getUrisInScope())
+            .addMultiLiterals(editConfig.getLiteralsInScope());
+        
+        if( !assertions.isUsable() || (isUpdate && !retractions.isUsable()) ){
+            log.debug("Values can't be used with the N3 templates, substituting into the text.");
+            return null;
+        }
+        for( List<N3Template> templates : Arrays.asList(required, optional)){
+            for( N3Template template : templates ){
+                if( !template.isCompatibleWith(assertions.getNames()) ){
+                    log.debug("Variable names don't match " + template + ", substituting into the text.");
+                    return null;
+                }
+            }
+        }
+        
+        List<Model> adds = instantiateN3(required, assertions, REQUIRED);
+        adds.addAll( instantiateN3(optional, assertions, OPTIONAL));
+        
+        List<Model> retracts = new ArrayList<Model>();
+        if( isUpdate ){
+            retracts.addAll( instantiateN3(required, retractions, REQUIRED) );
+            retracts.addAll( instantiateN3(optional, retractions, OPTIONAL) );
+        }
+        
+        //the return to URL may need new resource URIs
+        subInValuesToN3(editConfig, submission, urisForNewResources,
+                new ArrayList<String>(), new ArrayList<String>(), null, null);
+        
+        return new AdditionsAndRetractions(adds, retracts);
+    }
+    
+    private static List<N3Template> compileN3(List<String> n3Strings){
+        List<N3Template> templates = new ArrayList<N3Template>();
+        if( n3Strings == null )
+            return templates;
+        for( String n3 : n3Strings ){
+            N3Template template = N3Template.compile(n3);
+            if( template == null )
+                return null;
+            templates.add(template);
+        }
+        return templates;
+    }
+    
+    /**
+     * Like parseN3ToRDF(), but a template that can't be filled takes the 
+     * place of N3 that doesn't parse.
+     */
+    private static List<Model> instantiateN3(
+            List<N3Template> templates, N3Template.Bindings bindings, 
+            N3ParseType parseType) throws Exception {
+        List<String> errorMessages = new ArrayList<String>();
+        List<Model> rdfModels = new ArrayList<Model>();
+        for( N3Template template : templates ){
+            Model model = template.instantiate(bindings);
+            if( model != null ){
+                rdfModels.add( model );
+            }else{
+                errorMessages.add("Variables have no values, or values that " +
+                        "are not allowed in their positions.\nN3: \n" + template.getN3() + "\n");
+            }
+        }
+        reportN3Errors(errorMessages, parseType);
+        return rdfModels;
+    }
+
 	//TODO: maybe move this to utils or contorller?
     public static AdditionsAndRetractions addDependentDeletes( AdditionsAndRetractions changes, Model queryModel){
         //Add retractions for dependent resource delete if that is configured and 
@@ -295,6 +421,12 @@ public class ProcessRdfForm {
             }
         }
         
+       reportN3Errors(errorMessages, parseType);
+       return rdfModels;       
+    }
+    
+    private static void reportN3Errors(List<String> errorMessages, 
+            N3ParseType parseType) throws Exception {
         String errors = "";
         for( String errorMsg : errorMessages){
             errors += errorMsg + '\n';
@@ -314,8 +446,6 @@ public class ProcessRdfForm {
                log.debug( errors );                            
            }
        }
-              
-       return rdfModels;       
     }      
 		    
     protected void logSubstitue(String msg, List<String> requiredAsserts,
@@ -463,6 +593,14 @@ public class ProcessRdfForm {
 			Map<String, String> urisForNewResources, Map<String, List<String>> urisFromForm,
 			List<String> requiredAsserts, List<String> optionalAsserts,
 			List<String> uRLToReturnTo) {
+	   Map<String, List<String>> newUris = forcedNewURIs(urisForNewResources, urisFromForm);
+	   if(newUris.size() > 0) {
+		   substituteInMultiURIs(newUris, requiredAsserts, optionalAsserts, uRLToReturnTo);
+	   }
+	}
+   
+   private static Map<String, List<String>> forcedNewURIs(
+			Map<String, String> urisForNewResources, Map<String, List<String>> urisFromForm) {
 	   Map<String, List<String>> newUris = new HashMap<String, List<String>>();
 	   //Check if any values from the submission have the "force new uri" value
 	   //TODO: Check how to handle multiple new resource values
@@ -476,10 +614,7 @@ public class ProcessRdfForm {
 			   newUris.put(key, newUrisForKey);
 		   }
 	   }
-	   if(newUris.size() > 0) {
-		   substituteInMultiURIs(newUris, requiredAsserts, optionalAsserts, uRLToReturnTo);
-	   }
-	   
+	   return newUris;
 	}
    
       
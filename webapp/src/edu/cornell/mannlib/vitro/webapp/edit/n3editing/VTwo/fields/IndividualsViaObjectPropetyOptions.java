@@ -43,6 +43,7 @@ public class IndividualsViaObjectPropetyOptions implements FieldOptions {
     private boolean hasSubclasses = true;
     
     private String defaultOptionLabel;
+    private int maxOptions = 0;
     
     public IndividualsViaObjectPropetyOptions(String subjectUri,
             String predicateUri, List<VClass> rangeTypes, String objectUri, VitroRequest vreq) throws Exception {
@@ -76,6 +77,16 @@ public class IndividualsViaObjectPropetyOptions implements FieldOptions {
         this.defaultOptionLabel = label;
         return this;
     }
+
+    /**
+     * If the range classes have more individuals than this, don't load them
+     * all. The list holds the first of them by name, from the search index,
+     * and the current object. By default there is no limit.
+     */
+    public IndividualsViaObjectPropetyOptions setMaxOptions(int maxOptions){
+        this.maxOptions = maxOptions;
+        return this;
+    }
     
     @Override
     public Map<String, String> getOptions(
@@ -109,6 +120,14 @@ public class IndividualsViaObjectPropetyOptions implements FieldOptions {
             return optionsMap;
         }
         
+        if (maxOptions > 0) {
+            Map<String, String> firstPage = getFirstPageIfTooMany(vclassesURIs, wDaoFact);
+            if (firstPage != null) {
+                optionsMap.putAll(firstPage);
+                return optionsMap;
+            }
+        }
+        
         List<Individual> individuals = new ArrayList<Individual>();
         HashSet<String> uriSet = new HashSet<String>();        
         for (String vclassURI: vclassesURIs) {
@@ -150,6 +169,38 @@ public class IndividualsViaObjectPropetyOptions implements FieldOptions {
         return optionsMap;
     }
 
+    /**
+     * If the search index says there are more individuals than the limit, 
+     * get the first of them by name, and the current object. Otherwise, 
+     * return null.
+     */
+    private Map<String, String> getFirstPageIfTooMany(HashSet<String> vclassesURIs, 
+            WebappDaoFactory wDaoFact) {
+        try {
+            IndividualsViaSearchIndexOptions fromIndex = new IndividualsViaSearchIndexOptions(
+                    vclassesURIs.toArray(new String[vclassesURIs.size()]));
+            long count = fromIndex.countIndividuals();
+            if (count <= maxOptions) {
+                return null;
+            }
+            log.debug("Found " + count + " individuals for " + vclassesURIs
+                    + "; listing only the first " + maxOptions + " by name.");
+            Map<String, String> options = new LinkedHashMap<String, String>(
+                    fromIndex.getPage(null, 0, maxOptions).getOptions());
+            options.remove(subjectUri);
+            if (objectUri != null && !options.containsKey(objectUri)) {
+                Individual object = wDaoFact.getIndividualDao().getIndividualByURI(objectUri);
+                if (object != null && object.getRdfsLabel() != null) {
+                    options.put(objectUri, object.getRdfsLabel());
+                }
+            }
+            return options;
+        } catch (Exception e) {
+            log.debug("Failed to count individuals in the search index", e);
+            return null;
+        }
+    }
+
     private HashSet<String> getApplicableVClassURIs(Individual subject, WebappDaoFactory wDaoFact) {
         HashSet<String> vclassesURIs = new HashSet<String>();
         if (!rangeTypes.isEmpty()) {
@@ -0,0 +1,181 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+package edu.cornell.mannlib.vitro.webapp.edit.n3editing.VTwo.fields;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import edu.cornell.mannlib.vitro.webapp.application.ApplicationUtils;
+import edu.cornell.mannlib.vitro.webapp.dao.VitroVocabulary;
+import edu.cornell.mannlib.vitro.webapp.dao.WebappDaoFactory;
+import edu.cornell.mannlib.vitro.webapp.edit.n3editing.VTwo.EditConfigurationVTwo;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngine;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngineException;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchQuery;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchResultDocument;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchResultDocumentList;
+import edu.cornell.mannlib.vitro.webapp.search.VitroSearchTermNames;
+
+/**
+ * Gets the individuals of one or more classes from the search index, one page
+ * at a time, sorted by name. The page may be limited to names that start with
+ * a prefix, for type-ahead.
+ *
+ * Nothing is read from the model, so the cost doesn't grow with the size of
+ * the class. By default, the individuals are found by any of their types in
+ * the index, which include inferred types, so individuals of subclasses are
+ * found whether or not the reasoner is running. Set the type field to
+ * VitroSearchTermNames.MOST_SPECIFIC_TYPE_URIS to find only the individuals
+ * whose most specific type is one of the classes.
+ *
+ * getOptions() returns the first page, without a prefix. A type-ahead calls
+ * getPage() for the other pages, or for the names that start with what the
+ * user has typed.
+ */
+public class IndividualsViaSearchIndexOptions implements FieldOptions {
+    private static final Log log = LogFactory.getLog(IndividualsViaSearchIndexOptions.class);
+
+    public static final String LEFT_BLANK = "";
+    public static final int DEFAULT_PAGE_SIZE = 50;
+
+    private final List<String> vclassURIs;
+    private String typeField = VitroSearchTermNames.RDFTYPE;
+    private int pageSize = DEFAULT_PAGE_SIZE;
+    private String defaultOptionLabel;
+
+    public IndividualsViaSearchIndexOptions(String ... vclassURIs) throws Exception {
+        if (vclassURIs == null)
+            throw new Exception("vclassURIs must not be null or empty ");
+
+        this.vclassURIs = new ArrayList<String>(vclassURIs.length);
+        for (String uri : vclassURIs) {
+            if (uri != null && !uri.trim().isEmpty())
+                this.vclassURIs.add(uri);
+        }
+    }
+
+    public IndividualsViaSearchIndexOptions setDefaultOptionLabel(String label) {
+        this.defaultOptionLabel = label;
+        return this;
+    }
+
+    /**
+     * The field of the search document that holds the types to look for.
+     */
+    public IndividualsViaSearchIndexOptions setTypeField(String typeField) {
+        this.typeField = typeField;
+        return this;
+    }
+
+    public IndividualsViaSearchIndexOptions setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    @Override
+    public Map<String, String> getOptions(
+            EditConfigurationVTwo editConfig,
+            String fieldName,
+            WebappDaoFactory wDaoFact) throws Exception {
+        Map<String, String> optionsMap = new LinkedHashMap<String, String>();
+        if (defaultOptionLabel != null) {
+            optionsMap.put(LEFT_BLANK, defaultOptionLabel);
+        }
+        optionsMap.putAll(getPage(null, 0, pageSize).getOptions());
+        return optionsMap;
+    }
+
+    /**
+     * Get one page of options, URI to name, in order by name.
+     *
+     * @param prefix
+     *            if not blank, only individuals whose names start with this
+     *            are included.
+     */
+    public Page getPage(String prefix, int start, int rows) throws SearchEngineException {
+        SearchEngine searchEngine = ApplicationUtils.instance().getSearchEngine();
+        SearchQuery query = searchEngine.createQuery(typeQuery())
+                .setStart(start)
+                .setRows(rows)
+                .addFields(VitroSearchTermNames.URI, VitroSearchTermNames.NAME_RAW)
+                .addSortField(VitroSearchTermNames.NAME_LOWERCASE_SINGLE_VALUED, SearchQuery.Order.ASC);
+        if (StringUtils.isNotBlank(prefix)) {
+            query.addFilterQuery(prefixQuery(prefix));
+        }
+        log.debug("Query for options: " + query);
+
+        SearchResultDocumentList docs = searchEngine.query(query).getResults();
+        Map<String, String> options = new LinkedHashMap<String, String>();
+        for (SearchResultDocument doc : docs) {
+            String uri = doc.getStringValue(VitroSearchTermNames.URI);
+            String name = doc.getStringValue(VitroSearchTermNames.NAME_RAW);
+            if (uri != null) {
+                options.put(uri, (name == null) ? uri : name.trim());
+            }
+        }
+        return new Page(options, docs.getNumFound());
+    }
+
+    /**
+     * How many individuals of these classes are in the search index?
+     */
+    public long countIndividuals() throws SearchEngineException {
+        SearchEngine searchEngine = ApplicationUtils.instance().getSearchEngine();
+        SearchQuery query = searchEngine.createQuery(typeQuery()).setRows(0);
+        return searchEngine.query(query).getResults().getNumFound();
+    }
+
+    private String typeQuery() {
+        if (vclassURIs.isEmpty() || vclassURIs.contains(VitroVocabulary.OWL_THING)) {
+            return "*:*";
+        }
+        List<String> clauses = new ArrayList<String>();
+        for (String uri : vclassURIs) {
+            clauses.add(typeField + ":\"" + uri + "\"");
+        }
+        return StringUtils.join(clauses, " OR ");
+    }
+
+    /**
+     * The search engine wants quotes and backslashes escaped, and whitespace
+     * escaped with a backslash.
+     */
+    private String prefixQuery(String prefix) {
+        String escaped = prefix.trim().replace("\\", "\\\\").replace("\"", "\\\"")
+                .replaceAll("\\s+", "\\\\ ");
+        return VitroSearchTermNames.AC_NAME_UNTOKENIZED + ":\"" + escaped + "\"";
+    }
+
+    @Override
+    public Comparator<String[]> getCustomComparator() {
+        return null;
+    }
+
+    /**
+     * One page of options, and the number of options on all pages.
+     */
+    public static class Page {
+        private final Map<String, String> options;
+        private final long total;
+
+        public Page(Map<String, String> options, long total) {
+            this.options = Collections.unmodifiableMap(options);
+            this.total = total;
+        }
+
+        public Map<String, String> getOptions() {
+            return options;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+    }
+}
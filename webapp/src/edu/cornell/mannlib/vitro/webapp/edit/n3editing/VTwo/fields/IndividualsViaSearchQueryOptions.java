@@ -53,7 +53,7 @@ public class IndividualsViaSearchQueryOptions extends IndividualsViaVClassOption
 			if( VitroVocabulary.OWL_THING.equals( vclassURI )){
 				query.setQuery( "*:*" );    			
 			}else{
-				query.setQuery( VitroSearchTermNames.MOST_SPECIFIC_TYPE_URIS + ":" + vclassURI);
+				query.setQuery( getSearchTypeField() + ":" + vclassURI);
 			}
 			 query.setStart(0)
              .setRows(1000);
@@ -86,12 +86,22 @@ public class IndividualsViaSearchQueryOptions extends IndividualsViaVClassOption
         return individualMap;        
     }
     
+    @Override
+    protected String getSearchTypeField() {
+        return VitroSearchTermNames.MOST_SPECIFIC_TYPE_URIS;
+    }
+    
     @Override
     public Map<String, String> getOptions(
             EditConfigurationVTwo editConfig, 
             String fieldName, 
             WebappDaoFactory wDaoFact) throws Exception {              
         
+    	 Map<String, String> firstPage = getFirstPageIfTooMany(editConfig, fieldName, wDaoFact);
+    	 if (firstPage != null) {
+    	     return firstPage;
+    	 }
+
     	 Map<String, Individual> individualMap = new HashMap<String, Individual>();
 
          for( String vclassURI : vclassURIs){
@@ -5,21 +5,29 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
 import edu.cornell.mannlib.vitro.webapp.application.ApplicationUtils;
 import edu.cornell.mannlib.vitro.webapp.beans.Individual;
 import edu.cornell.mannlib.vitro.webapp.dao.IndividualDao;
 import edu.cornell.mannlib.vitro.webapp.dao.WebappDaoFactory;
 import edu.cornell.mannlib.vitro.webapp.edit.n3editing.VTwo.EditConfigurationVTwo;
 import edu.cornell.mannlib.vitro.webapp.modules.tboxreasoner.TBoxReasonerStatus;
+import edu.cornell.mannlib.vitro.webapp.search.VitroSearchTermNames;
 
 public class IndividualsViaVClassOptions implements FieldOptions {
+    private static final Log log = LogFactory.getLog(IndividualsViaVClassOptions.class);
 
     public static final String LEFT_BLANK = "";
+
     protected List<String> vclassURIs;    
     protected String defaultOptionLabel;    
+    protected int maxOptions = 0;
 
     public IndividualsViaVClassOptions(String ... vclassURIs) throws Exception {
         super();
@@ -38,6 +46,18 @@ public class IndividualsViaVClassOptions implements FieldOptions {
         this.defaultOptionLabel = label;
         return this;
     }
+
+    /**
+     * If the classes have more individuals than this, don't load them all. 
+     * Instead, the list holds the first of them by name, from the search 
+     * index, and the current value. Set this on a form that also offers a 
+     * type-ahead, which uses getSearchIndexOptions() to find the others. 
+     * By default there is no limit.
+     */
+    public FieldOptions setMaxOptions(int maxOptions){
+        this.maxOptions = maxOptions;
+        return this;
+    }
     
     @Override
     public Map<String, String> getOptions(
@@ -45,6 +65,11 @@ public class IndividualsViaVClassOptions implements FieldOptions {
             String fieldName, 
             WebappDaoFactory wDaoFact) throws Exception {              
         
+        Map<String, String> firstPage = getFirstPageIfTooMany(editConfig, fieldName, wDaoFact);
+        if (firstPage != null) {
+            return firstPage;
+        }
+
         Map<String, Individual> individualMap = new HashMap<String, Individual>();
 
         for( String vclassURI : this.vclassURIs){
@@ -70,11 +95,85 @@ public class IndividualsViaVClassOptions implements FieldOptions {
                     optionsMap.put(ind.getURI(), ind.getName().trim());
                 }
             }
+            addCurrentValue(optionsMap, editConfig, wDaoFact);
         }
         return optionsMap;
     }
     
     
+    /**
+     * The individuals of these classes in the search index, found by the 
+     * same type field that getIndividualsForClass() uses.
+     */
+    public IndividualsViaSearchIndexOptions getSearchIndexOptions() throws Exception {
+        return new IndividualsViaSearchIndexOptions(
+                vclassURIs.toArray(new String[vclassURIs.size()]))
+                .setTypeField(getSearchTypeField());
+    }
+
+    /**
+     * The search field that holds the types of the individuals that belong 
+     * in the list.
+     */
+    protected String getSearchTypeField() {
+        return VitroSearchTermNames.RDFTYPE;
+    }
+
+    /**
+     * If there is a limit, and the search index says there are more 
+     * individuals than that, get the first of them from the index, with the 
+     * current value. Otherwise, return null.
+     */
+    protected Map<String, String> getFirstPageIfTooMany(
+            EditConfigurationVTwo editConfig, String fieldName,
+            WebappDaoFactory wDaoFact) throws Exception {
+        if (maxOptions <= 0) {
+            return null;
+        }
+        IndividualsViaSearchIndexOptions fromIndex = getSearchIndexOptions();
+        long count = countInSearchIndex(fromIndex);
+        if (count <= maxOptions) {
+            return null;
+        }
+        log.debug("Found " + count + " individuals for " + vclassURIs
+                + "; listing only the first " + maxOptions + " by name.");
+        fromIndex.setDefaultOptionLabel(defaultOptionLabel).setPageSize(maxOptions);
+        Map<String, String> optionsMap = new LinkedHashMap<String, String>(
+                fromIndex.getOptions(editConfig, fieldName, wDaoFact));
+        addCurrentValue(optionsMap, editConfig, wDaoFact);
+        return optionsMap;
+    }
+
+    /**
+     * The count from the search index, or -1 if the index can't be reached.
+     */
+    private long countInSearchIndex(IndividualsViaSearchIndexOptions fromIndex) {
+        try {
+            return fromIndex.countIndividuals();
+        } catch (Exception e) {
+            log.debug("Failed to count individuals in the search index", e);
+            return -1;
+        }
+    }
+
+    /**
+     * When editing a statement, its object must be in the list, or the form 
+     * would silently change it.
+     */
+    protected void addCurrentValue(Map<String, String> optionsMap, 
+            EditConfigurationVTwo editConfig, WebappDaoFactory wDaoFact) {
+        if (editConfig == null || !editConfig.isObjectPropertyUpdate()) {
+            return;
+        }
+        String objectUri = editConfig.getObject();
+        if (optionsMap.containsKey(objectUri)) {
+            return;
+        }
+        Individual ind = wDaoFact.getIndividualDao().getIndividualByURI(objectUri);
+        String name = (ind == null || ind.getName() == null) ? objectUri : ind.getName().trim();
+        optionsMap.put(objectUri, name);
+    }
+
     private Map<? extends String, ? extends String> notFoundMsg() {
         String msg = "No individuals found for "+ (vclassURIs.size() > 1?"types":"type");
         for( String uri : vclassURIs ){
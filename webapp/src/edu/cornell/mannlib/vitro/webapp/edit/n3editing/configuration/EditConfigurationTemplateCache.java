@@ -0,0 +1,150 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.edit.n3editing.configuration;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.lang.ObjectUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import edu.cornell.mannlib.vitro.webapp.controller.VitroRequest;
+import edu.cornell.mannlib.vitro.webapp.dao.jena.PropertyMetadataCache;
+import edu.cornell.mannlib.vitro.webapp.edit.n3editing.VTwo.EditConfigurationUtils;
+
+/**
+ * Holds the parts of edit configurations that don't depend on the subject or
+ * object of the edit, so a generator need not build them, or run the TBox and
+ * display model queries behind them, each time a form is opened.
+ *
+ * Entries are keyed by the generator class, the predicate, and the domain and
+ * range that qualify it. What is stored is up to the generator, but it must be
+ * immutable, since it is shared between requests.
+ *
+ * The entries are built from the TBox and the display model, so they are kept
+ * in a Generation that is discarded when those models change. The
+ * PropertyMetadataCache already watches for those changes, so a Generation
+ * lasts as long as the current PropertyMetadataCache.Snapshot. If there is no
+ * PropertyMetadataCache, nothing is cached.
+ *
+ * Get the Generation before building an entry, and put the entry into that
+ * same Generation. If the models change while the entry is being built, it
+ * goes into a Generation that will not be used again.
+ */
+public class EditConfigurationTemplateCache {
+	private static final Log log = LogFactory
+			.getLog(EditConfigurationTemplateCache.class);
+
+	private static final int MAX_ENTRIES = 1000;
+
+	/** Used when there is no PropertyMetadataCache. Holds nothing. */
+	private static final Generation NO_CACHING = new Generation(null) {
+		@Override
+		public void put(Key key, Object value) {
+			// Nothing is cached.
+		}
+	};
+
+	private static Generation current = NO_CACHING;
+
+	public static synchronized Generation getGeneration() {
+		PropertyMetadataCache.Snapshot snapshot = PropertyMetadataCache
+				.getCurrentSnapshot();
+		if (snapshot == null) {
+			return NO_CACHING;
+		}
+		if (current.snapshot != snapshot) {
+			log.debug("Starting a new generation of edit configuration templates");
+			current = new Generation(snapshot);
+		}
+		return current;
+	}
+
+	/**
+	 * The entries that were built from one version of the TBox and display
+	 * model.
+	 */
+	public static class Generation {
+		private final PropertyMetadataCache.Snapshot snapshot;
+
+		private final Map<Key, Object> entries = new LinkedHashMap<Key, Object>(
+				16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Object> eldest) {
+				return size() > MAX_ENTRIES;
+			}
+		};
+
+		private Generation(PropertyMetadataCache.Snapshot snapshot) {
+			this.snapshot = snapshot;
+		}
+
+		/** The entry for this key, or null if there is none of this type. */
+		public synchronized <T> T get(Key key, Class<T> type) {
+			Object value = entries.get(key);
+			return type.isInstance(value) ? type.cast(value) : null;
+		}
+
+		public synchronized void put(Key key, Object value) {
+			entries.put(key, value);
+		}
+
+		@Override
+		public synchronized String toString() {
+			return "EditConfigurationTemplateCache.Generation[" + snapshot
+					+ ", entries=" + entries.size() + "]";
+		}
+	}
+
+	/**
+	 * Generator class, predicate, domain and range.
+	 */
+	public static final class Key {
+		public static Key forRequest(Class<?> generatorClass, VitroRequest vreq) {
+			return new Key(generatorClass,
+					EditConfigurationUtils.getPredicateUri(vreq),
+					EditConfigurationUtils.getDomainUri(vreq),
+					EditConfigurationUtils.getRangeUri(vreq));
+		}
+
+		private final String generatorClassName;
+		private final String predicateUri;
+		private final String domainUri;
+		private final String rangeUri;
+
+		public Key(Class<?> generatorClass, String predicateUri,
+				String domainUri, String rangeUri) {
+			this.generatorClassName = generatorClass.getName();
+			this.predicateUri = predicateUri;
+			this.domainUri = domainUri;
+			this.rangeUri = rangeUri;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key that = (Key) obj;
+			return generatorClassName.equals(that.generatorClassName)
+					&& ObjectUtils.equals(predicateUri, that.predicateUri)
+					&& ObjectUtils.equals(domainUri, that.domainUri)
+					&& ObjectUtils.equals(rangeUri, that.rangeUri);
+		}
+
+		@Override
+		public int hashCode() {
+			return generatorClassName.hashCode()
+					^ ObjectUtils.hashCode(predicateUri)
+					^ (31 * ObjectUtils.hashCode(domainUri))
+					^ (17 * ObjectUtils.hashCode(rangeUri));
+		}
+
+		@Override
+		public String toString() {
+			return "Key[" + generatorClassName + ", predicate=" + predicateUri
+					+ ", domain=" + domainUri + ", range=" + rangeUri + "]";
+		}
+	}
+}
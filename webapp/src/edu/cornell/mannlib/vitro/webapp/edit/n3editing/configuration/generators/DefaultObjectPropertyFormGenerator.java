@@ -6,9 +6,12 @@ import static edu.cornell.mannlib.vitro.webapp.modelaccess.ModelNames.DISPLAY;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.servlet.http.HttpSession;
 
@@ -25,12 +28,15 @@ import edu.cornell.mannlib.vitro.webapp.beans.VClass;
 import edu.cornell.mannlib.vitro.webapp.controller.VitroRequest;
 import edu.cornell.mannlib.vitro.webapp.dao.DisplayVocabulary;
 import edu.cornell.mannlib.vitro.webapp.dao.VitroVocabulary;
+import edu.cornell.mannlib.vitro.webapp.dao.VClassDao;
 import edu.cornell.mannlib.vitro.webapp.dao.WebappDaoFactory;
 import edu.cornell.mannlib.vitro.webapp.dao.vclassgroup.ProhibitedFromSearch;
+import edu.cornell.mannlib.vitro.webapp.edit.n3editing.VTwo.EditConfigurationTemplate;
 import edu.cornell.mannlib.vitro.webapp.edit.n3editing.VTwo.EditConfigurationUtils;
 import edu.cornell.mannlib.vitro.webapp.edit.n3editing.VTwo.EditConfigurationVTwo;
 import edu.cornell.mannlib.vitro.webapp.edit.n3editing.VTwo.fields.FieldVTwo;
 import edu.cornell.mannlib.vitro.webapp.edit.n3editing.VTwo.fields.IndividualsViaObjectPropetyOptions;
+import edu.cornell.mannlib.vitro.webapp.edit.n3editing.configuration.EditConfigurationTemplateCache;
 import edu.cornell.mannlib.vitro.webapp.edit.n3editing.configuration.validators.AntiXssValidation;
 import edu.cornell.mannlib.vitro.webapp.i18n.I18n;
 import edu.cornell.mannlib.vitro.webapp.modelaccess.ModelAccess;
@@ -67,6 +73,12 @@ public class DefaultObjectPropertyFormGenerator implements EditConfigurationGene
 	protected long maxNonACRangeIndividualCount = 300;
 	protected String customErrorMessages = null;
 	
+	/** The range types for this request, so we only look for them once. */
+	private List<VClass> rangeTypes = null;
+	
+	/** The shared parts of the form, for this predicate, domain and range. */
+	private FormTemplate formTemplate = null;
+	
 	private static HashMap<String,String> defaultsForXSDtypes ;
 	  static {
 		defaultsForXSDtypes = new HashMap<String,String>();
@@ -79,14 +91,16 @@ public class DefaultObjectPropertyFormGenerator implements EditConfigurationGene
     public EditConfigurationVTwo getEditConfiguration(VitroRequest vreq,
             HttpSession session) throws Exception {
 
-    	if(!EditConfigurationUtils.isObjectProperty(EditConfigurationUtils.getPredicateUri(vreq), vreq)) {    	    	
+    	formTemplate = getFormTemplate(vreq, session);
+    	if(!formTemplate.objectProperty) {    	    	
     	    throw new Exception("DefaultObjectPropertyFormGenerator does not handle data properties.");
     	}
     	
     	//Custom error can also be represented as an exception above, but in this case
     	//we would like the page to enable the user to go back to the profile page
     	
-    	customErrorMessages = getCustomErrorMessages(vreq);
+    	customErrorMessages = formTemplate.rangeClassMissing ? 
+    			I18n.text(vreq,"the_range_class_does_not_exist") : null;
     	if(customErrorMessages != null) {
     		return this.getCustomErrorEditConfiguration(vreq, session);
     	}
@@ -107,63 +121,124 @@ public class DefaultObjectPropertyFormGenerator implements EditConfigurationGene
     	//if(DefaultDeleteGenerator.isDelete( vreq,session)){
     	//  return (new DefaultDeleteGenerator()).getEditConfiguration(vreq,session);
     	
-    	return getDefaultObjectEditConfiguration(vreq, session);
+    	return getDefaultObjectEditConfiguration(vreq, session, formTemplate);
     }
 	
-    private String getCustomErrorMessages(VitroRequest vreq) {
-		String errorMessages = null;
-    	String rangeUri = vreq.getParameter("rangeUri");
-		VClass rangeVClass = null;
-		if(rangeUri != null && !rangeUri.isEmpty()) {
-	        WebappDaoFactory ctxDaoFact = vreq.getLanguageNeutralWebappDaoFactory();
-   		    rangeVClass = ctxDaoFact.getVClassDao().getVClassByURI(rangeUri);
-   		    if(rangeVClass == null) {
-   		    	errorMessages = I18n.text(vreq,"the_range_class_does_not_exist");
-   		    }
-		}
-		
-		return errorMessages;
-	}
-
-	protected List<VClass> getRangeTypes(VitroRequest vreq) {
-        // This first part needs a WebappDaoFactory with no filtering/RDFService
+    /**
+     * The parts of the configuration that depend only on the predicate, domain
+     * and range are built once and shared, until the TBox or display model
+     * changes.
+     */
+    private FormTemplate getFormTemplate(VitroRequest vreq, HttpSession session) {
+    	EditConfigurationTemplateCache.Key key = EditConfigurationTemplateCache.Key.forRequest(getClass(), vreq);
+    	EditConfigurationTemplateCache.Generation generation = EditConfigurationTemplateCache.getGeneration();
+    	FormTemplate formTemplate = generation.get(key, FormTemplate.class);
+    	if (formTemplate == null) {
+    		formTemplate = buildFormTemplate(vreq, session);
+    		generation.put(key, formTemplate);
+    	}
+    	return formTemplate;
+    }
+    
+    private FormTemplate buildFormTemplate(VitroRequest vreq, HttpSession session) {
+    	EditConfigurationVTwo prototype = new EditConfigurationVTwo();
+    	prototype.setUrlPatternToReturnTo("/individual");
+    	prototype.setVarNameForSubject("subject");
+    	prototype.setVarNameForPredicate("predicate");
+    	prototype.setVarNameForObject("objectVar");
+    	prototype.setN3Required(this.generateN3Required(vreq));
+    	prototype.setN3Optional(this.generateN3Optional());
+    	prototype.setNewResources(new HashMap<String, String>());
+    	this.setUrisAndLiteralsOnForm(prototype, vreq);
+    	prototype.setFilesOnForm(new ArrayList<String>());
+    	this.setSparqlQueries(prototype);
+    	processProhibitedFromSearch(vreq, session, prototype);
+    	prototype.addValidator(new AntiXssValidation());
+    	
+    	boolean objectProperty = EditConfigurationUtils.isObjectProperty(EditConfigurationUtils.getPredicateUri(vreq), vreq);
+    	String rangeUri = EditConfigurationUtils.getRangeUri(vreq);
+    	List<VClass> typesOfRangeClass = null;
+    	boolean rangeClassMissing = false;
+    	if (rangeUri != null && !rangeUri.isEmpty()) {
+    		typesOfRangeClass = getTypesOfRangeClass(vreq, rangeUri);
+    		rangeClassMissing = (typesOfRangeClass == null);
+    	}
+    	return new FormTemplate(new EditConfigurationTemplate(prototype), objectProperty, rangeClassMissing, typesOfRangeClass);
+    }
+    
+    /**
+     * The range class, or its components if it is a union, or null if there is
+     * no such class.
+     */
+    private List<VClass> getTypesOfRangeClass(VitroRequest vreq, String rangeUri) {
+        // This needs a WebappDaoFactory with no filtering/RDFService
         // funny business because it needs to be able to retrieve anonymous union
         // classes by their "pseudo-bnode URIs".
         // Someday we'll need to figure out a different way of doing this.
         //WebappDaoFactory ctxDaoFact = ModelAccess.on(
         //        vreq.getSession().getServletContext()).getWebappDaoFactory();
         WebappDaoFactory ctxDaoFact = vreq.getLanguageNeutralWebappDaoFactory();
-
+        VClass rangeVClass = ctxDaoFact.getVClassDao().getVClassByURI(rangeUri);
+        if (rangeVClass == null) {
+        	return null;
+        }
         List<VClass> types = new ArrayList<VClass>();
+        if (!rangeVClass.isUnion()) {
+        	types.add(rangeVClass);    
+        } else {
+        	for (VClass unionComponent : rangeVClass.getUnionComponents()) {
+        		types.add(unionComponent);
+        	}
+        }
+        return types;
+    }
+    
+    private List<VClass> rangeTypes(VitroRequest vreq) {
+    	if (rangeTypes == null) {
+    		rangeTypes = getRangeTypes(vreq);
+    	}
+    	return rangeTypes;
+    }
+
+	/**
+	 * The range class (or its union components), or the ranges of the property
+	 * for each type of the subject. Both are kept in the FormTemplate, so the
+	 * TBox is only asked once for each range or subject type.
+	 * 
+	 * The template is shared by every user, so the ranges for a subject type
+	 * are found with the unfiltered, language-neutral factory, and kept as
+	 * URIs. Each request looks up the classes with its own factory, and skips
+	 * any that it can't see.
+	 */
+	protected List<VClass> getRangeTypes(VitroRequest vreq) {
+		FormTemplate template = (formTemplate == null) ? getFormTemplate(vreq, vreq.getSession()) : formTemplate;
+		
     	Individual subject = EditConfigurationUtils.getSubjectIndividual(vreq);
    		String predicateUri = EditConfigurationUtils.getPredicateUri(vreq);
    		String rangeUri = EditConfigurationUtils.getRangeUri(vreq);
    		if (rangeUri != null && !rangeUri.isEmpty()) {
-   		    VClass rangeVClass = ctxDaoFact.getVClassDao().getVClassByURI(rangeUri);
-   		    if(rangeVClass != null) {
-	   		    if (!rangeVClass.isUnion()) {
-	   		        types.add(rangeVClass);    
-	   		    } else {
-	   		        for (VClass unionComponent : rangeVClass.getUnionComponents()) {
-	   		            types.add(unionComponent);
-	   		        }
-	   		    }
-	   		    return types;
+   		    if(template.typesOfRangeClass != null) {
+   		    	return new ArrayList<VClass>(template.typesOfRangeClass);
    		    } else {
    		    	log.error("Range VClass does not exist for " + rangeUri);
    		    }
    		}
-   		WebappDaoFactory wDaoFact = vreq.getWebappDaoFactory();
+   		VClassDao vcDao = vreq.getWebappDaoFactory().getVClassDao();
+   		WebappDaoFactory unfilteredDaoFact = vreq.getLanguageNeutralWebappDaoFactory();
+        List<VClass> types = new ArrayList<VClass>();
 		//Get all vclasses applicable to subject
    		if(subject != null) {
 			List<VClass> vClasses = subject.getVClasses();
 			HashMap<String, VClass> typesHash = new HashMap<String, VClass>();
 			for(VClass vclass: vClasses) {
-				 List<VClass> rangeVclasses = wDaoFact.getVClassDao().getVClassesForProperty(vclass.getURI(),predicateUri);
-				 if(rangeVclasses !=  null) {
-					 for(VClass range: rangeVclasses) {
-						 //a hash will keep a unique list of types and so prevent duplicates
-						 typesHash.put(range.getURI(), range);
+				 List<String> rangeUris = template.getRangesForSubjectType(vclass.getURI(), predicateUri, unfilteredDaoFact);
+				 for(String rangeTypeUri: rangeUris) {
+					 //a hash will keep a unique list of types and so prevent duplicates
+					 if (!typesHash.containsKey(rangeTypeUri)) {
+						 VClass range = vcDao.getVClassByURI(rangeTypeUri);
+						 if (range != null) {
+							 typesHash.put(rangeTypeUri, range);
+						 }
 					 }
 				 }
 			}
@@ -175,7 +250,7 @@ public class DefaultObjectPropertyFormGenerator implements EditConfigurationGene
 	}	
 	
     private boolean tooManyRangeOptions(VitroRequest vreq, HttpSession session ) throws SearchEngineException {
-    	List<VClass> rangeTypes = getRangeTypes(vreq);
+    	List<VClass> rangeTypes = rangeTypes(vreq);
 		SearchEngine searchEngine = ApplicationUtils.instance().getSearchEngine();
     	
     	List<String> types = new ArrayList<String>();
@@ -212,34 +287,19 @@ public class DefaultObjectPropertyFormGenerator implements EditConfigurationGene
 	}
 
     
-	private EditConfigurationVTwo getDefaultObjectEditConfiguration(VitroRequest vreq, HttpSession session) throws Exception {
-    	EditConfigurationVTwo editConfiguration = new EditConfigurationVTwo();    	
+	private EditConfigurationVTwo getDefaultObjectEditConfiguration(VitroRequest vreq, HttpSession session, FormTemplate formTemplate) throws Exception {
+		//N3, new resources, uris and literals on form, sparql queries, 
+		//prohibited from search and validators come from the shared template
+    	EditConfigurationVTwo editConfiguration = formTemplate.template.newConfiguration();    	
     	
     	//process subject, predicate, object parameters
     	this.initProcessParameters(vreq, session, editConfiguration);
     	
-      	//Assumes this is a simple case of subject predicate var
-    	editConfiguration.setN3Required(this.generateN3Required(vreq));
-    	    	
-    	//n3 optional
-    	editConfiguration.setN3Optional(this.generateN3Optional());
-    	
-    	//Todo: what do new resources depend on here?
-    	//In original form, these variables start off empty
-    	editConfiguration.setNewResources(new HashMap<String, String>());
     	//In scope
     	this.setUrisAndLiteralsInScope(editConfiguration);
     	
-    	//on Form
-    	this.setUrisAndLiteralsOnForm(editConfiguration, vreq);
-    	
-    	editConfiguration.setFilesOnForm(new ArrayList<String>());
-    	
-    	//Sparql queries
-    	this.setSparqlQueries(editConfiguration);
-    	
     	//set fields
-    	setFields(editConfiguration, vreq, EditConfigurationUtils.getPredicateUri(vreq), getRangeTypes(vreq));
+    	setFields(editConfiguration, vreq, EditConfigurationUtils.getPredicateUri(vreq), rangeTypes(vreq));
     	
     //	No need to put in session here b/c put in session within edit request dispatch controller instead
     	//placing in session depends on having edit key which is handled in edit request dispatch controller
@@ -247,14 +307,9 @@ public class DefaultObjectPropertyFormGenerator implements EditConfigurationGene
 
     	prepareForUpdate(vreq, session, editConfiguration);
     	
-    	//After the main processing is done, check if select from existing process
-    	processProhibitedFromSearch(vreq, session, editConfiguration);
-    	
     	//Form title and submit label moved to template
     	setTemplate(editConfiguration, vreq);
     	
-    	editConfiguration.addValidator(new AntiXssValidation());
-    	
     	//Set edit key
     	setEditKey(editConfiguration, vreq);
     	    	       	    	
@@ -333,7 +388,7 @@ public class DefaultObjectPropertyFormGenerator implements EditConfigurationGene
     	//this needs to be set for the editing to be triggered properly, otherwise the 'prepare' method
     	//pretends this is a data property editing statement and throws an error
     	//"object"       : [ "objectVar" ,  "${objectUriJson}" , "URI"],
-    	if(EditConfigurationUtils.isObjectProperty(predicateUri, vreq)) {
+    	if(formTemplate.objectProperty) {
     		log.debug("This is an object property: " + predicateUri);
     		this.initObjectParameters(vreq);
     		this.processObjectPropForm(vreq, editConfiguration);
@@ -457,7 +512,7 @@ public class DefaultObjectPropertyFormGenerator implements EditConfigurationGene
     	        predicateUri,
     	        rangeTypes,
     	        objectUri,
-				vreq ));
+				vreq ).setMaxOptions((int) maxNonACRangeIndividualCount));
     	}else{
     		field.setOptions(null);
     	}
@@ -472,7 +527,7 @@ public class DefaultObjectPropertyFormGenerator implements EditConfigurationGene
     	//Here, retrieve model from 
 		OntModel model = ModelAccess.on(session.getServletContext()).getOntModel();
     	//if object property
-    	if(EditConfigurationUtils.isObjectProperty(EditConfigurationUtils.getPredicateUri(vreq), vreq)){
+    	if(formTemplate.objectProperty){
 	    	Individual objectIndividual = EditConfigurationUtils.getObjectIndividual(vreq);
 	    	if(objectIndividual != null) {
 	    		//update existing object
@@ -530,7 +585,7 @@ public class DefaultObjectPropertyFormGenerator implements EditConfigurationGene
 		formSpecificData.put("editMode", getEditMode(vreq).toString().toLowerCase());
 		
 		//We also need the type of the object itself
-		List<VClass> types = getRangeTypes(vreq);
+		List<VClass> types = rangeTypes(vreq);
         //if types array contains only owl:Thing, the search will not return any results
         //In this case, set an empty array
         if(types.size() == 1 && types.get(0).getURI().equals(VitroVocabulary.OWL_THING) ){
@@ -619,6 +674,46 @@ public class DefaultObjectPropertyFormGenerator implements EditConfigurationGene
 			"<" + subject + "> <" + predicate + "> ?objectVar .} ";
 		return query;
 	}
+	
+	/**
+	 * What we keep between requests: the same for every subject and object.
+	 * Everything is immutable, except the ranges by subject type, which only
+	 * grow, and may be read and written by several requests at once.
+	 */
+	private static class FormTemplate {
+		final EditConfigurationTemplate template;
+		final boolean objectProperty;
+		final boolean rangeClassMissing;
+		final List<VClass> typesOfRangeClass;
+		
+		private final ConcurrentMap<String, List<String>> rangesBySubjectType = new ConcurrentHashMap<String, List<String>>();
 		
+		FormTemplate(EditConfigurationTemplate template, boolean objectProperty, boolean rangeClassMissing, List<VClass> typesOfRangeClass) {
+			this.template = template;
+			this.objectProperty = objectProperty;
+			this.rangeClassMissing = rangeClassMissing;
+			this.typesOfRangeClass = (typesOfRangeClass == null) ? null : Collections.unmodifiableList(typesOfRangeClass);
+		}
+		
+		/**
+		 * The URIs of the ranges, found with a factory that is not filtered by
+		 * policy or language, so they are the same for every request.
+		 */
+		List<String> getRangesForSubjectType(String subjectTypeUri, String predicateUri, WebappDaoFactory unfilteredDaoFact) {
+			List<String> ranges = rangesBySubjectType.get(subjectTypeUri);
+			if (ranges == null) {
+				List<VClass> found = unfilteredDaoFact.getVClassDao().getVClassesForProperty(subjectTypeUri, predicateUri);
+				List<String> uris = new ArrayList<String>();
+				if (found != null) {
+					for (VClass range : found) {
+						uris.add(range.getURI());
+					}
+				}
+				ranges = Collections.unmodifiableList(uris);
+				rangesBySubjectType.put(subjectTypeUri, ranges);
+			}
+			return ranges;
+		}
+	}
 
 }
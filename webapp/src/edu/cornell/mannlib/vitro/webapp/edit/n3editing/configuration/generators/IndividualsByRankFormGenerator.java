@@ -48,7 +48,7 @@ public class IndividualsByRankFormGenerator extends DefaultObjectPropertyFormGen
     	        super.getPredicateUri(), 
     	        super.getObjectUri(),
     	        vreq.getWebappDaoFactory(), 
-    	        vreq.getJenaOntModel()));
+    	        vreq.getJenaOntModel()).setMaxOptions((int) maxNonACRangeIndividualCount));
     	}else{
     		field.setOptions(null);
     	}
@@ -424,4 +424,16 @@ public class FileStorageImpl {
 
 		return new FileInputStream(file);
 	}
+
+	/**
+	 * Find the file that holds the contents for this ID and filename, so it
+	 * can be served directly from the disk.
+	 * 
+	 * @return the file, or null if no such file exists.
+	 */
+	public File getLocalFile(String id, String filename) {
+		File file = FileStorageHelper.getFullPath(this.rootDir, id, filename,
+				this.namespacesMap);
+		return file.isFile() ? file : null;
+	}
 }
@@ -17,11 +17,13 @@ import edu.cornell.mannlib.vitro.webapp.modules.Application;
 import edu.cornell.mannlib.vitro.webapp.modules.ComponentStartupStatus;
 import edu.cornell.mannlib.vitro.webapp.modules.fileStorage.FileAlreadyExistsException;
 import edu.cornell.mannlib.vitro.webapp.modules.fileStorage.FileStorage;
+import edu.cornell.mannlib.vitro.webapp.modules.fileStorage.LocalFileStorage;
 
 /**
  * A thin wrapper around the existing FileStorageImpl. Handles the setup.
  */
-public class FileStorageImplWrapper implements FileStorage {
+public class FileStorageImplWrapper implements FileStorage,
+		LocalFileStorage {
 	public static final String PROPERTY_DEFAULT_NAMESPACE = "Vitro.defaultNamespace";
 	public static final String FILE_STORAGE_SUBDIRECTORY = "uploads";
 
@@ -101,6 +103,11 @@ public class FileStorageImplWrapper implements FileStorage {
 		return fs.getInputStream(id, filename);
 	}
 
+	@Override
+	public File getLocalFile(String id, String filename) throws IOException {
+		return fs.getLocalFile(id, filename);
+	}
+
 	@Override
 	public boolean deleteFile(String id) throws IOException {
 		return fs.deleteFile(id);
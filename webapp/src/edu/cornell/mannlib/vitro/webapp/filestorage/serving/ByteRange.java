@@ -0,0 +1,91 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.filestorage.serving;
+
+/**
+ * A single range of bytes from an HTTP Range header, resolved against the
+ * length of the file.
+ *
+ * Only a single range is supported. A request for several ranges is treated
+ * as though there were no Range header, and the whole file is served, which
+ * the HTTP spec permits.
+ */
+public class ByteRange {
+	/** The requested range doesn't overlap the file. */
+	public static final ByteRange UNSATISFIABLE = new ByteRange(-1L, -1L);
+
+	private static final String BYTES_UNIT = "bytes=";
+
+	/**
+	 * Parse the Range header.
+	 *
+	 * @return the range, or null if the whole file should be served, or
+	 *         UNSATISFIABLE if the range lies beyond the end of the file.
+	 */
+	public static ByteRange parse(String header, long length) {
+		if (header == null || !header.startsWith(BYTES_UNIT)) {
+			return null;
+		}
+		String spec = header.substring(BYTES_UNIT.length()).trim();
+		if (spec.contains(",")) {
+			return null;
+		}
+
+		int dash = spec.indexOf('-');
+		if (dash == -1) {
+			return null;
+		}
+
+		try {
+			String first = spec.substring(0, dash).trim();
+			String last = spec.substring(dash + 1).trim();
+			if (first.isEmpty()) {
+				// A suffix: the last N bytes.
+				long suffix = Long.parseLong(last);
+				if (suffix <= 0 || length == 0) {
+					return UNSATISFIABLE;
+				}
+				return new ByteRange(Math.max(0, length - suffix), length - 1);
+			}
+
+			long start = Long.parseLong(first);
+			long end = last.isEmpty() ? length - 1 : Long.parseLong(last);
+			if (end < start) {
+				return null;
+			}
+			if (start >= length) {
+				return UNSATISFIABLE;
+			}
+			return new ByteRange(start, Math.min(end, length - 1));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	private final long start;
+	private final long end;
+
+	private ByteRange(long start, long end) {
+		this.start = start;
+		this.end = end;
+	}
+
+	/** The first byte in the range. */
+	public long getStart() {
+		return start;
+	}
+
+	/** The last byte in the range (inclusive). */
+	public long getEnd() {
+		return end;
+	}
+
+	public long getLength() {
+		return end - start + 1;
+	}
+
+	@Override
+	public String toString() {
+		return "ByteRange[" + start + "-" + end + "]";
+	}
+}
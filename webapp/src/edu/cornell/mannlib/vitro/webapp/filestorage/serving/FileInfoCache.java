@@ -0,0 +1,71 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.filestorage.serving;
+
+import java.util.Arrays;
+
+import edu.cornell.mannlib.vitro.webapp.filestorage.model.FileInfo;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeListener;
+import edu.cornell.mannlib.vitro.webapp.utils.cache.DependencyCache;
+import edu.cornell.mannlib.vitro.webapp.utils.cache.SerializedTriples;
+
+/**
+ * Remembers the FileInfo for each alias URL that the FileServingServlet has
+ * resolved, so the next request for the same URL needs no lookups in the
+ * model. The servlet decides what goes into the key, besides the alias URL.
+ *
+ * Each FileInfo depends on the URIs of the file surrogate and the bytestream.
+ * It is discarded when a statement that mentions either one is added or
+ * removed, and it is not stored if one of them changed during the lookup.
+ */
+public class FileInfoCache implements ChangeListener {
+	private final DependencyCache<String, FileInfo> cache;
+
+	public FileInfoCache(int maxEntries) {
+		this.cache = new DependencyCache<>("FileInfoCache", maxEntries);
+	}
+
+	public FileInfo get(String key) {
+		return cache.get(key);
+	}
+
+	/** Get this before looking up the FileInfo, and pass it to put(). */
+	public long getTicket() {
+		return cache.getTicket();
+	}
+
+	public void put(String key, FileInfo fileInfo, long ticket) {
+		cache.put(key, fileInfo, 1,
+				Arrays.asList(fileInfo.getUri(), fileInfo.getBytestreamUri()),
+				ticket);
+	}
+
+	public int size() {
+		return cache.size();
+	}
+
+	public DependencyCache.Statistics getStatistics() {
+		return cache.getStatistics();
+	}
+
+	private void noteChange(String serializedTriple) {
+		for (String uri : SerializedTriples.uris(serializedTriple)) {
+			cache.changed(uri);
+		}
+	}
+
+	@Override
+	public void addedStatement(String serializedTriple, String graphURI) {
+		noteChange(serializedTriple);
+	}
+
+	@Override
+	public void removedStatement(String serializedTriple, String graphURI) {
+		noteChange(serializedTriple);
+	}
+
+	@Override
+	public void notifyEvent(String graphURI, Object event) {
+		// Nothing to do.
+	}
+}
@@ -2,13 +2,21 @@
 
 package edu.cornell.mannlib.vitro.webapp.filestorage.serving;
 
+import static javax.servlet.http.HttpServletResponse.SC_NOT_MODIFIED;
 import static javax.servlet.http.HttpServletResponse.SC_OK;
+import static javax.servlet.http.HttpServletResponse.SC_PARTIAL_CONTENT;
+import static javax.servlet.http.HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 
 import javax.servlet.ServletException;
 import javax.servlet.ServletOutputStream;
@@ -19,11 +27,15 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import edu.cornell.mannlib.vitro.webapp.application.ApplicationUtils;
+import edu.cornell.mannlib.vitro.webapp.beans.BaseResourceBean.RoleLevel;
 import edu.cornell.mannlib.vitro.webapp.controller.VitroHttpServlet;
 import edu.cornell.mannlib.vitro.webapp.controller.VitroRequest;
 import edu.cornell.mannlib.vitro.webapp.dao.WebappDaoFactory;
 import edu.cornell.mannlib.vitro.webapp.filestorage.model.FileInfo;
 import edu.cornell.mannlib.vitro.webapp.modules.fileStorage.FileStorage;
+import edu.cornell.mannlib.vitro.webapp.modules.fileStorage.LocalFileStorage;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.RDFServiceUtils;
 
 /**
  * <p>
@@ -44,22 +56,71 @@ import edu.cornell.mannlib.vitro.webapp.modules.fileStorage.FileStorage;
  * return a 404. If there is a break in the data structures within the model or
  * the file system, return a 500.
  * </p>
+ * <p>
+ * The FileInfo for each alias URL is cached, until the file surrogate or the
+ * bytestream changes. Files in the local file system are served with an ETag
+ * and a Last-Modified date, so conditional GETs can be answered with a 304,
+ * and a single byte range may be requested. The bytes are sent with
+ * FileChannel.transferTo(), or by Tomcat's sendfile if it is available.
+ * </p>
  */
 public class FileServingServlet extends VitroHttpServlet {
 	/** If we can't locate the requested image, use this one instead. */
 	private static final String PATH_MISSING_LINK_IMAGE = "/images/missingLink.png";
 
+	/**
+	 * How long may a browser use the file before asking if it has changed?
+	 * Files may be restricted to some users, so shared caches must not keep
+	 * them.
+	 */
+	private static final String CACHE_CONTROL = "private, max-age=3600";
+
+	/** How many alias URLs should we remember? */
+	private static final int MAX_CACHED_FILE_INFOS = 10000;
+
+	private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+	private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+	private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+	private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
 	private static final Log log = LogFactory.getLog(FileServingServlet.class);
 
 	private FileStorage fileStorage;
 
+	private FileInfoCache fileInfoCache;
+
 	/**
-	 * Get a reference to the File Storage system.
+	 * Get a reference to the File Storage system, and start listening for
+	 * changes to the files.
 	 */
 	@Override
 	public void init() throws ServletException {
 		super.init();
 		fileStorage = ApplicationUtils.instance().getFileStorage();
+
+		FileInfoCache cache = new FileInfoCache(MAX_CACHED_FILE_INFOS);
+		try {
+			RDFServiceUtils.getRDFServiceFactory(getServletContext())
+					.registerListener(cache);
+			fileInfoCache = cache;
+		} catch (RDFServiceException e) {
+			log.warn("Failed to register the FileInfoCache. "
+					+ "File info will be read from the model on each request.",
+					e);
+		}
+	}
+
+	@Override
+	public void destroy() {
+		if (fileInfoCache != null) {
+			try {
+				RDFServiceUtils.getRDFServiceFactory(getServletContext())
+						.unregisterListener(fileInfoCache);
+			} catch (RDFServiceException e) {
+				log.warn("Failed to unregister the FileInfoCache.", e);
+			}
+		}
+		super.destroy();
 	}
 
 	@Override
@@ -72,19 +133,26 @@ public class FileServingServlet extends VitroHttpServlet {
 		log.debug("Path is '" + path + "'");
 
 		/*
-		 * Get the mime type and an InputStream from the file. If we can't, use
-		 * the dummy image file instead.
+		 * Get the mime type and the file, or an InputStream if the file isn't
+		 * in the local file system. If we can't, use the dummy image file
+		 * instead.
 		 */
-		InputStream in;
+		File file = null;
+		InputStream in = null;
 		String mimeType = null;
 		try {
-			FileInfo fileInfo = figureFileInfo(request.getWebappDaoFactory(),
-					path);
+			FileInfo fileInfo = figureFileInfo(request, path);
 			mimeType = fileInfo.getMimeType();
 
 			String actualFilename = findAndValidateFilename(fileInfo, path);
 
-			in = openImageInputStream(fileInfo, actualFilename);
+			if (fileStorage instanceof LocalFileStorage) {
+				file = ((LocalFileStorage) fileStorage).getLocalFile(
+						fileInfo.getBytestreamUri(), actualFilename);
+			}
+			if (file == null) {
+				in = openImageInputStream(fileInfo, actualFilename);
+			}
 		} catch (FileServingException e) {
 			log.info("Failed to serve the file at '" + path + "' -- " + e);
 			in = openMissingLinkImage(request);
@@ -95,10 +163,161 @@ public class FileServingServlet extends VitroHttpServlet {
 			mimeType = "image/png";
 		}
 
-		/*
-		 * Everything is ready. Set the status and the content type, and send
-		 * the image bytes.
-		 */
+		if (file != null) {
+			serveLocalFile(request, response, file, mimeType);
+		} else {
+			serveStream(request, response, in, mimeType);
+		}
+	}
+
+	/**
+	 * Answer a conditional GET if we can. Otherwise, set the status and the
+	 * headers, and send the requested range of bytes.
+	 */
+	private void serveLocalFile(VitroRequest request,
+			HttpServletResponse response, File file, String mimeType)
+			throws IOException {
+		long length = file.length();
+		long lastModified = file.lastModified();
+		String etag = "\"" + Long.toHexString(lastModified) + "-"
+				+ Long.toHexString(length) + "\"";
+
+		response.setHeader("ETag", etag);
+		response.setDateHeader("Last-Modified", lastModified);
+		response.setHeader("Cache-Control", CACHE_CONTROL);
+		response.setHeader("Accept-Ranges", "bytes");
+
+		if (isNotModified(request, etag, lastModified)) {
+			response.setStatus(SC_NOT_MODIFIED);
+			return;
+		}
+
+		ByteRange range = null;
+		if (isRangeApplicable(request, etag, lastModified)) {
+			range = ByteRange.parse(request.getHeader("Range"), length);
+		}
+		if (range == ByteRange.UNSATISFIABLE) {
+			response.setHeader("Content-Range", "bytes */" + length);
+			response.sendError(SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+			return;
+		}
+
+		long start = 0;
+		long count = length;
+		if (range == null) {
+			response.setStatus(SC_OK);
+		} else {
+			start = range.getStart();
+			count = range.getLength();
+			response.setStatus(SC_PARTIAL_CONTENT);
+			response.setHeader("Content-Range", "bytes " + range.getStart()
+					+ "-" + range.getEnd() + "/" + length);
+		}
+
+		if (mimeType != null) {
+			response.setContentType(mimeType);
+		}
+		response.setHeader("Content-Length", String.valueOf(count));
+
+		try {
+			sendBytes(request, response, file, start, count);
+		} catch (IOException e) {
+			log.warn("Failed to serve the file", e);
+		}
+	}
+
+	/**
+	 * If-None-Match takes precedence over If-Modified-Since.
+	 */
+	private boolean isNotModified(HttpServletRequest request, String etag,
+			long lastModified) {
+		String ifNoneMatch = request.getHeader("If-None-Match");
+		if (ifNoneMatch != null) {
+			return matchesEtag(ifNoneMatch, etag);
+		}
+		long ifModifiedSince = getDateHeader(request, "If-Modified-Since");
+		return ifModifiedSince != -1
+				&& lastModified / 1000 <= ifModifiedSince / 1000;
+	}
+
+	/**
+	 * Honor the Range header only if there is no If-Range header, or if it
+	 * matches the current version of the file.
+	 */
+	private boolean isRangeApplicable(HttpServletRequest request, String etag,
+			long lastModified) {
+		String ifRange = request.getHeader("If-Range");
+		if (ifRange == null) {
+			return true;
+		}
+		if (ifRange.trim().startsWith("\"")) {
+			return ifRange.trim().equals(etag);
+		}
+		long date = getDateHeader(request, "If-Range");
+		return date != -1 && lastModified / 1000 == date / 1000;
+	}
+
+	private boolean matchesEtag(String header, String etag) {
+		for (String candidate : header.split(",")) {
+			String tag = candidate.trim();
+			if (tag.startsWith("W/")) {
+				tag = tag.substring(2);
+			}
+			if (tag.equals("*") || tag.equals(etag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private long getDateHeader(HttpServletRequest request, String name) {
+		try {
+			return request.getDateHeader(name);
+		} catch (IllegalArgumentException e) {
+			log.debug("Bad date in '" + name + "' header: "
+					+ request.getHeader(name));
+			return -1;
+		}
+	}
+
+	/**
+	 * If Tomcat can send the file itself, let it. Otherwise, transfer the
+	 * bytes from the file channel to the response.
+	 */
+	private void sendBytes(HttpServletRequest request,
+			HttpServletResponse response, File file, long start, long count)
+			throws IOException {
+		if ("GET".equals(request.getMethod())
+				&& Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+			request.setAttribute(SENDFILE_FILENAME, file.getCanonicalPath());
+			request.setAttribute(SENDFILE_START, start);
+			request.setAttribute(SENDFILE_END, start + count);
+			return;
+		}
+
+		try (FileInputStream in = new FileInputStream(file);
+				FileChannel channel = in.getChannel()) {
+			WritableByteChannel out = Channels.newChannel(response
+					.getOutputStream());
+			long position = start;
+			long remaining = count;
+			while (remaining > 0) {
+				long howMany = channel.transferTo(position, remaining, out);
+				if (howMany <= 0) {
+					break;
+				}
+				position += howMany;
+				remaining -= howMany;
+			}
+		}
+	}
+
+	/**
+	 * Set the status and the content type, and send the bytes from the
+	 * stream.
+	 */
+	private void serveStream(VitroRequest request,
+			HttpServletResponse response, InputStream in, String mimeType) {
 		response.setStatus(SC_OK);
 
 		if (mimeType != null) {
@@ -133,7 +352,32 @@ public class FileServingServlet extends VitroHttpServlet {
 		}
 	}
 
-	private FileInfo figureFileInfo(WebappDaoFactory fullWadf, String path)
+	/**
+	 * The DAOs are filtered by the user's role, so the role is part of the
+	 * cache key.
+	 */
+	private FileInfo figureFileInfo(VitroRequest request, String path)
+			throws FileServingException {
+		FileInfoCache cache = fileInfoCache;
+		String key = RoleLevel.getRoleFromLoginStatus(request) + " " + path;
+		if (cache != null) {
+			FileInfo cached = cache.get(key);
+			if (cached != null) {
+				log.debug("Cached file info is '" + cached + "'");
+				return cached;
+			}
+		}
+
+		long ticket = (cache == null) ? 0 : cache.getTicket();
+		FileInfo fileInfo = lookupFileInfo(request.getWebappDaoFactory(),
+				path);
+		if (cache != null) {
+			cache.put(key, fileInfo, ticket);
+		}
+		return fileInfo;
+	}
+
+	private FileInfo lookupFileInfo(WebappDaoFactory fullWadf, String path)
 			throws FileServingException {
 		FileInfo fileInfo = FileInfo.instanceFromAliasUrl(fullWadf, path,
 				getServletContext());
@@ -0,0 +1,23 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.modules.fileStorage;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Optional: a File Storage system that keeps its files in the local file
+ * system. Clients that can serve a local file more cheaply than a stream
+ * should check for this interface, and use getInputStream() if it is not
+ * implemented.
+ */
+public interface LocalFileStorage {
+	/**
+	 * Get the file in the local file system that holds the contents of the
+	 * file that was stored with this ID and this filename. The file must not
+	 * be modified.
+	 * 
+	 * @return The file, or <code>null</code> if there is no such file.
+	 */
+	File getLocalFile(String id, String filename) throws IOException;
+}
@@ -0,0 +1,41 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.modules.searchEngine;
+
+import java.util.Collection;
+
+/**
+ * Optional: a SearchEngine that can put off its commits. Clients should check
+ * for this interface, or call the methods of DeferredCommits, which fall back
+ * to the plain SearchEngine methods and a commit if it is not implemented.
+ */
+public interface DeferredCommitSearchEngine {
+	/**
+	 * Add documents to the search index, and commit them within this many
+	 * milliseconds. A negative value means no limit: the documents wait for an
+	 * explicit commit.
+	 */
+	void add(Collection<SearchInputDocument> docs, int commitWithinMillis)
+			throws SearchEngineException;
+
+	/**
+	 * Delete documents from the search index, by unique ID, and commit the
+	 * deletions within this many milliseconds. A negative value means no limit.
+	 */
+	void deleteById(Collection<String> ids, int commitWithinMillis)
+			throws SearchEngineException;
+
+	/**
+	 * Delete documents from the search index if they satisfy the query, and
+	 * commit the deletions within this many milliseconds. A negative value
+	 * means no limit.
+	 */
+	void deleteByQuery(String query, int commitWithinMillis)
+			throws SearchEngineException;
+
+	/**
+	 * Make all pending changes visible to the search, without waiting for them
+	 * to be written to permanent storage.
+	 */
+	void softCommit() throws SearchEngineException;
+}
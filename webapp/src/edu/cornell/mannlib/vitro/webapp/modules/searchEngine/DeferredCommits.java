@@ -0,0 +1,66 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.modules.searchEngine;
+
+import java.util.Collection;
+
+/**
+ * Use the methods of DeferredCommitSearchEngine if the SearchEngine implements
+ * them. If not, use the plain methods, and commit at once if a commit was
+ * asked for. That is sooner than necessary, but never later.
+ */
+public final class DeferredCommits {
+	public static void add(SearchEngine engine,
+			Collection<SearchInputDocument> docs, int commitWithinMillis)
+			throws SearchEngineException {
+		if (engine instanceof DeferredCommitSearchEngine) {
+			((DeferredCommitSearchEngine) engine).add(docs, commitWithinMillis);
+		} else {
+			engine.add(docs);
+			commitIfAsked(engine, commitWithinMillis);
+		}
+	}
+
+	public static void deleteById(SearchEngine engine, Collection<String> ids,
+			int commitWithinMillis) throws SearchEngineException {
+		if (engine instanceof DeferredCommitSearchEngine) {
+			((DeferredCommitSearchEngine) engine).deleteById(ids,
+					commitWithinMillis);
+		} else {
+			engine.deleteById(ids);
+			commitIfAsked(engine, commitWithinMillis);
+		}
+	}
+
+	public static void deleteByQuery(SearchEngine engine, String query,
+			int commitWithinMillis) throws SearchEngineException {
+		if (engine instanceof DeferredCommitSearchEngine) {
+			((DeferredCommitSearchEngine) engine).deleteByQuery(query,
+					commitWithinMillis);
+		} else {
+			engine.deleteByQuery(query);
+			commitIfAsked(engine, commitWithinMillis);
+		}
+	}
+
+	/** A search engine that can't make a soft commit makes a full one. */
+	public static void softCommit(SearchEngine engine)
+			throws SearchEngineException {
+		if (engine instanceof DeferredCommitSearchEngine) {
+			((DeferredCommitSearchEngine) engine).softCommit();
+		} else {
+			engine.commit();
+		}
+	}
+
+	private static void commitIfAsked(SearchEngine engine,
+			int commitWithinMillis) throws SearchEngineException {
+		if (commitWithinMillis >= 0) {
+			engine.commit(false);
+		}
+	}
+
+	private DeferredCommits() {
+		// Nothing to instantiate.
+	}
+}
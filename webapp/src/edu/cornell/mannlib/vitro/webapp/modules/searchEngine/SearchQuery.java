@@ -17,6 +17,11 @@ public interface SearchQuery {
 		ASC, DESC
 	}
 
+	/**
+	 * The cursor for the first page of results.
+	 */
+	String CURSOR_START = "*";
+
 	/**
 	 * Set the text of the query. This will be parsed using Lucene query syntax.
 	 * 
@@ -41,6 +46,20 @@ public interface SearchQuery {
 	 */
 	SearchQuery setRows(int rows);
 
+	/**
+	 * Page through the results with a cursor, instead of skipping to a start
+	 * position. Use CURSOR_START for the first page, and the next cursor from
+	 * each response for the page after it. The cost of a page doesn't grow with
+	 * its depth in the results.
+	 * 
+	 * The results must be sorted, and the start must be 0. The search engine
+	 * adds its own tie-breaker to the sort fields. Cursors are opaque: don't
+	 * try to build or parse them. The default is null: no cursor.
+	 * 
+	 * @return this query
+	 */
+	SearchQuery setCursor(String cursor);
+
 	/**
 	 * Which fields should be returned from the query?
 	 * 
@@ -110,6 +129,11 @@ public interface SearchQuery {
 	 */
 	int getRows();
 
+	/**
+	 * @return May return null, if the query doesn't use a cursor.
+	 */
+	String getCursor();
+
 	/**
 	 * @return May return an empty set, but never null.
 	 */
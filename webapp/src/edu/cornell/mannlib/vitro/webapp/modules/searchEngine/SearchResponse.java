@@ -31,4 +31,12 @@ public interface SearchResponse {
 	 */
 	List<SearchFacetField> getFacetFields();
 
+	/**
+	 * The cursor for the page after this one, if the query used a cursor.
+	 * If there are no more results, it is the same as the query's cursor.
+	 * 
+	 * May return null, if the query didn't use a cursor.
+	 */
+	String getNextCursor();
+
 }
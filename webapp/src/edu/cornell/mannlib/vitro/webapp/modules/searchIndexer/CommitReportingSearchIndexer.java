@@ -0,0 +1,28 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.modules.searchIndexer;
+
+import java.util.Date;
+
+/**
+ * Optional: a SearchIndexer that can say when it commits its changes to the
+ * search engine. The status page shows this information if the SearchIndexer
+ * implements this interface.
+ */
+public interface CommitReportingSearchIndexer {
+	/**
+	 * When does the indexer commit its changes to the search engine? A
+	 * description for people to read.
+	 * 
+	 * Still valid after shutdown().
+	 */
+	String getCommitPolicyDescription();
+
+	/**
+	 * When did the indexer last commit its changes to the search engine? May
+	 * return null, if it has not committed.
+	 * 
+	 * Still valid after shutdown().
+	 */
+	Date getLastCommit();
+}
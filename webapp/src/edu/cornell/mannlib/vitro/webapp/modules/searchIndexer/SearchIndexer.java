@@ -178,6 +178,8 @@ public interface SearchIndexer extends Application.Module {
 
 			START_REBUILD, STOP_REBUILD,
 
+			COMMIT,
+
 			SHUTDOWN_REQUESTED, SHUTDOWN_COMPLETE
 		}
 
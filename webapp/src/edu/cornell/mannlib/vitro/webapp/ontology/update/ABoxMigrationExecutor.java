@@ -0,0 +1,590 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.ontology.update;
+
+import static edu.cornell.mannlib.vitro.webapp.dao.jena.RDFServiceGraph.sparqlNode;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.NodeFactory;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.query.Dataset;
+import com.hp.hpl.jena.query.QuerySolution;
+import com.hp.hpl.jena.query.ResultSet;
+import com.hp.hpl.jena.query.ResultSetFactory;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.RDFNode;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.rdf.model.Statement;
+import com.hp.hpl.jena.vocabulary.RDF;
+
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeSet;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService.ModelSerializationFormat;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.RDFServiceUtils;
+import edu.cornell.mannlib.vitro.webapp.utils.threads.VitroBackgroundThread;
+
+/**
+ * Carries out the ABox changes of an ontology migration as set-based updates,
+ * instead of walking the statements one at a time.
+ *
+ * Each change is a pattern of statements to find in a graph, and what to put in
+ * their place. The matching statements are read by a CONSTRUCT query, a chunk
+ * at a time, and each chunk is removed and replaced by a single ChangeSet.
+ * Since the statements that were found have been removed, the same query finds
+ * the next chunk.
+ *
+ * The updatable ABox graphs don't depend on each other, so they are processed
+ * in parallel. The results are returned in the order of the graphs, so the
+ * change log is written in the same order as before. The threads are shared by
+ * all of the changes in a migration. Close the executor when the migration is
+ * finished.
+ *
+ * A removal can't always match a statement with a blank node, so those
+ * statements are left out of the chunks. Any that remain are changed through
+ * the Jena model for the graph, as they were before.
+ */
+public class ABoxMigrationExecutor implements AutoCloseable {
+	private static final Log log = LogFactory
+			.getLog(ABoxMigrationExecutor.class);
+
+	private static final int DEFAULT_CHUNK_SIZE = 5000;
+	private static final int MAX_THREADS = 4;
+
+	private final RDFService rdfService;
+	private final Dataset dataset;
+	private final ChangeRecord record;
+
+	private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+	private ExecutorService pool;
+	private boolean closed;
+
+	public ABoxMigrationExecutor(RDFService rdfService, Dataset dataset,
+			ChangeRecord record) {
+		this.rdfService = rdfService;
+		this.dataset = dataset;
+		this.record = record;
+	}
+
+	/**
+	 * How many statements are read, and changed, at a time?
+	 */
+	void setChunkSize(int chunkSize) {
+		this.chunkSize = chunkSize;
+	}
+
+	public List<String> getUpdatableGraphs() {
+		List<String> graphs = new ArrayList<>();
+		Iterator<String> graphIt = dataset.listNames();
+		while (graphIt.hasNext()) {
+			String graph = graphIt.next();
+			if (KnowledgeBaseUpdater.isUpdatableABoxGraph(graph)) {
+				graphs.add(graph);
+			}
+		}
+		return graphs;
+	}
+
+	// ----------------------------------------------------------------------
+	// The changes
+	// ----------------------------------------------------------------------
+
+	/**
+	 * How many statements in each graph match this pattern? A null node
+	 * matches anything.
+	 */
+	public Map<String, Long> count(final Node s, final Node p, final Node o) {
+		return inEachGraph(new GraphTask() {
+			@Override
+			public long run(String graphURI) throws RDFServiceException {
+				return countInGraph(graphURI, triplePattern(s, p, o));
+			}
+		});
+	}
+
+	/**
+	 * In each graph, remove the statements that match this pattern, and add
+	 * their replacements. A null node matches anything.
+	 *
+	 * Returns the number of statements that were removed from each graph.
+	 */
+	public Map<String, Long> replace(final Node s, final Node p, final Node o,
+			final Replacement replacement) {
+		final String pattern = triplePattern(s, p, o);
+		final List<String> blankable = blankableVariables(s, o);
+		final List<Triple> blankPatterns = Collections.singletonList(Triple
+				.createMatch(s, p, o));
+		return inEachGraph(new GraphTask() {
+			@Override
+			public long run(String graphURI) throws RDFServiceException {
+				return updateGraph(graphURI, pattern, pattern, blankable,
+						blankPatterns, true, replacement);
+			}
+		});
+	}
+
+	/**
+	 * In each graph, for each statement that uses the inverse predicate and
+	 * has a resource as its object, add the statement that goes the other way
+	 * with this predicate, unless it is already there.
+	 *
+	 * Returns the number of statements that were added to each graph.
+	 */
+	public Map<String, Long> addInverses(Node predicate, Node inversePredicate) {
+		final String template = "?s " + sparqlNode(inversePredicate, "?p")
+				+ " ?o";
+		final String where = template + " FILTER (!isLiteral(?o)) "
+				+ "FILTER NOT EXISTS { ?o " + sparqlNode(predicate, "?p")
+				+ " ?s } ";
+		final List<String> blankable = Arrays.asList("?s", "?o");
+		final List<Triple> blankPatterns = Collections.singletonList(Triple
+				.createMatch(null, inversePredicate, null));
+		final Replacement inverse = inverse(predicate);
+		return inEachGraph(new GraphTask() {
+			@Override
+			public long run(String graphURI) throws RDFServiceException {
+				return updateGraph(graphURI, template, where, blankable,
+						blankPatterns, false, inverse);
+			}
+		});
+	}
+
+	/**
+	 * The statements in this graph that use this predicate and have a literal
+	 * as the object. There shouldn't be many.
+	 */
+	public Model findLiteralObjects(String graphURI, Node predicate) {
+		String template = "?s " + sparqlNode(predicate, "?p") + " ?o";
+		try {
+			return construct("CONSTRUCT { " + template + " } WHERE { GRAPH <"
+					+ graphURI + "> { " + template + " FILTER (isLiteral(?o)) } }");
+		} catch (RDFServiceException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Remove each individual that is asserted in this graph to be of this
+	 * type, with every statement in which it is the subject or the object, in
+	 * every graph.
+	 *
+	 * Returns the number of individuals that were removed, and the number of
+	 * statements in which they were the object.
+	 */
+	public long[] deleteIndividualsOfType(String graphURI, Node type) {
+		String query = "SELECT DISTINCT ?ind WHERE { GRAPH <" + graphURI
+				+ "> { ?ind <" + RDF.type.getURI() + "> "
+				+ sparqlNode(type, "?type")
+				+ " FILTER (!isBlank(?ind)) } } LIMIT " + chunkSize;
+
+		long individuals = 0;
+		long references = 0;
+		List<String> previous = Collections.emptyList();
+		while (true) {
+			List<String> uris = selectUris(query, "ind");
+			if (uris.isEmpty() || uris.equals(previous)) {
+				break;
+			}
+			previous = uris;
+			individuals += uris.size();
+			for (long refs : deleteIndividuals(uris).values()) {
+				references += refs;
+			}
+		}
+		return new long[] { individuals, references };
+	}
+
+	/**
+	 * Remove these individuals from every graph. Returns the number of
+	 * statements in each graph in which they were the object.
+	 */
+	private Map<String, Long> deleteIndividuals(List<String> uris) {
+		StringBuilder values = new StringBuilder("VALUES ?ind {");
+		for (String uri : uris) {
+			values.append(" <").append(uri).append(">");
+		}
+		values.append(" } ");
+
+		final List<Triple> subjectPatterns = new ArrayList<>();
+		final List<Triple> objectPatterns = new ArrayList<>();
+		for (String uri : uris) {
+			Node ind = NodeFactory.createURI(uri);
+			subjectPatterns.add(Triple.createMatch(ind, null, null));
+			objectPatterns.add(Triple.createMatch(null, null, ind));
+		}
+
+		final String subjectWhere = values + "?ind ?p ?o";
+		final String objectWhere = values + "?s ?p ?ind";
+		final Replacement nothing = removal();
+		return inEachGraph(new GraphTask() {
+			@Override
+			public long run(String graphURI) throws RDFServiceException {
+				updateGraph(graphURI, "?ind ?p ?o", subjectWhere,
+						Arrays.asList("?o"), subjectPatterns, true, nothing);
+				return updateGraph(graphURI, "?s ?p ?ind", objectWhere,
+						Arrays.asList("?s"), objectPatterns, true, nothing);
+			}
+		});
+	}
+
+	// ----------------------------------------------------------------------
+	// Working in a single graph
+	// ----------------------------------------------------------------------
+
+	/**
+	 * Find the statements that match, a chunk at a time. Remove them if
+	 * required, and add their replacements.
+	 *
+	 * If the changes don't stop the statements from matching, the next chunk
+	 * would be the same as this one, so stop.
+	 *
+	 * Statements with blank nodes are left to the end. If there are any, the
+	 * blank patterns are used to find them in the model.
+	 *
+	 * Returns the number of statements removed, or added if none are removed.
+	 */
+	private long updateGraph(String graphURI, String template, String where,
+			List<String> blankable, List<Triple> blankPatterns,
+			boolean removeFound, Replacement replacement)
+			throws RDFServiceException {
+		String prefix = "CONSTRUCT { " + template + " } WHERE { GRAPH <"
+				+ graphURI + "> { " + where;
+		String chunkQuery = prefix + filter("!isBlank", " && ", blankable)
+				+ " } } LIMIT " + chunkSize;
+
+		long count = 0;
+		Model previous = ModelFactory.createDefaultModel();
+		while (true) {
+			Model found = construct(chunkQuery);
+			if (found.isEmpty()) {
+				break;
+			}
+			if (found.isIsomorphicWith(previous)) {
+				log.debug("No progress in " + graphURI + ": " + where);
+				break;
+			}
+			previous = found;
+
+			Model additions = replacement.replace(found);
+			Model removals = removeFound ? found : ModelFactory
+					.createDefaultModel();
+			apply(graphURI, removals, additions);
+			count += removeFound ? removals.size() : additions.size();
+		}
+
+		if (!blankable.isEmpty()) {
+			String blankQuery = prefix + filter("isBlank", " || ", blankable)
+					+ " } } LIMIT 1";
+			if (!construct(blankQuery).isEmpty()) {
+				count += updateBlankNodeStatements(graphURI, blankPatterns,
+						removeFound, replacement);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Blank nodes from a query are not the ones in the graph, so these
+	 * statements must come from the model itself.
+	 */
+	private long updateBlankNodeStatements(String graphURI,
+			List<Triple> blankPatterns, boolean removeFound,
+			Replacement replacement) {
+		Model aboxModel = dataset.getNamedModel(graphURI);
+		Model found = ModelFactory.createDefaultModel();
+		for (Triple pattern : blankPatterns) {
+			for (Triple t : aboxModel.getGraph().find(pattern).toList()) {
+				if (t.getSubject().isBlank() || t.getObject().isBlank()) {
+					found.add(aboxModel.asStatement(t));
+				}
+			}
+		}
+
+		Model additions = replacement.replace(found);
+		Model removals = removeFound ? found : ModelFactory
+				.createDefaultModel();
+		if (!removeFound) {
+			additions = additions.difference(aboxModel);
+		}
+		aboxModel.remove(removals);
+		aboxModel.add(additions);
+		record(removals, additions);
+		return removeFound ? removals.size() : additions.size();
+	}
+
+	private long countInGraph(String graphURI, String pattern)
+			throws RDFServiceException {
+		String query = "SELECT (COUNT(*) AS ?count) WHERE { GRAPH <"
+				+ graphURI + "> { " + pattern + " } }";
+		ResultSet rs = select(query);
+		if (!rs.hasNext()) {
+			return 0;
+		}
+		return rs.nextSolution().getLiteral("count").getLong();
+	}
+
+	private void apply(String graphURI, Model removals, Model additions)
+			throws RDFServiceException {
+		ChangeSet changeSet = rdfService.manufactureChangeSet();
+		if (!removals.isEmpty()) {
+			changeSet.addRemoval(serialize(removals),
+					ModelSerializationFormat.NTRIPLE, graphURI);
+		}
+		if (!additions.isEmpty()) {
+			changeSet.addAddition(serialize(additions),
+					ModelSerializationFormat.NTRIPLE, graphURI);
+		}
+		rdfService.changeSetUpdate(changeSet);
+		record(removals, additions);
+	}
+
+	/** The graphs are updated in parallel, but there is only one record. */
+	private void record(Model removals, Model additions) {
+		synchronized (record) {
+			if (!removals.isEmpty()) {
+				record.recordRetractions(removals);
+			}
+			if (!additions.isEmpty()) {
+				record.recordAdditions(additions);
+			}
+		}
+	}
+
+	// ----------------------------------------------------------------------
+	// Running in parallel
+	// ----------------------------------------------------------------------
+
+	private interface GraphTask {
+		long run(String graphURI) throws RDFServiceException;
+	}
+
+	/**
+	 * Run the task on each updatable graph, and return the results in the
+	 * order of the graphs.
+	 */
+	private Map<String, Long> inEachGraph(final GraphTask task) {
+		List<String> graphs = getUpdatableGraphs();
+		Map<String, Long> results = new LinkedHashMap<>();
+		if (graphs.isEmpty()) {
+			return results;
+		}
+
+		ExecutorService threads = getPool();
+		Map<String, Future<Long>> futures = new LinkedHashMap<>();
+		for (final String graph : graphs) {
+			futures.put(graph, threads.submit(new Callable<Long>() {
+				@Override
+				public Long call() throws Exception {
+					return task.run(graph);
+				}
+			}));
+		}
+		for (Map.Entry<String, Future<Long>> entry : futures.entrySet()) {
+			results.put(entry.getKey(), waitFor(entry.getValue()));
+		}
+		return results;
+	}
+
+	/**
+	 * The threads are started when the first change needs them.
+	 */
+	private synchronized ExecutorService getPool() {
+		if (closed) {
+			throw new IllegalStateException(
+					"ABoxMigrationExecutor has been closed.");
+		}
+		if (pool == null) {
+			pool = Executors.newFixedThreadPool(MAX_THREADS,
+					new VitroBackgroundThread.Factory("ABoxMigrationExecutor"));
+		}
+		return pool;
+	}
+
+	/**
+	 * The migration is finished. Stop the threads.
+	 */
+	@Override
+	public synchronized void close() {
+		closed = true;
+		if (pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
+	}
+
+	private long waitFor(Future<Long> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new RuntimeException(cause);
+		}
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper methods and classes
+	// ----------------------------------------------------------------------
+
+	private Model construct(String query) throws RDFServiceException {
+		log.debug(query);
+		return RDFServiceUtils.parseModel(rdfService.sparqlConstructQuery(
+				query, ModelSerializationFormat.NTRIPLE),
+				ModelSerializationFormat.NTRIPLE);
+	}
+
+	private ResultSet select(String query) throws RDFServiceException {
+		log.debug(query);
+		return ResultSetFactory.fromJSON(rdfService.sparqlSelectQuery(query,
+				RDFService.ResultFormat.JSON));
+	}
+
+	private List<String> selectUris(String query, String varName) {
+		List<String> uris = new ArrayList<>();
+		try {
+			ResultSet rs = select(query);
+			while (rs.hasNext()) {
+				QuerySolution soln = rs.nextSolution();
+				Resource r = soln.getResource(varName);
+				if (r != null && r.isURIResource()) {
+					uris.add(r.getURI());
+				}
+			}
+		} catch (RDFServiceException e) {
+			throw new RuntimeException(e);
+		}
+		return uris;
+	}
+
+	private static InputStream serialize(Model model) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		model.write(out, "N-TRIPLE");
+		return new ByteArrayInputStream(out.toByteArray());
+	}
+
+	private static String triplePattern(Node s, Node p, Node o) {
+		return sparqlNode(s, "?s") + " " + sparqlNode(p, "?p") + " "
+				+ sparqlNode(o, "?o");
+	}
+
+	/**
+	 * The subject and object may hold blank nodes, if they are variables.
+	 */
+	private static List<String> blankableVariables(Node s, Node o) {
+		List<String> vars = new ArrayList<>();
+		if (sparqlNode(s, "?s").equals("?s")) {
+			vars.add("?s");
+		}
+		if (sparqlNode(o, "?o").equals("?o")) {
+			vars.add("?o");
+		}
+		return vars;
+	}
+
+	private static String filter(String function, String operator,
+			List<String> vars) {
+		if (vars.isEmpty()) {
+			return "";
+		}
+		StringBuilder sb = new StringBuilder(" FILTER (");
+		for (int i = 0; i < vars.size(); i++) {
+			if (i > 0) {
+				sb.append(operator);
+			}
+			sb.append(function).append("(").append(vars.get(i)).append(")");
+		}
+		return sb.append(") ").toString();
+	}
+
+	/**
+	 * What should take the place of the statements that were found?
+	 */
+	public interface Replacement {
+		Model replace(Model found);
+	}
+
+	/** Remove the statements, and put nothing in their place. */
+	public static Replacement removal() {
+		return new Replacement() {
+			@Override
+			public Model replace(Model found) {
+				return ModelFactory.createDefaultModel();
+			}
+		};
+	}
+
+	/** The same statements, with a different predicate. */
+	public static Replacement newPredicate(final Node predicate) {
+		return new Replacement() {
+			@Override
+			public Model replace(Model found) {
+				Model additions = ModelFactory.createDefaultModel();
+				Property p = additions.createProperty(predicate.getURI());
+				for (Statement stmt : found.listStatements().toList()) {
+					additions.add(stmt.getSubject(), p, stmt.getObject());
+				}
+				return additions;
+			}
+		};
+	}
+
+	/** The same statements, with a different object. */
+	public static Replacement newObject(final Node object) {
+		return new Replacement() {
+			@Override
+			public Model replace(Model found) {
+				Model additions = ModelFactory.createDefaultModel();
+				RDFNode o = additions.asRDFNode(object);
+				for (Statement stmt : found.listStatements().toList()) {
+					additions.add(stmt.getSubject(), stmt.getPredicate(), o);
+				}
+				return additions;
+			}
+		};
+	}
+
+	/** The statements that go the other way, with this predicate. */
+	private static Replacement inverse(final Node predicate) {
+		return new Replacement() {
+			@Override
+			public Model replace(Model found) {
+				Model additions = ModelFactory.createDefaultModel();
+				Property p = additions.createProperty(predicate.getURI());
+				for (Statement stmt : found.listStatements().toList()) {
+					if (stmt.getObject().isResource()) {
+						additions.add(stmt.getObject().asResource(), p,
+								stmt.getSubject());
+					}
+				}
+				return additions;
+			}
+		};
+	}
+}
@@ -6,6 +6,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -14,7 +15,6 @@ import com.hp.hpl.jena.ontology.OntClass;
 import com.hp.hpl.jena.ontology.OntModel;
 import com.hp.hpl.jena.ontology.OntModelSpec;
 import com.hp.hpl.jena.ontology.OntProperty;
-import com.hp.hpl.jena.query.Dataset;
 import com.hp.hpl.jena.rdf.model.Literal;
 import com.hp.hpl.jena.rdf.model.Model;
 import com.hp.hpl.jena.rdf.model.ModelFactory;
@@ -24,31 +24,26 @@ import com.hp.hpl.jena.rdf.model.Resource;
 import com.hp.hpl.jena.rdf.model.ResourceFactory;
 import com.hp.hpl.jena.rdf.model.Statement;
 import com.hp.hpl.jena.rdf.model.StmtIterator;
-import com.hp.hpl.jena.shared.Lock;
 import com.hp.hpl.jena.vocabulary.OWL;
 import com.hp.hpl.jena.vocabulary.RDF;
 
 import edu.cornell.mannlib.vitro.webapp.dao.jena.RDFServiceDataset;
 import edu.cornell.mannlib.vitro.webapp.ontology.update.AtomicOntologyChange.AtomicChangeType;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
-import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
-import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.RDFServiceUtils;
 
 /**  
 * Performs knowledge base updates to the abox to align with a new ontology version
 *   
 */ 
-public class ABoxUpdater {
+public class ABoxUpdater implements AutoCloseable {
 
     private final Log log = LogFactory.getLog(ABoxUpdater.class);
 	private OntModel oldTboxModel;
 	private OntModel newTboxModel;
-	private Dataset dataset;
-	private RDFService rdfService;
+	private ABoxMigrationExecutor executor;
 	private OntModel newTBoxAnnotationsModel;
 	private TBoxUpdater tboxUpdater;
 	private ChangeLogger logger;  
-	private ChangeRecord record;
 	private OntClass OWL_THING = (ModelFactory.createOntologyModel(OntModelSpec.OWL_MEM)).createClass(OWL.Thing.getURI());
 
 	/**
@@ -71,11 +66,10 @@ public class ABoxUpdater {
 	    this.oldTboxModel = settings.getOldTBoxModel();
         this.newTboxModel = settings.getNewTBoxModel();
         RDFService rdfService = settings.getRDFService();
-		this.dataset = new RDFServiceDataset(rdfService);
-		this.rdfService = rdfService;
+		this.executor = new ABoxMigrationExecutor(rdfService,
+				new RDFServiceDataset(rdfService), record);
 		this.newTBoxAnnotationsModel = settings.getNewTBoxAnnotationsModel();
 		this.logger = logger;
-		this.record = record;
 		this.tboxUpdater = new TBoxUpdater(settings, logger, record);
 	}
 	
@@ -134,73 +128,40 @@ public class ABoxUpdater {
 		
 		//logger.log("Processing a class rename from: " + change.getSourceURI() + " to " + change.getDestinationURI());
 	    
-	    Iterator<String> graphIt = dataset.listNames();
-	    while(graphIt.hasNext()) {
-	        String graph = graphIt.next();
-	        if(!KnowledgeBaseUpdater.isUpdatableABoxGraph(graph)){
-	            continue;
+	    //TODO - look for these in the models and log error if not found
+	    Resource oldClass = ResourceFactory.createResource(change.getSourceURI());
+	    Resource newClass = ResourceFactory.createResource(change.getDestinationURI());	   
+	    
+	    // Change class references in the subjects of statements
+	    
+	    // BJL 2010-04-09 : In future versions we need to keep track of
+	    // the difference between true direct renamings and "use-insteads."
+	    // For now, the best behavior is to remove any remaining statements
+	    // where the old class is the subject, *unless* the statements
+	    // is part of the new annotations file (see comment below) or the
+	    // predicate is vitro:autolinkedToTab.  In the latter case,
+	    // the autolinking annotation should be rewritten using the 
+	    // new class name.
+	    
+	    Map<String, Long> removeCounts = executor.replace(oldClass.asNode(),
+	            null, null, ABoxMigrationExecutor.removal());
+	    
+	    // Change class references in the objects of rdf:type statements
+	    Map<String, Long> renameCounts = executor.replace(null,
+	            RDF.type.asNode(), oldClass.asNode(),
+	            ABoxMigrationExecutor.newObject(newClass.asNode()));
+	    
+	    for (String graph : removeCounts.keySet()) {
+	        //log summary of changes
+	        long removeCount = removeCounts.get(graph);
+	        if (removeCount > 0) {
+	            logger.log("Removed " + removeCount + " subject reference" + ((removeCount > 1) ? "s" : "") + " to the "  + oldClass.getURI() + " class");
+	        }
+	        
+	        long renameCount = renameCounts.get(graph);
+	        if (renameCount > 0) {
+	            logger.log("Retyped " + renameCount + " individual" + ((renameCount > 1) ? "s" : "") + " from type "  + oldClass.getURI() + " to type " + newClass.getURI());
 	        }
-	        Model aboxModel = dataset.getNamedModel(graph);
-	        aboxModel.enterCriticalSection(Lock.WRITE);
-    		try {
-    			
-    	       Model additions = ModelFactory.createDefaultModel();
-    	       Model retractions = ModelFactory.createDefaultModel();
-    	       
-    	       //TODO - look for these in the models and log error if not found
-    		   Resource oldClass = ResourceFactory.createResource(change.getSourceURI());
-    		   Resource newClass = ResourceFactory.createResource(change.getDestinationURI());	   
-    		   
-    		   // Change class references in the subjects of statements
-    		   
-    		   // BJL 2010-04-09 : In future versions we need to keep track of
-    		   // the difference between true direct renamings and "use-insteads."
-    		   // For now, the best behavior is to remove any remaining statements
-    		   // where the old class is the subject, *unless* the statements
-    		   // is part of the new annotations file (see comment below) or the
-    		   // predicate is vitro:autolinkedToTab.  In the latter case,
-    		   // the autolinking annotation should be rewritten using the 
-    		   // new class name.
-    		   
-    		   StmtIterator iter = aboxModel.listStatements(oldClass, (Property) null, (RDFNode) null);
-    
-    		   int removeCount = 0;
-    		   while (iter.hasNext()) {
-    			   Statement oldStatement = iter.next();
-    			   removeCount++;
-    			   retractions.add(oldStatement);
-    		   }
-    		   
-    		   //log summary of changes
-    		   if (removeCount > 0) {
-    			   logger.log("Removed " + removeCount + " subject reference" + ((removeCount > 1) ? "s" : "") + " to the "  + oldClass.getURI() + " class");
-    		   }
-    
-    		   // Change class references in the objects of rdf:type statements
-    		   iter = aboxModel.listStatements((Resource) null, RDF.type, oldClass);
-    
-    		   int renameCount = 0;
-    		   while (iter.hasNext()) {
-    			   renameCount++;
-    			   Statement oldStatement = iter.next();
-    			   Statement newStatement = ResourceFactory.createStatement(oldStatement.getSubject(), RDF.type, newClass);
-    			   retractions.add(oldStatement);
-    			   additions.add(newStatement);
-    		   }
-    		   
-    		   //log summary of changes
-    		   if (renameCount > 0) {
-    			   logger.log("Retyped " + renameCount + " individual" + ((renameCount > 1) ? "s" : "") + " from type "  + oldClass.getURI() + " to type " + newClass.getURI());
-    		   }
-    		   
-    		   aboxModel.remove(retractions);
-    		   record.recordRetractions(retractions);
-    		   aboxModel.add(additions);
-    		   record.recordAdditions(additions);
-    		   
-    		} finally {
-    			aboxModel.leaveCriticalSection();
-    		}
 	    }
 	}
 
@@ -247,18 +208,9 @@ public class ABoxUpdater {
 
 			if (!parentOfAddedClass.equals(OWL.Thing)) {
 				
-			    Iterator<String> graphIt = dataset.listNames();
-	            while(graphIt.hasNext()) {
-	                String graph = graphIt.next();
-	                if(!KnowledgeBaseUpdater.isUpdatableABoxGraph(graph)){
-	                    continue;
-	                }
-			        Model aboxModel = dataset.getNamedModel(graph);
-			            
-    				StmtIterator stmtIter = aboxModel.listStatements(null, RDF.type, parentOfAddedClass);
-    				
-    				int count = stmtIter.toList().size();
-    					
+			    Map<String, Long> counts = executor.count(null,
+			            RDF.type.asNode(), parentOfAddedClass.asNode());
+	            for (long count : counts.values()) {
 					if (count > 0) {
 						//TODO - take out the detailed logging after our internal testing is completed.
 				        logger.log("There " + ((count > 1) ? "are" : "is") + " " + count + " individual" + ((count > 1) ? "s" : "")  + " in the model that " + ((count > 1) ? "are" : "is") + " of type " + parentOfAddedClass.getURI() + "," +
@@ -348,73 +300,16 @@ public class ABoxUpdater {
 		}
 		
 		// Remove instances of the deleted class
-        Iterator<String> graphIt = dataset.listNames();
-        while(graphIt.hasNext()) {
-            String graph = graphIt.next();
-            if(!KnowledgeBaseUpdater.isUpdatableABoxGraph(graph)){
-                continue;
-            }
-            Model aboxModel = dataset.getNamedModel(graph);
-    		aboxModel.enterCriticalSection(Lock.WRITE);
-    	    try {
-    	       int count = 0;
-    	       int refCount = 0;
-    	       StmtIterator iter = aboxModel.listStatements((Resource) null, RDF.type, deletedClass);
-    
-        	   while (iter.hasNext()) {
-    			   count++;
-    			   Statement typeStmt = iter.next();   
-    			   refCount = deleteIndividual(typeStmt.getSubject());
-    		   }   
-    		   
-    		   if (count > 0) {
-    			   logger.log("Removed " + count + " individual" + (((count > 1) ? "s" : "") + " of type " + deletedClass.getURI()) + " (refs = " + refCount + ")");
-    		   }
-    		   		   
-    		} finally {
-    			aboxModel.leaveCriticalSection();
-    		}
-        }
-	}
-	
-	protected int deleteIndividual(Resource individual) throws IOException {
-
-	    Model retractions = ModelFactory.createDefaultModel();
-	    int refCount = 0;
-	    
-        Iterator<String> graphIt = dataset.listNames();
-        while(graphIt.hasNext()) {
-            String graph = graphIt.next();
-            if(!KnowledgeBaseUpdater.isUpdatableABoxGraph(graph)){
-                continue;
-            }
-            Model aboxModel = dataset.getNamedModel(graph);
-    		aboxModel.enterCriticalSection(Lock.WRITE);
-    	    try {			   
-    		   StmtIterator iter = aboxModel.listStatements(individual, (Property) null, (RDFNode) null);
-    			   
-    		   while (iter.hasNext()) {
-    			  Statement subjstmt = iter.next();
-    			  retractions.add(subjstmt);
-    		   }
-    			   
-    		   iter = aboxModel.listStatements((Resource) null, (Property) null, individual);
-    			   
-    		    while (iter.hasNext()) {
-    			    Statement objstmt = iter.next();
-    			    retractions.add(objstmt);
-    			    refCount++;
-    			}
-    		   
-    		   aboxModel.remove(retractions);
-    		   record.recordRetractions(retractions);		
-    		   
-    		} finally {
-    			aboxModel.leaveCriticalSection();
-    		}
+        for (String graph : executor.getUpdatableGraphs()) {
+            long[] counts = executor.deleteIndividualsOfType(graph,
+                    deletedClass.asNode());
+            long count = counts[0];
+            long refCount = counts[1];
+		   
+		   if (count > 0) {
+			   logger.log("Removed " + count + " individual" + (((count > 1) ? "s" : "") + " of type " + deletedClass.getURI()) + " (refs = " + refCount + ")");
+		   }
         }
-		
-		return refCount;
 	}
 	
 	public void processPropertyChanges(List<AtomicOntologyChange> changes) throws IOException {
@@ -470,46 +365,26 @@ public class ABoxUpdater {
 		OntProperty inverseOfAddedProperty = addedProperty.getInverseOf();
 		
 		if (inverseOfAddedProperty != null) {
-			Model additions = ModelFactory.createDefaultModel();
-            Iterator<String> graphIt = dataset.listNames();
-            while(graphIt.hasNext()) {
-                String graph = graphIt.next();
-                if(!KnowledgeBaseUpdater.isUpdatableABoxGraph(graph)){
-                    continue;
-                }
-                Model aboxModel = dataset.getNamedModel(graph);
-    			aboxModel.enterCriticalSection(Lock.WRITE);
-    			
-    			try {
-    				StmtIterator iter = aboxModel.listStatements((Resource) null, inverseOfAddedProperty, (RDFNode) null);
-    		
-    				while (iter.hasNext()) {
-    					
-    					Statement stmt = iter.next();
-    					
-    					if (stmt.getObject().isResource()) {
-    					   Statement newStmt = ResourceFactory.createStatement(stmt.getObject().asResource(), addedProperty, stmt.getSubject());
-    					   additions.add(newStmt);
-    					} else {
-    						logger.log("WARNING: expected the object of this statement to be a Resource but it is not. No inverse has been asserted: " + stmtString(stmt));
-    					}
-    				}
-    				
-    				aboxModel.add(additions);
-    				record.recordAdditions(additions);
-    				
-    				if (additions.size() > 0) {
-    					logger.log("Added " + additions.size() + " statement" + 
-    							((additions.size() > 1) ? "s" : "") +
-    							" with predicate " + addedProperty.getURI() + 
-    							" (as an inverse to existing  " + inverseOfAddedProperty.getURI() + 
-    							" statement" + ((additions.size() > 1) ? "s" : "") + ")");
-    				}
-    				
-    			} finally {
-    				aboxModel.leaveCriticalSection();
-    			}
-            }
+		    Map<String, Long> addCounts = executor.addInverses(
+		            addedProperty.asNode(), inverseOfAddedProperty.asNode());
+		    
+		    for (String graph : addCounts.keySet()) {
+		        Model literalObjects = executor.findLiteralObjects(graph,
+		                inverseOfAddedProperty.asNode());
+		        StmtIterator iter = literalObjects.listStatements();
+		        while (iter.hasNext()) {
+		            logger.log("WARNING: expected the object of this statement to be a Resource but it is not. No inverse has been asserted: " + stmtString(iter.next()));
+		        }
+		        
+		        long addCount = addCounts.get(graph);
+		        if (addCount > 0) {
+		            logger.log("Added " + addCount + " statement" + 
+		                    ((addCount > 1) ? "s" : "") +
+		                    " with predicate " + addedProperty.getURI() + 
+		                    " (as an inverse to existing  " + inverseOfAddedProperty.getURI() + 
+		                    " statement" + ((addCount > 1) ? "s" : "") + ")");
+		        }
+		    }
 		}
 	}
 	
@@ -547,36 +422,20 @@ public class ABoxUpdater {
 			}
 		}
 		
-        Iterator<String> graphIt = dataset.listNames();
-        while(graphIt.hasNext()) {
-            String graph = graphIt.next();
-            if(!KnowledgeBaseUpdater.isUpdatableABoxGraph(graph)){
-                continue;
-            }
-            Model aboxModel = dataset.getNamedModel(graph);
-    		Model deletePropModel = ModelFactory.createDefaultModel();
-    		
-    		if (replacementProperty == null) {
-    						
-    			aboxModel.enterCriticalSection(Lock.WRITE);
-    			try {
-    				deletePropModel.add(aboxModel.listStatements((Resource) null, deletedProperty, (RDFNode) null));
-    				aboxModel.remove(deletePropModel);
-    			} finally {
-    				aboxModel.leaveCriticalSection();
-    			}
-    			record.recordRetractions(deletePropModel);
-    			boolean plural = (deletePropModel.size() > 1);
-    			if (deletePropModel.size() > 0) {
-    				logger.log("Removed " + deletePropModel.size() + " statement" + (plural ? "s" : "") + " with predicate " + 
-    						propObj.getSourceURI());
-    			}
-    		} else {
-    			AtomicOntologyChange chg = new AtomicOntologyChange(deletedProperty.getURI(), replacementProperty.getURI(), AtomicChangeType.RENAME, propObj.getNotes());
-    			renameProperty(chg);
-    		}		
-        }
-		
+		if (replacementProperty == null) {
+		    Map<String, Long> deleteCounts = executor.replace(null,
+		            deletedProperty.asNode(), null,
+		            ABoxMigrationExecutor.removal());
+		    for (long deleteCount : deleteCounts.values()) {
+		        if (deleteCount > 0) {
+		            logger.log("Removed " + deleteCount + " statement" + ((deleteCount > 1) ? "s" : "") + " with predicate " + 
+		                    propObj.getSourceURI());
+		        }
+		    }
+		} else {
+			AtomicOntologyChange chg = new AtomicOntologyChange(deletedProperty.getURI(), replacementProperty.getURI(), AtomicChangeType.RENAME, propObj.getNotes());
+			renameProperty(chg);
+		}		
 	}
 	
 	private void renameProperty(AtomicOntologyChange propObj) throws IOException {
@@ -597,61 +456,20 @@ public class ABoxUpdater {
 		}
 		
 		long start = System.currentTimeMillis();
-        Iterator<String> graphIt = dataset.listNames();
-        while(graphIt.hasNext()) {
-            String graph = graphIt.next();
-            if(!KnowledgeBaseUpdater.isUpdatableABoxGraph(graph)){
-                continue;
-            }
-            Model aboxModel = dataset.getNamedModel(graph);
-		
-    		Model renamePropAddModel = ModelFactory.createDefaultModel();
-    		Model renamePropRetractModel = 	ModelFactory.createDefaultModel();
-    		log.debug("renaming " + oldProperty.getURI() + " in graph " + graph);
-    		aboxModel.enterCriticalSection(Lock.WRITE);
-    		try {
-    		    start = System.currentTimeMillis();
-    		    
-//    		    String queryStr = "CONSTRUCT { ?s <" + oldProperty.getURI() + "> ?o } WHERE { GRAPH<" + graph + "> { ?s <" + oldProperty.getURI() + "> ?o } } ";
-//    		    try {
-//    		        renamePropRetractModel = RDFServiceUtils.parseModel(rdfService.sparqlConstructQuery(queryStr, RDFService.ModelSerializationFormat.NTRIPLE), RDFService.ModelSerializationFormat.NTRIPLE);
-//    		    } catch (RDFServiceException e) {
-//    		        log.error(e,e);
-//    		    }
-//    		    log.info(System.currentTimeMillis() - start + " to run sparql construct for " + renamePropRetractModel.size() + " statements" );
-    		    start = System.currentTimeMillis();
-    			renamePropRetractModel.add(	aboxModel.listStatements(
-    					(Resource) null, oldProperty, (RDFNode) null));
-    			log.debug(System.currentTimeMillis() - start + " to list " + renamePropRetractModel.size() + " old statements");
-    			start = System.currentTimeMillis();
-    			StmtIterator stmItr = renamePropRetractModel.listStatements();
-    			while(stmItr.hasNext()) {
-    				Statement tempStatement = stmItr.nextStatement();
-    				renamePropAddModel.add( tempStatement.getSubject(),
-    										newProperty,
-    										tempStatement.getObject() );
-    			}
-    			log.debug(System.currentTimeMillis() - start + " to make new statements");
-    			start = System.currentTimeMillis();
-    			aboxModel.remove(renamePropRetractModel);
-    			log.debug(System.currentTimeMillis() - start + " to retract old statements");
-    			start = System.currentTimeMillis();
-    			aboxModel.add(renamePropAddModel);
-    			log.debug(System.currentTimeMillis() - start + " to add new statements");
-    		} finally {
-    			aboxModel.leaveCriticalSection();
-    		}
-    		
-    		record.recordAdditions(renamePropAddModel);
-    		record.recordRetractions(renamePropRetractModel);
-    		
-    		if (renamePropRetractModel.size() > 0) {
-    			logger.log("Changed " + renamePropRetractModel.size() + " statement" + 
-    					((renamePropRetractModel.size() > 1) ? "s" : "") +
-    					" with predicate " + propObj.getSourceURI() + " to use " +
-    					propObj.getDestinationURI() + " instead");		
-    		}
-        }
+		Map<String, Long> renameCounts = executor.replace(null,
+		        oldProperty.asNode(), null,
+		        ABoxMigrationExecutor.newPredicate(newProperty.asNode()));
+		log.debug(System.currentTimeMillis() - start + " to rename "
+		        + oldProperty.getURI());
+		
+		for (long renameCount : renameCounts.values()) {
+		    if (renameCount > 0) {
+		        logger.log("Changed " + renameCount + " statement" + 
+		                ((renameCount > 1) ? "s" : "") +
+		                " with predicate " + propObj.getSourceURI() + " to use " +
+		                propObj.getDestinationURI() + " instead");		
+		    }
+		}
         
         tboxUpdater.renameProperty(propObj);
 	}
@@ -665,6 +483,14 @@ public class ABoxUpdater {
 		logger.log( (add ? "Added" : "Removed") + stmtString(statement));
 	}
 
+	/**
+	 * The changes have been processed. Stop the executor's threads.
+	 */
+	@Override
+	public void close() {
+		executor.close();
+	}
+
     public static String stmtString(Statement statement) {
     	return  " [subject = " + statement.getSubject().getURI() +
     			"] [property = " + statement.getPredicate().getURI() +
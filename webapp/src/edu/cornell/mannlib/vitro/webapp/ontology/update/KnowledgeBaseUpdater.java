@@ -303,9 +303,10 @@ public class KnowledgeBaseUpdater {
 			throws IOException {
 		
 	
-		ABoxUpdater aboxUpdater = new ABoxUpdater(settings, logger, record);
-		aboxUpdater.processPropertyChanges(changes.getAtomicPropertyChanges());
-		aboxUpdater.processClassChanges(changes.getAtomicClassChanges());
+		try (ABoxUpdater aboxUpdater = new ABoxUpdater(settings, logger, record)) {
+			aboxUpdater.processPropertyChanges(changes.getAtomicPropertyChanges());
+			aboxUpdater.processClassChanges(changes.getAtomicClassChanges());
+		}
 	}
 	
 	private void updateTBoxAnnotations() {
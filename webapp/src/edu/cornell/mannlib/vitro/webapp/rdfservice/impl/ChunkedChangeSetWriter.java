@@ -0,0 +1,537 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.rdfservice.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFBase;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.StmtIterator;
+import com.hp.hpl.jena.sparql.core.Quad;
+
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeSet;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService.ModelSerializationFormat;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
+
+/**
+ * Writes a stream of triples to a graph in the RDFService, as a series of
+ * ChangeSets of limited size, so a large file can be parsed straight into the
+ * triple store.
+ *
+ * The triples are read twice. The first pass only parses: if the data is not
+ * valid, nothing is written. It also notes where each group of blank nodes
+ * ends. Blank nodes are only meaningful within a single ChangeSet, so the
+ * triples of a group (blank nodes that are connected to each other) are held
+ * back until the last of them has been read, and then written together.
+ *
+ * The first pass must remember every blank node until the end, since any of
+ * them may turn up again. Nothing else is held in memory except the current
+ * chunk and, during the second pass, the groups that are not yet complete.
+ *
+ * A stream that can only be read once, like a download, is copied to a
+ * temporary file first. If a Source gives different triples on the second
+ * read, the write fails.
+ *
+ * This is not atomic. If a write fails, the chunks before it stay written,
+ * and the exception says how many triples that was.
+ *
+ * If begin and end events are set, they go with the first and last
+ * ChangeSets, so listeners see the whole stream as one bulk update.
+ */
+public class ChunkedChangeSetWriter {
+	private static final Log log = LogFactory
+			.getLog(ChunkedChangeSetWriter.class);
+
+	public static final int DEFAULT_CHUNK_SIZE = 10000;
+
+	/** Report progress after this many chunks. */
+	private static final int PROGRESS_INTERVAL = 10;
+
+	public enum Operation {
+		ADD, REMOVE
+	}
+
+	/**
+	 * Something that can be read more than once, like an uploaded file.
+	 */
+	public interface Source {
+		InputStream openStream() throws IOException;
+	}
+
+	private final RDFService rdfService;
+	private final String graphURI;
+	private final Operation operation;
+
+	private int chunkSize = DEFAULT_CHUNK_SIZE;
+	private Object beginEvent;
+	private Object endEvent;
+
+	private final List<Triple> chunk = new ArrayList<>();
+	private boolean begun;
+	private boolean finished;
+	private long tripleCount;
+	private long writtenCount;
+	private int chunkCount;
+	private final long startTime = System.currentTimeMillis();
+
+	public ChunkedChangeSetWriter(RDFService rdfService, String graphURI,
+			Operation operation) {
+		this.rdfService = rdfService;
+		this.graphURI = graphURI;
+		this.operation = operation;
+	}
+
+	public ChunkedChangeSetWriter setChunkSize(int chunkSize) {
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException(
+					"chunkSize must be positive: " + chunkSize);
+		}
+		this.chunkSize = chunkSize;
+		return this;
+	}
+
+	/**
+	 * Events to send before the first change and after the last, such as
+	 * BulkUpdateEvents.
+	 */
+	public ChunkedChangeSetWriter setEvents(Object beginEvent, Object endEvent) {
+		this.beginEvent = beginEvent;
+		this.endEvent = endEvent;
+		return this;
+	}
+
+	/** How many triples have been written so far? */
+	public long getWrittenCount() {
+		return writtenCount;
+	}
+
+	// ----------------------------------------------------------------------
+	// Sources of triples
+	// ----------------------------------------------------------------------
+
+	/**
+	 * Parse the source and write the triples. Returns the number of triples.
+	 * If the source can't be parsed, nothing is written.
+	 *
+	 * @param language
+	 *            A Jena language name, like "RDF/XML" or "N3". If null, RDF/XML
+	 *            is assumed.
+	 */
+	public long read(final Source source, final String baseURI,
+			String language) throws IOException {
+		final Lang lang = toLang(language);
+		return run(new Triples() {
+			@Override
+			public void sendTo(StreamRDF sink) throws IOException {
+				try (InputStream in = source.openStream()) {
+					RDFDataMgr.parse(sink, in, baseURI, lang);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Copy the stream to a temporary file, so it is only read once, then parse
+	 * the file and write the triples. Returns the number of triples. The
+	 * caller closes the stream.
+	 */
+	public long read(InputStream in, String baseURI, String language)
+			throws IOException {
+		final File spool = File.createTempFile("rdfUpload", ".tmp");
+		try {
+			try (OutputStream out = new FileOutputStream(spool)) {
+				IOUtils.copyLarge(in, out);
+			}
+			return read(new Source() {
+				@Override
+				public InputStream openStream() throws IOException {
+					return new FileInputStream(spool);
+				}
+			}, baseURI, language);
+		} finally {
+			if (!spool.delete()) {
+				log.warn("Failed to delete " + spool);
+			}
+		}
+	}
+
+	/**
+	 * Write the statements of a model. Returns the number of triples.
+	 */
+	public long write(final Model model) {
+		try {
+			return run(new Triples() {
+				@Override
+				public void sendTo(StreamRDF sink) {
+					StmtIterator stmts = model.listStatements();
+					try {
+						while (stmts.hasNext()) {
+							sink.triple(stmts.next().asTriple());
+						}
+					} finally {
+						stmts.close();
+					}
+				}
+			});
+		} catch (IOException e) {
+			// A model doesn't do I/O.
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private interface Triples {
+		void sendTo(StreamRDF sink) throws IOException;
+	}
+
+	private long run(Triples triples) throws IOException {
+		if (begun || finished) {
+			throw new IllegalStateException("This writer has already been used.");
+		}
+
+		GroupFinder finder = new GroupFinder();
+		triples.sendTo(finder);
+
+		Chunker chunker = new Chunker(finder.lastTriplesOfGroups());
+		try {
+			triples.sendTo(chunker);
+			chunker.checkAgainst(finder);
+			finish();
+		} catch (IOException | RuntimeException e) {
+			abandon();
+			throw e;
+		}
+		return tripleCount;
+	}
+
+	// ----------------------------------------------------------------------
+	// The two passes
+	// ----------------------------------------------------------------------
+
+	/**
+	 * The first pass: for each group of connected blank nodes, find the index
+	 * of the last triple that mentions it.
+	 */
+	private static class GroupFinder extends StreamRDFBase {
+		private final BlankNodeGroups groups = new BlankNodeGroups();
+		private final Map<Node, Long> lastIndexes = new HashMap<>();
+		private long index;
+
+		@Override
+		public void triple(Triple triple) {
+			Node root = groups.join(triple);
+			if (root != null) {
+				lastIndexes.put(root, index);
+				for (Node merged : groups.takeMergedRoots()) {
+					lastIndexes.remove(merged);
+				}
+			}
+			index++;
+		}
+
+		@Override
+		public void quad(Quad quad) {
+			triple(quad.asTriple());
+		}
+
+		Set<Long> lastTriplesOfGroups() {
+			return new HashSet<>(lastIndexes.values());
+		}
+	}
+
+	/**
+	 * The second pass: put the triples into chunks, holding the triples of
+	 * each blank node group until the group is complete.
+	 */
+	private class Chunker extends StreamRDFBase {
+		private final Set<Long> lastTriplesOfGroups;
+		private final BlankNodeGroups groups = new BlankNodeGroups();
+		private final Map<Node, List<Triple>> heldTriples = new HashMap<>();
+		private long index;
+
+		Chunker(Set<Long> lastTriplesOfGroups) {
+			this.lastTriplesOfGroups = lastTriplesOfGroups;
+		}
+
+		@Override
+		public void triple(Triple triple) {
+			tripleCount++;
+			Node root = groups.join(triple);
+			if (root == null) {
+				addToChunk(Collections.singletonList(triple));
+			} else {
+				List<Triple> held = heldTriples.remove(root);
+				if (held == null) {
+					held = new ArrayList<>();
+				}
+				for (Node merged : groups.takeMergedRoots()) {
+					List<Triple> mergedTriples = heldTriples.remove(merged);
+					if (mergedTriples != null) {
+						held.addAll(mergedTriples);
+					}
+				}
+				held.add(triple);
+
+				if (lastTriplesOfGroups.contains(index)) {
+					groups.forget(held);
+					addToChunk(held);
+				} else {
+					heldTriples.put(root, held);
+				}
+			}
+			index++;
+		}
+
+		@Override
+		public void quad(Quad quad) {
+			triple(quad.asTriple());
+		}
+
+		/**
+		 * If the second pass didn't see the same triples as the first, the
+		 * source has changed. Some blank node groups may have been split, and
+		 * some may never be written, so don't carry on as if nothing happened.
+		 */
+		void checkAgainst(GroupFinder finder) throws IOException {
+			if (index != finder.index || !heldTriples.isEmpty()) {
+				throw new IOException("The data changed while it was being "
+						+ "read: first " + finder.index + " triple(s), then "
+						+ index + ", with " + heldTriples.size()
+						+ " incomplete blank node group(s)");
+			}
+		}
+	}
+
+	/**
+	 * Blank nodes, joined into groups when a triple connects them. Each group
+	 * is known by its root node.
+	 */
+	private static class BlankNodeGroups {
+		private final Map<Node, Node> parents = new HashMap<>();
+		private final List<Node> mergedRoots = new ArrayList<>();
+
+		/**
+		 * Add the blank nodes of this triple to the groups. Return the root of
+		 * their group, or null if the triple has no blank nodes.
+		 */
+		Node join(Triple triple) {
+			Node root = null;
+			for (Node node : blankNodes(triple)) {
+				Node nodeRoot = find(node);
+				if (root == null) {
+					root = nodeRoot;
+				} else if (!root.equals(nodeRoot)) {
+					parents.put(nodeRoot, root);
+					mergedRoots.add(nodeRoot);
+				}
+			}
+			return root;
+		}
+
+		/** The roots that the last join() merged into another group. */
+		List<Node> takeMergedRoots() {
+			List<Node> merged = new ArrayList<>(mergedRoots);
+			mergedRoots.clear();
+			return merged;
+		}
+
+		/** This group is complete: forget its nodes. */
+		void forget(List<Triple> triples) {
+			for (Triple triple : triples) {
+				for (Node node : blankNodes(triple)) {
+					parents.remove(node);
+				}
+			}
+		}
+
+		private Node find(Node node) {
+			if (!parents.containsKey(node)) {
+				parents.put(node, node);
+				return node;
+			}
+			Node root = node;
+			while (!parents.get(root).equals(root)) {
+				root = parents.get(root);
+			}
+			while (!node.equals(root)) {
+				node = parents.put(node, root);
+			}
+			return root;
+		}
+
+		private static List<Node> blankNodes(Triple triple) {
+			List<Node> nodes = new ArrayList<>(2);
+			if (triple.getSubject().isBlank()) {
+				nodes.add(triple.getSubject());
+			}
+			if (triple.getObject().isBlank()) {
+				nodes.add(triple.getObject());
+			}
+			return nodes;
+		}
+	}
+
+	// ----------------------------------------------------------------------
+	// Writing the chunks
+	// ----------------------------------------------------------------------
+
+	/**
+	 * Triples that must go in the same ChangeSet. If they won't fit in this
+	 * chunk, start another one. A group that is bigger than a chunk gets a
+	 * ChangeSet of its own.
+	 */
+	private void addToChunk(List<Triple> triples) {
+		if (!chunk.isEmpty() && chunk.size() + triples.size() > chunkSize) {
+			writeChunk(chunk, false);
+		}
+		chunk.addAll(triples);
+		if (chunk.size() >= chunkSize) {
+			writeChunk(chunk, false);
+		}
+	}
+
+	/**
+	 * Write whatever is left, with the end event.
+	 */
+	private void finish() {
+		writeChunk(chunk, true);
+		finished = true;
+
+		log.info(describe(operation == Operation.ADD ? "Added" : "Removed")
+				+ " in " + chunkCount + " change set(s), "
+				+ elapsedSeconds() + " seconds");
+	}
+
+	/**
+	 * The stream failed. Don't write what is left, but if the begin event was
+	 * sent, send the end event so the listeners aren't left waiting.
+	 */
+	private void abandon() {
+		if (finished) {
+			return;
+		}
+		finished = true;
+		chunk.clear();
+		if (begun && endEvent != null) {
+			ChangeSet changeSet = rdfService.manufactureChangeSet();
+			changeSet.addPostChangeEvent(endEvent);
+			try {
+				rdfService.changeSetUpdate(changeSet);
+			} catch (RDFServiceException e) {
+				log.error("Failed to send the end event", e);
+			}
+		}
+		log.warn("Abandoned after writing " + writtenCount + " of "
+				+ tripleCount + " triple(s), graph " + graphURI);
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper methods
+	// ----------------------------------------------------------------------
+
+	private void writeChunk(List<Triple> triples, boolean last) {
+		ChangeSet changeSet = rdfService.manufactureChangeSet();
+		if (!begun) {
+			begun = true;
+			if (beginEvent != null) {
+				changeSet.addPreChangeEvent(beginEvent);
+			}
+		}
+		if (!triples.isEmpty()) {
+			InputStream in = serialize(triples);
+			if (operation == Operation.ADD) {
+				changeSet.addAddition(in, ModelSerializationFormat.NTRIPLE,
+						graphURI);
+			} else {
+				changeSet.addRemoval(in, ModelSerializationFormat.NTRIPLE,
+						graphURI);
+			}
+		}
+		if (last && endEvent != null) {
+			changeSet.addPostChangeEvent(endEvent);
+		}
+		int size = triples.size();
+		triples.clear();
+
+		if (changeSet.getModelChanges().isEmpty()
+				&& changeSet.getPreChangeEvents().isEmpty()
+				&& changeSet.getPostChangeEvents().isEmpty()) {
+			return;
+		}
+		apply(changeSet);
+		writtenCount += size;
+
+		chunkCount++;
+		if (chunkCount % PROGRESS_INTERVAL == 0) {
+			log.info(describe("Written") + ", " + elapsedSeconds()
+					+ " seconds");
+		}
+	}
+
+	private void apply(ChangeSet changeSet) {
+		try {
+			rdfService.changeSetUpdate(changeSet);
+		} catch (RDFServiceException e) {
+			throw new RuntimeException("Failed to write to graph " + graphURI
+					+ " after " + writtenCount + " triple(s) had been written",
+					e);
+		}
+	}
+
+	private InputStream serialize(List<Triple> triples) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		RDFDataMgr.writeTriples(out, triples.iterator());
+		return new ByteArrayInputStream(out.toByteArray());
+	}
+
+	private String describe(String verb) {
+		return verb + " " + tripleCount + " triple(s), graph " + graphURI;
+	}
+
+	private long elapsedSeconds() {
+		return (System.currentTimeMillis() - startTime) / 1000;
+	}
+
+	/**
+	 * Translate the Jena language names that the upload pages use.
+	 */
+	static Lang toLang(String language) {
+		if (language == null || language.isEmpty()
+				|| "RDF/XML-ABBREV".equals(language)) {
+			return RDFLanguages.RDFXML;
+		}
+		if ("N-TRIPLE".equals(language) || "N-TRIPLES".equals(language)) {
+			return RDFLanguages.NTRIPLES;
+		}
+		Lang lang = RDFLanguages.nameToLang(language);
+		if (lang == null) {
+			throw new IllegalArgumentException("unrecognized format "
+					+ language);
+		}
+		return lang;
+	}
+}
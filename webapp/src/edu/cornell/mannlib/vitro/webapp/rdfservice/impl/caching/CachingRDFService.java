@@ -0,0 +1,216 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.rdfservice.impl.caching;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeListener;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeSet;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
+
+/**
+ * This RDFService wrapper answers SELECT, ASK and CONSTRUCT queries from a
+ * QueryResultCache when it can, and stores the results of the inner
+ * RDFService when it can't.
+ *
+ * For the other methods, it just delegates to the inner RDFService. The cache
+ * listens for changes, so an update through any RDFService on the same store
+ * discards the results that it affects.
+ */
+public class CachingRDFService implements RDFService {
+	private final RDFService innerService;
+	private final QueryResultCache cache;
+
+	public CachingRDFService(RDFService innerService, QueryResultCache cache) {
+		this.innerService = innerService;
+		this.cache = cache;
+	}
+
+	// ----------------------------------------------------------------------
+	// Cached methods
+	// ----------------------------------------------------------------------
+
+	@Override
+	public InputStream sparqlConstructQuery(String query,
+			ModelSerializationFormat resultFormat) throws RDFServiceException {
+		QueryDependencies deps = QueryDependencies.analyze(query);
+		if (deps == null) {
+			return innerService.sparqlConstructQuery(query, resultFormat);
+		}
+
+		String key = "CONSTRUCT " + resultFormat + " "
+				+ deps.getNormalizedQuery();
+		long ticket = cache.getTicket();
+		Object cached = cache.get(key);
+		if (cached instanceof byte[]) {
+			return new ByteArrayInputStream((byte[]) cached);
+		}
+
+		return storeIfSmall(key, innerService.sparqlConstructQuery(query,
+				resultFormat), deps, ticket);
+	}
+
+	@Override
+	public InputStream sparqlSelectQuery(String query, ResultFormat resultFormat)
+			throws RDFServiceException {
+		QueryDependencies deps = QueryDependencies.analyze(query);
+		if (deps == null) {
+			return innerService.sparqlSelectQuery(query, resultFormat);
+		}
+
+		String key = "SELECT " + resultFormat + " " + deps.getNormalizedQuery();
+		long ticket = cache.getTicket();
+		Object cached = cache.get(key);
+		if (cached instanceof byte[]) {
+			return new ByteArrayInputStream((byte[]) cached);
+		}
+
+		return storeIfSmall(key, innerService.sparqlSelectQuery(query,
+				resultFormat), deps, ticket);
+	}
+
+	@Override
+	public boolean sparqlAskQuery(String query) throws RDFServiceException {
+		QueryDependencies deps = QueryDependencies.analyze(query);
+		if (deps == null) {
+			return innerService.sparqlAskQuery(query);
+		}
+
+		String key = "ASK " + deps.getNormalizedQuery();
+		long ticket = cache.getTicket();
+		Object cached = cache.get(key);
+		if (cached instanceof Boolean) {
+			return (Boolean) cached;
+		}
+
+		boolean result = innerService.sparqlAskQuery(query);
+		cache.put(key, result, 1, deps, ticket);
+		return result;
+	}
+
+	/**
+	 * Read the result, but no more than the cache would store. If all of it
+	 * fits, store it. If not, stop buffering and return what has been read
+	 * followed by the rest of the stream.
+	 */
+	private InputStream storeIfSmall(String key, InputStream in,
+			QueryDependencies deps, long ticket)
+			throws RDFServiceException {
+		long limit = cache.getMaxEntryBytes();
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		try {
+			if (IOUtils.copyLarge(in, buffer, 0, limit + 1) > limit) {
+				return new SequenceInputStream(new ByteArrayInputStream(
+						buffer.toByteArray()), in);
+			}
+		} catch (IOException e) {
+			IOUtils.closeQuietly(in);
+			throw new RDFServiceException(e);
+		}
+		IOUtils.closeQuietly(in);
+
+		byte[] bytes = buffer.toByteArray();
+		cache.put(key, bytes, bytes.length, deps, ticket);
+		return new ByteArrayInputStream(bytes);
+	}
+
+	// ----------------------------------------------------------------------
+	// Uncached methods
+	// ----------------------------------------------------------------------
+
+	@Override
+	public boolean changeSetUpdate(ChangeSet changeSet)
+			throws RDFServiceException {
+		return innerService.changeSetUpdate(changeSet);
+	}
+
+	@Override
+	public InputStream sparqlDescribeQuery(String query,
+			ModelSerializationFormat resultFormat) throws RDFServiceException {
+		return innerService.sparqlDescribeQuery(query, resultFormat);
+	}
+
+	@Override
+	public void serializeAll(OutputStream outputStream)
+			throws RDFServiceException {
+		innerService.serializeAll(outputStream);
+	}
+
+	@Override
+	public void serializeGraph(String graphURI, OutputStream outputStream)
+			throws RDFServiceException {
+		innerService.serializeGraph(graphURI, outputStream);
+	}
+
+	@Override
+	public boolean isEquivalentGraph(String graphURI,
+			InputStream serializedGraph,
+			ModelSerializationFormat serializationFormat)
+			throws RDFServiceException {
+		return innerService.isEquivalentGraph(graphURI, serializedGraph,
+				serializationFormat);
+	}
+
+	@Override
+	public void newIndividual(String individualURI, String individualTypeURI)
+			throws RDFServiceException {
+		innerService.newIndividual(individualURI, individualTypeURI);
+	}
+
+	@Override
+	public void newIndividual(String individualURI, String individualTypeURI,
+			String graphURI) throws RDFServiceException {
+		innerService.newIndividual(individualURI, individualTypeURI, graphURI);
+	}
+
+	@Override
+	public List<String> getGraphURIs() throws RDFServiceException {
+		return innerService.getGraphURIs();
+	}
+
+	@Override
+	public void getGraphMetadata() throws RDFServiceException {
+		innerService.getGraphMetadata();
+	}
+
+	@Override
+	public String getDefaultWriteGraphURI() throws RDFServiceException {
+		return innerService.getDefaultWriteGraphURI();
+	}
+
+	@Override
+	public void registerListener(ChangeListener changeListener)
+			throws RDFServiceException {
+		innerService.registerListener(changeListener);
+	}
+
+	@Override
+	public void unregisterListener(ChangeListener changeListener)
+			throws RDFServiceException {
+		innerService.unregisterListener(changeListener);
+	}
+
+	@Override
+	public ChangeSet manufactureChangeSet() {
+		return innerService.manufactureChangeSet();
+	}
+
+	@Override
+	public void close() {
+		innerService.close();
+	}
+
+	@Override
+	public String toString() {
+		return "CachingRDFService[" + cache + ", inner=" + innerService + "]";
+	}
+}
@@ -0,0 +1,233 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.rdfservice.impl.caching;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.query.QueryFactory;
+import com.hp.hpl.jena.query.Syntax;
+import com.hp.hpl.jena.sparql.core.TriplePath;
+import com.hp.hpl.jena.sparql.syntax.Element;
+import com.hp.hpl.jena.sparql.syntax.ElementAssign;
+import com.hp.hpl.jena.sparql.syntax.ElementBind;
+import com.hp.hpl.jena.sparql.syntax.ElementData;
+import com.hp.hpl.jena.sparql.syntax.ElementExists;
+import com.hp.hpl.jena.sparql.syntax.ElementFilter;
+import com.hp.hpl.jena.sparql.syntax.ElementGroup;
+import com.hp.hpl.jena.sparql.syntax.ElementMinus;
+import com.hp.hpl.jena.sparql.syntax.ElementNamedGraph;
+import com.hp.hpl.jena.sparql.syntax.ElementNotExists;
+import com.hp.hpl.jena.sparql.syntax.ElementOptional;
+import com.hp.hpl.jena.sparql.syntax.ElementPathBlock;
+import com.hp.hpl.jena.sparql.syntax.ElementSubQuery;
+import com.hp.hpl.jena.sparql.syntax.ElementTriplesBlock;
+import com.hp.hpl.jena.sparql.syntax.ElementUnion;
+
+/**
+ * The graphs and predicates that a query reads, so a cached result can be
+ * discarded when a triple in one of those graphs, with one of those
+ * predicates, is added or removed.
+ *
+ * The analysis is conservative. A pattern outside of a GRAPH clause reads
+ * every graph (unless there is a FROM clause), since the default graph is the
+ * union of all graphs. A variable predicate or a property path reads every
+ * predicate, and so does anything that isn't understood, like a FILTER EXISTS.
+ *
+ * Queries that can't be parsed, DESCRIBE queries, and queries that call a
+ * SERVICE are not cacheable: analyze() returns null.
+ */
+public class QueryDependencies {
+	private static final Log log = LogFactory.getLog(QueryDependencies.class);
+
+	public static QueryDependencies analyze(String queryString) {
+		Query query;
+		try {
+			query = QueryFactory.create(queryString, Syntax.syntaxARQ);
+		} catch (Exception e) {
+			log.debug("Can't parse query, so not cacheable: " + queryString);
+			return null;
+		}
+
+		if (!(query.isSelectType() || query.isAskType() || query
+				.isConstructType())) {
+			return null;
+		}
+
+		Collector collector = new Collector();
+		if (!collector.collect(query)) {
+			return null;
+		}
+		return new QueryDependencies(query.serialize(), collector);
+	}
+
+	private final String normalizedQuery;
+	private final boolean anyGraph;
+	private final Set<String> graphs;
+	private final boolean anyPredicate;
+	private final Set<String> predicates;
+
+	private QueryDependencies(String normalizedQuery, Collector collector) {
+		this.normalizedQuery = normalizedQuery;
+		this.anyGraph = collector.anyGraph;
+		this.graphs = Collections.unmodifiableSet(collector.graphs);
+		this.anyPredicate = collector.anyPredicate;
+		this.predicates = Collections.unmodifiableSet(collector.predicates);
+	}
+
+	/**
+	 * The query as ARQ writes it. Queries that differ only in whitespace or
+	 * comments have the same normalized form.
+	 */
+	public String getNormalizedQuery() {
+		return normalizedQuery;
+	}
+
+	public boolean isAnyGraph() {
+		return anyGraph;
+	}
+
+	public Set<String> getGraphs() {
+		return graphs;
+	}
+
+	public boolean isAnyPredicate() {
+		return anyPredicate;
+	}
+
+	public Set<String> getPredicates() {
+		return predicates;
+	}
+
+	/**
+	 * Could a change to this triple affect the result? A null graph or a null
+	 * predicate could be anything.
+	 */
+	public boolean isAffectedBy(String graphURI, String predicateURI) {
+		boolean graphMatches = anyGraph || graphURI == null
+				|| graphs.contains(graphURI);
+		boolean predicateMatches = anyPredicate || predicateURI == null
+				|| predicates.contains(predicateURI);
+		return graphMatches && predicateMatches;
+	}
+
+	@Override
+	public String toString() {
+		return "QueryDependencies[graphs=" + (anyGraph ? "ANY" : graphs)
+				+ ", predicates=" + (anyPredicate ? "ANY" : predicates) + "]";
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper class
+	// ----------------------------------------------------------------------
+
+	/**
+	 * Walk the query pattern, keeping track of which graph each part of it
+	 * reads from. A null graph means the default graph.
+	 */
+	private static class Collector {
+		private final Set<String> graphs = new HashSet<>();
+		private final Set<String> predicates = new HashSet<>();
+		private boolean anyGraph;
+		private boolean anyPredicate;
+		private boolean cacheable = true;
+
+		private List<String> fromGraphs;
+
+		boolean collect(Query query) {
+			fromGraphs = query.getGraphURIs();
+			if (query.getQueryPattern() != null) {
+				walk(query.getQueryPattern(), null);
+			}
+			return cacheable;
+		}
+
+		private void walk(Element el, String graph) {
+			if (el instanceof ElementGroup) {
+				for (Element child : ((ElementGroup) el).getElements()) {
+					walk(child, graph);
+				}
+			} else if (el instanceof ElementUnion) {
+				for (Element child : ((ElementUnion) el).getElements()) {
+					walk(child, graph);
+				}
+			} else if (el instanceof ElementOptional) {
+				walk(((ElementOptional) el).getOptionalElement(), graph);
+			} else if (el instanceof ElementMinus) {
+				walk(((ElementMinus) el).getMinusElement(), graph);
+			} else if (el instanceof ElementExists) {
+				walk(((ElementExists) el).getElement(), graph);
+			} else if (el instanceof ElementNotExists) {
+				walk(((ElementNotExists) el).getElement(), graph);
+			} else if (el instanceof ElementNamedGraph) {
+				ElementNamedGraph eng = (ElementNamedGraph) el;
+				Node name = eng.getGraphNameNode();
+				if (name.isURI()) {
+					walk(eng.getElement(), name.getURI());
+				} else {
+					anyGraph = true;
+					walk(eng.getElement(), null);
+				}
+			} else if (el instanceof ElementSubQuery) {
+				Query sub = ((ElementSubQuery) el).getQuery();
+				if (sub.getQueryPattern() != null) {
+					walk(sub.getQueryPattern(), graph);
+				}
+			} else if (el instanceof ElementPathBlock) {
+				for (TriplePath tp : ((ElementPathBlock) el).getPattern()) {
+					if (tp.isTriple()) {
+						addTriple(tp.asTriple(), graph);
+					} else {
+						anyPredicate = true;
+						addGraph(graph);
+					}
+				}
+			} else if (el instanceof ElementTriplesBlock) {
+				for (Triple t : ((ElementTriplesBlock) el).getPattern()) {
+					addTriple(t, graph);
+				}
+			} else if (el instanceof ElementFilter) {
+				// A FILTER EXISTS hides a pattern inside an expression.
+				String expr = String.valueOf(((ElementFilter) el).getExpr());
+				if (expr.toLowerCase().contains("exists")) {
+					anyGraph = true;
+					anyPredicate = true;
+				}
+			} else if (el instanceof ElementBind || el instanceof ElementAssign
+					|| el instanceof ElementData) {
+				// These read nothing from the store.
+			} else {
+				// SERVICE, or something we don't recognize.
+				cacheable = false;
+			}
+		}
+
+		private void addTriple(Triple t, String graph) {
+			Node p = t.getPredicate();
+			if (p.isURI()) {
+				predicates.add(p.getURI());
+			} else {
+				anyPredicate = true;
+			}
+			addGraph(graph);
+		}
+
+		private void addGraph(String graph) {
+			if (graph != null) {
+				graphs.add(graph);
+			} else if (fromGraphs.isEmpty()) {
+				anyGraph = true;
+			} else {
+				graphs.addAll(fromGraphs);
+			}
+		}
+	}
+}
@@ -0,0 +1,141 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.rdfservice.impl.caching;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeListener;
+import edu.cornell.mannlib.vitro.webapp.utils.cache.DependencyCache;
+import edu.cornell.mannlib.vitro.webapp.utils.cache.SerializedTriples;
+
+/**
+ * Query results, by query type, result format and normalized query.
+ *
+ * The total size of the results is limited. The least recently used are
+ * discarded first. A single result that would take more than a small part of
+ * the cache is not stored at all.
+ *
+ * Register this as a listener on the RDFServiceFactory whose queries it holds.
+ * A result depends on each graph and predicate pair in its QueryDependencies,
+ * with "*" standing for any graph or any predicate, and on each of its
+ * predicates in a graph that is not known. A triple that is added or removed
+ * changes the pairs that match its graph and predicate. The results that
+ * depend on those pairs are discarded, and a query that reads them while the
+ * change is being made is not stored. Results that read other graphs or other
+ * predicates are not affected.
+ */
+public class QueryResultCache implements ChangeListener {
+	private static final Log log = LogFactory.getLog(QueryResultCache.class);
+
+	private static final String ANY = "*";
+
+	/** Stands for the graph when the listener isn't told which one changed. */
+	private static final String UNKNOWN_GRAPH = "?";
+
+	/** A rough allowance for the key, the dependencies, and the map entry. */
+	private static final int ENTRY_OVERHEAD = 200;
+
+	private final DependencyCache<String, Object> cache;
+	private final long maxEntryBytes;
+
+	public QueryResultCache(String name, long maxBytes) {
+		this.cache = new DependencyCache<>("QueryResultCache[" + name + "]",
+				maxBytes);
+		this.maxEntryBytes = maxBytes / 16;
+	}
+
+	/** Get the cached result, or null. */
+	public Object get(String key) {
+		return cache.get(key);
+	}
+
+	/** A result larger than this will not be stored. */
+	public long getMaxEntryBytes() {
+		return maxEntryBytes;
+	}
+
+	/** Get this before running the query, and pass it to put(). */
+	public long getTicket() {
+		return cache.getTicket();
+	}
+
+	/**
+	 * Store this result, unless it is too big, or one of the graphs and
+	 * predicates that it reads has changed since the caller got the ticket.
+	 */
+	public void put(String key, Object value, int valueBytes,
+			QueryDependencies dependencies, long ticket) {
+		long size = valueBytes + 2L * key.length() + ENTRY_OVERHEAD;
+		if (size > maxEntryBytes) {
+			log.debug("Result is too large to cache: " + size + " bytes");
+			return;
+		}
+		cache.put(key, value, size, dependencyNames(dependencies), ticket);
+	}
+
+	public DependencyCache.Statistics getStatistics() {
+		return cache.getStatistics();
+	}
+
+	private static Set<String> dependencyNames(QueryDependencies dependencies) {
+		Set<String> graphs = dependencies.isAnyGraph() ? Collections.singleton(ANY)
+				: dependencies.getGraphs();
+		Set<String> predicates = dependencies.isAnyPredicate() ? Collections.singleton(ANY)
+				: dependencies.getPredicates();
+
+		Set<String> names = new HashSet<>();
+		for (String predicate : predicates) {
+			names.add(name(UNKNOWN_GRAPH, predicate));
+			for (String graph : graphs) {
+				names.add(name(graph, predicate));
+			}
+		}
+		return names;
+	}
+
+	/** URIs contain no spaces, so the name is not ambiguous. */
+	private static String name(String graph, String predicate) {
+		return graph + " " + predicate;
+	}
+
+	private void noteChange(String serializedTriple, String graphURI) {
+		String predicate = SerializedTriples.predicate(serializedTriple);
+		if (predicate == null) {
+			log.debug("Can't find the predicate in '" + serializedTriple + "'");
+			cache.changedAll();
+		} else if (graphURI == null) {
+			cache.changed(name(UNKNOWN_GRAPH, predicate));
+			cache.changed(name(UNKNOWN_GRAPH, ANY));
+		} else {
+			cache.changed(name(graphURI, predicate));
+			cache.changed(name(graphURI, ANY));
+			cache.changed(name(ANY, predicate));
+			cache.changed(name(ANY, ANY));
+		}
+	}
+
+	@Override
+	public void addedStatement(String serializedTriple, String graphURI) {
+		noteChange(serializedTriple, graphURI);
+	}
+
+	@Override
+	public void removedStatement(String serializedTriple, String graphURI) {
+		noteChange(serializedTriple, graphURI);
+	}
+
+	@Override
+	public void notifyEvent(String graphURI, Object event) {
+		// Nothing to do.
+	}
+
+	@Override
+	public String toString() {
+		return getStatistics().toString();
+	}
+}
@@ -9,7 +9,14 @@ import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.logging.Log;
@@ -21,18 +28,74 @@ import com.hp.hpl.jena.tdb.TDBFactory;
 
 import edu.cornell.mannlib.vitro.webapp.dao.jena.DatasetWrapper;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeSet;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ModelChange;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.jena.RDFServiceJena;
+import edu.cornell.mannlib.vitro.webapp.utils.threads.VitroBackgroundThread;
+import edu.cornell.mannlib.vitro.webapp.utils.threads.VitroBackgroundThread.WorkLevel;
 
 /**
  * An implementation that is based on Jena TDB.
+ * 
+ * Each TDB write transaction ends with a sync to disk, which is slow, and only
+ * one write transaction may be open at a time. So changes are written by a
+ * single writer thread, using group commit: concurrent calls to
+ * changeSetUpdate() put their ChangeSets in a queue, and the writer applies as
+ * many as are waiting, up to maxBatchSize, in one transaction. If maxWaitMillis
+ * is more than zero, the writer waits up to that long for more ChangeSets to
+ * fill the batch.
+ * 
+ * Each caller still waits until its own changes are committed, and then
+ * notifies the listeners of its own changes, on its own thread. The writer
+ * does nothing but commit, so a listener that takes locks, or makes changes of
+ * its own, can't hold up the other writes. If a batch fails, its ChangeSets are
+ * tried again one at a time, so one bad ChangeSet does not cause the others to
+ * fail.
+ * 
+ * The writer numbers the ChangeSets in the order it commits them, and the
+ * callers take turns by that number, so the listeners hear of the changes in
+ * the order they were committed. Changes that a listener makes while it is
+ * being notified are announced at once, as they would be without a writer. A
+ * caller that has waited NOTIFY_IN_ORDER_MILLIS for its turn stops waiting and
+ * notifies anyway, since the caller ahead of it may be stuck on a lock that
+ * this caller holds.
+ * 
+ * If maxBatchSize is 1 or less, there is no writer thread, and each caller
+ * writes its own ChangeSet in its own transaction.
  */
 public class RDFServiceTDB extends RDFServiceJena {
 	private static final Log log = LogFactory.getLog(RDFServiceTDB.class);
 
+	public static final int DEFAULT_MAX_BATCH_SIZE = 100;
+	public static final long DEFAULT_MAX_WAIT_MILLIS = 0L;
+	private static final long NOTIFY_IN_ORDER_MILLIS = 10000L;
+
+	/** Is this thread notifying the listeners of a change? */
+	private static final ThreadLocal<Boolean> NOTIFYING = new ThreadLocal<>();
+
 	private final Dataset dataset;
 
+	private final int maxBatchSize;
+	private final long maxWaitMillis;
+	private final BlockingQueue<PendingChange> pending = new LinkedBlockingQueue<>();
+	private final Writer writer;
+	private boolean closed;
+
+	/** Only the writer thread uses this. */
+	private long nextCommitNumber;
+
+	private final Object notifyTurn = new Object();
+	/** Guarded by notifyTurn. */
+	private long nextToNotify;
+	/** Guarded by notifyTurn. Turns that ended before the ones ahead of them. */
+	private final Set<Long> endedOutOfTurn = new HashSet<>();
+
 	public RDFServiceTDB(String directoryPath) throws IOException {
+		this(directoryPath, DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_WAIT_MILLIS);
+	}
+
+	public RDFServiceTDB(String directoryPath, int maxBatchSize,
+			long maxWaitMillis) throws IOException {
 		Path tdbDir = Paths.get(directoryPath);
 
 		if (!Files.exists(tdbDir)) {
@@ -46,6 +109,15 @@ public class RDFServiceTDB extends RDFServiceJena {
 		}
 
 		this.dataset = TDBFactory.createDataset(directoryPath);
+
+		this.maxBatchSize = maxBatchSize;
+		this.maxWaitMillis = Math.max(0L, maxWaitMillis);
+		if (maxBatchSize > 1) {
+			this.writer = new Writer();
+			this.writer.start();
+		} else {
+			this.writer = null;
+		}
 	}
 
 	@Override
@@ -70,32 +142,224 @@ public class RDFServiceTDB extends RDFServiceJena {
 				log.debug("Change Set: " + changeSet);
 			}
 			notifyListenersOfPreChangeEvents(changeSet);
+		} catch (Exception e) {
+			log.error(e, e);
+			throw new RDFServiceException(e);
+		}
+
+		if (writer == null) {
+			writeAlone(changeSet);
+		} else {
+			writeInBatch(changeSet);
+		}
+		return true;
+	}
+
+	/**
+	 * Write the ChangeSet in its own transaction, and notify the listeners.
+	 */
+	private void writeAlone(ChangeSet changeSet) throws RDFServiceException {
+		try {
+			commit(changeSet);
+			notifyListeners(changeSet);
+		} catch (Exception e) {
+			log.error(e, e);
+			throw new RDFServiceException(e);
+		}
+	}
 
+	/**
+	 * Give the ChangeSet to the writer, wait until it has been committed, and
+	 * notify the listeners when its turn comes. A failed ChangeSet still takes
+	 * its turn, so the ones after it don't wait for it.
+	 */
+	private void writeInBatch(ChangeSet changeSet) throws RDFServiceException {
+		PendingChange change = new PendingChange(changeSet);
+		synchronized (pending) {
+			if (closed) {
+				throw new RDFServiceException("RDFServiceTDB has been closed.");
+			}
+			pending.add(change);
+		}
+
+		boolean interrupted = false;
+		while (true) {
+			try {
+				change.done.await();
+				break;
+			} catch (InterruptedException e) {
+				// The change is already queued: wait for it anyway.
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+
+		boolean nested = Boolean.TRUE.equals(NOTIFYING.get());
+		if (!nested) {
+			awaitTurnToNotify(change.commitNumber);
+			NOTIFYING.set(Boolean.TRUE);
+		}
+		try {
+			if (change.failure != null) {
+				log.error(change.failure, change.failure);
+				throw new RDFServiceException(change.failure);
+			}
+			notifyListeners(changeSet);
+		} catch (RDFServiceException e) {
+			throw e;
+		} catch (Exception e) {
+			log.error(e, e);
+			throw new RDFServiceException(e);
+		} finally {
+			if (!nested) {
+				NOTIFYING.remove();
+			}
+			endTurnToNotify(change.commitNumber);
+		}
+	}
+
+	private void awaitTurnToNotify(long commitNumber) {
+		long deadline = System.currentTimeMillis() + NOTIFY_IN_ORDER_MILLIS;
+		boolean interrupted = false;
+		synchronized (notifyTurn) {
+			while (nextToNotify < commitNumber) {
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0) {
+					log.warn("Waited " + NOTIFY_IN_ORDER_MILLIS
+							+ " ms to notify the listeners of change "
+							+ commitNumber + " after change " + nextToNotify
+							+ "; notifying out of order.");
+					nextToNotify = commitNumber;
+					notifyTurn.notifyAll();
+					break;
+				}
+				try {
+					notifyTurn.wait(remaining);
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void endTurnToNotify(long commitNumber) {
+		synchronized (notifyTurn) {
+			if (commitNumber >= nextToNotify) {
+				endedOutOfTurn.add(commitNumber);
+			}
+			while (endedOutOfTurn.remove(nextToNotify)) {
+				nextToNotify++;
+			}
+			notifyTurn.notifyAll();
+		}
+	}
+
+	private void commit(ChangeSet changeSet) {
+		dataset.begin(ReadWrite.WRITE);
+		try {
+			applyChangeSetToModel(changeSet, dataset);
+			dataset.commit();
+		} catch (RuntimeException e) {
+			dataset.abort();
+			throw e;
+		} finally {
+			dataset.end();
+		}
+	}
+
+	private void notifyListeners(ChangeSet changeSet) throws IOException {
+		notifyListenersOfChanges(changeSet);
+		notifyListenersOfPostChangeEvents(changeSet);
+	}
+
+	/**
+	 * Apply all of the ChangeSets in one transaction. If that fails, try them
+	 * one at a time. Then release the callers.
+	 */
+	private void commitBatch(List<PendingChange> batch) {
+		if (log.isDebugEnabled()) {
+			log.debug("Committing " + batch.size() + " ChangeSets.");
+		}
+		try {
 			dataset.begin(ReadWrite.WRITE);
 			try {
-				applyChangeSetToModel(changeSet, dataset);
+				for (PendingChange change : batch) {
+					applyChangeSetToModel(change.changeSet, dataset);
+				}
 				dataset.commit();
+			} catch (RuntimeException e) {
+				dataset.abort();
+				throw e;
 			} finally {
 				dataset.end();
 			}
-			
-			notifyListenersOfChanges(changeSet);
-			notifyListenersOfPostChangeEvents(changeSet);
-			return true;
-		} catch (Exception e) {
-			log.error(e, e);
-			throw new RDFServiceException(e);
+		} catch (Throwable e) {
+			if (batch.size() == 1) {
+				batch.get(0).failure = e;
+			} else {
+				log.warn("Failed to commit a batch of " + batch.size()
+						+ " ChangeSets; committing them one at a time.", e);
+				for (PendingChange change : batch) {
+					try {
+						resetInputStreams(change.changeSet);
+						commit(change.changeSet);
+					} catch (Throwable e1) {
+						change.failure = e1;
+					}
+				}
+			}
+		}
+
+		for (PendingChange change : batch) {
+			change.commitNumber = nextCommitNumber++;
+			change.done.countDown();
 		}
 	}
 
-	
+	private void resetInputStreams(ChangeSet changeSet) throws IOException {
+		for (ModelChange modelChange : changeSet.getModelChanges()) {
+			modelChange.getSerializedModel().reset();
+		}
+	}
+
+	/**
+	 * Stop the writer, after it has written whatever is waiting.
+	 * 
+	 * Don't interrupt the writer: an interrupt during file I/O closes the
+	 * channel, and could leave TDB damaged. Instead, put a marker at the end of
+	 * the queue, and wait for the writer to reach it.
+	 */
 	@Override
 	public void close() {
+		if (writer != null) {
+			synchronized (pending) {
+				if (!closed) {
+					closed = true;
+					pending.add(STOP);
+				}
+			}
+			try {
+				writer.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
 		if (this.dataset != null) {
 			dataset.close();
 		}
 	}
 
+	@Override
+	public String toString() {
+		return "RDFServiceTDB[maxBatchSize=" + maxBatchSize
+				+ ", maxWaitMillis=" + maxWaitMillis + "]";
+	}
+
 	@Override
 	public InputStream sparqlConstructQuery(String query,
 			ModelSerializationFormat resultFormat) throws RDFServiceException {
@@ -210,4 +474,96 @@ public class RDFServiceTDB extends RDFServiceJena {
 			throw new RDFServiceException(e);
 		}
 	}
+
+	// ----------------------------------------------------------------------
+	// Helper classes
+	// ----------------------------------------------------------------------
+
+	/** Tells the writer that nothing more will be added to the queue. */
+	private static final PendingChange STOP = new PendingChange(null);
+
+	/**
+	 * A ChangeSet in the queue, and the caller who is waiting for it.
+	 */
+	private static class PendingChange {
+		final ChangeSet changeSet;
+		final CountDownLatch done = new CountDownLatch(1);
+		volatile Throwable failure;
+		/** Set by the writer before it counts down. */
+		long commitNumber;
+
+		PendingChange(ChangeSet changeSet) {
+			this.changeSet = changeSet;
+		}
+	}
+
+	/**
+	 * Take a batch from the queue, and commit it. Stop after the STOP marker.
+	 * If interrupted anyway, write what is left in the queue, and stop.
+	 */
+	private class Writer extends VitroBackgroundThread {
+		Writer() {
+			super("RDFServiceTDB.Writer");
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			boolean stopping = false;
+			while (!stopping) {
+				List<PendingChange> batch = new ArrayList<>();
+				try {
+					batch.add(pending.take());
+					fillBatch(batch);
+				} catch (InterruptedException e) {
+					log.warn("Writer was interrupted; stopping.");
+					stopping = true;
+				}
+				// Nothing is queued after STOP, so it is always last.
+				if (batch.remove(STOP)) {
+					log.debug("Writer is stopping.");
+					stopping = true;
+				}
+				if (!batch.isEmpty()) {
+					setWorkLevel(WorkLevel.WORKING);
+					commitBatch(batch);
+					setWorkLevel(WorkLevel.IDLE);
+				}
+			}
+
+			List<PendingChange> batch = new ArrayList<>();
+			while (pending.drainTo(batch, maxBatchSize) > 0) {
+				batch.remove(STOP);
+				if (!batch.isEmpty()) {
+					commitBatch(batch);
+				}
+				batch = new ArrayList<>();
+			}
+		}
+
+		private void fillBatch(List<PendingChange> batch)
+				throws InterruptedException {
+			pending.drainTo(batch, maxBatchSize - batch.size());
+			if (maxWaitMillis == 0 || batch.contains(STOP)) {
+				return;
+			}
+			long deadline = System.currentTimeMillis() + maxWaitMillis;
+			while (batch.size() < maxBatchSize && !batch.contains(STOP)) {
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0) {
+					return;
+				}
+				PendingChange change = pending.poll(remaining,
+						TimeUnit.MILLISECONDS);
+				if (change == null) {
+					return;
+				}
+				batch.add(change);
+				if (change == STOP) {
+					return;
+				}
+				pending.drainTo(batch, maxBatchSize - batch.size());
+			}
+		}
+	}
 }
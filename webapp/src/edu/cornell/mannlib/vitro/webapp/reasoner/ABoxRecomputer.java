@@ -58,6 +58,7 @@ public class ABoxRecomputer {
     private Object lock1 = new Object();
     private volatile boolean recomputing = false;
     private boolean stopRequested = false;
+    private SameAsIndex sameAsIndex;        // built fresh for each recompute
 
     private final int BATCH_SIZE = 100;
     private final int REPORTING_INTERVAL = 1000;
@@ -127,6 +128,8 @@ public class ABoxRecomputer {
         Collection<String> individuals = this.getAllIndividualURIs();
         log.info("Recomputing inferences for " + individuals.size() + " individuals");
         long start = System.currentTimeMillis();
+        sameAsIndex = new SameAsIndex(RDFServiceGraph.createRDFServiceModel(
+                new RDFServiceGraph(rdfService)));
         int numInds = 0;
         Model rebuildModel = ModelFactory.createDefaultModel();
         Model additionalInferences = ModelFactory.createDefaultModel();
@@ -451,38 +454,7 @@ public class ABoxRecomputer {
     }
 
     private Set<String> getSameAsIndividuals(String individualURI) {
-        HashSet<String> sameAsInds = new HashSet<String>();
-        sameAsInds.add(individualURI);
-        getSameAsIndividuals(individualURI, sameAsInds);
-        sameAsInds.remove(individualURI);
-        return sameAsInds;
-    }
-
-    private void getSameAsIndividuals(String individualURI, Set<String> sameAsInds) {
-        Model m = RDFServiceGraph.createRDFServiceModel(new RDFServiceGraph(rdfService));
-        Resource individual = ResourceFactory.createResource(individualURI);
-        StmtIterator sit = m.listStatements(individual, OWL.sameAs, (RDFNode) null);
-        while(sit.hasNext()) {
-            Statement stmt = sit.nextStatement();
-            if (stmt.getObject().isURIResource()) {
-                String sameAsURI = stmt.getObject().asResource().getURI();
-                if (!sameAsInds.contains(sameAsURI)) {
-                    sameAsInds.add(sameAsURI);
-                    getSameAsIndividuals(sameAsURI, sameAsInds);
-                }
-            }
-        }
-        sit = m.listStatements(null, OWL.sameAs, individual);
-        while(sit.hasNext()) {
-            Statement stmt = sit.nextStatement();
-            if (stmt.getSubject().isURIResource()) {
-                String sameAsURI = stmt.getSubject().asResource().getURI();
-                if (!sameAsInds.contains(sameAsURI)) {
-                    sameAsInds.add(sameAsURI);
-                    getSameAsIndividuals(sameAsURI, sameAsInds);
-                }
-            }
-        }        
+        return sameAsIndex.getSameAs(individualURI);
     }
 
     /**
@@ -0,0 +1,279 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.reasoner;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Statement;
+import com.hp.hpl.jena.shared.Lock;
+
+import edu.cornell.mannlib.vitro.webapp.dao.jena.RDFServiceUnitOfWork;
+
+/**
+ * Collects the inferences that the SimpleReasoner adds and retracts, and
+ * writes them to the inference model in groups, instead of one statement at a
+ * time. If the inference model is backed by an RDFService, each group becomes
+ * a single ChangeSet.
+ *
+ * <pre>
+ * try (BufferedInferenceWriter.Scope scope = writer.begin()) {
+ *     if (!writer.contains(stmt)) {
+ *         writer.add(stmt);
+ *     }
+ * }
+ * </pre>
+ *
+ * Buffering is done per thread, inside a Scope. Scopes may be nested; the
+ * pending changes are written when the outermost Scope is closed, when there
+ * are too many of them, when the oldest of them has waited too long, or when
+ * flush() is called. Outside of a Scope, changes are written immediately.
+ *
+ * While a Scope is open, contains() sees the pending changes, and remembers
+ * what it has learned about other statements, up to a limit. Reading the
+ * inference model directly does not see the pending changes, so call flush()
+ * first. If anything else writes to the inference model while a Scope is open,
+ * call forgetCachedStatements().
+ */
+public class BufferedInferenceWriter {
+	private static final Log log = LogFactory
+			.getLog(BufferedInferenceWriter.class);
+
+	public static final int DEFAULT_MAX_PENDING_CHANGES = 1000;
+	public static final long DEFAULT_MAX_WAIT_MILLIS = 1000;
+	public static final int DEFAULT_MAX_CACHED_STATEMENTS = 10000;
+
+	private final Model inferenceModel;
+	private final int maxPendingChanges;
+	private final long maxWaitMillis;
+	private final int maxCachedStatements;
+
+	private final ThreadLocal<Buffer> buffers = new ThreadLocal<>();
+
+	public BufferedInferenceWriter(Model inferenceModel) {
+		this(inferenceModel, DEFAULT_MAX_PENDING_CHANGES,
+				DEFAULT_MAX_WAIT_MILLIS, DEFAULT_MAX_CACHED_STATEMENTS);
+	}
+
+	public BufferedInferenceWriter(Model inferenceModel, int maxPendingChanges,
+			long maxWaitMillis, int maxCachedStatements) {
+		this.inferenceModel = inferenceModel;
+		this.maxPendingChanges = maxPendingChanges;
+		this.maxWaitMillis = maxWaitMillis;
+		this.maxCachedStatements = maxCachedStatements;
+	}
+
+	public Model getInferenceModel() {
+		return inferenceModel;
+	}
+
+	/**
+	 * Start buffering changes on this thread, or join the Scope that is
+	 * already open.
+	 */
+	public Scope begin() {
+		Buffer buffer = buffers.get();
+		if (buffer == null) {
+			buffer = new Buffer();
+			buffers.set(buffer);
+		} else {
+			buffer.depth++;
+		}
+		return new Scope(buffer);
+	}
+
+	public boolean contains(Statement stmt) {
+		Buffer buffer = buffers.get();
+		if (buffer == null) {
+			return modelContains(stmt);
+		}
+
+		Triple t = stmt.asTriple();
+		if (buffer.additions.contains(stmt)) {
+			return true;
+		}
+		if (buffer.removals.contains(stmt)) {
+			return false;
+		}
+		Boolean known = buffer.cache.get(t);
+		if (known == null) {
+			known = modelContains(stmt);
+			buffer.cache.put(t, known);
+		}
+		return known;
+	}
+
+	public void add(Statement stmt) {
+		Buffer buffer = buffers.get();
+		if (buffer == null) {
+			writeNow(stmt, true);
+			return;
+		}
+		buffer.removals.remove(stmt);
+		buffer.additions.add(stmt);
+		buffer.changed();
+	}
+
+	public void remove(Statement stmt) {
+		Buffer buffer = buffers.get();
+		if (buffer == null) {
+			writeNow(stmt, false);
+			return;
+		}
+		buffer.additions.remove(stmt);
+		buffer.removals.add(stmt);
+		buffer.changed();
+	}
+
+	/**
+	 * Write any pending changes from this thread now.
+	 */
+	public void flush() {
+		Buffer buffer = buffers.get();
+		if (buffer != null) {
+			buffer.flush();
+		}
+	}
+
+	/**
+	 * Something other than this writer has changed the inference model, so
+	 * the remembered answers from contains() can't be trusted.
+	 */
+	public void forgetCachedStatements() {
+		Buffer buffer = buffers.get();
+		if (buffer != null) {
+			buffer.cache.clear();
+		}
+	}
+
+	private boolean modelContains(Statement stmt) {
+		inferenceModel.enterCriticalSection(Lock.READ);
+		try {
+			return inferenceModel.contains(stmt);
+		} finally {
+			inferenceModel.leaveCriticalSection();
+		}
+	}
+
+	private void writeNow(Statement stmt, boolean isAddition) {
+		inferenceModel.enterCriticalSection(Lock.WRITE);
+		try {
+			if (isAddition) {
+				inferenceModel.add(stmt);
+			} else {
+				inferenceModel.remove(stmt);
+			}
+		} finally {
+			inferenceModel.leaveCriticalSection();
+		}
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper classes
+	// ----------------------------------------------------------------------
+
+	/**
+	 * Close this to leave the Scope. Closing the outermost Scope writes the
+	 * pending changes.
+	 */
+	public class Scope implements AutoCloseable {
+		private final Buffer buffer;
+		private boolean closed;
+
+		private Scope(Buffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public void close() {
+			if (closed) {
+				return;
+			}
+			closed = true;
+
+			buffer.depth--;
+			if (buffer.depth > 0) {
+				return;
+			}
+			buffers.remove();
+			buffer.flush();
+		}
+	}
+
+	/** The pending changes and the remembered statements for one thread. */
+	private class Buffer {
+		int depth = 1;
+		final Model additions = ModelFactory.createDefaultModel();
+		final Model removals = ModelFactory.createDefaultModel();
+		long oldestChange;
+
+		final Map<Triple, Boolean> cache = new LinkedHashMap<Triple, Boolean>(
+				16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Triple, Boolean> eldest) {
+				return size() > maxCachedStatements;
+			}
+		};
+
+		void changed() {
+			long now = System.currentTimeMillis();
+			long pending = additions.size() + removals.size();
+			if (pending == 1) {
+				oldestChange = now;
+			}
+			if (pending >= maxPendingChanges
+					|| now - oldestChange >= maxWaitMillis) {
+				flush();
+			}
+		}
+
+		void flush() {
+			if (additions.isEmpty() && removals.isEmpty()) {
+				return;
+			}
+			if (log.isDebugEnabled()) {
+				log.debug("Writing " + removals.size() + " retractions and "
+						+ additions.size() + " additions");
+			}
+
+			try {
+				// The lock only covers building the ChangeSet. Closing the unit
+				// of work writes it to the RDFService, and that must not be done
+				// while holding the lock: the listeners may need it.
+				RDFServiceUnitOfWork unit = RDFServiceUnitOfWork.begin();
+				try {
+					inferenceModel.enterCriticalSection(Lock.WRITE);
+					try {
+						inferenceModel.remove(removals);
+						inferenceModel.add(additions);
+					} finally {
+						inferenceModel.leaveCriticalSection();
+					}
+				} finally {
+					unit.close();
+				}
+				remember(removals, Boolean.FALSE);
+				remember(additions, Boolean.TRUE);
+			} catch (RuntimeException e) {
+				// We don't know how much was written.
+				cache.clear();
+				throw e;
+			} finally {
+				removals.removeAll();
+				additions.removeAll();
+			}
+		}
+
+		private void remember(Model statements, Boolean present) {
+			for (Statement stmt : statements.listStatements().toList()) {
+				cache.put(stmt.asTriple(), present);
+			}
+		}
+	}
+}
@@ -0,0 +1,172 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.reasoner;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.RDFNode;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.rdf.model.Statement;
+import com.hp.hpl.jena.rdf.model.StmtIterator;
+import com.hp.hpl.jena.shared.Lock;
+import com.hp.hpl.jena.vocabulary.OWL;
+
+/**
+ * The owl:sameAs equivalence classes of the individuals in a model, kept in
+ * memory as a union-find structure.
+ *
+ * The index is built from the owl:sameAs statements in the model, the first
+ * time it is used. After that, call addSameAs() for each new owl:sameAs
+ * statement, asserted or inferred, so the index stays current without
+ * re-reading the model.
+ *
+ * Removed statements are not tracked: an equivalence class may grow, but it
+ * never splits. So the index may say that two individuals are the same when
+ * they no longer are, but never the reverse. That is good enough to decide
+ * that an individual needs no sameAs reasoning at all. Where the exact
+ * classes are needed, build a new index.
+ *
+ * Only statements with a URI at both ends are indexed.
+ */
+public class SameAsIndex {
+	private static final Log log = LogFactory.getLog(SameAsIndex.class);
+
+	private final Model model;
+
+	/** Each URI to its parent in the union-find. Null until the index is built. */
+	private Map<String, String> parents;
+
+	/** Each root URI to the members of its class, including itself. */
+	private Map<String, Set<String>> members;
+
+	public SameAsIndex(Model model) {
+		this.model = model;
+	}
+
+	/**
+	 * Could this individual be the same as any other? False only for a URI
+	 * resource that has never appeared in an owl:sameAs statement.
+	 */
+	public synchronized boolean mayHaveSameAs(Resource individual) {
+		if (!individual.isURIResource()) {
+			return true;
+		}
+		ensureBuilt();
+		return parents.containsKey(individual.getURI());
+	}
+
+	/**
+	 * The URIs of the other individuals in the same class as this one. Empty
+	 * if there are none.
+	 */
+	public synchronized Set<String> getSameAs(String uri) {
+		ensureBuilt();
+		if (!parents.containsKey(uri)) {
+			return Collections.emptySet();
+		}
+		Set<String> others = new HashSet<>(members.get(find(uri)));
+		others.remove(uri);
+		return others;
+	}
+
+	/**
+	 * Record an owl:sameAs statement. Other statements are ignored.
+	 */
+	public synchronized void addSameAs(Statement stmt) {
+		if (!OWL.sameAs.equals(stmt.getPredicate())) {
+			return;
+		}
+		ensureBuilt();
+		union(stmt);
+	}
+
+	private void ensureBuilt() {
+		if (parents != null) {
+			return;
+		}
+		parents = new HashMap<>();
+		members = new HashMap<>();
+
+		long start = System.currentTimeMillis();
+		model.enterCriticalSection(Lock.READ);
+		try {
+			StmtIterator stmts = model.listStatements((Resource) null,
+					OWL.sameAs, (RDFNode) null);
+			try {
+				while (stmts.hasNext()) {
+					union(stmts.next());
+				}
+			} finally {
+				stmts.close();
+			}
+		} finally {
+			model.leaveCriticalSection();
+		}
+		log.debug("Built the sameAs index in "
+				+ (System.currentTimeMillis() - start) + " ms: "
+				+ parents.size() + " individuals in " + members.size()
+				+ " classes.");
+	}
+
+	private void union(Statement stmt) {
+		if (!stmt.getSubject().isURIResource()
+				|| !stmt.getObject().isURIResource()) {
+			return;
+		}
+		String root1 = find(stmt.getSubject().getURI());
+		String root2 = find(stmt.getObject().asResource().getURI());
+		if (root1.equals(root2)) {
+			return;
+		}
+
+		Set<String> members1 = members.get(root1);
+		Set<String> members2 = members.get(root2);
+		if (members1.size() < members2.size()) {
+			parents.put(root1, root2);
+			members2.addAll(members1);
+			members.remove(root1);
+		} else {
+			parents.put(root2, root1);
+			members1.addAll(members2);
+			members.remove(root2);
+		}
+	}
+
+	/**
+	 * Find the root of the class that holds this URI, adding it as a class of
+	 * its own if necessary. Compresses the path as it goes.
+	 */
+	private String find(String uri) {
+		String parent = parents.get(uri);
+		if (parent == null) {
+			parents.put(uri, uri);
+			Set<String> singleton = new HashSet<>();
+			singleton.add(uri);
+			members.put(uri, singleton);
+			return uri;
+		}
+		if (parent.equals(uri)) {
+			return uri;
+		}
+		String root = find(parent);
+		parents.put(uri, root);
+		return root;
+	}
+
+	@Override
+	public synchronized String toString() {
+		if (parents == null) {
+			return "SameAsIndex[not built]";
+		}
+		return "SameAsIndex[" + parents.size() + " individuals, "
+				+ members.size() + " classes]";
+	}
+}
@@ -66,6 +66,8 @@ public class SimpleReasoner extends StatementListener {
 	private OntModel tboxModel;             // asserted and inferred TBox axioms
 	private OntModel aboxModel;             // ABox assertions
 	private Model inferenceModel;           // ABox inferences
+	private BufferedInferenceWriter inferenceWriter;
+	private SameAsIndex sameAsIndex;
 	private OntModel fullModel;             // contains at least the 
 	                                        // asserted and inferred ABox
 	
@@ -122,6 +124,8 @@ public class SimpleReasoner extends StatementListener {
                         		tboxModel.getGraph())));
                         
 		this.inferenceModel = inferenceModel;
+		this.inferenceWriter = new BufferedInferenceWriter(inferenceModel);
+		this.sameAsIndex = new SameAsIndex(fullModel);
 		this.batchMode = 0;
 		aBoxDeltaModeler1 = new CumulativeDeltaModeler();
 		aBoxDeltaModeler2 = new CumulativeDeltaModeler();
@@ -154,6 +158,8 @@ public class SimpleReasoner extends StatementListener {
 		this.inferenceModel = inferenceModel;
 		this.fullModel = VitroModelFactory.createUnion(aboxModel, 
 				VitroModelFactory.createOntologyModel(inferenceModel));
+		this.inferenceWriter = new BufferedInferenceWriter(inferenceModel);
+		this.sameAsIndex = new SameAsIndex(fullModel);
 		aBoxDeltaModeler1 = new CumulativeDeltaModeler();
 		aBoxDeltaModeler2 = new CumulativeDeltaModeler();
 		this.batchMode = 0;
@@ -191,21 +197,30 @@ public class SimpleReasoner extends StatementListener {
 	@Override
 	public void addedStatement(Statement stmt) {
 		try {
-			if (stmt.getPredicate().equals(RDF.type)) {
-			     addedABoxTypeAssertion(stmt, inferenceModel, new HashSet<String>()); 
-			     setMostSpecificTypes(stmt.getSubject(), inferenceModel, new HashSet<String>());
-			} else if ( doSameAs && stmt.getPredicate().equals(OWL.sameAs)) {  
-                 addedABoxSameAsAssertion(stmt, inferenceModel); 
-			} else {
-				 addedABoxAssertion(stmt, inferenceModel);
+			BufferedInferenceWriter.Scope scope = inferenceWriter.begin();
+			try {
+				handleAddedStatement(stmt);
+			} finally {
+				scope.close();
 			}
-			
-			doPlugins(ModelUpdate.Operation.ADD,stmt);
-
 		} catch (Exception e) { // don't stop the edit if there's an exception
 			log.error("Exception while computing inferences: " + e.getMessage());
 		}
 	}
+
+	private void handleAddedStatement(Statement stmt) {
+		sameAsIndex.addSameAs(stmt);
+		if (stmt.getPredicate().equals(RDF.type)) {
+		     addedABoxTypeAssertion(stmt, inferenceModel, new HashSet<String>()); 
+		     setMostSpecificTypes(stmt.getSubject(), inferenceModel, new HashSet<String>());
+		} else if ( doSameAs && stmt.getPredicate().equals(OWL.sameAs)) {  
+             addedABoxSameAsAssertion(stmt, inferenceModel); 
+		} else {
+			 addedABoxAssertion(stmt, inferenceModel);
+		}
+		
+		doPlugins(ModelUpdate.Operation.ADD,stmt);
+	}
 	
 	/*
 	 * Performs incremental ABox reasoning based
@@ -230,15 +245,20 @@ public class SimpleReasoner extends StatementListener {
 		} else if (batchMode == 2) {
 			 aBoxDeltaModeler2.removedStatement(stmt);
 		} else {  // batchMode == 0
-			if (stmt.getPredicate().equals(RDF.type)) {
-				removedABoxTypeAssertion(stmt, inferenceModel);
-				setMostSpecificTypes(stmt.getSubject(), inferenceModel, new HashSet<String>());
-			} else if ( doSameAs && stmt.getPredicate().equals(OWL.sameAs)) {
-                removedABoxSameAsAssertion(stmt, inferenceModel); 	
-			} else {
-				removedABoxAssertion(stmt, inferenceModel);
+			BufferedInferenceWriter.Scope scope = inferenceWriter.begin();
+			try {
+				if (stmt.getPredicate().equals(RDF.type)) {
+					removedABoxTypeAssertion(stmt, inferenceModel);
+					setMostSpecificTypes(stmt.getSubject(), inferenceModel, new HashSet<String>());
+				} else if ( doSameAs && stmt.getPredicate().equals(OWL.sameAs)) {
+	                removedABoxSameAsAssertion(stmt, inferenceModel);
+				} else {
+					removedABoxAssertion(stmt, inferenceModel);
+				}
+				doPlugins(ModelUpdate.Operation.RETRACT,stmt);
+			} finally {
+				scope.close();
 			}
-			doPlugins(ModelUpdate.Operation.RETRACT,stmt);
 		}
 	}
 
@@ -252,96 +272,105 @@ public class SimpleReasoner extends StatementListener {
 	 * Handles rdfs:subclassOf, owl:equivalentClass, and owl:inverseOf 
 	 */
     protected void changedTBoxStatement( Statement stmt , boolean add){
-        try {		
-			if (!(stmt.getPredicate().equals(RDFS.subClassOf) 
-                  || stmt.getPredicate().equals(OWL.equivalentClass) 
-                  || stmt.getPredicate().equals(OWL.inverseOf))) {
-				return;
+        try {
+			BufferedInferenceWriter.Scope scope = inferenceWriter.begin();
+			try {
+				handleChangedTBoxStatement(stmt, add);
+			} finally {
+				scope.close();
 			}
+		} catch (Exception e) { // don't stop the edit if there's an exception
+			log.error("Exception while " + (add?"adding":"removing") + " inference(s)",e);
+		}        
+    }
 
-			if (!stmt.getObject().isResource()) {
-				log.warn("The object of this assertion is not a resource: " + stmtString(stmt));
-				return;
-			}
-						
-			if (stmt.getPredicate().equals(RDFS.subClassOf) 
-                || stmt.getPredicate().equals(OWL.equivalentClass)) {
+    private void handleChangedTBoxStatement(Statement stmt, boolean add) {
+		if (!(stmt.getPredicate().equals(RDFS.subClassOf) 
+              || stmt.getPredicate().equals(OWL.equivalentClass) 
+              || stmt.getPredicate().equals(OWL.inverseOf))) {
+			return;
+		}
 
-				// ignore anonymous classes
-				if (stmt.getSubject().isAnon() || stmt.getObject().isAnon()) {
-				    return;
-				}
-			
-				OntClass subject, object;
-				tboxModel.enterCriticalSection(Lock.READ);
-				try {
-    				subject = tboxModel.getOntClass((stmt.getSubject()).getURI());
-    				if (subject == null) {
-    					log.debug("didn't find subject class in the tbox: " 
-                                  + (stmt.getSubject()).getURI());
-    					return;
-    				}
-    				
-    				object = tboxModel.getOntClass(((Resource)stmt.getObject()).getURI()); 
-    				if (object == null) {
-    					log.debug("didn't find object class in the tbox: " 
-                                  + ((Resource)stmt.getObject()).getURI());
-    					return;
-    				}
-				} finally {
-				    tboxModel.leaveCriticalSection();
-				}
-				
-				if (stmt.getPredicate().equals(RDFS.subClassOf)) {
-                    if( add ){
-					 addedSubClass(subject,object,inferenceModel);
-                    }else{
-                        removedSubClass( subject,object,inferenceModel);
-                    }
-				} else {
-					 // equivalent class is the same as subclass in both directions
-                    if(add){
-                        addedSubClass(subject,object,inferenceModel);
-                        addedSubClass(object,subject,inferenceModel);
-                    }else{
-                        removedSubClass( subject,object,inferenceModel);
-                        removedSubClass(object,subject,inferenceModel);
-                    }
-				} 
-			} else {	
-				if ( stmt.getObject().asResource().getURI() == null ) {
-					log.warn("The object of this assertion has a null URI: " + stmtString(stmt));
-					return;
-				}
+		if (!stmt.getObject().isResource()) {
+			log.warn("The object of this assertion is not a resource: " + stmtString(stmt));
+			return;
+		}
+					
+		if (stmt.getPredicate().equals(RDFS.subClassOf) 
+            || stmt.getPredicate().equals(OWL.equivalentClass)) {
 
-				if ( stmt.getSubject().getURI() == null ) {
-					log.warn("The subject of this assertion has a null URI: " + stmtString(stmt));
+			// ignore anonymous classes
+			if (stmt.getSubject().isAnon() || stmt.getObject().isAnon()) {
+			    return;
+			}
+		
+			OntClass subject, object;
+			tboxModel.enterCriticalSection(Lock.READ);
+			try {
+				subject = tboxModel.getOntClass((stmt.getSubject()).getURI());
+				if (subject == null) {
+					log.debug("didn't find subject class in the tbox: " 
+                              + (stmt.getSubject()).getURI());
 					return;
 				}
 				
-				OntProperty prop1 = tboxModel.getOntProperty((stmt.getSubject()).getURI());
-				if (prop1 == null) {
-					log.debug("didn't find subject property in the tbox: " 
-                              + (stmt.getSubject()).getURI());
-					return;
-					}
-					
-				OntProperty prop2 = tboxModel.getOntProperty(((Resource)stmt.getObject()).getURI()); 
-				if (prop2 == null) {
-					log.debug("didn't find object property in the tbox: " 
+				object = tboxModel.getOntClass(((Resource)stmt.getObject()).getURI()); 
+				if (object == null) {
+					log.debug("didn't find object class in the tbox: " 
                               + ((Resource)stmt.getObject()).getURI());
 					return;
 				}
-				
+			} finally {
+			    tboxModel.leaveCriticalSection();
+			}
+			
+			if (stmt.getPredicate().equals(RDFS.subClassOf)) {
                 if( add ){
-                    addedInverseProperty(prop1, prop2, inferenceModel);	
-                } else {
-                    removedInverseProperty(prop1,prop2,inferenceModel);
+				 addedSubClass(subject,object,inferenceModel);
+                }else{
+                    removedSubClass( subject,object,inferenceModel);
+                }
+			} else {
+				 // equivalent class is the same as subclass in both directions
+                if(add){
+                    addedSubClass(subject,object,inferenceModel);
+                    addedSubClass(object,subject,inferenceModel);
+                }else{
+                    removedSubClass( subject,object,inferenceModel);
+                    removedSubClass(object,subject,inferenceModel);
                 }
+			} 
+		} else {	
+			if ( stmt.getObject().asResource().getURI() == null ) {
+				log.warn("The object of this assertion has a null URI: " + stmtString(stmt));
+				return;
 			}
-		} catch (Exception e) { // don't stop the edit if there's an exception
-			log.error("Exception while " + (add?"adding":"removing") + " inference(s)",e);
-		}        
+
+			if ( stmt.getSubject().getURI() == null ) {
+				log.warn("The subject of this assertion has a null URI: " + stmtString(stmt));
+				return;
+			}
+			
+			OntProperty prop1 = tboxModel.getOntProperty((stmt.getSubject()).getURI());
+			if (prop1 == null) {
+				log.debug("didn't find subject property in the tbox: " 
+                          + (stmt.getSubject()).getURI());
+				return;
+				}
+				
+			OntProperty prop2 = tboxModel.getOntProperty(((Resource)stmt.getObject()).getURI()); 
+			if (prop2 == null) {
+				log.debug("didn't find object property in the tbox: " 
+                          + ((Resource)stmt.getObject()).getURI());
+				return;
+			}
+			
+            if( add ){
+                addedInverseProperty(prop1, prop2, inferenceModel);	
+            } else {
+                removedInverseProperty(prop1,prop2,inferenceModel);
+            }
+		}
     }
 
 	/**
@@ -430,15 +459,8 @@ public class SimpleReasoner extends StatementListener {
 		} finally {
 			tboxModel.leaveCriticalSection();
 		}
-		
-		inferenceModel.enterCriticalSection(Lock.WRITE);
-		try {
-			if (inferenceModel.contains(stmt)) {
-			    inferenceModel.remove(stmt);
-			}
-		} finally {
-			inferenceModel.leaveCriticalSection();
-		}	
+
+		removeAssertedFromInferences(stmt, inferenceModel);
 	}
 
 	/**
@@ -550,9 +572,9 @@ public class SimpleReasoner extends StatementListener {
 		 // add it to the inference graph.
 	    inferenceModel.enterCriticalSection(Lock.WRITE);
 	    try {
-			 if (entailedStatement(stmt) && !inferenceModel.contains(stmt)) {
-				inferenceModel.add(stmt);
-			 }			 
+			 if (entailedStatement(stmt) && !inferencesContain(stmt, inferenceModel)) {
+				addToInferences(stmt, inferenceModel);
+			 }
 	    } finally {
 	    	inferenceModel.leaveCriticalSection();
 	    }	      
@@ -566,6 +588,7 @@ public class SimpleReasoner extends StatementListener {
 	 */
 	protected void addedSubClass(OntClass subClass, OntClass superClass, Model inferenceModel) {
 		//log.debug("subClass = " + subClass.getURI() + " superClass = " + superClass.getURI());
+		inferenceWriter.flush();
 		OntModel unionModel = VitroModelFactory.createOntologyModel(); 
 		unionModel.addSubModel(aboxModel);
 		unionModel.addSubModel(inferenceModel);
@@ -596,6 +619,7 @@ public class SimpleReasoner extends StatementListener {
 	 * of A (including A itself)
 	 */
 	protected void removedSubClass(OntClass subClass, OntClass superClass, Model inferenceModel) {
+		inferenceWriter.flush();
 		OntModel unionModel = VitroModelFactory.createOntologyModel(); 
 		unionModel.addSubModel(aboxModel);
 		unionModel.addSubModel(inferenceModel);
@@ -618,10 +642,9 @@ public class SimpleReasoner extends StatementListener {
 			Statement infStmt = ResourceFactory.createStatement(ind, RDF.type, superClass);
 			inferenceModel.enterCriticalSection(Lock.WRITE);
 			try {
-			    if (inferenceModel.contains(infStmt)) {
-				    inferenceModel.remove(infStmt);
-			    } 
-			    
+			    if (inferencesContain(infStmt, inferenceModel)) {
+				    removeFromInferences(infStmt, inferenceModel);
+			    }
 	        } finally {
 	            inferenceModel.leaveCriticalSection();
 	        }
@@ -701,6 +724,10 @@ public class SimpleReasoner extends StatementListener {
 	 */
 	protected List<Resource> getSameIndividuals(Resource ind, Model inferenceModel) {	
 		ArrayList<Resource> sameIndividuals = new ArrayList<Resource>();
+		if (!sameAsIndex.mayHaveSameAs(ind)) {
+			return sameIndividuals;
+		}
+		inferenceWriter.flush();
 		fullModel.enterCriticalSection(Lock.READ);
 		try {
 			Iterator<Statement> iter = fullModel.listStatements(ind, OWL.sameAs, (RDFNode) null);	
@@ -751,14 +778,7 @@ public class SimpleReasoner extends StatementListener {
 			 return;
 		}
 
-		inferenceModel.enterCriticalSection(Lock.WRITE);
-		try {
-			if (inferenceModel.contains(stmt)) {
-			    inferenceModel.remove(stmt);
-			}
-		} finally {
-			inferenceModel.leaveCriticalSection();
-		}
+		removeAssertedFromInferences(stmt, inferenceModel);
 		
 		Statement opposite = ResourceFactory.createStatement(object, OWL.sameAs, subject);
 		addInference(opposite,inferenceModel,true);
@@ -851,14 +871,7 @@ public class SimpleReasoner extends StatementListener {
     	    }	
 	    }
 
-	    inferenceModel.enterCriticalSection(Lock.WRITE);
-        try {
-            if (inferenceModel.contains(stmt)) {
-                inferenceModel.remove(stmt);
-            }
-        } finally {
-            inferenceModel.leaveCriticalSection();
-        }
+	    removeAssertedFromInferences(stmt, inferenceModel);
 	    
 	    if(doSameAs) {
             doSameAsForAddedABoxAssertion( stmt, inferenceModel);
@@ -880,6 +893,7 @@ public class SimpleReasoner extends StatementListener {
 
 	protected void generateSameAsInferences(Resource ind1, Resource ind2, Model inferenceModel) {	
 		
+		inferenceWriter.flush();
 		OntModel unionModel = VitroModelFactory.createOntologyModel(); 
 		unionModel.addSubModel(aboxModel);
 		unionModel.addSubModel(inferenceModel);
@@ -909,6 +923,7 @@ public class SimpleReasoner extends StatementListener {
 		
 		Model individualInferences = ModelFactory.createDefaultModel();
 		
+		inferenceWriter.flush();
 		inferenceModel.enterCriticalSection(Lock.READ);
 		try {
 			Iterator<Statement> iter = 
@@ -927,6 +942,7 @@ public class SimpleReasoner extends StatementListener {
 		} finally {
 			inferenceModel.leaveCriticalSection();
 		}
+		inferenceWriter.forgetCachedStatements();
 		
 		return;
 	}
@@ -1232,8 +1248,8 @@ public class SimpleReasoner extends StatementListener {
 			inferenceModel.enterCriticalSection(Lock.WRITE);
 			try {
 				if (!checkRedundancy 
-				        || (!inferenceModel.contains(infStmt) && !aboxModel.contains(infStmt)))  {
-					inferenceModel.add(infStmt);
+				        || (!inferencesContain(infStmt, inferenceModel) && !aboxModel.contains(infStmt)))  {
+					addToInferences(infStmt, inferenceModel);
 			    }
 		
 				if (handleSameAs) {
@@ -1251,9 +1267,9 @@ public class SimpleReasoner extends StatementListener {
 							continue;
 						}
 						
-						if (!inferenceModel.contains(sameStmt) 
+						if (!inferencesContain(sameStmt, inferenceModel) 
                             && !aboxModel.contains(sameStmt)) {
-							inferenceModel.add(sameStmt);
+							addToInferences(sameStmt, inferenceModel);
 						}
 					}				
 				}				
@@ -1265,6 +1281,54 @@ public class SimpleReasoner extends StatementListener {
 		}	
 	}
 
+	/*
+	 * Changes to the reasoner's own inference model go through the
+	 * BufferedInferenceWriter, so they are written in groups while a scope is
+	 * open on this thread. Changes to any other model are made directly.
+	 */
+	private boolean inferencesContain(Statement stmt, Model inferenceModel) {
+		if (inferenceModel == this.inferenceModel) {
+			return inferenceWriter.contains(stmt);
+		}
+		return inferenceModel.contains(stmt);
+	}
+	
+	private void addToInferences(Statement stmt, Model inferenceModel) {
+		if (inferenceModel == this.inferenceModel) {
+			sameAsIndex.addSameAs(stmt);
+			inferenceWriter.add(stmt);
+		} else {
+			inferenceModel.add(stmt);
+		}
+	}
+	
+	private void removeFromInferences(Statement stmt, Model inferenceModel) {
+		if (inferenceModel == this.inferenceModel) {
+			inferenceWriter.remove(stmt);
+		} else {
+			inferenceModel.remove(stmt);
+		}
+	}
+	
+	/*
+	 * A statement that is now asserted is removed from the inferences at once,
+	 * not buffered: the ABox model may not show the assertion while the same
+	 * statement is still in the inference model.
+	 */
+	private void removeAssertedFromInferences(Statement stmt, Model inferenceModel) {
+		inferenceModel.enterCriticalSection(Lock.WRITE);
+		try {
+			if (inferencesContain(stmt, inferenceModel)) {
+				removeFromInferences(stmt, inferenceModel);
+				if (inferenceModel == this.inferenceModel) {
+					inferenceWriter.flush();
+				}
+			}
+		} finally {
+			inferenceModel.leaveCriticalSection();
+		}
+	}
+
 	/**
 	 * Remove an inference from the inference model
 	 * 
@@ -1284,9 +1348,9 @@ public class SimpleReasoner extends StatementListener {
 		try {	
 		   if ( (!checkEntailment 
                  || !entailedStatement(infStmt)) 
-                && inferenceModel.contains(infStmt)) {
-			   inferenceModel.remove(infStmt);
-		   } 		   
+                && inferencesContain(infStmt, inferenceModel)) {
+			   removeFromInferences(infStmt, inferenceModel);
+		   }
         } finally {
 	       inferenceModel.leaveCriticalSection();	
         }
@@ -1304,8 +1368,8 @@ public class SimpleReasoner extends StatementListener {
                                                       infStmt.getPredicate(), infStmt.getObject());
 				  if ((!checkEntailment 
                        || !entailedStatement(infStmtSame)) 
-                      && inferenceModel.contains(infStmtSame)) { 
-					inferenceModel.remove(infStmtSame);
+                      && inferencesContain(infStmtSame, inferenceModel)) { 
+					removeFromInferences(infStmtSame, inferenceModel);
 				  }					 		   
 			    }
 			} finally {
@@ -1322,6 +1386,7 @@ public class SimpleReasoner extends StatementListener {
 	 */
 	protected void setMostSpecificTypes(Resource individual, Model inferenceModel, HashSet<String> unknownTypes) {
 			
+		inferenceWriter.flush();
 		tboxModel.enterCriticalSection(Lock.READ);
 		aboxModel.enterCriticalSection(Lock.READ);
 		inferenceModel.enterCriticalSection(Lock.READ);
@@ -1431,6 +1496,7 @@ public class SimpleReasoner extends StatementListener {
 		
 	    Model retractions = ModelFactory.createDefaultModel();
 	    
+		inferenceWriter.flush();
 		inferenceModel.enterCriticalSection(Lock.READ);
 		try {
 			// remove obsolete mostSpecificType assertions
@@ -1517,6 +1583,20 @@ public class SimpleReasoner extends StatementListener {
 
 	protected void doPlugins(ModelUpdate.Operation op, Statement stmt) {
 		
+		if (getPluginList().isEmpty()) {
+			return;
+		}
+		
+		// Plugins read the inference model, and may write to it directly.
+		inferenceWriter.flush();
+		try {
+			runPlugins(op, stmt);
+		} finally {
+			inferenceWriter.forgetCachedStatements();
+		}
+	}
+	
+	private void runPlugins(ModelUpdate.Operation op, Statement stmt) {
 		for (ReasonerPlugin plugin : getPluginList()) {
 			try {
 				switch (op) {
@@ -1693,6 +1773,7 @@ public class SimpleReasoner extends StatementListener {
     			retractions.enterCriticalSection(Lock.READ);	
     			int num = 0;
     			
+    			BufferedInferenceWriter.Scope scope = inferenceWriter.begin();
     			try {
     	   	       	log.info("started computing inferences for batch " + qualifier + " updates");
     				
@@ -1745,8 +1826,12 @@ public class SimpleReasoner extends StatementListener {
     				    }
     				}				
     			} finally {
-    	    		retractions.removeAll();	
-    	   			retractions.leaveCriticalSection();
+    				try {
+    					scope.close();
+    				} finally {
+    					retractions.removeAll();
+    					retractions.leaveCriticalSection();
+    				}
     			}			
  				
                 if (stopRequested) {
@@ -25,6 +25,7 @@ import edu.cornell.mannlib.vitro.webapp.controller.freemarker.UrlBuilder;
 import edu.cornell.mannlib.vitro.webapp.controller.freemarker.responsevalues.RedirectResponseValues;
 import edu.cornell.mannlib.vitro.webapp.controller.freemarker.responsevalues.ResponseValues;
 import edu.cornell.mannlib.vitro.webapp.controller.freemarker.responsevalues.TemplateResponseValues;
+import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.CommitReportingSearchIndexer;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexer;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerStatus;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerStatus.RebuildCounts;
@@ -162,6 +163,14 @@ public class IndexController extends FreemarkerHttpServlet {
 			body.put("rebuildUrl",
 					UrlBuilder.getUrl(PAGE_URL, "rebuild", "true"));
 			body.put("status", buildStatusMap(indexer.getStatus()));
+			if (indexer instanceof CommitReportingSearchIndexer) {
+				CommitReportingSearchIndexer reporter = (CommitReportingSearchIndexer) indexer;
+				body.put("commitPolicy", reporter.getCommitPolicyDescription());
+				Date lastCommit = reporter.getLastCommit();
+				if (lastCommit != null) {
+					body.put("lastCommit", lastCommit);
+				}
+			}
 			if (history != null) {
 				body.put("history", history.toMaps());
 			}
@@ -17,6 +17,8 @@ import org.apache.commons.logging.LogFactory;
 
 import edu.cornell.mannlib.vitro.webapp.modules.Application;
 import edu.cornell.mannlib.vitro.webapp.modules.ComponentStartupStatus;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.DeferredCommitSearchEngine;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.DeferredCommits;
 import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngine;
 import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngineException;
 import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchFacetField;
@@ -32,7 +34,8 @@ import edu.cornell.mannlib.vitro.webapp.utils.configuration.Validation;
  * Manages the life-cycle of the SearchEngine. Adds logging, controlled by
  * DeveloperSettings.
  */
-public class InstrumentedSearchEngineWrapper implements SearchEngine {
+public class InstrumentedSearchEngineWrapper implements SearchEngine,
+		DeferredCommitSearchEngine {
 	private static final Log log = LogFactory
 			.getLog(InstrumentedSearchEngineWrapper.class);
 
@@ -155,6 +158,18 @@ public class InstrumentedSearchEngineWrapper implements SearchEngine {
 		}
 	}
 
+	@Override
+	public void add(Collection<SearchInputDocument> docs,
+			int commitWithinMillis) throws SearchEngineException {
+		SearchEngineLogger l = SearchEngineLogger.doAdd(docs);
+		try {
+			confirmActive();
+			DeferredCommits.add(innerEngine, docs, commitWithinMillis);
+		} finally {
+			l.close();
+		}
+	}
+
 	@Override
 	public void commit() throws SearchEngineException {
 		confirmActive();
@@ -167,6 +182,12 @@ public class InstrumentedSearchEngineWrapper implements SearchEngine {
 		innerEngine.commit(wait);
 	}
 
+	@Override
+	public void softCommit() throws SearchEngineException {
+		confirmActive();
+		DeferredCommits.softCommit(innerEngine);
+	}
+
 	@Override
 	public void deleteById(String... ids) throws SearchEngineException {
 		try (SearchEngineLogger l = SearchEngineLogger.doDeleteById(ids)) {
@@ -183,6 +204,18 @@ public class InstrumentedSearchEngineWrapper implements SearchEngine {
 		}
 	}
 
+	@Override
+	public void deleteById(Collection<String> ids, int commitWithinMillis)
+			throws SearchEngineException {
+		SearchEngineLogger l = SearchEngineLogger.doDeleteById(ids);
+		try {
+			confirmActive();
+			DeferredCommits.deleteById(innerEngine, ids, commitWithinMillis);
+		} finally {
+			l.close();
+		}
+	}
+
 	@Override
 	public void deleteByQuery(String query) throws SearchEngineException {
 		try (SearchEngineLogger l = SearchEngineLogger.doDeleteByQuery(query)) {
@@ -191,6 +224,19 @@ public class InstrumentedSearchEngineWrapper implements SearchEngine {
 		}
 	}
 
+	@Override
+	public void deleteByQuery(String query, int commitWithinMillis)
+			throws SearchEngineException {
+		SearchEngineLogger l = SearchEngineLogger.doDeleteByQuery(query);
+		try {
+			confirmActive();
+			DeferredCommits.deleteByQuery(innerEngine, query,
+					commitWithinMillis);
+		} finally {
+			l.close();
+		}
+	}
+
 	@Override
 	public SearchQuery createQuery() {
 		confirmActive();
@@ -254,6 +300,11 @@ public class InstrumentedSearchEngineWrapper implements SearchEngine {
 		public List<SearchFacetField> getFacetFields() {
 			return Collections.emptyList();
 		}
+
+		@Override
+		public String getNextCursor() {
+			return null;
+		}
 		
 		private class EmptyDocumentListWithCount implements SearchResultDocumentList {
 				@Override
@@ -5,8 +5,8 @@ package edu.cornell.mannlib.vitro.webapp.searchengine.base;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 
@@ -19,9 +19,10 @@ public class BaseSearchQuery implements SearchQuery {
 	private String queryText;
 	private int start = 0;
 	private int rows = -1;
+	private String cursor;
 
 	private final Set<String> fieldsToReturn = new HashSet<>();
-	private final Map<String, SearchQuery.Order> sortFields = new HashMap<>();
+	private final Map<String, SearchQuery.Order> sortFields = new LinkedHashMap<>();
 	private final Set<String> filters = new HashSet<>();
 
 	private final Set<String> facetFields = new HashSet<>();
@@ -46,6 +47,12 @@ public class BaseSearchQuery implements SearchQuery {
 		return this;
 	}
 
+	@Override
+	public SearchQuery setCursor(String cursor) {
+		this.cursor = cursor;
+		return this;
+	}
+
 	@Override
 	public SearchQuery addFields(String... names) {
 		return addFields(Arrays.asList(names));
@@ -108,6 +115,11 @@ public class BaseSearchQuery implements SearchQuery {
 		return rows;
 	}
 
+	@Override
+	public String getCursor() {
+		return cursor;
+	}
+
 	@Override
 	public Set<String> getFieldsToReturn() {
 		return Collections.unmodifiableSet(fieldsToReturn);
@@ -141,7 +153,7 @@ public class BaseSearchQuery implements SearchQuery {
 	@Override
 	public String toString() {
 		return "BaseSearchQuery[queryText=" + queryText + ", start=" + start
-				+ ", rows=" + rows + ", fieldsToReturn=" + fieldsToReturn
+				+ ", rows=" + rows + ", cursor=" + cursor + ", fieldsToReturn=" + fieldsToReturn
 				+ ", sortFields=" + sortFields + ", filters=" + filters
 				+ ", facetFields=" + facetFields + ", facetLimit=" + facetLimit
 				+ ", facetMinCount=" + facetMinCount + "]";
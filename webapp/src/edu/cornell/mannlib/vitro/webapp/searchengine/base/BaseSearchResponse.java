@@ -18,14 +18,23 @@ public class BaseSearchResponse implements SearchResponse {
 	private final Map<String, Map<String, List<String>>> highlighting;
 	private final Map<String, SearchFacetField> facetFields;
 	private final SearchResultDocumentList results;
+	private final String nextCursor;
 
 	public BaseSearchResponse(
 			Map<String, Map<String, List<String>>> highlighting,
 			Map<String, SearchFacetField> facetFields,
 			SearchResultDocumentList results) {
+		this(highlighting, facetFields, results, null);
+	}
+
+	public BaseSearchResponse(
+			Map<String, Map<String, List<String>>> highlighting,
+			Map<String, SearchFacetField> facetFields,
+			SearchResultDocumentList results, String nextCursor) {
 		this.highlighting = highlighting;
 		this.facetFields = facetFields;
 		this.results = results;
+		this.nextCursor = nextCursor;
 	}
 
 	@Override
@@ -48,10 +57,16 @@ public class BaseSearchResponse implements SearchResponse {
 		return new ArrayList<>(facetFields.values());
 	}
 
+	@Override
+	public String getNextCursor() {
+		return nextCursor;
+	}
+
 	@Override
 	public String toString() {
 		return "BaseSearchResponse[highlighting=" + highlighting
-				+ ", facetFields=" + facetFields + ", results=" + results + "]";
+				+ ", facetFields=" + facetFields + ", results=" + results
+				+ ", nextCursor=" + nextCursor + "]";
 	}
 
 }
@@ -0,0 +1,189 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.searchengine.solr;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.response.QueryResponse;
+
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.DeferredCommitSearchEngine;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngine;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngineException;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngineNotRespondingException;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchInputDocument;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchQuery;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchResponse;
+import edu.cornell.mannlib.vitro.webapp.searchengine.base.BaseSearchInputDocument;
+import edu.cornell.mannlib.vitro.webapp.searchengine.base.BaseSearchQuery;
+
+/**
+ * The parts of a Solr-based SearchEngine that don't depend on where the Solr
+ * server is. Subclasses create the server at startup, and shut it down.
+ */
+public abstract class AbstractSolrSearchEngine implements SearchEngine,
+		DeferredCommitSearchEngine {
+
+	/**
+	 * The server, once startup() has created it.
+	 */
+	protected abstract SolrServer getServer();
+
+	@Override
+	public void ping() throws SearchEngineException {
+		try {
+			getServer().ping();
+		} catch (SolrServerException | IOException e) {
+			throw appropriateException("Solr server did not respond to ping.",
+					e);
+		}
+	}
+
+	@Override
+	public SearchInputDocument createInputDocument() {
+		return new BaseSearchInputDocument();
+	}
+
+	@Override
+	public void add(SearchInputDocument... docs) throws SearchEngineException {
+		add(Arrays.asList(docs));
+	}
+
+	@Override
+	public void add(Collection<SearchInputDocument> docs)
+			throws SearchEngineException {
+		add(docs, -1);
+	}
+
+	@Override
+	public void add(Collection<SearchInputDocument> docs,
+			int commitWithinMillis) throws SearchEngineException {
+		try {
+			getServer().add(
+					SolrConversionUtils.convertToSolrInputDocuments(docs),
+					commitWithinMillis);
+		} catch (SolrServerException | IOException e) {
+			throw appropriateException("Solr server failed to add documents "
+					+ docs, e);
+		}
+	}
+
+	@Override
+	public void commit() throws SearchEngineException {
+		try {
+			getServer().commit();
+		} catch (SolrServerException | IOException e) {
+			throw appropriateException("Failed to commit to Solr server.", e);
+		}
+	}
+
+	@Override
+	public void commit(boolean wait) throws SearchEngineException {
+		try {
+			getServer().commit(wait, wait);
+		} catch (SolrServerException | IOException e) {
+			throw appropriateException("Failed to commit to Solr server.", e);
+		}
+	}
+
+	@Override
+	public void softCommit() throws SearchEngineException {
+		try {
+			getServer().commit(true, true, true);
+		} catch (SolrServerException | IOException e) {
+			throw appropriateException("Failed to soft commit to Solr server.",
+					e);
+		}
+	}
+
+	@Override
+	public void deleteById(String... ids) throws SearchEngineException {
+		deleteById(Arrays.asList(ids));
+	}
+
+	@Override
+	public void deleteById(Collection<String> ids) throws SearchEngineException {
+		deleteById(ids, -1);
+	}
+
+	@Override
+	public void deleteById(Collection<String> ids, int commitWithinMillis)
+			throws SearchEngineException {
+		try {
+			getServer().deleteById(new ArrayList<>(ids), commitWithinMillis);
+		} catch (SolrServerException | IOException e) {
+			throw appropriateException(
+					"Solr server failed to delete documents: " + ids, e);
+		}
+	}
+
+	@Override
+	public void deleteByQuery(String query) throws SearchEngineException {
+		deleteByQuery(query, -1);
+	}
+
+	@Override
+	public void deleteByQuery(String query, int commitWithinMillis)
+			throws SearchEngineException {
+		try {
+			getServer().deleteByQuery(query, commitWithinMillis);
+		} catch (SolrServerException | IOException e) {
+			throw appropriateException(
+					"Solr server failed to delete documents: " + query, e);
+		}
+	}
+
+	@Override
+	public SearchQuery createQuery() {
+		return new BaseSearchQuery();
+	}
+
+	@Override
+	public SearchQuery createQuery(String queryText) {
+		BaseSearchQuery query = new BaseSearchQuery();
+		query.setQuery(queryText);
+		return query;
+	}
+
+	@Override
+	public SearchResponse query(SearchQuery query) throws SearchEngineException {
+		try {
+			SolrQuery solrQuery = SolrConversionUtils.convertToSolrQuery(query);
+			QueryResponse response = getServer().query(solrQuery);
+			return SolrConversionUtils.convertToSearchResponse(response);
+		} catch (SolrServerException e) {
+			throw appropriateException(
+					"Solr server failed to execute the query" + query, e);
+		}
+	}
+
+	@Override
+	public int documentCount() throws SearchEngineException {
+		SearchResponse response = query(createQuery("*:*"));
+		return (int) response.getResults().getNumFound();
+	}
+
+	/**
+	 * If there is a SocketTimeoutException in the causal chain for this
+	 * exception, then wrap it in a SearchEngineNotRespondingException instead
+	 * of a generic SearchEngineException.
+	 */
+	protected SearchEngineException appropriateException(String message,
+			Exception e) {
+		Throwable cause = e;
+		while (cause != null) {
+			if (cause instanceof SocketTimeoutException) {
+				return new SearchEngineNotRespondingException(message, e);
+			}
+			cause = cause.getCause();
+		}
+		return new SearchEngineException(message, e);
+	}
+
+}
@@ -0,0 +1,130 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.searchengine.solr;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.embedded.EmbeddedSolrServer;
+import org.apache.solr.core.CoreContainer;
+
+import edu.cornell.mannlib.vitro.webapp.modules.Application;
+import edu.cornell.mannlib.vitro.webapp.modules.ComponentStartupStatus;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngineException;
+import edu.cornell.mannlib.vitro.webapp.utils.configuration.Property;
+
+/**
+ * A Solr-based implementation of SearchEngine that keeps its Lucene index in
+ * the Vitro webapp, instead of talking to a separate Solr webapp over HTTP.
+ *
+ * The index is managed by an embedded Solr core, with the usual Vitro schema
+ * and Solr configuration, so queries, facets and deletes by query behave just
+ * as they do with SolrSearchEngine.
+ *
+ * The Solr home directory is "embeddedSolr" within the Vitro home directory,
+ * unless the application setup says otherwise. The build installs the Vitro
+ * Solr configuration there, as well as in "solr" for the Solr webapp. Only one
+ * process may write to an index, so the two must not share a directory.
+ *
+ * commit() is a hard commit, as with SolrSearchEngine. softCommit() makes the
+ * changes visible to searches without writing the index to disk. The Solr
+ * update log keeps the changes until the next hard commit. There is always a
+ * hard commit at shutdown.
+ *
+ * The Lucene JARs must be in the webapp. The build copies them from the Solr
+ * WAR if build.properties sets search.engine.embedded to true.
+ */
+public class EmbeddedSolrSearchEngine extends AbstractSolrSearchEngine {
+	private static final Log log = LogFactory
+			.getLog(EmbeddedSolrSearchEngine.class);
+
+	public static final String DEFAULT_SOLR_HOME = "embeddedSolr";
+
+	private String solrHomePath;
+	private EmbeddedSolrServer server;
+
+	@Property(uri = "http://vitro.mannlib.cornell.edu/ns/vitro/ApplicationSetup#hasSolrHomeDirectory")
+	public void setSolrHomePath(String path) {
+		if (solrHomePath == null) {
+			solrHomePath = path;
+		} else {
+			throw new IllegalStateException(
+					"Configuration includes multiple instances of SolrHomeDirectory: "
+							+ solrHomePath + ", and " + path);
+		}
+	}
+
+	/**
+	 * Load the Solr core from the home directory.
+	 */
+	@Override
+	public void startup(Application application, ComponentStartupStatus css) {
+		startup(application.getHomeDirectory().getPath()
+				.resolve(solrHomePath == null ? DEFAULT_SOLR_HOME : solrHomePath),
+				css);
+	}
+
+	void startup(Path solrHome, ComponentStartupStatus css) {
+		if (!Files.isRegularFile(solrHome.resolve("solr.xml"))) {
+			css.fatal("The Solr home directory for the embedded search "
+					+ "engine does not contain a solr.xml file: '" + solrHome
+					+ "'");
+			return;
+		}
+
+		CoreContainer container = null;
+		try {
+			container = new CoreContainer(solrHome.toString());
+			container.load();
+
+			Map<String, Exception> failures = container.getCoreInitFailures();
+			if (!failures.isEmpty()) {
+				Map.Entry<String, Exception> failure = failures.entrySet()
+						.iterator().next();
+				css.fatal("Could not load the Solr core '" + failure.getKey()
+						+ "' in '" + solrHome + "'", failure.getValue());
+				container.shutdown();
+				return;
+			}
+
+			String coreName = container.getDefaultCoreName();
+			server = new EmbeddedSolrServer(container, coreName);
+			css.info("Set up the embedded Solr search engine; home directory = '"
+					+ solrHome + "', core = '" + coreName + "'.");
+		} catch (Exception | LinkageError e) {
+			// A LinkageError probably means that the Lucene JARs are missing.
+			if (container != null) {
+				container.shutdown();
+			}
+			css.fatal("Could not set up the embedded Solr search engine", e);
+		}
+	}
+
+	/**
+	 * Write any changes to disk, and close the index.
+	 */
+	@Override
+	public void shutdown(Application application) {
+		if (server == null) {
+			return;
+		}
+		try {
+			server.commit();
+		} catch (SolrServerException | IOException e) {
+			log.warn("Failed to commit the search index at shutdown.", e);
+		}
+		server.shutdown();
+	}
+
+	@Override
+	protected SolrServer getServer() {
+		return server;
+	}
+
+}
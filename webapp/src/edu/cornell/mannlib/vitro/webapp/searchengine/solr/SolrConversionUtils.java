@@ -4,6 +4,7 @@ package edu.cornell.mannlib.vitro.webapp.searchengine.solr;
 
 import static edu.cornell.mannlib.vitro.webapp.search.VitroSearchTermNames.ALLTEXT;
 import static edu.cornell.mannlib.vitro.webapp.search.VitroSearchTermNames.ALLTEXTUNSTEMMED;
+import static edu.cornell.mannlib.vitro.webapp.search.VitroSearchTermNames.DOCID;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -17,6 +18,7 @@ import org.apache.solr.client.solrj.response.FacetField;
 import org.apache.solr.client.solrj.response.QueryResponse;
 import org.apache.solr.common.SolrInputDocument;
 import org.apache.solr.common.SolrInputField;
+import org.apache.solr.common.params.CursorMarkParams;
 
 import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchFacetField;
 import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchInputDocument;
@@ -146,6 +148,15 @@ public class SolrConversionUtils {
 					convertToSolrOrder(sortFields.get(sortField)));
 		}
 
+		// A cursor needs the sort to end with the unique key.
+		String cursor = query.getCursor();
+		if (cursor != null) {
+			if (!sortFields.containsKey(DOCID)) {
+				solrQuery.addSortField(DOCID, ORDER.asc);
+			}
+			solrQuery.set(CursorMarkParams.CURSOR_MARK_PARAM, cursor);
+		}
+
 		for (String filter : query.getFilters()) {
 			solrQuery.addFilterQuery(filter);
 		}
@@ -186,7 +197,8 @@ public class SolrConversionUtils {
 	static SearchResponse convertToSearchResponse(QueryResponse response) {
 		return new BaseSearchResponse(response.getHighlighting(),
 				convertToSearchFacetFieldMap(response.getFacetFields()),
-				new SolrSearchResultDocumentList(response.getResults()));
+				new SolrSearchResultDocumentList(response.getResults()),
+				response.getNextCursorMark());
 	}
 
 	private static Map<String, SearchFacetField> convertToSearchFacetFieldMap(
@@ -8,7 +8,9 @@ import static edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndex
 
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -19,6 +21,8 @@ import org.apache.jena.riot.RiotReader;
 import org.apache.jena.riot.tokens.Tokenizer;
 import org.apache.jena.riot.tokens.TokenizerFactory;
 
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.NodeFactory;
 import com.hp.hpl.jena.graph.Triple;
 import com.hp.hpl.jena.rdf.model.Model;
 import com.hp.hpl.jena.rdf.model.ModelFactory;
@@ -50,39 +54,93 @@ import edu.cornell.mannlib.vitro.webapp.utils.threads.VitroBackgroundThread;
  * Thus, an action that produces many changes to the models could become
  * unscalable.
  * 
- * To avoid this, we use the ResourceFactory to create a "sanitized" statement
- * which is semantically equivalent to the original, and add that to the list
- * instead. The original statement is released.
+ * To avoid this, we keep only the parsed Triple, which holds no reference to
+ * any model. The Triples are converted to Statements when they are sent.
+ * 
+ * -----------------------
+ * 
+ * The URI finders only look at the subject, the predicate, and the object of a
+ * statement if the object is a resource. For a literal object, they only care
+ * that it is a literal. So the pending changes are deduplicated on that basis:
+ * changes that differ only in the value of a literal object are reduced to the
+ * first one. Adding and then removing a statement is likewise reduced to a
+ * single change.
+ * 
+ * Even so, a bulk load could produce more distinct changes than we want to
+ * hold in memory. If the number of pending changes exceeds the limit, they are
+ * discarded, and a full rebuild of the index is requested in their place.
  */
 public class IndexingChangeListener implements ChangeListener,
 		SearchIndexer.Listener {
 	private static final Log log = LogFactory
 			.getLog(IndexingChangeListener.class);
 
+	public static final int DEFAULT_MAX_PENDING_CHANGES = 100_000;
+
+	/** Stands for any literal object, when deduplicating changes. */
+	private static final Node ANY_LITERAL = NodeFactory
+			.createLiteral("any literal");
+
 	private final SearchIndexer searchIndexer;
 	private final Ticker ticker;
 	private volatile boolean paused;
     private final Model defaultModel;
+	private final int maxPendingChanges;
 
-	/** All access to the list must be synchronized. */
-	private final List<Statement> changes;
+	/**
+	 * Maps the deduplication key to the first change with that key. All access
+	 * to the map must be synchronized.
+	 */
+	private final Map<Triple, Triple> changes;
+
+	/**
+	 * Too many changes: discard them and rebuild instead. All access must be
+	 * synchronized.
+	 */
+	private boolean overflowed;
 
 	public IndexingChangeListener(SearchIndexer searchIndexer) {
+		this(searchIndexer, DEFAULT_MAX_PENDING_CHANGES);
+	}
+
+	public IndexingChangeListener(SearchIndexer searchIndexer,
+			int maxPendingChanges) {
 		this.searchIndexer = searchIndexer;
 		this.ticker = new Ticker();
         this.defaultModel = ModelFactory.createDefaultModel();
-		this.changes = new ArrayList<>();
+		this.maxPendingChanges = maxPendingChanges;
+		this.changes = new LinkedHashMap<>();
 
 		searchIndexer.addListener(this);
 	}
 
-	private synchronized void noteChange(Statement stmt) {
-        changes.add(stmt); 
+	private synchronized void noteChange(Triple triple) {
+		if (!overflowed) {
+			Triple key = dedupKey(triple);
+			if (!changes.containsKey(key)) {
+				changes.put(key, triple);
+			}
+			if (changes.size() > maxPendingChanges) {
+				log.info("More than " + maxPendingChanges
+						+ " pending changes: the search index will be rebuilt.");
+				changes.clear();
+				overflowed = true;
+			}
+		}
 		if (!paused) {
 			ticker.start();
 		}
 	}
 
+	private Triple dedupKey(Triple triple) {
+		if (triple.getObject().isLiteral()) {
+			return new Triple(triple.getSubject(), triple.getPredicate(),
+					ANY_LITERAL);
+		} else {
+			return triple;
+		}
+	}
+
 	@Override
 	public void receiveSearchIndexerEvent(Event event) {
 		if (event.getType() == PAUSE) {
@@ -96,14 +154,32 @@ public class IndexingChangeListener implements ChangeListener,
 	}
 
 	private synchronized void respondToTicker() {
-		if (!paused && !changes.isEmpty()) {
-			searchIndexer.scheduleUpdatesForStatements(changes);
+		if (paused) {
+			return;
+		}
+		if (overflowed) {
+			overflowed = false;
+			searchIndexer.rebuildIndex();
+		} else if (!changes.isEmpty()) {
+			// The Statements are not added to the defaultModel, so they can be
+			// disposed when unused.
+			List<Statement> stmts = new ArrayList<>(changes.size());
+			for (Triple triple : changes.values()) {
+				stmts.add(defaultModel.asStatement(triple));
+			}
 			changes.clear();
+			searchIndexer.scheduleUpdatesForStatements(stmts);
 		}
 	}
 
 	private synchronized void discardChanges() {
 		changes.clear();
+		overflowed = false;
+	}
+
+	/** How many distinct changes are waiting to be sent? */
+	synchronized int pendingChangeCount() {
+		return changes.size();
 	}
 
 	public void shutdown() {
@@ -138,7 +214,7 @@ public class IndexingChangeListener implements ChangeListener,
 	}
 
 	// TODO avoid duplication with JenaChangeListener
-	private Statement parseTriple(String serializedTriple) {
+	private Triple parseTriple(String serializedTriple) {
         try {
             // Use RiotReader to parse a Triple
             // NB A Triple can be serialized correctly with: FmtUtils.stringForTriple(triple, PrefixMapping.Factory.create()) + " .";'
@@ -152,11 +228,7 @@ public class IndexingChangeListener implements ChangeListener,
                     log.warn("More than one triple parsed from change event: '" + serializedTriple + "'");
                 }
 
-                // Use the retained defaultModel instance to convert the Triple to a Statement
-                // This does not add the Statement to the Model, so the Statement can be disposed when unused
-                // And whilst the Model is attached to the Statement, using a single instance means only one Model
-                // is created and attached to all of the Statements created by this instance
-                return defaultModel.asStatement(triple);
+                return triple;
             } else {
                 throw new RuntimeException("no triple parsed from change event: '" + serializedTriple + "'");
             }
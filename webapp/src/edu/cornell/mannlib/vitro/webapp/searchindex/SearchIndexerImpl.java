@@ -3,6 +3,7 @@
 package edu.cornell.mannlib.vitro.webapp.searchindex;
 
 import static edu.cornell.mannlib.vitro.webapp.modelaccess.ModelNames.DISPLAY;
+import static edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexer.Event.Type.COMMIT;
 import static edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexer.Event.Type.PAUSE;
 import static edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexer.Event.Type.SHUTDOWN_COMPLETE;
 import static edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexer.Event.Type.SHUTDOWN_REQUESTED;
@@ -15,6 +16,7 @@ import static java.util.concurrent.TimeUnit.MINUTES;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
@@ -41,9 +43,12 @@ import edu.cornell.mannlib.vitro.webapp.dao.filtering.filters.VitroFilters;
 import edu.cornell.mannlib.vitro.webapp.modelaccess.ModelAccess;
 import edu.cornell.mannlib.vitro.webapp.modules.Application;
 import edu.cornell.mannlib.vitro.webapp.modules.ComponentStartupStatus;
+import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.CommitReportingSearchIndexer;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexer;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexer.Event.Type;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerStatus;
+import edu.cornell.mannlib.vitro.webapp.searchindex.commitPolicy.CommitPolicy;
+import edu.cornell.mannlib.vitro.webapp.searchindex.commitPolicy.ImmediateCommitPolicy;
 import edu.cornell.mannlib.vitro.webapp.searchindex.documentBuilding.DocumentModifier;
 import edu.cornell.mannlib.vitro.webapp.searchindex.documentBuilding.DocumentModifierList;
 import edu.cornell.mannlib.vitro.webapp.searchindex.documentBuilding.DocumentModifierListBasic;
@@ -81,8 +86,14 @@ import edu.cornell.mannlib.vitro.webapp.utils.threads.VitroBackgroundThread.Work
  * 
  * The number of threads in the thread pool is specified in the application
  * setup file.
+ * 
+ * The application setup file may also specify a CommitPolicy, to say when the
+ * changes are committed to the search index. If it doesn't, the indexer commits
+ * at every progress event and at the end of every task. A COMMIT event tells
+ * the listeners when the changes are visible to searches.
  */
-public class SearchIndexerImpl implements SearchIndexer {
+public class SearchIndexerImpl implements SearchIndexer,
+		CommitReportingSearchIndexer {
 	private static final Log log = LogFactory.getLog(SearchIndexerImpl.class);
 
 	private final ListenerList listeners = new ListenerList();
@@ -91,6 +102,7 @@ public class SearchIndexerImpl implements SearchIndexer {
 
 	private Integer threadPoolSize;
 	private WorkerThreadPool pool;
+	private CommitPolicy commitPolicy;
 
 	private ServletContext ctx;
 	private List<SearchIndexExcluder> excluders;
@@ -116,6 +128,17 @@ public class SearchIndexerImpl implements SearchIndexer {
 		}
 	}
 
+	@Property(uri = "http://vitro.mannlib.cornell.edu/ns/vitro/ApplicationSetup#hasCommitPolicy")
+	public void setCommitPolicy(CommitPolicy policy) {
+		if (commitPolicy == null) {
+			commitPolicy = policy;
+		} else {
+			throw new IllegalStateException(
+					"Configuration includes multiple CommitPolicy instances: "
+							+ commitPolicy + ", and " + policy);
+		}
+	}
+
 	@Validation
 	public void validate() throws Exception {
 		if (threadPoolSize == null) {
@@ -124,6 +147,9 @@ public class SearchIndexerImpl implements SearchIndexer {
 		} else {
 			this.pool = new WorkerThreadPool(threadPoolSize);
 		}
+		if (commitPolicy == null) {
+			commitPolicy = new ImmediateCommitPolicy();
+		}
 	}
 
 	// ----------------------------------------------------------------------
@@ -143,12 +169,20 @@ public class SearchIndexerImpl implements SearchIndexer {
 			this.ctx = application.getServletContext();
 			this.wadf = getFilteredWebappDaoFactory();
 			loadConfiguration();
+			commitPolicy.startup(application.getSearchEngine(),
+					new CommitPolicy.Listener() {
+						@Override
+						public void changesCommitted() {
+							fireEvent(COMMIT);
+						}
+					});
 
 			fireEvent(STARTUP);
 			scheduler.start();
 
 			ss.info("Configured SearchIndexer: excluders=" + excluders
-					+ ", modifiers=" + modifiers + ", uriFinders=" + uriFinders);
+					+ ", modifiers=" + modifiers + ", uriFinders=" + uriFinders
+					+ ", commitPolicy=" + commitPolicy);
 		} catch (Exception e) {
 			ss.fatal("Failed to configure the SearchIndexer", e);
 		}
@@ -186,6 +220,7 @@ public class SearchIndexerImpl implements SearchIndexer {
 
 		taskQueue.shutdown();
 		pool.shutdown();
+		commitPolicy.shutdown();
 
 		for (DocumentModifier dm : modifiers) {
 			try {
@@ -247,6 +282,16 @@ public class SearchIndexerImpl implements SearchIndexer {
 		return taskQueue.getStatus();
 	}
 
+	@Override
+	public String getCommitPolicyDescription() {
+		return commitPolicy.getDescription();
+	}
+
+	@Override
+	public Date getLastCommit() {
+		return commitPolicy.getLastCommit();
+	}
+
 	private void fireEvent(Type type) {
 		listeners.fireEvent(new Event(type, getStatus()));
 	}
@@ -565,6 +610,8 @@ public class SearchIndexerImpl implements SearchIndexer {
 		public ListenerList listenerList();
 
 		public WorkerThreadPool workerThreadPool();
+
+		public CommitPolicy commitPolicy();
 	}
 
 	/**
@@ -608,6 +655,11 @@ public class SearchIndexerImpl implements SearchIndexer {
 		public WorkerThreadPool workerThreadPool() {
 			return sii.pool;
 		}
+
+		@Override
+		public CommitPolicy commitPolicy() {
+			return sii.commitPolicy;
+		}
 	}
 
 	public static interface Task extends Runnable {
@@ -10,6 +10,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import edu.cornell.mannlib.vitro.webapp.application.ApplicationUtils;
+import edu.cornell.mannlib.vitro.webapp.config.ConfigurationProperties;
 import edu.cornell.mannlib.vitro.webapp.modules.Application;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexer;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
@@ -28,12 +29,14 @@ import edu.cornell.mannlib.vitro.webapp.utils.developer.listeners.DeveloperDisab
  * Create a history object as a listener and make it available to the
  * IndexController.
  * 
- * Create a listener that will call commit() on the SearchEngine every time it
- * hears a progress or completion event.
+ * The indexer's CommitPolicy decides when the changes are committed to the
+ * SearchEngine.
  */
 public class SearchIndexerSetup implements ServletContextListener {
 	private static final Log log = LogFactory.getLog(SearchIndexerSetup.class);
 
+	private static final String PROPERTY_MAX_PENDING_CHANGES = "index.changeListener.maxPendingChanges";
+
 	private ServletContext ctx;
 	private Application app;
 	private SearchIndexer searchIndexer;
@@ -52,7 +55,8 @@ public class SearchIndexerSetup implements ServletContextListener {
 			searchIndexer = app.getSearchIndexer();
 
 			// A change listener, wrapped so it can respond to a developer flag.
-			listener = new IndexingChangeListener(searchIndexer);
+			listener = new IndexingChangeListener(searchIndexer,
+					getMaxPendingChanges(ss));
 			listenerWrapper = new DeveloperDisabledChangeListener(listener,
 					Key.SEARCH_INDEX_SUPPRESS_MODEL_CHANGE_LISTENER);
 			RDFServiceUtils.getRDFServiceFactory(ctx).registerListener(
@@ -71,6 +75,24 @@ public class SearchIndexerSetup implements ServletContextListener {
 		}
 	}
 
+	private int getMaxPendingChanges(StartupStatus ss) {
+		int defaultValue = IndexingChangeListener.DEFAULT_MAX_PENDING_CHANGES;
+		String value = ConfigurationProperties.getBean(ctx).getProperty(
+				PROPERTY_MAX_PENDING_CHANGES, String.valueOf(defaultValue));
+		try {
+			int max = Integer.parseInt(value.trim());
+			if (max > 0) {
+				return max;
+			}
+		} catch (NumberFormatException e) {
+			// Fall through.
+		}
+		ss.warning(this, "Invalid value for '" + PROPERTY_MAX_PENDING_CHANGES
+				+ "': '" + value + "'. Using the default value of "
+				+ defaultValue);
+		return defaultValue;
+	}
+
 	@Override
 	public void contextDestroyed(ServletContextEvent sce) {
 		searchIndexer.shutdown(app);
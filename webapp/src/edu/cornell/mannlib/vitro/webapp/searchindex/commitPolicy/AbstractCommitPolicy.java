@@ -0,0 +1,218 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.searchindex.commitPolicy;
+
+import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.DeferredCommits;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngine;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngineException;
+import edu.cornell.mannlib.vitro.webapp.utils.threads.VitroBackgroundThread;
+
+/**
+ * The bookkeeping that the commit policies share: counting the changes since
+ * the last commit, committing, telling the listener, and running a timer.
+ *
+ * Subclasses say when to commit.
+ */
+public abstract class AbstractCommitPolicy implements CommitPolicy {
+	private static final Log log = LogFactory
+			.getLog(AbstractCommitPolicy.class);
+
+	/** Changes since the last hard commit. */
+	private final AtomicLong uncommitted = new AtomicLong();
+
+	/** Changes since the last commit of either kind. */
+	private final AtomicLong invisible = new AtomicLong();
+
+	private volatile SearchEngine searchEngine;
+	private volatile Listener listener;
+	private volatile Date lastCommit;
+	private ScheduledExecutorService timer;
+
+	@Override
+	public void startup(SearchEngine engine, Listener commitListener) {
+		this.searchEngine = engine;
+		this.listener = commitListener;
+	}
+
+	@Override
+	public int getCommitWithinMillis() {
+		return -1;
+	}
+
+	@Override
+	public void documentsChanged(int count) {
+		uncommitted.addAndGet(count);
+		invisible.addAndGet(count);
+	}
+
+	@Override
+	public void checkpoint() {
+		// Most policies don't care.
+	}
+
+	/**
+	 * Stop the timer, if there is one, and commit anything that is left.
+	 */
+	@Override
+	public void shutdown() {
+		synchronized (this) {
+			if (timer != null) {
+				timer.shutdownNow();
+			}
+		}
+		if (getUncommittedChanges() > 0) {
+			commit();
+		}
+	}
+
+	@Override
+	public Date getLastCommit() {
+		return lastCommit;
+	}
+
+	protected long getUncommittedChanges() {
+		return uncommitted.get();
+	}
+
+	protected long getInvisibleChanges() {
+		return invisible.get();
+	}
+
+	/**
+	 * Get the changes that are not yet visible, and stop counting them, for a
+	 * policy that knows they will be visible soon.
+	 */
+	protected long takeInvisibleChanges() {
+		return invisible.getAndSet(0);
+	}
+
+	/**
+	 * Make the changes durable and visible. If the commit fails, the changes
+	 * are still counted as uncommitted.
+	 */
+	protected void commit() {
+		long changes = uncommitted.getAndSet(0);
+		long unseen = invisible.getAndSet(0);
+		try {
+			searchEngine.commit();
+			lastCommit = new Date();
+			log.debug("Committed " + changes + " changes.");
+		} catch (SearchEngineException e) {
+			uncommitted.addAndGet(changes);
+			invisible.addAndGet(unseen);
+			log.warn("Failed to commit changes.", e);
+			return;
+		}
+		changesCommitted();
+	}
+
+	/**
+	 * Make the changes visible, but not necessarily durable.
+	 */
+	protected void softCommit() {
+		long unseen = invisible.getAndSet(0);
+		try {
+			DeferredCommits.softCommit(searchEngine);
+			lastCommit = new Date();
+			log.debug("Soft-committed " + unseen + " changes.");
+		} catch (SearchEngineException e) {
+			invisible.addAndGet(unseen);
+			log.warn("Failed to soft-commit changes.", e);
+			return;
+		}
+		changesCommitted();
+	}
+
+	/**
+	 * The changes are visible to searches. Tell the listener.
+	 */
+	protected void changesCommitted() {
+		Listener l = listener;
+		if (l != null) {
+			try {
+				l.changesCommitted();
+			} catch (Exception e) {
+				log.warn("Commit listener failed.", e);
+			}
+		}
+	}
+
+	/**
+	 * Run this task repeatedly, until shutdown.
+	 */
+	protected synchronized void repeat(Runnable task, long intervalMillis) {
+		getTimer().scheduleWithFixedDelay(new LoggingRunnable(task),
+				intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Run this task once, after a delay, unless shutdown comes first.
+	 */
+	protected synchronized void later(Runnable task, long delayMillis) {
+		if (timer != null && timer.isShutdown()) {
+			return;
+		}
+		getTimer().schedule(new LoggingRunnable(task), delayMillis,
+				TimeUnit.MILLISECONDS);
+	}
+
+	private ScheduledExecutorService getTimer() {
+		if (timer == null) {
+			timer = Executors
+					.newSingleThreadScheduledExecutor(new VitroBackgroundThread.Factory(
+							"SearchIndexer_CommitPolicy"));
+		}
+		return timer;
+	}
+
+	/**
+	 * Parse a configuration value that must be a positive integer.
+	 */
+	protected static int parsePositive(String name, String value) {
+		try {
+			int parsed = Integer.parseInt(value.trim());
+			if (parsed > 0) {
+				return parsed;
+			}
+		} catch (NumberFormatException e) {
+			// Fall through.
+		}
+		throw new IllegalStateException("Configuration value for " + name
+				+ " must be a positive integer: '" + value + "'");
+	}
+
+	@Override
+	public String toString() {
+		return getDescription();
+	}
+
+	/**
+	 * An exception would cancel the timer, so log it instead.
+	 */
+	private static class LoggingRunnable implements Runnable {
+		private final Runnable inner;
+
+		public LoggingRunnable(Runnable inner) {
+			this.inner = inner;
+		}
+
+		@Override
+		public void run() {
+			try {
+				inner.run();
+			} catch (Exception e) {
+				log.warn("Commit policy task failed.", e);
+			}
+		}
+	}
+
+}
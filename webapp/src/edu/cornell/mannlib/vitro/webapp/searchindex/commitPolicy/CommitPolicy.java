@@ -0,0 +1,69 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.searchindex.commitPolicy;
+
+import java.util.Date;
+
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngine;
+
+/**
+ * Decides when the changes that the SearchIndexer makes to the search index
+ * are committed.
+ *
+ * The indexing tasks report each change to the policy, and pass the policy's
+ * commit-within time to the search engine when they make it. They also tell
+ * the policy when they reach a checkpoint: a progress event, or the end of the
+ * task. The policy may commit at any of these times, or on its own schedule.
+ *
+ * The policy tells its listener when the changes have been committed, so they
+ * are visible to searches.
+ *
+ * All methods must be thread-safe, since changes are made by the worker
+ * threads.
+ */
+public interface CommitPolicy {
+	/**
+	 * The indexer is starting. Use this search engine, and tell this listener
+	 * about each commit.
+	 */
+	void startup(SearchEngine searchEngine, Listener listener);
+
+	/**
+	 * When adding or deleting documents, ask the search engine to commit them
+	 * within this many milliseconds. A negative value means no limit.
+	 */
+	int getCommitWithinMillis();
+
+	/**
+	 * This many documents were added to the index, or deleted from it.
+	 */
+	void documentsChanged(int count);
+
+	/**
+	 * An indexing task has reached a progress event, or has finished.
+	 */
+	void checkpoint();
+
+	/**
+	 * The indexer is stopping. Commit any outstanding changes.
+	 */
+	void shutdown();
+
+	/**
+	 * When did this policy last commit? May return null, if it has not
+	 * committed.
+	 */
+	Date getLastCommit();
+
+	/**
+	 * A description of the policy and its settings, for people to read.
+	 */
+	String getDescription();
+
+	/**
+	 * Hears when the changes are visible to searches.
+	 */
+	public static interface Listener {
+		void changesCommitted();
+	}
+}
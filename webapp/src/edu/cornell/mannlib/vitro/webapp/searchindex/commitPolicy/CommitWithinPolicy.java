@@ -0,0 +1,64 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.searchindex.commitPolicy;
+
+import edu.cornell.mannlib.vitro.webapp.utils.configuration.Property;
+import edu.cornell.mannlib.vitro.webapp.utils.configuration.Validation;
+
+/**
+ * Ask the search engine to commit each change within a given time, and let it
+ * gather the changes into as few commits as it can.
+ *
+ * The engine doesn't say when it commits, but the changes are visible once
+ * that time has passed. So at each checkpoint with new changes, the policy
+ * waits that long and then tells its listener.
+ */
+public class CommitWithinPolicy extends AbstractCommitPolicy {
+	private String commitWithinString;
+	private int commitWithinMillis;
+
+	@Property(uri = "http://vitro.mannlib.cornell.edu/ns/vitro/ApplicationSetup#hasCommitWithinMillis")
+	public void setCommitWithinMillis(String millis) {
+		if (commitWithinString == null) {
+			commitWithinString = millis;
+		} else {
+			throw new IllegalStateException(
+					"Configuration includes multiple values for CommitWithinMillis: "
+							+ commitWithinString + ", and " + millis);
+		}
+	}
+
+	@Validation
+	public void validate() {
+		if (commitWithinString == null) {
+			throw new IllegalStateException(
+					"Configuration did not include a value for CommitWithinMillis.");
+		}
+		commitWithinMillis = parsePositive("CommitWithinMillis",
+				commitWithinString);
+	}
+
+	@Override
+	public int getCommitWithinMillis() {
+		return commitWithinMillis;
+	}
+
+	@Override
+	public void checkpoint() {
+		if (takeInvisibleChanges() == 0) {
+			return;
+		}
+		later(new Runnable() {
+			@Override
+			public void run() {
+				changesCommitted();
+			}
+		}, commitWithinMillis);
+	}
+
+	@Override
+	public String getDescription() {
+		return "Commit within " + commitWithinMillis + " milliseconds";
+	}
+
+}
@@ -0,0 +1,105 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.searchindex.commitPolicy;
+
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngine;
+import edu.cornell.mannlib.vitro.webapp.utils.configuration.Property;
+import edu.cornell.mannlib.vitro.webapp.utils.configuration.Validation;
+
+/**
+ * Commit when enough changes have accumulated.
+ *
+ * A few changes might wait a long time for company, so a maximum delay may
+ * also be set. If there are changes older than that, they are committed
+ * anyway.
+ */
+public class CountCommitPolicy extends AbstractCommitPolicy {
+	private String maxChangesString;
+	private String maxDelayString;
+	private int maxChanges;
+	private int maxDelayMillis;
+
+	private volatile long firstUncommittedChange;
+
+	@Property(uri = "http://vitro.mannlib.cornell.edu/ns/vitro/ApplicationSetup#hasCommitAfterChanges")
+	public void setCommitAfterChanges(String count) {
+		if (maxChangesString == null) {
+			maxChangesString = count;
+		} else {
+			throw new IllegalStateException(
+					"Configuration includes multiple values for CommitAfterChanges: "
+							+ maxChangesString + ", and " + count);
+		}
+	}
+
+	@Property(uri = "http://vitro.mannlib.cornell.edu/ns/vitro/ApplicationSetup#hasMaxCommitDelayMillis")
+	public void setMaxCommitDelayMillis(String millis) {
+		if (maxDelayString == null) {
+			maxDelayString = millis;
+		} else {
+			throw new IllegalStateException(
+					"Configuration includes multiple values for MaxCommitDelayMillis: "
+							+ maxDelayString + ", and " + millis);
+		}
+	}
+
+	@Validation
+	public void validate() {
+		if (maxChangesString == null) {
+			throw new IllegalStateException(
+					"Configuration did not include a value for CommitAfterChanges.");
+		}
+		maxChanges = parsePositive("CommitAfterChanges", maxChangesString);
+		if (maxDelayString != null) {
+			maxDelayMillis = parsePositive("MaxCommitDelayMillis",
+					maxDelayString);
+		}
+	}
+
+	@Override
+	public void startup(SearchEngine searchEngine, Listener listener) {
+		super.startup(searchEngine, listener);
+		if (maxDelayMillis > 0) {
+			repeat(new Runnable() {
+				@Override
+				public void run() {
+					commitIfOverdue();
+				}
+			}, Math.max(1, maxDelayMillis / 4));
+		}
+	}
+
+	@Override
+	public void documentsChanged(int count) {
+		synchronized (this) {
+			if (getUncommittedChanges() == 0) {
+				firstUncommittedChange = System.currentTimeMillis();
+			}
+			super.documentsChanged(count);
+			if (getUncommittedChanges() < maxChanges) {
+				return;
+			}
+		}
+		commitIfPending();
+	}
+
+	private void commitIfOverdue() {
+		if (System.currentTimeMillis() - firstUncommittedChange >= maxDelayMillis) {
+			commitIfPending();
+		}
+	}
+
+	private synchronized void commitIfPending() {
+		if (getUncommittedChanges() > 0) {
+			commit();
+		}
+	}
+
+	@Override
+	public String getDescription() {
+		String delay = (maxDelayMillis > 0) ? ", or when a change is "
+				+ maxDelayMillis + " milliseconds old" : "";
+		return "Commit after every " + maxChanges + " changes" + delay;
+	}
+
+}
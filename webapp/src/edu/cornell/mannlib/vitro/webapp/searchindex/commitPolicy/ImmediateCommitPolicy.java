@@ -0,0 +1,23 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.searchindex.commitPolicy;
+
+/**
+ * Commit at every progress event, and at the end of every task.
+ *
+ * This is the default. The changes are visible soon after they are made, but
+ * a steady stream of small edits produces a steady stream of commits.
+ */
+public class ImmediateCommitPolicy extends AbstractCommitPolicy {
+
+	@Override
+	public void checkpoint() {
+		commit();
+	}
+
+	@Override
+	public String getDescription() {
+		return "Commit at every progress event and at the end of every task";
+	}
+
+}
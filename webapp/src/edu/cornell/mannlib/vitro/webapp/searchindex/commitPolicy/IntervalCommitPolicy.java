@@ -0,0 +1,96 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.searchindex.commitPolicy;
+
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngine;
+import edu.cornell.mannlib.vitro.webapp.utils.configuration.Property;
+import edu.cornell.mannlib.vitro.webapp.utils.configuration.Validation;
+
+/**
+ * Commit on a timer, if there have been changes.
+ *
+ * A soft commit makes the changes visible to searches. A hard commit makes
+ * them durable. Soft commits are cheap, so they can be frequent; hard commits
+ * can be rare. Either interval may be omitted, but not both. If there are no
+ * hard commits, the changes are made durable at shutdown.
+ */
+public class IntervalCommitPolicy extends AbstractCommitPolicy {
+	private String softIntervalString;
+	private String hardIntervalString;
+	private int softIntervalMillis;
+	private int hardIntervalMillis;
+
+	@Property(uri = "http://vitro.mannlib.cornell.edu/ns/vitro/ApplicationSetup#hasSoftCommitIntervalMillis")
+	public void setSoftCommitIntervalMillis(String millis) {
+		if (softIntervalString == null) {
+			softIntervalString = millis;
+		} else {
+			throw new IllegalStateException(
+					"Configuration includes multiple values for SoftCommitIntervalMillis: "
+							+ softIntervalString + ", and " + millis);
+		}
+	}
+
+	@Property(uri = "http://vitro.mannlib.cornell.edu/ns/vitro/ApplicationSetup#hasHardCommitIntervalMillis")
+	public void setHardCommitIntervalMillis(String millis) {
+		if (hardIntervalString == null) {
+			hardIntervalString = millis;
+		} else {
+			throw new IllegalStateException(
+					"Configuration includes multiple values for HardCommitIntervalMillis: "
+							+ hardIntervalString + ", and " + millis);
+		}
+	}
+
+	@Validation
+	public void validate() {
+		if (softIntervalString == null && hardIntervalString == null) {
+			throw new IllegalStateException(
+					"Configuration did not include a value for "
+							+ "SoftCommitIntervalMillis or HardCommitIntervalMillis.");
+		}
+		if (softIntervalString != null) {
+			softIntervalMillis = parsePositive("SoftCommitIntervalMillis",
+					softIntervalString);
+		}
+		if (hardIntervalString != null) {
+			hardIntervalMillis = parsePositive("HardCommitIntervalMillis",
+					hardIntervalString);
+		}
+	}
+
+	@Override
+	public void startup(SearchEngine searchEngine, Listener listener) {
+		super.startup(searchEngine, listener);
+		if (softIntervalMillis > 0) {
+			repeat(new Runnable() {
+				@Override
+				public void run() {
+					if (getInvisibleChanges() > 0) {
+						softCommit();
+					}
+				}
+			}, softIntervalMillis);
+		}
+		if (hardIntervalMillis > 0) {
+			repeat(new Runnable() {
+				@Override
+				public void run() {
+					if (getUncommittedChanges() > 0) {
+						commit();
+					}
+				}
+			}, hardIntervalMillis);
+		}
+	}
+
+	@Override
+	public String getDescription() {
+		String soft = (softIntervalMillis > 0) ? "soft commit every "
+				+ softIntervalMillis + " milliseconds" : "no soft commits";
+		String hard = (hardIntervalMillis > 0) ? "hard commit every "
+				+ hardIntervalMillis + " milliseconds" : "hard commit only at shutdown";
+		return "Commit on a timer: " + soft + ", " + hard;
+	}
+
+}
@@ -0,0 +1,254 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.searchindex.indexing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.hp.hpl.jena.graph.NodeFactory;
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.query.QueryFactory;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.engine.binding.BindingFactory;
+import com.hp.hpl.jena.sparql.engine.binding.BindingMap;
+import com.hp.hpl.jena.sparql.expr.Expr;
+import com.hp.hpl.jena.sparql.expr.ExprFunctionOp;
+import com.hp.hpl.jena.sparql.syntax.Element;
+import com.hp.hpl.jena.sparql.syntax.ElementData;
+import com.hp.hpl.jena.sparql.syntax.ElementFilter;
+import com.hp.hpl.jena.sparql.syntax.ElementGroup;
+import com.hp.hpl.jena.sparql.syntax.ElementNamedGraph;
+import com.hp.hpl.jena.sparql.syntax.ElementPathBlock;
+import com.hp.hpl.jena.sparql.syntax.ElementTriplesBlock;
+import com.hp.hpl.jena.sparql.syntax.ElementUnion;
+
+import edu.cornell.mannlib.vitro.webapp.utils.sparql.SelectQueryHolder;
+
+/**
+ * A select query from a SelectQueryUriFinder, rewritten so it can be run once
+ * for many statements. Instead of substituting the URIs of a statement for
+ * ?subject, ?predicate and ?object, the query gets a VALUES block at the start
+ * of its WHERE clause, with a row for each statement.
+ *
+ * That gives the same results as running the query once for each row, but
+ * only if the variables are in scope for the whole query. So the query is not
+ * batched if it contains OPTIONAL, MINUS, EXISTS, BIND, VALUES, a sub-query or
+ * SERVICE, if it has aggregates, GROUP BY, LIMIT or OFFSET, or if a FILTER in
+ * a nested group uses one of the variables. Nor is it batched if it selects
+ * one of the variables, since substitution would make it unparseable.
+ *
+ * Package access: used by SelectQueryUriFinder.
+ */
+class BatchedSelectQuery {
+	private static final Log log = LogFactory.getLog(BatchedSelectQuery.class);
+
+	private static final List<String> BINDABLE_NAMES = Collections
+			.unmodifiableList(Arrays.asList("subject", "predicate",
+					"object"));
+
+	/** Characters that would not survive in a URI in the query text. */
+	private static final Pattern UNSAFE_URI_CHARS = Pattern
+			.compile("[\\s<>\"{}|^`\\\\]");
+
+	private static final BatchedSelectQuery NOT_BATCHABLE = new BatchedSelectQuery(
+			null, Collections.<String> emptyList(),
+			Collections.<String> emptyList());
+
+	/**
+	 * Analyze the query. If it can't be batched, the result says so, and the
+	 * query should be run for each statement.
+	 */
+	static BatchedSelectQuery analyze(String queryString) {
+		List<String> bindingNames = new ArrayList<>();
+		SelectQueryHolder holder = new SelectQueryHolder(queryString);
+		for (String name : BINDABLE_NAMES) {
+			if (holder.hasVariable(name)) {
+				bindingNames.add(name);
+			}
+		}
+
+		Query query;
+		try {
+			query = QueryFactory.create(queryString);
+		} catch (Exception e) {
+			log.debug("Can't parse the query, so can't batch it: "
+					+ queryString);
+			return NOT_BATCHABLE;
+		}
+
+		if (!query.isSelectType() || query.hasAggregators()
+				|| query.hasGroupBy() || query.hasHaving() || query.hasLimit()
+				|| query.hasOffset() || query.hasValues()) {
+			return notBatchable(queryString, "query form or modifiers");
+		}
+		if (!query.isQueryResultStar()) {
+			for (String name : bindingNames) {
+				if (query.getResultVars().contains(name)) {
+					return notBatchable(queryString, "selects ?" + name);
+				}
+			}
+		}
+		if (!isBatchable(query.getQueryPattern(), bindingNames, true)) {
+			return notBatchable(queryString, "WHERE clause");
+		}
+
+		List<String> resultNames = new ArrayList<>(query.getResultVars());
+		resultNames.removeAll(bindingNames);
+		if (resultNames.isEmpty()) {
+			return notBatchable(queryString, "selects nothing else");
+		}
+		return new BatchedSelectQuery(queryString, bindingNames, resultNames);
+	}
+
+	private static BatchedSelectQuery notBatchable(String queryString,
+			String reason) {
+		log.debug("Can't batch the query (" + reason + "): " + queryString);
+		return NOT_BATCHABLE;
+	}
+
+	private static boolean isBatchable(Element element,
+			List<String> bindingNames, boolean topLevel) {
+		if (element instanceof ElementGroup) {
+			for (Element child : ((ElementGroup) element).getElements()) {
+				if (child instanceof ElementFilter) {
+					Expr expr = ((ElementFilter) child).getExpr();
+					if (containsExists(expr)) {
+						return false;
+					}
+					if (!topLevel && mentionsAny(expr, bindingNames)) {
+						return false;
+					}
+				} else if (!isBatchable(child, bindingNames, false)) {
+					return false;
+				}
+			}
+			return true;
+		} else if (element instanceof ElementUnion) {
+			for (Element child : ((ElementUnion) element).getElements()) {
+				if (!isBatchable(child, bindingNames, false)) {
+					return false;
+				}
+			}
+			return true;
+		} else if (element instanceof ElementNamedGraph) {
+			return isBatchable(((ElementNamedGraph) element).getElement(),
+					bindingNames, false);
+		} else {
+			return (element instanceof ElementPathBlock)
+					|| (element instanceof ElementTriplesBlock);
+		}
+	}
+
+	private static boolean containsExists(Expr expr) {
+		if (expr instanceof ExprFunctionOp) {
+			return true;
+		}
+		if (expr.isFunction()) {
+			for (Expr arg : expr.getFunction().getArgs()) {
+				if (containsExists(arg)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static boolean mentionsAny(Expr expr, List<String> names) {
+		for (Var var : expr.getVarsMentioned()) {
+			if (names.contains(var.getVarName())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/** Would this URI be written into the query unchanged? */
+	static boolean isSafeUri(String uri) {
+		return uri != null && !uri.isEmpty()
+				&& !UNSAFE_URI_CHARS.matcher(uri).find();
+	}
+
+	private final String queryString;
+	private final List<String> bindingNames;
+	private final List<String> resultNames;
+
+	private BatchedSelectQuery(String queryString, List<String> bindingNames,
+			List<String> resultNames) {
+		this.queryString = queryString;
+		this.bindingNames = Collections.unmodifiableList(bindingNames);
+		this.resultNames = Collections.unmodifiableList(resultNames);
+	}
+
+	boolean isBatchable() {
+		return this != NOT_BATCHABLE;
+	}
+
+	/** Which of ?subject, ?predicate and ?object appear in the query. */
+	List<String> getBindingNames() {
+		return bindingNames;
+	}
+
+	/** The variables that the query returns, other than the bound ones. */
+	List<String> getResultNames() {
+		return resultNames;
+	}
+
+	/**
+	 * The query text, with a VALUES block for these rows. Each row holds URIs
+	 * for the binding names, in order.
+	 */
+	String withValues(Collection<List<String>> rows) {
+		Query query = QueryFactory.create(queryString);
+		if (bindingNames.isEmpty()) {
+			return query.toString();
+		}
+
+		List<Var> vars = new ArrayList<>();
+		ElementData data = new ElementData();
+		for (String name : bindingNames) {
+			Var var = Var.alloc(name);
+			vars.add(var);
+			data.add(var);
+		}
+		for (List<String> row : rows) {
+			BindingMap binding = BindingFactory.create();
+			for (int i = 0; i < vars.size(); i++) {
+				binding.add(vars.get(i), NodeFactory.createURI(row.get(i)));
+			}
+			data.add(binding);
+		}
+
+		ElementGroup group = new ElementGroup();
+		group.addElement(data);
+		Element pattern = query.getQueryPattern();
+		if (pattern instanceof ElementGroup) {
+			for (Element child : ((ElementGroup) pattern).getElements()) {
+				group.addElement(child);
+			}
+		} else {
+			group.addElement(pattern);
+		}
+		query.setQueryPattern(group);
+
+		if (query.isQueryResultStar()) {
+			query.setQueryResultStar(false);
+			for (String name : resultNames) {
+				query.addResultVar(name);
+			}
+		}
+		return query.toString();
+	}
+
+	@Override
+	public String toString() {
+		return isBatchable() ? "BatchedSelectQuery[" + bindingNames + ", "
+				+ queryString + "]" : "BatchedSelectQuery[not batchable]";
+	}
+}
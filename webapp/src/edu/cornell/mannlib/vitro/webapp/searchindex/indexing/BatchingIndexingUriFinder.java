@@ -0,0 +1,30 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.searchindex.indexing;
+
+import java.util.Collection;
+import java.util.List;
+
+import com.hp.hpl.jena.rdf.model.Statement;
+
+/**
+ * An IndexingUriFinder that can do its work for a group of statements at
+ * once, more cheaply than it could for each statement in turn.
+ *
+ * The result must include all of the URIs that would have been found by
+ * calling findAdditionalURIsToIndex() for each statement in the group. It may
+ * contain duplicates.
+ *
+ * The life-cycle is the same as for any IndexingUriFinder. Calls for single
+ * statements and for groups may be mixed.
+ */
+public interface BatchingIndexingUriFinder extends IndexingUriFinder {
+
+	/**
+	 * Calculate the URIs that need to be updated in the search index, for all
+	 * of these statements.
+	 *
+	 * @return List of URIs. Never return null.
+	 */
+	List<String> findAdditionalURIsToIndex(Collection<Statement> stmts);
+}
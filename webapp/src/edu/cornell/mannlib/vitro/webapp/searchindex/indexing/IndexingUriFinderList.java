@@ -2,6 +2,7 @@
 
 package edu.cornell.mannlib.vitro.webapp.searchindex.indexing;
 
+import java.util.Collection;
 import java.util.Set;
 
 import com.hp.hpl.jena.rdf.model.Statement;
@@ -38,4 +39,17 @@ public interface IndexingUriFinderList {
 	 */
 	Set<String> findAdditionalUris(Statement stmt);
 
+	/**
+	 * Ask each BatchingIndexingUriFinder about all of these statements at once,
+	 * and return a set of the URIs that they found. The other finders are not
+	 * asked.
+	 */
+	Set<String> findAdditionalUrisInBatch(Collection<Statement> stmts);
+
+	/**
+	 * Ask each finder that is not a BatchingIndexingUriFinder about each of
+	 * these statements in turn, and return a set of the URIs that they found.
+	 */
+	Set<String> findAdditionalUrisOneAtATime(Collection<Statement> stmts);
+
 }
@@ -52,15 +52,52 @@ public class IndexingUriFinderListBasic implements IndexingUriFinderList {
 						+ " additions " + additions + " for this statement "
 						+ stmt);
 			}
-			for (String addition : additions) {
-				if (addition == null) {
-					log.warn("Finder " + uriFinder + " returned a null URI.");
-				} else {
-					uris.add(addition);
+			addNonNullUris(uriFinder, additions, uris);
+		}
+		return uris;
+	}
+
+	@Override
+	public Set<String> findAdditionalUrisInBatch(Collection<Statement> stmts) {
+		Set<String> uris = new HashSet<>();
+		for (IndexingUriFinder uriFinder : finders) {
+			if (uriFinder instanceof BatchingIndexingUriFinder) {
+				List<String> additions = ((BatchingIndexingUriFinder) uriFinder)
+						.findAdditionalURIsToIndex(stmts);
+				if (log.isDebugEnabled() && !additions.isEmpty()) {
+					log.debug(uriFinder + " found " + additions.size()
+							+ " additions for " + stmts.size() + " statements");
+				}
+				addNonNullUris(uriFinder, additions, uris);
+			}
+		}
+		return uris;
+	}
+
+	@Override
+	public Set<String> findAdditionalUrisOneAtATime(
+			Collection<Statement> stmts) {
+		Set<String> uris = new HashSet<>();
+		for (IndexingUriFinder uriFinder : finders) {
+			if (!(uriFinder instanceof BatchingIndexingUriFinder)) {
+				for (Statement stmt : stmts) {
+					addNonNullUris(uriFinder,
+							uriFinder.findAdditionalURIsToIndex(stmt), uris);
 				}
 			}
 		}
 		return uris;
 	}
 
+	private void addNonNullUris(IndexingUriFinder uriFinder,
+			List<String> additions, Set<String> uris) {
+		for (String addition : additions) {
+			if (addition == null) {
+				log.warn("Finder " + uriFinder + " returned a null URI.");
+			} else {
+				uris.add(addition);
+			}
+		}
+	}
+
 }
@@ -61,6 +61,44 @@ public class IndexingUriFinderListDeveloper implements IndexingUriFinderList {
 		return uris;
 	}
 
+	/**
+	 * A batch is not counted as a call: each of its statements is counted when
+	 * it is given to the other finders.
+	 */
+	@Override
+	public Set<String> findAdditionalUrisInBatch(Collection<Statement> stmts) {
+		Set<String> uris = new HashSet<>();
+		for (FinderTiming timing : timings) {
+			IndexingUriFinder finder = timing.getFinder();
+			if (finder instanceof BatchingIndexingUriFinder) {
+				long startTime = System.currentTimeMillis();
+				uris.addAll(((BatchingIndexingUriFinder) finder)
+						.findAdditionalURIsToIndex(stmts));
+				timing.addElapsedTime(System.currentTimeMillis() - startTime);
+			}
+		}
+		return uris;
+	}
+
+	@Override
+	public Set<String> findAdditionalUrisOneAtATime(
+			Collection<Statement> stmts) {
+		count.addAndGet(stmts.size());
+
+		Set<String> uris = new HashSet<>();
+		for (FinderTiming timing : timings) {
+			IndexingUriFinder finder = timing.getFinder();
+			if (!(finder instanceof BatchingIndexingUriFinder)) {
+				long startTime = System.currentTimeMillis();
+				for (Statement stmt : stmts) {
+					uris.addAll(finder.findAdditionalURIsToIndex(stmt));
+				}
+				timing.addElapsedTime(System.currentTimeMillis() - startTime);
+			}
+		}
+		return uris;
+	}
+
 	/**
 	 * Write the timings to the log.
 	 */
@@ -7,10 +7,14 @@ import static edu.cornell.mannlib.vitro.webapp.utils.sparql.SelectQueryRunner.cr
 import static edu.cornell.mannlib.vitro.webapp.utils.sparql.SelectQueryRunner.selectQuery;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -42,14 +46,22 @@ import edu.cornell.mannlib.vitro.webapp.utils.sparql.SelectQueryHolder;
  * All of the result fields of all result rows of all of the queries will be
  * returned.
  * 
+ * When asked about a group of statements, each query is run once for all of
+ * them, with a VALUES block holding the distinct bindings, a few hundred rows
+ * at a time. A query that can't be rewritten that way (see
+ * BatchedSelectQuery) is still run once per statement.
+ * 
  * A label may be supplied to the instance, for use in logging. If no label is
  * supplied, one will be generated.
  */
-public class SelectQueryUriFinder implements IndexingUriFinder,
+public class SelectQueryUriFinder implements BatchingIndexingUriFinder,
 		ContextModelsUser {
 	private static final Log log = LogFactory
 			.getLog(SelectQueryUriFinder.class);
 
+	/** The most rows to put in the VALUES block of one query. */
+	private static final int MAX_VALUES_ROWS = 200;
+
 	private RDFService rdfService;
 
 	/** A name to be used in logging, to identify this instance. */
@@ -64,6 +76,9 @@ public class SelectQueryUriFinder implements IndexingUriFinder,
 	 */
 	private Set<String> predicateRestrictions = new HashSet<>();
 
+	/** Each query, as analyzed for batching. */
+	private final ConcurrentMap<String, BatchedSelectQuery> batchedQueries = new ConcurrentHashMap<>();
+
 	@Override
 	public void setContextModels(ContextModelAccess models) {
 		this.rdfService = models.getRDFService(CONTENT);
@@ -116,6 +131,41 @@ public class SelectQueryUriFinder implements IndexingUriFinder,
 		return list;
 	}
 
+	@Override
+	public List<String> findAdditionalURIsToIndex(Collection<Statement> stmts) {
+		List<Statement> qualifying = new ArrayList<>();
+		for (Statement stmt : stmts) {
+			if (passesTypePredicateRestrictions(stmt)) {
+				qualifying.add(stmt);
+			}
+		}
+		if (qualifying.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		List<String> list = new ArrayList<>();
+		for (String query : queries) {
+			BatchedSelectQuery batched = getBatchedQuery(query);
+			if (batched.isBatchable()) {
+				list.addAll(getUrisForBatch(qualifying, query, batched));
+			} else {
+				for (Statement stmt : qualifying) {
+					list.addAll(getUrisForQuery(stmt, query));
+				}
+			}
+		}
+		return list;
+	}
+
+	private BatchedSelectQuery getBatchedQuery(String query) {
+		BatchedSelectQuery batched = batchedQueries.get(query);
+		if (batched == null) {
+			batched = BatchedSelectQuery.analyze(query);
+			batchedQueries.putIfAbsent(query, batched);
+		}
+		return batched;
+	}
+
 	private boolean passesTypePredicateRestrictions(Statement stmt) {
 		return predicateRestrictions.isEmpty()
 				|| predicateRestrictions.contains(stmt.getPredicate().getURI());
@@ -135,6 +185,75 @@ public class SelectQueryUriFinder implements IndexingUriFinder,
 				.getStringFields().flatten();
 	}
 
+	/**
+	 * Find the distinct bindings for these statements, and run the query with
+	 * as many of them at a time as we can. A statement whose URIs can't be
+	 * written into a VALUES block is handled on its own, as before.
+	 */
+	private List<String> getUrisForBatch(List<Statement> stmts,
+			String queryString, BatchedSelectQuery batched) {
+		List<String> names = batched.getBindingNames();
+		Set<List<String>> rows = new LinkedHashSet<>();
+		List<String> list = new ArrayList<>();
+		for (Statement stmt : stmts) {
+			List<String> row = new ArrayList<>(names.size());
+			for (String name : names) {
+				RDFNode node = nodeForName(stmt, name);
+				row.add(node.isURIResource() ? node.asResource().getURI()
+						: null);
+			}
+			if (row.contains(null)) {
+				continue;
+			}
+			boolean safe = true;
+			for (String uri : row) {
+				safe &= BatchedSelectQuery.isSafeUri(uri);
+			}
+			if (safe) {
+				rows.add(row);
+			} else {
+				list.addAll(getUrisForQuery(stmt, queryString));
+			}
+		}
+		if (rows.isEmpty()) {
+			return list;
+		}
+
+		log.debug(this + " running a query for " + rows.size()
+				+ " distinct bindings from " + stmts.size() + " statements");
+		String[] resultNames = batched.getResultNames().toArray(new String[0]);
+		List<List<String>> chunk = new ArrayList<>();
+		for (List<String> row : rows) {
+			chunk.add(row);
+			if (chunk.size() >= MAX_VALUES_ROWS) {
+				list.addAll(runBatch(batched, chunk, resultNames));
+				chunk.clear();
+			}
+		}
+		if (!chunk.isEmpty()) {
+			list.addAll(runBatch(batched, chunk, resultNames));
+		}
+		return list;
+	}
+
+	private RDFNode nodeForName(Statement stmt, String name) {
+		switch (name) {
+		case "subject":
+			return stmt.getSubject();
+		case "predicate":
+			return stmt.getPredicate();
+		default:
+			return stmt.getObject();
+		}
+	}
+
+	private List<String> runBatch(BatchedSelectQuery batched,
+			List<List<String>> rows, String[] resultNames) {
+		SelectQueryHolder query = selectQuery(batched.withValues(rows));
+		return createQueryContext(rdfService, query).execute()
+				.getStringFields(resultNames).flatten();
+	}
+
 	private SelectQueryHolder tryToBindUri(SelectQueryHolder query,
 			String name, RDFNode node) {
 		if (query == null) {
@@ -0,0 +1,55 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.searchindex.tasks;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.hp.hpl.jena.rdf.model.Statement;
+
+import edu.cornell.mannlib.vitro.webapp.searchindex.indexing.IndexingUriFinderList;
+
+/**
+ * Ask the URI Finders to find URIs that might be affected by this group of
+ * statements. A batch work unit asks only the BatchingIndexingUriFinders;
+ * any other work unit asks only the finders that take one statement at a
+ * time.
+ */
+public class FindUrisForStatementsWorkUnit implements Runnable {
+	private final List<Statement> stmts;
+	private final IndexingUriFinderList finders;
+	private final boolean batch;
+	private final Set<String> uris;
+
+	public FindUrisForStatementsWorkUnit(List<Statement> stmts,
+			IndexingUriFinderList finders, boolean batch) {
+		this.stmts = new ArrayList<>(stmts);
+		this.finders = finders;
+		this.batch = batch;
+		this.uris = new HashSet<>();
+	}
+
+	@Override
+	public void run() {
+		if (batch) {
+			uris.addAll(finders.findAdditionalUrisInBatch(stmts));
+		} else {
+			uris.addAll(finders.findAdditionalUrisOneAtATime(stmts));
+		}
+	}
+
+	public boolean isBatch() {
+		return batch;
+	}
+
+	public List<Statement> getStatements() {
+		return stmts;
+	}
+
+	public Set<String> getUris() {
+		return uris;
+	}
+
+}
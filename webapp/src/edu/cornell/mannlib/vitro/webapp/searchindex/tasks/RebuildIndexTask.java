@@ -15,6 +15,7 @@ import org.apache.commons.logging.LogFactory;
 
 import edu.cornell.mannlib.vitro.webapp.application.ApplicationUtils;
 import edu.cornell.mannlib.vitro.webapp.dao.IndividualDao;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.DeferredCommits;
 import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngine;
 import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngineException;
 import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngineNotRespondingException;
@@ -26,6 +27,7 @@ import edu.cornell.mannlib.vitro.webapp.searchindex.SearchIndexerImpl.IndexerCon
 import edu.cornell.mannlib.vitro.webapp.searchindex.SearchIndexerImpl.ListenerList;
 import edu.cornell.mannlib.vitro.webapp.searchindex.SearchIndexerImpl.Task;
 import edu.cornell.mannlib.vitro.webapp.searchindex.SearchIndexerImpl.WorkerThreadPool;
+import edu.cornell.mannlib.vitro.webapp.searchindex.commitPolicy.CommitPolicy;
 import edu.cornell.mannlib.vitro.webapp.searchindex.documentBuilding.DocumentModifierList;
 import edu.cornell.mannlib.vitro.webapp.searchindex.exclusions.SearchIndexExcluderList;
 
@@ -79,6 +81,7 @@ public class RebuildIndexTask implements Task {
         private final DocumentModifierList modifiers;
         private final ListenerList listeners;
         private final WorkerThreadPool pool;
+        private final CommitPolicy commitPolicy;
         private final SearchEngine searchEngine;
 
         private final Date requestedAt;
@@ -93,6 +96,7 @@ public class RebuildIndexTask implements Task {
             this.indDao = config.individualDao();
             this.listeners = config.listenerList();
             this.pool = config.workerThreadPool();
+            this.commitPolicy = config.commitPolicy();
 
             this.searchEngine = ApplicationUtils.instance().getSearchEngine();
 
@@ -132,14 +136,16 @@ public class RebuildIndexTask implements Task {
         }
 
         private void updateTheUris(Collection<String> uris) {
-            UpdateUrisTask.runNow(uris, excluders, modifiers, indDao, listeners, pool);
+            UpdateUrisTask.runNow(uris, excluders, modifiers, indDao, listeners, pool, commitPolicy);
         }
 
         private void deleteOutdatedDocuments() {
             String query = "indexedTime:[ * TO " + requestedAt.getTime() + " ]";
             try {
-                searchEngine.deleteByQuery(query);
-                searchEngine.commit();
+                DeferredCommits.deleteByQuery(searchEngine, query,
+                        commitPolicy.getCommitWithinMillis());
+                commitPolicy.documentsChanged(1);
+                commitPolicy.checkpoint();
             } catch (SearchEngineNotRespondingException e) {
                 log.warn("Failed to delete outdated documents from the search index: "
                         + "the search engine is not responding.");
@@ -14,6 +14,7 @@ import static edu.cornell.mannlib.vitro.webapp.search.VitroSearchTermNames.RDFTY
 import static edu.cornell.mannlib.vitro.webapp.search.VitroSearchTermNames.URI;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -32,11 +33,13 @@ import edu.cornell.mannlib.vitro.webapp.beans.DataPropertyStatement;
 import edu.cornell.mannlib.vitro.webapp.beans.Individual;
 import edu.cornell.mannlib.vitro.webapp.beans.ObjectPropertyStatement;
 import edu.cornell.mannlib.vitro.webapp.beans.VClass;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.DeferredCommits;
 import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngine;
 import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngineNotRespondingException;
 import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchInputDocument;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerUtils;
 import edu.cornell.mannlib.vitro.webapp.searchindex.documentBuilding.DocumentModifier;
+import edu.cornell.mannlib.vitro.webapp.searchindex.commitPolicy.CommitPolicy;
 import edu.cornell.mannlib.vitro.webapp.searchindex.documentBuilding.DocumentModifierList;
 
 public class UpdateDocumentWorkUnit implements Runnable {
@@ -49,11 +52,14 @@ public class UpdateDocumentWorkUnit implements Runnable {
 
 	private final Individual ind;
 	private final DocumentModifierList modifiers;
+	private final CommitPolicy commitPolicy;
 	private final SearchEngine searchEngine;
 
-	public UpdateDocumentWorkUnit(Individual ind, DocumentModifierList modifiers) {
+	public UpdateDocumentWorkUnit(Individual ind,
+			DocumentModifierList modifiers, CommitPolicy commitPolicy) {
 		this.ind = ind;
 		this.modifiers = modifiers;
+		this.commitPolicy = commitPolicy;
 		this.searchEngine = ApplicationUtils.instance().getSearchEngine();
 	}
 
@@ -67,7 +73,9 @@ public class UpdateDocumentWorkUnit implements Runnable {
 			SearchInputDocument doc = searchEngine.createInputDocument();
 			modifiers.modifyDocument(ind, doc);
 			addIndexedTime(doc);
-			searchEngine.add(doc);
+			DeferredCommits.add(searchEngine, Collections.singletonList(doc),
+					commitPolicy.getCommitWithinMillis());
+			commitPolicy.documentsChanged(1);
 		} catch (SearchEngineNotRespondingException e) {
 			log.warn("Failed to add '" + ind + "' to the search index: "
 					+ "the search engine is not responding.");
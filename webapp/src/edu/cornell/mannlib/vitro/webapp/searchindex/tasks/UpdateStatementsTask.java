@@ -11,6 +11,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -27,6 +28,7 @@ import edu.cornell.mannlib.vitro.webapp.searchindex.SearchIndexerImpl.IndexerCon
 import edu.cornell.mannlib.vitro.webapp.searchindex.SearchIndexerImpl.ListenerList;
 import edu.cornell.mannlib.vitro.webapp.searchindex.SearchIndexerImpl.Task;
 import edu.cornell.mannlib.vitro.webapp.searchindex.SearchIndexerImpl.WorkerThreadPool;
+import edu.cornell.mannlib.vitro.webapp.searchindex.commitPolicy.CommitPolicy;
 import edu.cornell.mannlib.vitro.webapp.searchindex.documentBuilding.DocumentModifierList;
 import edu.cornell.mannlib.vitro.webapp.searchindex.exclusions.SearchIndexExcluderList;
 import edu.cornell.mannlib.vitro.webapp.searchindex.indexing.IndexingUriFinderList;
@@ -48,10 +50,23 @@ import edu.cornell.mannlib.vitro.webapp.searchindex.indexing.IndexingUriFinderLi
  * 
  * Instead, we final all of the URIs affected by all statements, store them in a
  * Set to remove duplicates, and then process the URIs in the set.
+ * 
+ * A finder that can handle many statements at once (like a
+ * SelectQueryUriFinder) is given them in large groups, so it need not run its
+ * queries for each statement in turn. The other finders still work one
+ * statement at a time, so they are given small groups that can be spread
+ * across the worker threads. Duplicate statements are dropped before the
+ * groups are formed.
  */
 public class UpdateStatementsTask implements Task {
     private static final Log log = LogFactory.getLog(UpdateStatementsTask.class);
 
+    /** How many statements go to the batching URI finders in one work unit. */
+    private static final int STATEMENTS_PER_BATCH_WORK_UNIT = 500;
+
+    /** How many statements go to the other URI finders in one work unit. */
+    private static final int STATEMENTS_PER_SINGLE_WORK_UNIT = 10;
+
     private final IndexerConfig config;
     private UpdateStatementsTaskImpl impl;
 
@@ -87,22 +102,24 @@ public class UpdateStatementsTask implements Task {
         private final IndividualDao indDao;
         private final ListenerList listeners;
         private final WorkerThreadPool pool;
+        private final CommitPolicy commitPolicy;
 
         private final Set<String> uris;
         private final Status status;
 
         public UpdateStatementsTaskImpl(IndexerConfig config, List<Statement> changes) {
-            this.changes = changes;
+            this.changes = new ArrayList<>(new LinkedHashSet<>(changes));
             this.uriFinders = config.uriFinderList();
             this.excluders = config.excluderList();
             this.modifiers = config.documentModifierList();
             this.indDao = config.individualDao();
             this.listeners = config.listenerList();
             this.pool = config.workerThreadPool();
+            this.commitPolicy = config.commitPolicy();
 
             this.uris = Collections.synchronizedSet(new HashSet<String>());
 
-            this.status = new Status(changes.size(), 500, listeners);
+            this.status = new Status(this.changes.size(), 500, listeners);
         }
 
         @Override
@@ -119,20 +136,31 @@ public class UpdateStatementsTask implements Task {
             log.debug("Tell finders we are starting.");
             uriFinders.startIndexing();
 
-            for (Statement stmt : changes) {
-                if (isInterrupted()) {
-                    log.info("Interrupted: " + status.getSearchIndexerStatus());
-                    return;
-                } else {
-                    findUrisForStatement(stmt);
-                }
+            if (scheduleWorkUnits(STATEMENTS_PER_BATCH_WORK_UNIT, true)
+                    && scheduleWorkUnits(STATEMENTS_PER_SINGLE_WORK_UNIT, false)) {
+                waitForWorkUnitsToComplete();
             }
-            waitForWorkUnitsToComplete();
 
             log.debug("Tell finders we are stopping.");
             uriFinders.stopIndexing();
         }
 
+        /**
+         * Divide the changes into work units of this size. Return false if we
+         * were interrupted.
+         */
+        private boolean scheduleWorkUnits(int size, boolean batch) {
+            for (int i = 0; i < changes.size(); i += size) {
+                if (isInterrupted()) {
+                    log.info("Interrupted: " + status.getSearchIndexerStatus());
+                    return false;
+                }
+                findUrisForStatements(changes.subList(i,
+                        Math.min(i + size, changes.size())), batch);
+            }
+            return true;
+        }
+
         private boolean isInterrupted() {
             if (Thread.interrupted()) {
                 Thread.currentThread().interrupt();
@@ -142,10 +170,11 @@ public class UpdateStatementsTask implements Task {
             }
         }
 
-        private void findUrisForStatement(Statement stmt) {
-            Runnable workUnit = new FindUrisForStatementWorkUnit(stmt, uriFinders);
+        private void findUrisForStatements(List<Statement> stmts, boolean batch) {
+            Runnable workUnit = new FindUrisForStatementsWorkUnit(stmts,
+                    uriFinders, batch);
             pool.submit(workUnit, this);
-            log.debug("scheduled uri finders for " + stmt);
+            log.debug("scheduled uri finders for " + stmts.size() + " statements");
         }
 
         private void waitForWorkUnitsToComplete() {
@@ -153,7 +182,7 @@ public class UpdateStatementsTask implements Task {
         }
 
         private void updateTheUris() {
-            UpdateUrisTask.runNow(uris, excluders, modifiers, indDao, listeners, pool);
+            UpdateUrisTask.runNow(uris, excluders, modifiers, indDao, listeners, pool, commitPolicy);
         }
 
         @Override
@@ -163,14 +192,19 @@ public class UpdateStatementsTask implements Task {
 
         @Override
         public void notifyWorkUnitCompletion(Runnable workUnit) {
-            FindUrisForStatementWorkUnit worker = (FindUrisForStatementWorkUnit) workUnit;
+            FindUrisForStatementsWorkUnit worker = (FindUrisForStatementsWorkUnit) workUnit;
 
             Set<String> foundUris = worker.getUris();
-            Statement stmt = worker.getStatement();
-            log.debug("Found " + foundUris.size() + " uris for statement: " + stmt);
+            List<Statement> stmts = worker.getStatements();
+            log.debug("Found " + foundUris.size() + " uris for "
+                    + stmts.size() + " statements");
 
             uris.addAll(foundUris);
-            status.incrementProcessed();
+
+            // Every statement is in exactly one of the smaller work units.
+            if (!worker.isBatch()) {
+                status.incrementProcessed(stmts.size());
+            }
         }
 
         // ----------------------------------------------------------------------
@@ -194,14 +228,15 @@ public class UpdateStatementsTask implements Task {
                 this.listeners = listeners;
             }
 
-            public synchronized void incrementProcessed() {
-                processed++;
+            public synchronized void incrementProcessed(int count) {
+                int before = processed;
+                processed += count;
                 since = new Date();
-                maybeFireProgressEvent();
+                maybeFireProgressEvent(before);
             }
 
-            private void maybeFireProgressEvent() {
-                if (processed > 0 && processed % progressInterval == 0) {
+            private void maybeFireProgressEvent(int before) {
+                if (processed / progressInterval > before / progressInterval) {
                     listeners.fireEvent(new Event(PROGRESS,
                             getSearchIndexerStatus()));
                 }
@@ -8,6 +8,7 @@ import static edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndex
 import static edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerStatus.State.PROCESSING_URIS;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
@@ -19,6 +20,7 @@ import edu.cornell.mannlib.vitro.webapp.application.ApplicationUtils;
 import edu.cornell.mannlib.vitro.webapp.beans.Individual;
 import edu.cornell.mannlib.vitro.webapp.beans.VClass;
 import edu.cornell.mannlib.vitro.webapp.dao.IndividualDao;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.DeferredCommits;
 import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngine;
 import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngineException;
 import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngineNotRespondingException;
@@ -30,6 +32,7 @@ import edu.cornell.mannlib.vitro.webapp.searchindex.SearchIndexerImpl.IndexerCon
 import edu.cornell.mannlib.vitro.webapp.searchindex.SearchIndexerImpl.ListenerList;
 import edu.cornell.mannlib.vitro.webapp.searchindex.SearchIndexerImpl.Task;
 import edu.cornell.mannlib.vitro.webapp.searchindex.SearchIndexerImpl.WorkerThreadPool;
+import edu.cornell.mannlib.vitro.webapp.searchindex.commitPolicy.CommitPolicy;
 import edu.cornell.mannlib.vitro.webapp.searchindex.documentBuilding.DocumentModifierList;
 import edu.cornell.mannlib.vitro.webapp.searchindex.exclusions.SearchIndexExcluder;
 import edu.cornell.mannlib.vitro.webapp.searchindex.exclusions.SearchIndexExcluderList;
@@ -45,8 +48,8 @@ import edu.cornell.mannlib.vitro.webapp.searchindex.exclusions.SearchIndexExclud
  * Deletions are done synchronously, but updates are scheduled to run on the
  * thread pool.
  * 
- * Commit requests are issued to the SearchEngine at each progress event and
- * again at the end of the task.
+ * The CommitPolicy is told about each change, and about each progress event
+ * and the end of the task. It decides when to commit.
  */
 public class UpdateUrisTask implements Task {
     private static final Log log = LogFactory.getLog(UpdateUrisTask.class);
@@ -64,9 +67,10 @@ public class UpdateUrisTask implements Task {
 
 	static void runNow(Collection<String> uris,
 			SearchIndexExcluderList excluders, DocumentModifierList modifiers,
-			IndividualDao indDao, ListenerList listeners, WorkerThreadPool pool) {
+			IndividualDao indDao, ListenerList listeners, WorkerThreadPool pool,
+			CommitPolicy commitPolicy) {
 		UpdateUrisTaskImpl impl = new UpdateUrisTaskImpl(uris, excluders,
-				modifiers, indDao, listeners, pool);
+				modifiers, indDao, listeners, pool, commitPolicy);
 		impl.run();
 	}
 
@@ -95,6 +99,7 @@ public class UpdateUrisTask implements Task {
         private final DocumentModifierList modifiers;
         private final ListenerList listeners;
         private final WorkerThreadPool pool;
+        private final CommitPolicy commitPolicy;
 
         private final Status status;
         private final SearchEngine searchEngine;
@@ -105,6 +110,7 @@ public class UpdateUrisTask implements Task {
             this.indDao = config.individualDao();
             this.listeners = config.listenerList();
             this.pool = config.workerThreadPool();
+            this.commitPolicy = config.commitPolicy();
 
             this.uris = uris;
             this.status = new Status(this, uris.size(), 500);
@@ -115,7 +121,8 @@ public class UpdateUrisTask implements Task {
 		public UpdateUrisTaskImpl(Collection<String> uris,
 				SearchIndexExcluderList excluders,
 				DocumentModifierList modifiers, IndividualDao indDao,
-				ListenerList listeners, WorkerThreadPool pool) {
+				ListenerList listeners, WorkerThreadPool pool,
+				CommitPolicy commitPolicy) {
 			log.debug("Updating " + uris.size() + " uris.");
         	this.uris = uris;
             this.excluders = excluders;
@@ -123,6 +130,7 @@ public class UpdateUrisTask implements Task {
             this.indDao = indDao;
             this.listeners = listeners;
             this.pool = pool;
+            this.commitPolicy = commitPolicy;
             this.status = new Status(this, uris.size(), 500);
 
             this.searchEngine = ApplicationUtils.instance().getSearchEngine();
@@ -186,7 +194,7 @@ public class UpdateUrisTask implements Task {
          */
         private void deleteDocument(String uri) {
             try {
-                searchEngine.deleteById(SearchIndexerUtils.getIdForUri(uri));
+                deleteFromIndex(uri);
                 status.incrementDeletes();
                 log.debug("deleted '" + uri + "' from search index.");
             } catch (SearchEngineNotRespondingException e) {
@@ -202,7 +210,7 @@ public class UpdateUrisTask implements Task {
          */
         private void excludeDocument(String uri) {
             try {
-                searchEngine.deleteById(SearchIndexerUtils.getIdForUri(uri));
+                deleteFromIndex(uri);
                 status.incrementExclusions();
                 log.debug("excluded '" + uri + "' from search index.");
             } catch (SearchEngineNotRespondingException e) {
@@ -213,8 +221,16 @@ public class UpdateUrisTask implements Task {
             }
         }
 
+        private void deleteFromIndex(String uri) throws SearchEngineException {
+            DeferredCommits.deleteById(searchEngine,
+                    Collections.singletonList(SearchIndexerUtils.getIdForUri(uri)),
+                    commitPolicy.getCommitWithinMillis());
+            commitPolicy.documentsChanged(1);
+        }
+
         private void updateDocument(Individual ind) {
-            Runnable workUnit = new UpdateDocumentWorkUnit(ind, modifiers);
+            Runnable workUnit = new UpdateDocumentWorkUnit(ind, modifiers,
+                    commitPolicy);
             pool.submit(workUnit, this);
             log.debug("scheduled update to " + ind);
         }
@@ -227,11 +243,7 @@ public class UpdateUrisTask implements Task {
         }
 
         private void commitChanges() {
-            try {
-                searchEngine.commit();
-            } catch (SearchEngineException e) {
-                log.warn("Failed to commit changes.", e);
-            }
+            commitPolicy.checkpoint();
         }
 
         @Override
@@ -0,0 +1,243 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.services.shortview;
+
+import static edu.cornell.mannlib.vitro.webapp.modelaccess.ModelNames.DISPLAY;
+import static edu.cornell.mannlib.vitro.webapp.modelaccess.ModelNames.DISPLAY_DISPLAY;
+import static edu.cornell.mannlib.vitro.webapp.modelaccess.ModelNames.DISPLAY_TBOX;
+import static edu.cornell.mannlib.vitro.webapp.modelaccess.ModelNames.TBOX_ASSERTIONS;
+import static edu.cornell.mannlib.vitro.webapp.modelaccess.ModelNames.TBOX_INFERENCES;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeListener;
+import edu.cornell.mannlib.vitro.webapp.services.shortview.ShortViewService.ShortViewContext;
+import edu.cornell.mannlib.vitro.webapp.utils.cache.DependencyCache;
+import edu.cornell.mannlib.vitro.webapp.utils.cache.SerializedTriples;
+
+/**
+ * A bounded cache of rendered short views.
+ *
+ * Each entry is keyed by the individual, the context, the template, the locale
+ * and any simple values in the model map. Each entry depends on the individual
+ * itself, and on any URIs that appeared in the results of the data getters.
+ *
+ * The cache listens to the content and configuration RDFServices. When a
+ * statement is added or removed, any entry that depends on a URI in that
+ * statement is discarded, and a rendering that depends on it is not stored if
+ * it was already under way. A change to the TBox or to the display model may
+ * affect any short view, so it clears the entire cache.
+ *
+ * When the cache is full, the least recently used entry is discarded. The
+ * statistics are logged periodically, and are available from
+ * ShortViewServiceSetup.getCache().
+ */
+public class ShortViewCache implements ChangeListener {
+	private static final Log log = LogFactory.getLog(ShortViewCache.class);
+
+	private static final Set<String> GLOBAL_GRAPHS = new HashSet<>(
+			Arrays.asList(TBOX_ASSERTIONS, TBOX_INFERENCES, DISPLAY,
+					DISPLAY_TBOX, DISPLAY_DISPLAY));
+
+	private final DependencyCache<Key, String> cache;
+
+	public ShortViewCache(int maxEntries) {
+		this.cache = new DependencyCache<>("ShortViewCache", maxEntries);
+	}
+
+	/**
+	 * Get the rendered HTML for this key, or null if not cached.
+	 */
+	public String get(Key key) {
+		return cache.get(key);
+	}
+
+	/** Get this before rendering, and pass it to put(). */
+	public long getTicket() {
+		return cache.getTicket();
+	}
+
+	/**
+	 * Store the rendered HTML, along with the URIs that it depends on, unless
+	 * one of them has changed since the caller got the ticket.
+	 */
+	public void put(Key key, String html, Collection<String> dependencies,
+			long ticket) {
+		Set<String> uris = new HashSet<>(dependencies);
+		uris.add(key.individualUri);
+		cache.put(key, html, 1, uris, ticket);
+	}
+
+	/**
+	 * Discard any entries that depend on this URI.
+	 */
+	public void invalidate(String uri) {
+		cache.changed(uri);
+	}
+
+	public void clear() {
+		cache.changedAll();
+	}
+
+	public DependencyCache.Statistics getStatistics() {
+		return cache.getStatistics();
+	}
+
+	// ----------------------------------------------------------------------
+	// ChangeListener methods
+	// ----------------------------------------------------------------------
+
+	@Override
+	public void addedStatement(String serializedTriple, String graphURI) {
+		noteChange(serializedTriple, graphURI);
+	}
+
+	@Override
+	public void removedStatement(String serializedTriple, String graphURI) {
+		noteChange(serializedTriple, graphURI);
+	}
+
+	@Override
+	public void notifyEvent(String graphURI, Object event) {
+		// Nothing to do.
+	}
+
+	private void noteChange(String serializedTriple, String graphURI) {
+		if (GLOBAL_GRAPHS.contains(graphURI)) {
+			log.debug("Clearing the cache on a change to " + graphURI);
+			clear();
+			return;
+		}
+
+		List<String> uris = SerializedTriples.uris(serializedTriple);
+		if (uris.isEmpty()) {
+			log.warn("No URIs found in change event: '" + serializedTriple
+					+ "'");
+			clear();
+			return;
+		}
+		for (String uri : uris) {
+			invalidate(uri);
+		}
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper classes
+	// ----------------------------------------------------------------------
+
+	/**
+	 * Identifies a rendered short view. Only the simple values from the model
+	 * map (Strings, Numbers, Booleans) are part of the key. Template models are
+	 * assumed to be derived from the individual.
+	 */
+	public static final class Key {
+		private final String individualUri;
+		private final ShortViewContext context;
+		private final String templateName;
+		private final Locale locale;
+		private final SortedMap<String, Object> simpleValues;
+
+		public Key(String individualUri, ShortViewContext context,
+				String templateName, Locale locale, Map<String, Object> modelMap) {
+			this.individualUri = individualUri;
+			this.context = context;
+			this.templateName = templateName;
+			this.locale = locale;
+			this.simpleValues = new TreeMap<>();
+			for (Map.Entry<String, Object> entry : modelMap.entrySet()) {
+				Object value = entry.getValue();
+				if (value instanceof String || value instanceof Number
+						|| value instanceof Boolean) {
+					simpleValues.put(entry.getKey(), value);
+				}
+			}
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = individualUri.hashCode();
+			hash = 31 * hash + context.hashCode();
+			hash = 31 * hash + templateName.hashCode();
+			hash = 31 * hash + (locale == null ? 0 : locale.hashCode());
+			hash = 31 * hash + simpleValues.hashCode();
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key that = (Key) obj;
+			return this.individualUri.equals(that.individualUri)
+					&& this.context == that.context
+					&& this.templateName.equals(that.templateName)
+					&& (this.locale == null ? that.locale == null : this.locale
+							.equals(that.locale))
+					&& this.simpleValues.equals(that.simpleValues);
+		}
+
+		@Override
+		public String toString() {
+			return "Key[" + individualUri + ", " + context + ", "
+					+ templateName + ", " + locale + ", " + simpleValues + "]";
+		}
+	}
+
+	// ----------------------------------------------------------------------
+	// Utility methods
+	// ----------------------------------------------------------------------
+
+	/**
+	 * Find the URIs in the results of the data getters. The results are
+	 * typically lists of maps of Strings, so walk the structure and keep any
+	 * String that looks like an absolute URI.
+	 */
+	public static Set<String> findUris(Object data) {
+		Set<String> uris = new HashSet<>();
+		collectUris(data, uris);
+		return uris;
+	}
+
+	private static void collectUris(Object data, Set<String> uris) {
+		if (data instanceof String) {
+			String s = (String) data;
+			if (looksLikeUri(s)) {
+				uris.add(s);
+			}
+		} else if (data instanceof Map) {
+			for (Object value : ((Map<?, ?>) data).values()) {
+				collectUris(value, uris);
+			}
+		} else if (data instanceof List || data instanceof Set) {
+			for (Object value : (Collection<?>) data) {
+				collectUris(value, uris);
+			}
+		}
+	}
+
+	private static boolean looksLikeUri(String s) {
+		for (int i = 0; i < s.length(); i++) {
+			if (Character.isWhitespace(s.charAt(i))) {
+				return false;
+			}
+		}
+		return s.startsWith("http://") || s.startsWith("https://")
+				|| s.startsWith("urn:");
+	}
+
+}
@@ -14,6 +14,7 @@ import java.util.TreeSet;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import edu.cornell.mannlib.vedit.beans.LoginStatusBean;
 import edu.cornell.mannlib.vitro.webapp.beans.Individual;
 import edu.cornell.mannlib.vitro.webapp.controller.VitroRequest;
 import edu.cornell.mannlib.vitro.webapp.services.freemarker.FreemarkerProcessingService;
@@ -36,19 +37,57 @@ public class ShortViewServiceImpl implements ShortViewService {
 	 */
 	private final FakeApplicationOntologyService faker;
 
+	/** May be null, if caching is disabled. */
+	private final ShortViewCache cache;
+
 	public ShortViewServiceImpl(FakeApplicationOntologyService faker) {
+		this(faker, null);
+	}
+
+	public ShortViewServiceImpl(FakeApplicationOntologyService faker,
+			ShortViewCache cache) {
 		this.faker = faker;
+		this.cache = cache;
 	}
 
+	/**
+	 * If the request is anonymous, the rendered short view may be served from
+	 * the cache, or stored in it. Logged-in users may see a different view of
+	 * the data, so their requests bypass the cache.
+	 */
 	@Override
 	public String renderShortView(Individual individual,
 			ShortViewContext context, Map<String, Object> modelMap,
 			VitroRequest vreq) {
+		TemplateAndDataGetters tdg = fetchTemplateAndDataGetters(individual,
+				context, vreq);
+
+		if (cache == null || LoginStatusBean.getBean(vreq).isLoggedIn()) {
+			return renderShortView(individual, tdg, modelMap, vreq, null);
+		}
 
-		TemplateAndSupplementalData tsd = getShortViewInfo(individual, context,
-				vreq);
-		String templateName = tsd.getTemplateName();
-		Map<String, Object> supplementalData = tsd.getSupplementalData();
+		ShortViewCache.Key key = new ShortViewCache.Key(individual.getURI(),
+				context, tdg.getTemplateName(), vreq.getLocale(), modelMap);
+
+		String html = cache.get(key);
+		if (html == null) {
+			html = renderShortView(individual, tdg, modelMap, vreq, key);
+		}
+		return html;
+	}
+
+	/**
+	 * Run the data getters and render the template. If there is a cache key,
+	 * and the rendering succeeds, store the result in the cache. The ticket
+	 * comes first, so a rendering that overlaps a change is not stored.
+	 */
+	private String renderShortView(Individual individual,
+			TemplateAndDataGetters tdg, Map<String, Object> modelMap,
+			VitroRequest vreq, ShortViewCache.Key cacheKey) {
+		long ticket = (cacheKey == null) ? 0 : cache.getTicket();
+		String templateName = tdg.getTemplateName();
+		Map<String, Object> supplementalData = runDataGetters(
+				tdg.getDataGetters(), individual);
 
 		try {
 			Map<String, Object> fullModelMap = new HashMap<String, Object>(
@@ -63,7 +102,12 @@ public class ShortViewServiceImpl implements ShortViewService {
 						+ "' for " + individual.getName() + "</p>";
 			}
 
-			return fps.renderTemplate(templateName, fullModelMap, vreq);
+			String html = fps.renderTemplate(templateName, fullModelMap, vreq);
+			if (cacheKey != null) {
+				cache.put(cacheKey, html,
+						ShortViewCache.findUris(supplementalData), ticket);
+			}
+			return html;
 		} catch (TemplateParsingException e) {
 			log.error(e, e);
 			return "<p>Can't parse the short view template '" + templateName
@@ -2,19 +2,40 @@
 
 package edu.cornell.mannlib.vitro.webapp.services.shortview;
 
+import static edu.cornell.mannlib.vitro.webapp.modelaccess.ModelAccess.WhichService.CONFIGURATION;
+import static edu.cornell.mannlib.vitro.webapp.modelaccess.ModelAccess.WhichService.CONTENT;
+
 import javax.servlet.ServletContext;
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import edu.cornell.mannlib.vitro.webapp.config.ConfigurationProperties;
+import edu.cornell.mannlib.vitro.webapp.modelaccess.ModelAccess.WhichService;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.RDFServiceUtils;
 import edu.cornell.mannlib.vitro.webapp.services.shortview.FakeApplicationOntologyService.ShortViewConfigException;
 import edu.cornell.mannlib.vitro.webapp.startup.StartupStatus;
 
 /**
  * Set up the ShortViewService.
+ * 
+ * Unless it is disabled in runtime.properties, create a cache for the rendered
+ * short views, and register it to listen for changes in the RDFService.
  */
 public class ShortViewServiceSetup implements ServletContextListener {
+	private static final Log log = LogFactory
+			.getLog(ShortViewServiceSetup.class);
+
 	private static final String ATTRIBUTE_NAME = ShortViewService.class
 			.getName();
+	private static final String CACHE_ATTRIBUTE_NAME = ShortViewCache.class
+			.getName();
+
+	private static final String PROPERTY_CACHE_SIZE = "shortview.cache.maxEntries";
+	private static final int DEFAULT_CACHE_SIZE = 10000;
 
 	@Override
 	public void contextInitialized(ServletContextEvent sce) {
@@ -30,19 +51,88 @@ public class ShortViewServiceSetup implements ServletContextListener {
 			faker = new FakeApplicationOntologyService();
 		}
 
-		ShortViewServiceImpl svs = new ShortViewServiceImpl(faker);
+		ShortViewCache cache = createCache(ctx, ss);
+
+		ShortViewServiceImpl svs = new ShortViewServiceImpl(faker, cache);
 		ctx.setAttribute(ATTRIBUTE_NAME, svs);
 
-		ss.info(this,
-				"Started the Short View Service with a ShortViewServiceImpl");
+		if (cache == null) {
+			ss.info(this, "Started the Short View Service with a "
+					+ "ShortViewServiceImpl, without a cache.");
+		} else {
+			ss.info(this, "Started the Short View Service with a "
+					+ "ShortViewServiceImpl, caching up to "
+					+ cache.getStatistics().getMaxWeight() + " short views.");
+		}
+	}
+
+	private ShortViewCache createCache(ServletContext ctx, StartupStatus ss) {
+		String sizeString = ConfigurationProperties.getBean(ctx).getProperty(
+				PROPERTY_CACHE_SIZE, String.valueOf(DEFAULT_CACHE_SIZE));
+		int size;
+		try {
+			size = Integer.parseInt(sizeString.trim());
+		} catch (NumberFormatException e) {
+			ss.warning(this, "Invalid value for '" + PROPERTY_CACHE_SIZE
+					+ "': '" + sizeString + "'. Using the default value of "
+					+ DEFAULT_CACHE_SIZE);
+			size = DEFAULT_CACHE_SIZE;
+		}
+		if (size <= 0) {
+			return null;
+		}
+
+		// The display model is in the CONFIGURATION triple source, so listen
+		// to both.
+		ShortViewCache cache = new ShortViewCache(size);
+		try {
+			RDFServiceUtils.getRDFServiceFactory(ctx, CONTENT)
+					.registerListener(cache);
+			RDFServiceUtils.getRDFServiceFactory(ctx, CONFIGURATION)
+					.registerListener(cache);
+		} catch (RDFServiceException e) {
+			unregister(ctx, cache);
+			ss.warning(this, "Failed to register the short view cache as a "
+					+ "change listener. Short views will not be cached.", e);
+			return null;
+		}
+		ctx.setAttribute(CACHE_ATTRIBUTE_NAME, cache);
+		return cache;
 	}
 
 	@Override
 	public void contextDestroyed(ServletContextEvent sce) {
-		sce.getServletContext().removeAttribute(ATTRIBUTE_NAME);
+		ServletContext ctx = sce.getServletContext();
+		ShortViewCache cache = getCache(ctx);
+		if (cache != null) {
+			log.info("Short view cache: " + cache.getStatistics());
+			unregister(ctx, cache);
+			ctx.removeAttribute(CACHE_ATTRIBUTE_NAME);
+		}
+		ctx.removeAttribute(ATTRIBUTE_NAME);
+	}
+
+	private void unregister(ServletContext ctx, ShortViewCache cache) {
+		for (WhichService which : new WhichService[] { CONTENT, CONFIGURATION }) {
+			try {
+				RDFServiceUtils.getRDFServiceFactory(ctx, which)
+						.unregisterListener(cache);
+			} catch (RDFServiceException e) {
+				log.warn("Failed to unregister the short view cache from "
+						+ which);
+			}
+		}
 	}
 
 	public static ShortViewService getService(ServletContext ctx) {
 		return (ShortViewService) ctx.getAttribute(ATTRIBUTE_NAME);
 	}
+
+	/**
+	 * The cache of rendered short views, or null if caching is disabled. Useful
+	 * for reporting the hit rate.
+	 */
+	public static ShortViewCache getCache(ServletContext ctx) {
+		return (ShortViewCache) ctx.getAttribute(CACHE_ATTRIBUTE_NAME);
+	}
 }
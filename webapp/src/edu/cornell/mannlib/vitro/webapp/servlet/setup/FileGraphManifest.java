@@ -0,0 +1,163 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.servlet.setup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.StmtIterator;
+import com.hp.hpl.jena.shared.PrefixMapping;
+import com.hp.hpl.jena.sparql.util.FmtUtils;
+
+/**
+ * Remembers what each filegraph looked like the last time FileGraphSetup
+ * loaded it: a hash of the file contents, the number of triples in the graph
+ * in the store, and a sample of those triples.
+ *
+ * If the file hash is the same, and the store still holds the same number of
+ * triples in that graph, including every triple in the sample, FileGraphSetup
+ * need not parse the file or compare it to the store. The sample catches an
+ * edit that replaced triples in the store without changing the count, if it
+ * touched a sampled triple. Reading the whole graph back to hash it would
+ * cost as much as the comparison that the manifest avoids.
+ *
+ * The manifest is a properties file. Each key is a graph URI, and each value
+ * is the hash and the triple count, separated by a space. The key for the
+ * sample is the graph URI followed by " sample", and the value holds one
+ * triple per line, in SPARQL syntax. Deleting the file forces a full
+ * comparison of every filegraph on the next startup.
+ */
+public class FileGraphManifest {
+	private static final Log log = LogFactory.getLog(FileGraphManifest.class);
+
+	/** The most triples to keep in the sample for one graph. */
+	static final int SAMPLE_SIZE = 16;
+
+	private static final String SAMPLE_SUFFIX = " sample";
+
+	private final Path path;
+	private final Properties previous = new Properties();
+	private final Properties current = new Properties();
+
+	/**
+	 * Read the manifest from this path. If it can't be read, act as though
+	 * every filegraph is new.
+	 */
+	public FileGraphManifest(Path path) {
+		this.path = path;
+		if (Files.isRegularFile(path)) {
+			try (InputStream in = Files.newInputStream(path)) {
+				previous.load(in);
+			} catch (IOException | IllegalArgumentException e) {
+				log.warn("Failed to read the filegraph manifest at '" + path
+						+ "'. All filegraphs will be compared to the store.", e);
+				previous.clear();
+			}
+		}
+	}
+
+	public static String hashFile(Path file) throws IOException {
+		try (InputStream in = Files.newInputStream(file)) {
+			return DigestUtils.sha256Hex(in);
+		}
+	}
+
+	/**
+	 * Was this graph loaded from a file with this hash, and did it then hold
+	 * this many triples?
+	 */
+	public boolean isUnchanged(String graphURI, String fileHash,
+			long tripleCount) {
+		return entry(fileHash, tripleCount).equals(
+				previous.getProperty(graphURI));
+	}
+
+	/** Does the previous manifest have an entry with this file hash? */
+	public boolean hasHash(String graphURI, String fileHash) {
+		String value = previous.getProperty(graphURI);
+		return value != null && value.startsWith(fileHash + " ");
+	}
+
+	/**
+	 * The triples that were sampled when this graph was recorded, or an empty
+	 * list.
+	 */
+	public List<String> getSample(String graphURI) {
+		String value = previous.getProperty(graphURI + SAMPLE_SUFFIX);
+		if (StringUtils.isEmpty(value)) {
+			return Collections.emptyList();
+		}
+		return Arrays.asList(value.split("\n"));
+	}
+
+	/**
+	 * Record the current state of a graph. Only the graphs recorded since the
+	 * manifest was read will be written to the file.
+	 */
+	public void record(String graphURI, String fileHash, long tripleCount,
+			List<String> sample) {
+		current.setProperty(graphURI, entry(fileHash, tripleCount));
+		current.setProperty(graphURI + SAMPLE_SUFFIX,
+				StringUtils.join(sample, "\n"));
+	}
+
+	/**
+	 * Pick triples spread through the model, leaving out any with blank nodes,
+	 * since a query can't ask for a particular blank node.
+	 */
+	public static List<String> sample(Model model) {
+		List<Triple> candidates = new ArrayList<>();
+		StmtIterator stmts = model.listStatements();
+		try {
+			while (stmts.hasNext()) {
+				Triple t = stmts.next().asTriple();
+				if (!t.getSubject().isBlank() && !t.getObject().isBlank()) {
+					candidates.add(t);
+				}
+			}
+		} finally {
+			stmts.close();
+		}
+
+		List<String> sample = new ArrayList<>();
+		int stride = Math.max(1, candidates.size() / SAMPLE_SIZE);
+		for (int i = 0; i < candidates.size()
+				&& sample.size() < SAMPLE_SIZE; i += stride) {
+			sample.add(FmtUtils.stringForTriple(candidates.get(i),
+					PrefixMapping.Factory.create()));
+		}
+		return sample;
+	}
+
+	public void save() {
+		try {
+			Files.createDirectories(path.getParent());
+			try (OutputStream out = Files.newOutputStream(path)) {
+				current.store(out, "Filegraphs loaded by FileGraphSetup: "
+						+ "graph URI = SHA-256 of file, triples in store");
+			}
+		} catch (IOException e) {
+			log.warn("Failed to write the filegraph manifest at '" + path
+					+ "'.", e);
+		}
+	}
+
+	private String entry(String fileHash, long tripleCount) {
+		return fileHash + " " + tripleCount;
+	}
+}
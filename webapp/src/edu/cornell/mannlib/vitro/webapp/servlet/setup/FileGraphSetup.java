@@ -16,6 +16,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.regex.Matcher;
@@ -32,16 +33,23 @@ import com.hp.hpl.jena.ontology.OntDocumentManager;
 import com.hp.hpl.jena.ontology.OntModel;
 import com.hp.hpl.jena.ontology.OntModelSpec;
 import com.hp.hpl.jena.query.Dataset;
+import com.hp.hpl.jena.query.QuerySolution;
+import com.hp.hpl.jena.query.ResultSet;
+import com.hp.hpl.jena.rdf.model.Literal;
 import com.hp.hpl.jena.rdf.model.Model;
 import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Statement;
+import com.hp.hpl.jena.rdf.model.StmtIterator;
 
 import edu.cornell.mannlib.vitro.webapp.application.ApplicationUtils;
 import edu.cornell.mannlib.vitro.webapp.dao.jena.RDFServiceDataset;
 import edu.cornell.mannlib.vitro.webapp.modelaccess.ModelAccess;
 import edu.cornell.mannlib.vitro.webapp.modelaccess.ModelNames;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeSet;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService.ModelSerializationFormat;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.RDFServiceUtils;
 import edu.cornell.mannlib.vitro.webapp.startup.StartupStatus;
 
 // This ContextListener must run after the JenaDataSourceSetup ContextListener
@@ -53,6 +61,7 @@ public class FileGraphSetup implements ServletContextListener {
     private static final String ABOX = "abox";
     private static final String TBOX = "tbox";
     private static final String FILEGRAPH = "filegraph";
+    private static final String MANIFEST = "filegraphs.manifest";
 
     public static final String FILEGRAPH_URI_ROOT = "http://vitro.mannlib.cornell.edu/filegraph/";
     
@@ -76,6 +85,9 @@ public class FileGraphSetup implements ServletContextListener {
             OntDocumentManager.getInstance().setProcessImports(true);
             Dataset dataset = ModelAccess.on(ctx).getDataset(); 
 			RDFService rdfService = ModelAccess.on(ctx).getRDFService(CONTENT);
+			FileGraphManifest manifest = new FileGraphManifest(ApplicationUtils
+					.instance().getHomeDirectory().getPath().resolve(RDF)
+					.resolve(MANIFEST));
 
             // ABox files
             Set<Path> paths = getFilegraphPaths(ctx, RDF, ABOX, FILEGRAPH);
@@ -83,7 +95,7 @@ public class FileGraphSetup implements ServletContextListener {
             cleanupDB(dataset, pathsToURIs(paths, ABOX), ABOX);
 
             // Just update the ABox filegraphs in the DB; don't attach them to a base model.
-            aboxChanged = readGraphs(paths, rdfService, ABOX, /* aboxBaseModel */ null);		
+            aboxChanged = readGraphs(paths, rdfService, ABOX, /* aboxBaseModel */ null, manifest);		
 
             // TBox files
             paths = getFilegraphPaths(ctx, RDF, TBOX, FILEGRAPH);
@@ -91,7 +103,9 @@ public class FileGraphSetup implements ServletContextListener {
             cleanupDB(dataset, pathsToURIs(paths, TBOX),TBOX);
 
             OntModel tboxBaseModel = ModelAccess.on(ctx).getOntModel(ModelNames.TBOX_ASSERTIONS);
-            tboxChanged = readGraphs(paths, rdfService, TBOX, tboxBaseModel);
+            tboxChanged = readGraphs(paths, rdfService, TBOX, tboxBaseModel, manifest);
+
+            manifest.save();
         } catch (ClassCastException cce) {
             String errMsg = "Unable to cast servlet context attribute to the appropriate type " + cce.getLocalizedMessage();
             log.error(errMsg);
@@ -143,10 +157,16 @@ public class FileGraphSetup implements ServletContextListener {
      *      
      * Note: no connection needs to be maintained between the in-memory copy of the
      * graph and the DB copy.
+     * 
+     * If the manifest shows that a file has not changed since it was last
+     * loaded, and the graph in the DB still holds the same number of triples,
+     * including the sampled ones, the DB is not updated. An unchanged ABox
+     * file is not even parsed.
      */
-    private boolean readGraphs(Set<Path> pathSet, RDFService rdfService, String type, OntModel baseModel) {
+    private boolean readGraphs(Set<Path> pathSet, RDFService rdfService, String type, OntModel baseModel, FileGraphManifest manifest) {
 
         int count = 0;
+        int unchangedCount = 0;
 
         boolean modelChanged = false;
 
@@ -155,7 +175,22 @@ public class FileGraphSetup implements ServletContextListener {
         for ( Path p : pathSet ) {
 
             count++; // note this will count the empty files too
+            String graphURI = pathToURI(p, type);
             try {
+                String fileHash = FileGraphManifest.hashFile(p);
+                long storedCount = manifest.hasHash(graphURI, fileHash) ? countTriples(rdfService, graphURI) : -1L;
+                List<String> sample = manifest.getSample(graphURI);
+                boolean unchanged = manifest.isUnchanged(graphURI, fileHash, storedCount)
+                        && holdsSample(rdfService, graphURI, sample);
+                if (unchanged) {
+                    unchangedCount++;
+                    manifest.record(graphURI, fileHash, storedCount, sample);
+                    if (baseModel == null) {
+                        log.debug("Skipping unchanged " + type + " file graph " + p.getFileName());
+                        continue;
+                    }
+                }
+
                 FileInputStream fis = new FileInputStream( p.toFile() );
                 try {
                     OntModel model = ModelFactory.createOntologyModel(OntModelSpec.OWL_MEM); 
@@ -175,7 +210,11 @@ public class FileGraphSetup implements ServletContextListener {
                         log.debug("Attached file graph as " + type + " submodel " + p.getFileName());
                     } 
 
-                    modelChanged = modelChanged | updateGraphInDB(rdfService, model, type, p);
+                    if (!unchanged) {
+                        modelChanged = modelChanged | updateGraphInDB(rdfService, model, type, p);
+                        manifest.record(graphURI, fileHash, model.size(),
+                                FileGraphManifest.sample(model));
+                    }
 
                 } catch (Exception ioe) {
                     log.error("Unable to process file graph " + p, ioe);
@@ -189,50 +228,135 @@ public class FileGraphSetup implements ServletContextListener {
                         ((fnfe.getLocalizedMessage() != null) ? 
                                 fnfe.getLocalizedMessage() : "") );
             } catch (IOException ioe) {
-                // this is for the fis.close() above.
-                log.warn("Exception while trying to close file graph file: " + p,ioe);
+                // this is for the hash or for the fis.close() above.
+                log.warn("Exception while trying to read file graph file: " + p,ioe);
             }
         } // end - for
         
-		log.info("Read " + count + " " + type + " file graph" + ((count == 1) ? "" : "s"));
+		log.info("Read " + count + " " + type + " file graph" + ((count == 1) ? "" : "s")
+				+ ", " + unchangedCount + " unchanged since the last startup");
 
         return modelChanged;
     }
 
+    /*
+     * Count the triples in a graph in the DB, or return -1 if the query fails.
+     */
+    private long countTriples(RDFService rdfService, String graphURI) {
+        String query = "SELECT (COUNT(*) AS ?count) WHERE { GRAPH <" + graphURI + "> { ?s ?p ?o } }";
+        ResultSet results = RDFServiceUtils.sparqlSelectQuery(query, rdfService);
+        if (results == null || !results.hasNext()) {
+            return -1L;
+        }
+        QuerySolution solution = results.next();
+        Literal literal = solution.getLiteral("count");
+        return (literal == null) ? -1L : literal.getLong();
+    }
+
+    /*
+     * Does the graph in the DB hold every one of these triples? False if the
+     * query fails.
+     */
+    private boolean holdsSample(RDFService rdfService, String graphURI, List<String> sample) {
+        if (sample.isEmpty()) {
+            return true;
+        }
+        StringBuilder query = new StringBuilder("ASK { GRAPH <" + graphURI + "> {\n");
+        for (String triple : sample) {
+            query.append("    ").append(triple).append(" .\n");
+        }
+        query.append("} }");
+        try {
+            return rdfService.sparqlAskQuery(query.toString());
+        } catch (RDFServiceException e) {
+            log.warn("Failed to look for the sampled triples in " + graphURI, e);
+            return false;
+        }
+    }
+
     /*
      * If a graph with the given name doesn't exist in the DB then add it.
      *
-     * Otherwise, if a graph with the given name is in the DB and is not isomorphic with
-     * the graph that was read from the file system then replace the graph
+     * Otherwise, if a graph with the given name is in the DB and differs from
+     * the graph that was read from the file system then remove the triples
+     * that are only in the DB and add the triples that are only in the file.
+     * 
+     * If either graph has blank nodes, the triples can't be matched up one by
+     * one. In that case, if the graphs are not isomorphic, replace the graph
      * in the DB with the one read from the file system.
      * 
-     * Otherwise, if a graph with the given name is in the DB and is isomorphic with
-     * the graph that was read from the files system, then do nothing. 
+     * Otherwise, if the graphs are the same, then do nothing. 
      */
     public boolean updateGraphInDB(RDFService rdfService, Model fileModel, String type, Path path) throws RDFServiceException {
         String graphURI = pathToURI(path,type);
-        
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-        fileModel.write(buffer, "N-TRIPLE");
-		InputStream inStream = new ByteArrayInputStream(buffer.toByteArray());
-		if (rdfService.isEquivalentGraph(graphURI, inStream, ModelSerializationFormat.NTRIPLE)) {
-			return false;
-		}
-        
-		Model dbModel = new RDFServiceDataset(rdfService).getNamedModel(graphURI);
+        Model dbModel = readGraphFromDB(rdfService, graphURI);
 		if (log.isDebugEnabled()) {
 			log.debug(String.format(
 					"%s %s dbModel size is %d, fileModel size is %d", type,
 					path.getFileName(), dbModel.size(), fileModel.size()));
 		}
 
-		log.info("Updating " + path + " because graphs are not isomorphic");
-		log.info("dbModel: " + dbModel.size() + " ; fileModel: " + fileModel.size());
-		dbModel.removeAll();
-		dbModel.add(fileModel);
+		if (hasBlankNodes(fileModel) || hasBlankNodes(dbModel)) {
+			if (dbModel.isIsomorphicWith(fileModel)) {
+				return false;
+			}
+			log.info("Updating " + path + " because graphs are not isomorphic");
+			log.info("dbModel: " + dbModel.size() + " ; fileModel: " + fileModel.size());
+			Model storedModel = new RDFServiceDataset(rdfService).getNamedModel(graphURI);
+			storedModel.removeAll();
+			storedModel.add(fileModel);
+			return true;
+		}
+
+		Model removals = dbModel.difference(fileModel);
+		Model additions = fileModel.difference(dbModel);
+		if (removals.isEmpty() && additions.isEmpty()) {
+			return false;
+		}
+
+		log.info("Updating " + path + ": removing " + removals.size()
+				+ " triples and adding " + additions.size() + " triples");
+		ChangeSet changeSet = rdfService.manufactureChangeSet();
+		if (!removals.isEmpty()) {
+			changeSet.addRemoval(toInputStream(removals),
+					ModelSerializationFormat.NTRIPLE, graphURI);
+		}
+		if (!additions.isEmpty()) {
+			changeSet.addAddition(toInputStream(additions),
+					ModelSerializationFormat.NTRIPLE, graphURI);
+		}
+		rdfService.changeSetUpdate(changeSet);
 		return true;
     }
 
+    private Model readGraphFromDB(RDFService rdfService, String graphURI) throws RDFServiceException {
+        String query = "CONSTRUCT { ?s ?p ?o } WHERE { GRAPH <" + graphURI + "> { ?s ?p ?o } }";
+        return RDFServiceUtils.parseModel(
+                rdfService.sparqlConstructQuery(query, ModelSerializationFormat.NTRIPLE),
+                ModelSerializationFormat.NTRIPLE);
+    }
+
+    private boolean hasBlankNodes(Model model) {
+        StmtIterator stmts = model.listStatements();
+        try {
+            while (stmts.hasNext()) {
+                Statement stmt = stmts.nextStatement();
+                if (stmt.getSubject().isAnon() || stmt.getObject().isAnon()) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            stmts.close();
+        }
+    }
+
+    private InputStream toInputStream(Model model) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        model.write(buffer, "N-TRIPLE");
+        return new ByteArrayInputStream(buffer.toByteArray());
+    }
+
     /*
      * Deletes any file graphs that are  no longer present in the file system
      * from the DB. 
@@ -8,7 +8,15 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.servlet.ServletContext;
 import javax.servlet.ServletContextEvent;
@@ -24,6 +32,40 @@ import org.apache.commons.logging.LogFactory;
  * The startup listeners are stored in a file with one full-qualified class name
  * per line. Blank lines and comment lines (starting with '#') are ignored.
  * 
+ * Listeners run one at a time, in the order they appear in the file, except
+ * for those in a parallel block:
+ * 
+ * <pre>
+ * parallel {
+ *     some.package.FirstListener
+ *     some.package.SecondListener
+ * }
+ * </pre>
+ * 
+ * The listeners in a block don't depend on each other, so they may run at the
+ * same time, on separate threads. The block is a phase: every listener in it
+ * has finished before the line after the block is started. If a listener in
+ * the block sets a fatal error, the others in the block still finish if they
+ * have already started, but nothing after that will be run.
+ * 
+ * A listener in a block may need another listener in the same block to finish
+ * first. Name the others after the word "after", on the same line:
+ * 
+ * <pre>
+ * parallel {
+ *     some.package.FirstListener
+ *     some.package.SecondListener after some.package.FirstListener
+ *     some.package.ThirdListener
+ * }
+ * </pre>
+ * 
+ * Here, SecondListener waits until FirstListener is finished, while
+ * ThirdListener runs alongside both. The listeners that are named after "after"
+ * must appear earlier in the file. If one of them throws an Error, the
+ * listeners that wait for it are not run.
+ * 
+ * The time taken by each listener is recorded in the StartupStatus.
+ * 
  * No exception in the listeners should prevent the successful completion.
  * However, an uncaught exception or a fatal error status will cause the
  * StartupStatusDisplayFilter to disply the problem instead of showing the home
@@ -34,8 +76,25 @@ public class StartupManager implements ServletContextListener {
 
 	public static final String FILE_OF_STARTUP_LISTENERS = "/WEB-INF/resources/startup_listeners.txt";
 
+	static final String PARALLEL_BLOCK_START = "parallel {";
+	static final String PARALLEL_BLOCK_END = "}";
+	static final String AFTER = "after";
+
+	/** No more than this many listeners will run at once. */
+	private static final int MAX_THREADS = 8;
+
+	/** All of the listeners, in the order they appear in the file. */
 	private final List<ServletContextListener> initializeList = new ArrayList<ServletContextListener>();
 
+	/**
+	 * The listeners, grouped into phases. A phase is either a single listener
+	 * or a parallel block.
+	 */
+	private final List<List<ServletContextListener>> phases = new ArrayList<List<ServletContextListener>>();
+
+	/** The listeners that must finish before each listener may start. */
+	private final Map<ServletContextListener, List<ServletContextListener>> prerequisites = new HashMap<ServletContextListener, List<ServletContextListener>>();
+
 	/**
 	 * These can be instance variables without risk, since contextInitialized()
 	 * will only be called once per instance.
@@ -55,14 +114,19 @@ public class StartupManager implements ServletContextListener {
 		ctx = sce.getServletContext();
 		ss = StartupStatus.getBean(ctx);
 
+		ExecutorService executor = null;
 		try {
 			findAndInstantiateListeners();
 
-			for (ServletContextListener listener : initializeList) {
-				if (ss.isStartupAborted()) {
-					ss.listenerNotExecuted(listener);
+			for (List<ServletContextListener> phase : phases) {
+				if (phase.size() == 1) {
+					initializeUnlessAborted(phase.get(0), sce);
 				} else {
-					initialize(listener, sce);
+					if (executor == null) {
+						executor = Executors.newFixedThreadPool(MAX_THREADS,
+								new StartupThreadFactory());
+					}
+					initializeConcurrently(phase, sce, executor);
 				}
 			}
 			log.info("Called 'contextInitialized' on all listeners.");
@@ -72,6 +136,95 @@ public class StartupManager implements ServletContextListener {
 		} catch (Throwable t) {
 			log.fatal("Startup threw an unexpected error.", t);
 			throw t;
+		} finally {
+			if (executor != null) {
+				executor.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Run all of the listeners in a parallel block, and wait for them to
+	 * finish.
+	 * 
+	 * A listener with prerequisites in the block waits for them on its own
+	 * thread. The prerequisites were submitted first, and the executor takes
+	 * tasks in order, so they are already running when it starts to wait.
+	 * 
+	 * An Error from a listener is thrown again on this thread, after the other
+	 * listeners in the block have finished.
+	 */
+	private void initializeConcurrently(List<ServletContextListener> phase,
+			final ServletContextEvent sce, ExecutorService executor)
+			throws InterruptedException {
+		Map<ServletContextListener, Future<?>> futures = new HashMap<ServletContextListener, Future<?>>();
+		for (final ServletContextListener listener : phase) {
+			final List<Future<?>> waitFor = new ArrayList<Future<?>>();
+			for (ServletContextListener prerequisite : prerequisites
+					.get(listener)) {
+				if (futures.containsKey(prerequisite)) {
+					waitFor.add(futures.get(prerequisite));
+				}
+			}
+			futures.put(listener, executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					if (awaitPrerequisites(listener, waitFor)) {
+						initializeUnlessAborted(listener, sce);
+					}
+				}
+			}));
+		}
+
+		Error error = null;
+		for (ServletContextListener listener : phase) {
+			Future<?> future = futures.get(listener);
+			try {
+				future.get();
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof Error && error == null) {
+					error = (Error) e.getCause();
+				}
+			}
+		}
+		if (error != null) {
+			throw error;
+		}
+	}
+
+	/**
+	 * Wait for the prerequisites of this listener to finish. If one of them
+	 * threw an Error, or we are interrupted, mark this listener as not
+	 * executed, and return false.
+	 */
+	private boolean awaitPrerequisites(ServletContextListener listener,
+			List<Future<?>> waitFor) {
+		try {
+			for (Future<?> future : waitFor) {
+				future.get();
+			}
+			return true;
+		} catch (ExecutionException e) {
+			ss.listenerNotExecuted(listener);
+			return false;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			ss.listenerNotExecuted(listener);
+			return false;
+		}
+	}
+
+	/**
+	 * Check for a fatal error immediately before running each listener. In a
+	 * parallel block, another listener may have failed while this one was
+	 * waiting for a thread.
+	 */
+	private void initializeUnlessAborted(ServletContextListener listener,
+			ServletContextEvent sce) {
+		if (ss.isStartupAborted()) {
+			ss.listenerNotExecuted(listener);
+		} else {
+			initialize(listener, sce);
 		}
 	}
 
@@ -81,12 +234,24 @@ public class StartupManager implements ServletContextListener {
 	 * If there is a problem, it will occur and be handled in a sub-method.
 	 */
 	private void findAndInstantiateListeners() {
-		List<String> classNames = readFileOfListeners();
+		List<List<String>> linesByPhase = readFileOfListeners();
+		Map<String, ServletContextListener> listenersByClassName = new HashMap<String, ServletContextListener>();
 
-		for (String className : classNames) {
-			ServletContextListener listener = instantiateListener(className);
-			if (listener != null) {
-				initializeList.add(listener);
+		for (List<String> lines : linesByPhase) {
+			List<ServletContextListener> phase = new ArrayList<ServletContextListener>();
+			for (String line : lines) {
+				String[] words = line.split("\\s+");
+				ServletContextListener listener = instantiateListener(words[0]);
+				if (listener != null) {
+					prerequisites.put(listener, findPrerequisites(line, words,
+							listenersByClassName));
+					listenersByClassName.put(words[0], listener);
+					initializeList.add(listener);
+					phase.add(listener);
+				}
+			}
+			if (!phase.isEmpty()) {
+				phases.add(phase);
 			}
 		}
 
@@ -94,12 +259,44 @@ public class StartupManager implements ServletContextListener {
 	}
 
 	/**
-	 * Read the names of the listener classes.
+	 * Find the listeners that are named after "after" on this line. Each must
+	 * have appeared earlier in the file.
+	 * 
+	 * If there is a problem, set a fatal error, and return the ones we found.
+	 */
+	private List<ServletContextListener> findPrerequisites(String line,
+			String[] words,
+			Map<String, ServletContextListener> listenersByClassName) {
+		List<ServletContextListener> list = new ArrayList<ServletContextListener>();
+		if (words.length == 1) {
+			return list;
+		}
+		if (words.length == 2 || !AFTER.equals(words[1])) {
+			ss.fatal(this, "Expecting a class name, optionally followed by '"
+					+ AFTER + "' and other class names: '" + line + "'");
+			return list;
+		}
+		for (int i = 2; i < words.length; i++) {
+			ServletContextListener prerequisite = listenersByClassName
+					.get(words[i]);
+			if (prerequisite == null) {
+				ss.fatal(this, "'" + words[0] + "' must run after '" + words[i]
+						+ "', but that listener does not appear before it.");
+			} else {
+				list.add(prerequisite);
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Read the lines that name the listener classes, grouped into phases.
 	 * 
 	 * If there is a problem, set a fatal error, and return an empty list.
 	 */
-	private List<String> readFileOfListeners() {
-		List<String> list = new ArrayList<String>();
+	private List<List<String>> readFileOfListeners() {
+		List<List<String>> list = new ArrayList<List<String>>();
+		List<String> block = null;
 
 		InputStream is = null;
 		BufferedReader br = null;
@@ -110,10 +307,34 @@ public class StartupManager implements ServletContextListener {
 			String line;
 			while (null != (line = br.readLine())) {
 				String trimmed = line.trim();
-				if (!trimmed.isEmpty() && !trimmed.startsWith("#")) {
-					list.add(trimmed);
+				if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+					continue;
+				} else if (trimmed.equals(PARALLEL_BLOCK_START)) {
+					if (block != null) {
+						ss.fatal(this, "Parallel blocks may not be nested: "
+								+ FILE_OF_STARTUP_LISTENERS);
+						return new ArrayList<List<String>>();
+					}
+					block = new ArrayList<String>();
+				} else if (trimmed.equals(PARALLEL_BLOCK_END)) {
+					if (block == null) {
+						ss.fatal(this, "End of parallel block without a start: "
+								+ FILE_OF_STARTUP_LISTENERS);
+						return new ArrayList<List<String>>();
+					}
+					list.add(block);
+					block = null;
+				} else if (block != null) {
+					block.add(trimmed);
+				} else {
+					list.add(Collections.singletonList(trimmed));
 				}
 			}
+			if (block != null) {
+				ss.fatal(this, "Parallel block is not closed: "
+						+ FILE_OF_STARTUP_LISTENERS);
+				return new ArrayList<List<String>>();
+			}
 		} catch (NullPointerException e) {
 			ss.fatal(this, "Unable to locate the list of startup listeners: "
 					+ FILE_OF_STARTUP_LISTENERS);
@@ -174,6 +395,7 @@ public class StartupManager implements ServletContextListener {
 	 */
 	private void initialize(ServletContextListener listener,
 			ServletContextEvent sce) {
+		long startTime = System.currentTimeMillis();
 		try {
 			log.debug("Initializing '" + listener.getClass().getName() + "'");
 			listener.contextInitialized(sce);
@@ -183,6 +405,8 @@ public class StartupManager implements ServletContextListener {
 		} catch (Throwable t) {
 			log.fatal(listener + " Threw unexpected error", t);
 			throw t;
+		} finally {
+			ss.listenerTimed(listener, System.currentTimeMillis() - startTime);
 		}
 	}
 
@@ -229,4 +453,24 @@ public class StartupManager implements ServletContextListener {
 		log.info("Called 'contextDestroyed' on all listeners.");
 	}
 
+	/**
+	 * Name the threads so the log shows which listeners ran concurrently. The
+	 * threads inherit the context class loader of the thread that starts the
+	 * webapp.
+	 */
+	private static class StartupThreadFactory implements ThreadFactory {
+		private final AtomicInteger count = new AtomicInteger();
+		private final ClassLoader classLoader = Thread.currentThread()
+				.getContextClassLoader();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "StartupManager-"
+					+ count.incrementAndGet());
+			t.setContextClassLoader(classLoader);
+			t.setDaemon(true);
+			return t;
+		}
+	}
+
 }
@@ -5,6 +5,7 @@ package edu.cornell.mannlib.vitro.webapp.startup;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import javax.servlet.ServletContext;
@@ -49,6 +50,9 @@ public class StartupStatus {
 
 	private SynchronizedStatusItemList itemList = new SynchronizedStatusItemList();
 
+	private final List<ListenerTiming> timings = Collections
+			.synchronizedList(new ArrayList<ListenerTiming>());
+
 	public void info(ServletContextListener listener, String message) {
 		addItem(StatusItem.Level.INFO, listener, message, null);
 	}
@@ -92,6 +96,16 @@ public class StartupStatus {
 		}
 	}
 
+	/** Record how long this listener took to run contextInitialized(). */
+	public void listenerTimed(ServletContextListener listener,
+			long elapsedMillis) {
+		ListenerTiming timing = new ListenerTiming(listener, elapsedMillis,
+				Thread.currentThread().getName());
+		timings.add(timing);
+		log.debug("Timing for " + timing.getShortSourceName() + ": "
+				+ elapsedMillis + " ms");
+	}
+
 	private void addItem(StatusItem.Level level, ServletContextListener source,
 			String message, Throwable cause) {
 		StatusItem item = new StatusItem(level, source, message, cause);
@@ -148,6 +162,13 @@ public class StartupStatus {
 		return itemList.filterItems(StatusItemFilter.listenerFilter(listener));
 	}
 
+	/** The listeners that have run, in the order that they finished. */
+	public List<ListenerTiming> getListenerTimings() {
+		synchronized (timings) {
+			return new ArrayList<ListenerTiming>(timings);
+		}
+	}
+
 	// ----------------------------------------------------------------------
 	// helper classes
 	// ----------------------------------------------------------------------
@@ -253,6 +274,43 @@ public class StartupStatus {
 
 	}
 
+	/**
+	 * An immutable record of how long a listener took to initialize, and which
+	 * thread it ran on.
+	 */
+	public static class ListenerTiming {
+		private final String sourceName;
+		private final String shortSourceName;
+		private final long elapsedMillis;
+		private final String threadName;
+
+		public ListenerTiming(ServletContextListener source,
+				long elapsedMillis, String threadName) {
+			String className = source.getClass().getName();
+			this.sourceName = className;
+			this.shortSourceName = className.substring(className
+					.lastIndexOf('.') + 1);
+			this.elapsedMillis = elapsedMillis;
+			this.threadName = threadName;
+		}
+
+		public String getSourceName() {
+			return sourceName;
+		}
+
+		public String getShortSourceName() {
+			return shortSourceName;
+		}
+
+		public long getElapsedMillis() {
+			return elapsedMillis;
+		}
+
+		public String getThreadName() {
+			return threadName;
+		}
+	}
+
 	/**
 	 * A filter class and some basic instances.
 	 */
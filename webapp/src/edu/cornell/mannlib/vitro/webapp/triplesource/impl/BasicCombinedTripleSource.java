@@ -18,6 +18,9 @@ import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
 import com.hp.hpl.jena.query.Dataset;
 import com.hp.hpl.jena.rdf.model.ModelMaker;
 
@@ -31,7 +34,10 @@ import edu.cornell.mannlib.vitro.webapp.modules.tripleSource.ConfigurationTriple
 import edu.cornell.mannlib.vitro.webapp.modules.tripleSource.ContentTripleSource;
 import edu.cornell.mannlib.vitro.webapp.modules.tripleSource.TripleSource;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceFactory;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.caching.CachingRDFService;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.caching.QueryResultCache;
 import edu.cornell.mannlib.vitro.webapp.triplesource.CombinedTripleSource;
 import edu.cornell.mannlib.vitro.webapp.triplesource.ShortTermCombinedTripleSource;
 import edu.cornell.mannlib.vitro.webapp.utils.logging.ToString;
@@ -45,8 +51,15 @@ import edu.cornell.mannlib.vitro.webapp.utils.logging.ToString;
  * We must cache the OntModelCache because it was created here. If we were to
  * recreate it, we would lose any sub-models that had been attached in the
  * meantime.
+ * 
+ * If a query cache size is given, each source gets a QueryResultCache, and the
+ * RDFServices (long-term and short-term) are wrapped so they use it. The
+ * models are not affected.
  */
 public class BasicCombinedTripleSource implements CombinedTripleSource {
+	private static final Log log = LogFactory
+			.getLog(BasicCombinedTripleSource.class);
+
 	/**
 	 * Create union models for ABox and TBox, and full models for assertions and
 	 * inferences. No need to create FULL_UNION, since it's the default model.
@@ -64,13 +77,30 @@ public class BasicCombinedTripleSource implements CombinedTripleSource {
 	private final Map<WhichService, TripleSource> sources;
 	private final Map<WhichService, OntModelCache> ontModels;
 	private final OntModelCache ontModelCache;
+	private final Map<WhichService, QueryResultCache> queryCaches;
+	private final Map<WhichService, RDFService> rdfServices;
 
 	public BasicCombinedTripleSource(ContentTripleSource contentSource,
 			ConfigurationTripleSource configurationSource) {
+		this(contentSource, configurationSource, 0L);
+	}
+
+	public BasicCombinedTripleSource(ContentTripleSource contentSource,
+			ConfigurationTripleSource configurationSource, long queryCacheBytes) {
 		sources = new EnumMap<>(WhichService.class);
 		sources.put(CONTENT, contentSource);
 		sources.put(CONFIGURATION, configurationSource);
 
+		queryCaches = new EnumMap<>(WhichService.class);
+		rdfServices = new EnumMap<>(WhichService.class);
+		for (WhichService which : WhichService.values()) {
+			if (queryCacheBytes > 0) {
+				createQueryCache(which, queryCacheBytes);
+			}
+			rdfServices.put(which,
+					addQueryCache(which, sources.get(which).getRDFService()));
+		}
+
 		ontModels = new EnumMap<>(WhichService.class);
 		ontModels.put(CONTENT, new UnionModelsOntModelsCache(
 				new ModelMakerOntModelCache(getModelMaker(CONTENT)),
@@ -86,13 +116,37 @@ public class BasicCombinedTripleSource implements CombinedTripleSource {
 		return ontModels.get(whichService);
 	}
 
+	private void createQueryCache(WhichService which, long maxBytes) {
+		QueryResultCache cache = new QueryResultCache(which.name(), maxBytes);
+		try {
+			getRDFServiceFactory(which).registerListener(cache);
+			queryCaches.put(which, cache);
+		} catch (RDFServiceException e) {
+			log.error("Can't listen for changes, so query results for "
+					+ which + " will not be cached.", e);
+		}
+	}
+
+	/**
+	 * If query results are cached for this source, wrap the RDFService so it
+	 * uses the cache.
+	 */
+	protected RDFService addQueryCache(WhichService whichService,
+			RDFService rdfService) {
+		QueryResultCache cache = queryCaches.get(whichService);
+		if (cache == null) {
+			return rdfService;
+		}
+		return new CachingRDFService(rdfService, cache);
+	}
+
 	protected RDFServiceFactory getRDFServiceFactory(WhichService whichService) {
 		return sources.get(whichService).getRDFServiceFactory();
 	}
 
 	@Override
 	public RDFService getRDFService(WhichService whichService) {
-		return sources.get(whichService).getRDFService();
+		return rdfServices.get(whichService);
 	}
 
 	@Override
@@ -65,8 +65,8 @@ public class BasicShortTermCombinedTripleSource implements
 	private Map<WhichService, RDFService> populateRdfServicesMap() {
 		Map<WhichService, RDFService> map = new EnumMap<>(WhichService.class);
 		for (WhichService which : WhichService.values()) {
-			map.put(which, parent.getRDFServiceFactory(which)
-					.getShortTermRDFService());
+			map.put(which, parent.addQueryCache(which, parent
+					.getRDFServiceFactory(which).getShortTermRDFService()));
 		}
 		return Collections.unmodifiableMap(map);
 	}
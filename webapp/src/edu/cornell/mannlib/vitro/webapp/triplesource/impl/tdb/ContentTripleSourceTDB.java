@@ -39,9 +39,17 @@ import edu.cornell.mannlib.vitro.webapp.utils.logging.ToString;
  * that out when requested. The inner RDFService is only closed on shutdown().
  * 
  * Memory-map the small content models, and add the standard decorators.
+ * 
+ * The RDFService writes with group commit. The largest number of ChangeSets
+ * in one transaction, and the longest time to wait for more of them, may be
+ * set in the configuration. See RDFServiceTDB.
  */
 public class ContentTripleSourceTDB extends ContentTripleSource {
 	private String tdbPath;
+	private String maxWriteBatchSizeString;
+	private String maxWriteWaitMillisString;
+	private int maxWriteBatchSize = RDFServiceTDB.DEFAULT_MAX_BATCH_SIZE;
+	private long maxWriteWaitMillis = RDFServiceTDB.DEFAULT_MAX_WAIT_MILLIS;
 
 	private volatile RDFService rdfService;
 	private RDFServiceFactory rdfServiceFactory;
@@ -60,19 +68,51 @@ public class ContentTripleSourceTDB extends ContentTripleSource {
 		}
 	}
 
+	@Property(uri = "http://vitro.mannlib.cornell.edu/ns/vitro/ApplicationSetup#hasMaxWriteBatchSize")
+	public void setMaxWriteBatchSize(String size) {
+		maxWriteBatchSizeString = size;
+	}
+
+	@Property(uri = "http://vitro.mannlib.cornell.edu/ns/vitro/ApplicationSetup#hasMaxWriteWaitMillis")
+	public void setMaxWriteWaitMillis(String millis) {
+		maxWriteWaitMillisString = millis;
+	}
+
 	@Validation
 	public void validate() throws Exception {
 		if (tdbPath == null) {
 			throw new IllegalStateException(
 					"Configuration did not include a TdbDirectory.");
 		}
+		if (maxWriteBatchSizeString != null) {
+			maxWriteBatchSize = (int) parseNonNegative("MaxWriteBatchSize",
+					maxWriteBatchSizeString);
+		}
+		if (maxWriteWaitMillisString != null) {
+			maxWriteWaitMillis = parseNonNegative("MaxWriteWaitMillis",
+					maxWriteWaitMillisString);
+		}
+	}
+
+	private long parseNonNegative(String name, String value) {
+		try {
+			long parsed = Long.parseLong(value.trim());
+			if (parsed >= 0 && parsed <= Integer.MAX_VALUE) {
+				return parsed;
+			}
+		} catch (NumberFormatException e) {
+			// Fall through.
+		}
+		throw new IllegalStateException("Configuration value for " + name
+				+ " must be a non-negative integer: '" + value + "'");
 	}
 
 	@Override
 	public void startup(Application application, ComponentStartupStatus ss) {
 		configureTDB();
 		try {
-			this.rdfService = new RDFServiceTDB(resolveTdbPath(application));
+			this.rdfService = new RDFServiceTDB(resolveTdbPath(application),
+					maxWriteBatchSize, maxWriteWaitMillis);
 			this.rdfServiceFactory = createRDFServiceFactory();
 			this.unclosableRdfService = this.rdfServiceFactory.getRDFService();
 			this.dataset = new RDFServiceDataset(this.unclosableRdfService);
@@ -0,0 +1,341 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.utils.cache;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * A bounded cache whose entries depend on other things: the URIs of
+ * individuals, or the graphs and predicates that a query reads. Each
+ * dependency is named by a String, and the owner of the cache decides what the
+ * names mean.
+ *
+ * When the owner hears that a dependency has changed, it calls changed(), and
+ * every entry that depends on it is discarded. If it can't tell what has
+ * changed, it calls changedAll().
+ *
+ * A value that was computed while one of its dependencies was changing may
+ * already be out of date. So the caller gets a ticket before computing the
+ * value, and passes it to put(). The value is not stored if any of its
+ * dependencies changed after the ticket was issued. Changes to other
+ * dependencies don't matter. The cache remembers when each dependency last
+ * changed, up to a limit; if it has forgotten, it assumes the worst.
+ *
+ * Each entry has a weight: its size in bytes, or simply 1 to count entries.
+ * When the total weight is more than the limit, the least recently used
+ * entries are discarded. The statistics are written to the log every few
+ * minutes while the cache is in use.
+ */
+public class DependencyCache<K, V> {
+	private static final Log log = LogFactory.getLog(DependencyCache.class);
+
+	/** How many dependencies to remember the last change of. */
+	private static final int MAX_REMEMBERED_CHANGES = 10000;
+
+	/** How often to log the statistics, if the cache is being used. */
+	private static final long STATISTICS_INTERVAL_MILLIS = 10 * 60 * 1000L;
+
+	private final String name;
+	private final long maxWeight;
+
+	/** Entries by key, in order of access. */
+	private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(
+			16, 0.75f, true);
+
+	/** The keys of the entries that depend on each dependency. */
+	private final Map<String, Set<K>> keysByDependency = new HashMap<>();
+
+	/** The ticket at the last change of each dependency, oldest first. */
+	private final LinkedHashMap<String, Long> lastChanges = new LinkedHashMap<>();
+
+	/** Changes up to this ticket have been forgotten. */
+	private long forgottenChanges;
+
+	/** Counts the changes. The current value is the ticket. */
+	private long changeCount;
+
+	private long weight;
+
+	private long hits;
+	private long misses;
+	private long evictions;
+	private long invalidations;
+	private long staleValues;
+
+	private long lastLoggedTime = System.currentTimeMillis();
+	private long lookupsWhenLogged;
+
+	public DependencyCache(String name, long maxWeight) {
+		if (maxWeight <= 0) {
+			throw new IllegalArgumentException("maxWeight must be positive: "
+					+ maxWeight);
+		}
+		this.name = name;
+		this.maxWeight = maxWeight;
+	}
+
+	/** Get the cached value, or null. */
+	public synchronized V get(K key) {
+		Entry<V> entry = entries.get(key);
+		if (entry == null) {
+			misses++;
+		} else {
+			hits++;
+		}
+		logStatisticsIfDue();
+		return (entry == null) ? null : entry.value;
+	}
+
+	/**
+	 * Get this before computing a value, and pass it to put().
+	 */
+	public synchronized long getTicket() {
+		return changeCount;
+	}
+
+	/**
+	 * Store this value, unless it weighs more than the whole cache, or one of
+	 * its dependencies has changed since the ticket was issued.
+	 *
+	 * @return true if the value was stored.
+	 */
+	public synchronized boolean put(K key, V value, long valueWeight,
+			Collection<String> dependencies, long ticket) {
+		if (valueWeight > maxWeight) {
+			return false;
+		}
+		Set<String> deps = new HashSet<>(dependencies);
+		if (changedSince(deps, ticket)) {
+			staleValues++;
+			return false;
+		}
+
+		remove(key);
+		entries.put(key, new Entry<V>(value, valueWeight, deps));
+		weight += valueWeight;
+		for (String dependency : deps) {
+			Set<K> keys = keysByDependency.get(dependency);
+			if (keys == null) {
+				keys = new HashSet<>();
+				keysByDependency.put(dependency, keys);
+			}
+			keys.add(key);
+		}
+
+		Iterator<Map.Entry<K, Entry<V>>> eldest = entries.entrySet()
+				.iterator();
+		while (weight > maxWeight && eldest.hasNext()) {
+			Map.Entry<K, Entry<V>> oldest = eldest.next();
+			eldest.remove();
+			forget(oldest.getKey(), oldest.getValue());
+			evictions++;
+		}
+		return true;
+	}
+
+	private boolean changedSince(Set<String> dependencies, long ticket) {
+		if (ticket == changeCount) {
+			return false;
+		}
+		if (ticket < forgottenChanges) {
+			return true;
+		}
+		for (String dependency : dependencies) {
+			Long lastChange = lastChanges.get(dependency);
+			if (lastChange != null && lastChange > ticket) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * This dependency has changed. Discard the entries that depend on it.
+	 */
+	public synchronized void changed(String dependency) {
+		changeCount++;
+		lastChanges.remove(dependency);
+		lastChanges.put(dependency, changeCount);
+		if (lastChanges.size() > MAX_REMEMBERED_CHANGES) {
+			Iterator<Long> oldest = lastChanges.values().iterator();
+			forgottenChanges = Math.max(forgottenChanges, oldest.next());
+			oldest.remove();
+		}
+
+		Set<K> keys = keysByDependency.remove(dependency);
+		if (keys == null) {
+			return;
+		}
+		for (K key : keys) {
+			Entry<V> entry = entries.remove(key);
+			if (entry != null) {
+				forget(key, entry);
+				invalidations++;
+			}
+		}
+	}
+
+	/**
+	 * Something has changed, but we can't tell what, so nothing in the cache
+	 * can be trusted.
+	 */
+	public synchronized void changedAll() {
+		changeCount++;
+		forgottenChanges = changeCount;
+		lastChanges.clear();
+
+		invalidations += entries.size();
+		entries.clear();
+		keysByDependency.clear();
+		weight = 0;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized Statistics getStatistics() {
+		return new Statistics(this);
+	}
+
+	private void remove(K key) {
+		Entry<V> entry = entries.remove(key);
+		if (entry != null) {
+			forget(key, entry);
+		}
+	}
+
+	private void forget(K key, Entry<V> entry) {
+		weight -= entry.weight;
+		for (String dependency : entry.dependencies) {
+			Set<K> keys = keysByDependency.get(dependency);
+			if (keys != null) {
+				keys.remove(key);
+				if (keys.isEmpty()) {
+					keysByDependency.remove(dependency);
+				}
+			}
+		}
+	}
+
+	private void logStatisticsIfDue() {
+		long now = System.currentTimeMillis();
+		if (now - lastLoggedTime < STATISTICS_INTERVAL_MILLIS) {
+			return;
+		}
+		long lookups = hits + misses;
+		if (lookups > lookupsWhenLogged) {
+			log.info(new Statistics(this));
+		}
+		lastLoggedTime = now;
+		lookupsWhenLogged = lookups;
+	}
+
+	@Override
+	public String toString() {
+		return getStatistics().toString();
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper classes
+	// ----------------------------------------------------------------------
+
+	private static class Entry<V> {
+		final V value;
+		final long weight;
+		final Set<String> dependencies;
+
+		Entry(V value, long weight, Set<String> dependencies) {
+			this.value = value;
+			this.weight = weight;
+			this.dependencies = dependencies;
+		}
+	}
+
+	/**
+	 * An immutable picture of the cache and how well it is working.
+	 */
+	public static class Statistics {
+		private final String name;
+		private final int entries;
+		private final long weight;
+		private final long maxWeight;
+		private final long hits;
+		private final long misses;
+		private final long evictions;
+		private final long invalidations;
+		private final long staleValues;
+
+		private Statistics(DependencyCache<?, ?> cache) {
+			this.name = cache.name;
+			this.entries = cache.entries.size();
+			this.weight = cache.weight;
+			this.maxWeight = cache.maxWeight;
+			this.hits = cache.hits;
+			this.misses = cache.misses;
+			this.evictions = cache.evictions;
+			this.invalidations = cache.invalidations;
+			this.staleValues = cache.staleValues;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public int getEntries() {
+			return entries;
+		}
+
+		public long getWeight() {
+			return weight;
+		}
+
+		public long getMaxWeight() {
+			return maxWeight;
+		}
+
+		public long getHits() {
+			return hits;
+		}
+
+		public long getMisses() {
+			return misses;
+		}
+
+		public long getEvictions() {
+			return evictions;
+		}
+
+		public long getInvalidations() {
+			return invalidations;
+		}
+
+		/** Values that were not stored, because they might be out of date. */
+		public long getStaleValues() {
+			return staleValues;
+		}
+
+		public double getHitRatio() {
+			long lookups = hits + misses;
+			return (lookups == 0) ? 0.0 : ((double) hits) / lookups;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s[entries=%d, weight=%d/%d, hits=%d, "
+					+ "misses=%d, hitRatio=%.2f, evictions=%d, "
+					+ "invalidations=%d, staleValues=%d]", name, entries,
+					weight, maxWeight, hits, misses, getHitRatio(), evictions,
+					invalidations, staleValues);
+		}
+	}
+}
@@ -0,0 +1,45 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.utils.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Pick the URIs out of a triple, as the RDFService serializes it for a
+ * ChangeListener: one N-Triples statement. This is enough to tell which cache
+ * entries the change affects, and it is much cheaper than parsing the triple.
+ */
+public class SerializedTriples {
+	private static final Pattern URI_IN_TRIPLE = Pattern.compile("<([^>]*)>");
+
+	private static final Pattern PREDICATE_IN_TRIPLE = Pattern
+			.compile("^\\s*\\S+\\s+<([^>]*)>");
+
+	/**
+	 * The URIs of the subject and predicate, and of the object if it is not a
+	 * literal. A typed literal contributes its datatype, which is harmless.
+	 */
+	public static List<String> uris(String serializedTriple) {
+		List<String> uris = new ArrayList<>(3);
+		Matcher m = URI_IN_TRIPLE.matcher(serializedTriple);
+		while (m.find()) {
+			uris.add(m.group(1));
+		}
+		return uris;
+	}
+
+	/**
+	 * The URI of the predicate, or null if the triple can't be read.
+	 */
+	public static String predicate(String serializedTriple) {
+		Matcher m = PREDICATE_IN_TRIPLE.matcher(serializedTriple);
+		return m.find() ? m.group(1) : null;
+	}
+
+	private SerializedTriples() {
+		// Nothing to instantiate.
+	}
+}
@@ -3,7 +3,6 @@
 package edu.cornell.mannlib.vitro.webapp.utils.jena;
 
 import java.lang.reflect.Method;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -39,6 +38,8 @@ import com.hp.hpl.jena.vocabulary.OWL;
 import com.hp.hpl.jena.vocabulary.RDF;
 import com.hp.hpl.jena.vocabulary.RDFS;
 
+import edu.cornell.mannlib.vitro.webapp.beans.Individual;
+import edu.cornell.mannlib.vitro.webapp.beans.IndividualImpl;
 import edu.cornell.mannlib.vitro.webapp.controller.VitroRequest;
 import edu.cornell.mannlib.vitro.webapp.dao.InsertException;
 import edu.cornell.mannlib.vitro.webapp.dao.WebappDaoFactory;
@@ -750,8 +751,7 @@ public class JenaIngestUtils {
         Model saveModel = maker.getModel(newModel);
         Model tempModel = ModelFactory.createDefaultModel();
         ResIterator rsItr = null;
-        ArrayList<String> urlCheck = new ArrayList<String>();
-        boolean urlFound = false;
+        Set<String> urlCheck = new HashSet<String>();
         if(!oldModel.equals(newModel)){
             StmtIterator stmtItr = m.listStatements();
             while(stmtItr.hasNext()){
@@ -769,12 +769,10 @@ public class JenaIngestUtils {
             if(res.getNameSpace().equals(oldNamespace)){
                 do{
                     uri = getUnusedURI(newNamespace,wdf);
-                    if(!urlCheck.contains(uri)){
-                        urlCheck.add(uri);
-                        urlFound = true;
+                    if(uri == null){
+                        throw new RuntimeException("Could not create a URI in namespace " + newNamespace);
                     }
-                }while(!urlFound);
-                urlFound = false;
+                }while(!urlCheck.add(uri));
                 ResourceUtils.renameResource(res, uri);                    
             }
 
@@ -804,24 +802,19 @@ public class JenaIngestUtils {
         }
     }    
 
+    /**
+     * Mint a new URI in this namespace. The IndividualDao reserves blocks of
+     * unused URIs, so there is no need to probe the model for each one.
+     */
     public String getUnusedURI(String newNamespace,WebappDaoFactory wdf){
-        String uri = null;
-        String errMsg = null;
-        Random random = new Random();
-        boolean uriIsGood = false;
-        int attempts = 0;
-
-        while( uriIsGood == false && attempts < 30 ){            
-            uri = newNamespace + "n" + random.nextInt( Math.min(Integer.MAX_VALUE,(int)Math.pow(2,attempts + 13)) );            
-            errMsg = wdf.checkURI(uri);
-            if(  errMsg != null)
-                uri = null;
-            else
-                uriIsGood = true;                
-            attempts++;
-        }   
-
-        return uri;
+        Individual ind = new IndividualImpl();
+        ind.setNamespace(newNamespace);
+        try {
+            return wdf.getIndividualDao().getUnusedURI(ind);
+        } catch (InsertException e) {
+            log.error("Could not create a URI in namespace " + newNamespace, e);
+            return null;
+        }
     }
 
 }
@@ -0,0 +1,265 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.utils.searchengine;
+
+import static edu.cornell.mannlib.vitro.webapp.search.VitroSearchTermNames.DOCID;
+
+import java.util.AbstractMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngine;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngineException;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchQuery;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchResponse;
+
+/**
+ * Runs a sorted query for one page of results, by page number.
+ *
+ * The first pages are shallow, and the pager links to them directly. The first
+ * page of a sorted query is fetched with the starting cursor, and each of the
+ * other first pages with the cursor that the page before it returned, if we
+ * have it, or else by offset. A search engine only returns the next cursor for
+ * a cursor query, so this is how a client that starts at the first page has a
+ * cursor when it reaches the deeper pages.
+ *
+ * Deeper pages are fetched with a search cursor, so the search engine doesn't
+ * need to collect and sort every earlier hit. Each page tells us the cursor for
+ * the page after it, and we remember the cursors, so a client that walks
+ * through the pages (a crawler, usually) never pays for the depth. If we don't
+ * know the cursor for a page, we seek to it from the nearest page that we do
+ * know, fetching only the document IDs. If that page is too far away, we fall
+ * back to an offset.
+ *
+ * The cursors belong to this class. Callers only see page numbers.
+ *
+ * The index may change between requests, so a page that we reach by cursor may
+ * not hold exactly the same results as the same page reached by offset. A
+ * cursor is forgotten if it hasn't been used for a while, to keep that drift
+ * small.
+ */
+public class SearchCursorPager {
+	private static final Log log = LogFactory.getLog(SearchCursorPager.class);
+
+	/** Pages up to here are fetched by offset. */
+	public static final int DEFAULT_OFFSET_PAGES = 40;
+
+	/** Don't seek further than this many pages to find a cursor. */
+	public static final int DEFAULT_MAX_SEEK_PAGES = 50;
+
+	/** Forget a cursor that hasn't been used for this long. */
+	public static final long DEFAULT_MAX_AGE_MILLIS = 10 * 60 * 1000L;
+
+	/** Remember cursors for this many queries. */
+	public static final int DEFAULT_MAX_QUERIES = 1000;
+
+	/** Remember this many cursors for each query. */
+	private static final int MAX_CURSORS_PER_QUERY = 1000;
+
+	private static final SearchCursorPager instance = new SearchCursorPager(
+			DEFAULT_OFFSET_PAGES, DEFAULT_MAX_SEEK_PAGES,
+			DEFAULT_MAX_AGE_MILLIS, DEFAULT_MAX_QUERIES);
+
+	public static SearchCursorPager getInstance() {
+		return instance;
+	}
+
+	private final int offsetPages;
+	private final int maxSeekPages;
+	private final long maxAgeMillis;
+	private final Map<String, Cursors> cursorsByQuery;
+
+	public SearchCursorPager(int offsetPages, int maxSeekPages,
+			long maxAgeMillis, final int maxQueries) {
+		this.offsetPages = offsetPages;
+		this.maxSeekPages = maxSeekPages;
+		this.maxAgeMillis = maxAgeMillis;
+		this.cursorsByQuery = new LinkedHashMap<String, Cursors>(16, 0.75f,
+				true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Cursors> eldest) {
+				return size() > maxQueries;
+			}
+		};
+	}
+
+	/**
+	 * Run the query for this page of results. Pages are numbered from 1.
+	 *
+	 * The query must be sorted. Its start, rows and cursor will be set here.
+	 */
+	public SearchResponse query(SearchEngine engine, SearchQuery query,
+			int page, int pageSize) throws SearchEngineException {
+		if (query.getSortFields().isEmpty()) {
+			return queryByOffset(engine, query, page, pageSize);
+		}
+
+		String key = keyFor(query, pageSize);
+		String cursor;
+		if (page <= offsetPages) {
+			cursor = knownCursor(key, page);
+		} else {
+			cursor = findCursor(engine, query, key, page, pageSize);
+		}
+		if (cursor == null) {
+			return queryByOffset(engine, query, page, pageSize);
+		}
+
+		query.setStart(0).setRows(pageSize).setCursor(cursor);
+		SearchResponse response = engine.query(query);
+		rememberCursor(key, page + 1, response.getNextCursor());
+		return response;
+	}
+
+	private SearchResponse queryByOffset(SearchEngine engine,
+			SearchQuery query, int page, int pageSize)
+			throws SearchEngineException {
+		query.setStart((page - 1) * pageSize).setRows(pageSize);
+		return engine.query(query);
+	}
+
+	/**
+	 * Find the cursor for this page, seeking forward from the nearest page
+	 * whose cursor we know. Return null if that page is too far away.
+	 */
+	private String findCursor(SearchEngine engine, SearchQuery query,
+			String key, int page, int pageSize) throws SearchEngineException {
+		Map.Entry<Integer, String> nearest = nearestCursor(key, page);
+		int distance = page - nearest.getKey();
+		if (distance == 0) {
+			return nearest.getValue();
+		}
+		if (distance > maxSeekPages) {
+			log.debug("No cursor within " + maxSeekPages + " pages of page "
+					+ page + " for " + key);
+			return null;
+		}
+
+		SearchQuery seek = engine.createQuery(query.getQuery());
+		for (String filter : query.getFilters()) {
+			seek.addFilterQuery(filter);
+		}
+		for (Map.Entry<String, SearchQuery.Order> sort : query
+				.getSortFields().entrySet()) {
+			seek.addSortField(sort.getKey(), sort.getValue());
+		}
+		seek.addFields(DOCID).setStart(0).setRows(distance * pageSize)
+				.setCursor(nearest.getValue());
+
+		String cursor = engine.query(seek).getNextCursor();
+		log.debug("Sought " + distance + " pages to page " + page + " for "
+				+ key);
+		rememberCursor(key, page, cursor);
+		return cursor;
+	}
+
+	/**
+	 * The cursor for exactly this page, if we have it. The first page always
+	 * starts at the starting cursor.
+	 */
+	private String knownCursor(String key, int page) {
+		Map.Entry<Integer, String> nearest = nearestCursor(key, page);
+		return (nearest.getKey() == page) ? nearest.getValue() : null;
+	}
+
+	/**
+	 * The cursor for this page, or for the nearest page before it. Using a
+	 * cursor keeps it from being forgotten.
+	 */
+	private synchronized Map.Entry<Integer, String> nearestCursor(String key,
+			int page) {
+		Cursors cursors = cursorsByQuery.get(key);
+		if (cursors != null) {
+			Map.Entry<Integer, String> entry = cursors.use(page, maxAgeMillis);
+			if (cursors.isEmpty()) {
+				cursorsByQuery.remove(key);
+			}
+			if (entry != null) {
+				return entry;
+			}
+		}
+		return new AbstractMap.SimpleImmutableEntry<>(1,
+				SearchQuery.CURSOR_START);
+	}
+
+	private synchronized void rememberCursor(String key, int page,
+			String cursor) {
+		if (cursor == null) {
+			return;
+		}
+		Cursors cursors = cursorsByQuery.get(key);
+		if (cursors == null) {
+			cursors = new Cursors();
+			cursorsByQuery.put(key, cursors);
+		}
+		cursors.put(page, cursor);
+	}
+
+	/**
+	 * Queries that differ only in their page share their cursors.
+	 */
+	private String keyFor(SearchQuery query, int pageSize) {
+		return "query=" + query.getQuery() + ", filters="
+				+ new TreeSet<>(query.getFilters()) + ", sort="
+				+ query.getSortFields() + ", pageSize=" + pageSize;
+	}
+
+	/**
+	 * The known cursors for one query, by page number, and when each was last
+	 * used.
+	 */
+	private static class Cursors {
+		private final NavigableMap<Integer, Cursor> byPage = new TreeMap<>();
+
+		/**
+		 * Find the cursor for this page or the nearest before it, and mark it
+		 * as used. Forget any cursors on the way that have gone unused for too
+		 * long.
+		 */
+		Map.Entry<Integer, String> use(int page, long maxAgeMillis) {
+			long now = System.currentTimeMillis();
+			Map.Entry<Integer, Cursor> entry = byPage.floorEntry(page);
+			while (entry != null && entry.getValue().isOlderThan(now, maxAgeMillis)) {
+				byPage.remove(entry.getKey());
+				entry = byPage.floorEntry(page);
+			}
+			if (entry == null) {
+				return null;
+			}
+			entry.getValue().lastUsed = now;
+			return new AbstractMap.SimpleImmutableEntry<>(entry.getKey(),
+					entry.getValue().mark);
+		}
+
+		boolean isEmpty() {
+			return byPage.isEmpty();
+		}
+
+		void put(int page, String mark) {
+			if (byPage.size() >= MAX_CURSORS_PER_QUERY
+					&& !byPage.containsKey(page)) {
+				byPage.pollFirstEntry();
+			}
+			byPage.put(page, new Cursor(mark));
+		}
+	}
+
+	private static class Cursor {
+		final String mark;
+		long lastUsed = System.currentTimeMillis();
+
+		Cursor(String mark) {
+			this.mark = mark;
+		}
+
+		boolean isOlderThan(long now, long millis) {
+			return now - lastUsed > millis;
+		}
+	}
+}
@@ -0,0 +1,163 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.controller.json;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.controller.json.StreamingJsonObject.LazyArray;
+
+/**
+ * The streamed text must be the same as the text of the equivalent JSONObject,
+ * byte for byte.
+ */
+public class StreamingJsonObjectTest extends AbstractTestClass {
+
+	@Test
+	public void emptyObject() throws Exception {
+		assertSameText(new JSONObject(), new StreamingJsonObject());
+	}
+
+	@Test
+	public void individualListShape() throws Exception {
+		JSONObject vclass = new JSONObject().put("URI", "http://vc")
+				.put("name", "Class \"one\"");
+
+		JSONObject expected = new JSONObject();
+		expected.put("vclass", vclass);
+		expected.put("totalCount", 12345678901L);
+		expected.put("alpha", "all");
+		expected.put("individuals", new JSONArray(individuals(5)));
+		expected.put("pages", new JSONArray(pages(3)));
+		expected.put("letters", new JSONArray());
+		expected.put("errorMessage", "");
+
+		StreamingJsonObject actual = new StreamingJsonObject();
+		actual.put("vclass", vclass);
+		actual.put("totalCount", 12345678901L);
+		actual.put("alpha", "all");
+		actual.put("individuals", lazily(individuals(5)));
+		actual.put("pages", new JSONArray(pages(3)));
+		actual.put("letters", new JSONArray());
+		actual.put("errorMessage", "");
+
+		assertSameText(expected, actual);
+	}
+
+	@Test
+	public void manyKeysInAnyOrder() throws Exception {
+		JSONObject expected = new JSONObject();
+		StreamingJsonObject actual = new StreamingJsonObject();
+		for (int i = 40; i > 0; i--) {
+			String key = "key" + (i * 7919 % 53) + "</" + i;
+			expected.put(key, i);
+			actual.put(key, i);
+		}
+		assertSameText(expected, actual);
+	}
+
+	@Test
+	public void nullRemovesAndReplacingKeepsPosition() throws Exception {
+		JSONObject expected = new JSONObject().put("a", 1).put("b", 2)
+				.put("c", 3).put("a", "again").put("b", (Object) null).put("b", 4);
+		StreamingJsonObject actual = new StreamingJsonObject().put("a", 1)
+				.put("b", 2).put("c", 3).put("a", "again").put("b", (Object) null)
+				.put("b", 4);
+		assertSameText(expected, actual);
+	}
+
+	@Test
+	public void arrayElementsAreNotConvertedUntilWritten() throws Exception {
+		final List<String> converted = new ArrayList<>();
+		StreamingJsonObject actual = new StreamingJsonObject();
+		actual.put("letters", new LazyArray<String>(Arrays.asList("A", "B")) {
+			@Override
+			protected Object convert(String element) throws JSONException {
+				converted.add(element);
+				return new JSONObject().put("text", element);
+			}
+		});
+		assertEquals("before writing", 0, converted.size());
+
+		StringWriter writer = new StringWriter();
+		actual.write(writer);
+		assertEquals("after writing", Arrays.asList("A", "B"), converted);
+		assertEquals("text", "{\"letters\":[{\"text\":\"A\"},{\"text\":\"B\"}]}",
+				writer.toString());
+	}
+
+	@Test
+	public void toJSONObjectMatches() throws Exception {
+		StreamingJsonObject streaming = new StreamingJsonObject();
+		streaming.put("totalCount", 3);
+		streaming.put("individuals", lazily(individuals(3)));
+
+		JSONObject expected = new JSONObject();
+		expected.put("totalCount", 3);
+		expected.put("individuals", new JSONArray(individuals(3)));
+
+		assertEquals(expected.toString(), streaming.toJSONObject().toString());
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper methods
+	// ----------------------------------------------------------------------
+
+	private void assertSameText(JSONObject expected, StreamingJsonObject actual)
+			throws IOException, JSONException {
+		StringWriter writer = new StringWriter();
+		actual.write(writer);
+		assertEquals(expected.toString(), writer.toString());
+	}
+
+	private List<JSONObject> individuals(int howMany) throws JSONException {
+		List<JSONObject> list = new ArrayList<>();
+		for (int i = 0; i < howMany; i++) {
+			JSONObject jo = new JSONObject();
+			jo.put("URI", "http://ind" + i);
+			jo.put("label", "Label é " + i);
+			jo.put("name", "Name\t" + i);
+			jo.put("profileUrl", "/individual?uri=http%3A%2F%2Find" + i);
+			jo.put("mostSpecificTypes", Arrays.asList("Type" + i, "Other"));
+			list.add(jo);
+		}
+		return list;
+	}
+
+	private List<JSONObject> pages(int howMany) throws JSONException {
+		List<JSONObject> list = new ArrayList<>();
+		for (int i = 1; i <= howMany; i++) {
+			list.add(new JSONObject().put("text", String.valueOf(i))
+					.put("param", "page=" + i).put("index", i));
+		}
+		return list;
+	}
+
+	/** An Iterable that can be run through only once, like a stream. */
+	private Iterable<Object> lazily(final List<JSONObject> list) {
+		return new Iterable<Object>() {
+			private boolean used;
+
+			@Override
+			public Iterator<Object> iterator() {
+				if (used) {
+					throw new IllegalStateException("Only once.");
+				}
+				used = true;
+				return new ArrayList<Object>(list).iterator();
+			}
+		};
+	}
+}
@@ -0,0 +1,116 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.dao.jena;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.log4j.Level;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.hp.hpl.jena.ontology.OntModel;
+import com.hp.hpl.jena.ontology.OntModelSpec;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.vocabulary.RDFS;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.dao.InsertException;
+
+public class BlockReservingURIMinterTest extends AbstractTestClass {
+	private static final String NS = "http://test/individual/";
+	private static final long FIRST = BlockReservingURIMinter.FIRST_VALUE;
+
+	private OntModel counterModel;
+	private OntModel fullModel;
+
+	@Before
+	public void setup() {
+		counterModel = ModelFactory.createOntologyModel(OntModelSpec.OWL_MEM);
+		fullModel = ModelFactory.createOntologyModel(OntModelSpec.OWL_MEM);
+	}
+
+	@Test
+	public void mintsSequentialUrisAboveTheRandomRange() throws InsertException {
+		BlockReservingURIMinter minter = new BlockReservingURIMinter(10);
+		assertEquals(NS + "n" + FIRST, mint(minter, NS));
+		assertEquals(NS + "n" + (FIRST + 1), mint(minter, NS));
+	}
+
+	@Test
+	public void urisAreUniqueAcrossBlocks() throws InsertException {
+		BlockReservingURIMinter minter = new BlockReservingURIMinter(3);
+		Set<String> uris = new HashSet<>();
+		for (int i = 0; i < 25; i++) {
+			assertTrue(uris.add(mint(minter, NS)));
+		}
+	}
+
+	@Test
+	public void counterIsPersistedBetweenMinters() throws InsertException {
+		BlockReservingURIMinter first = new BlockReservingURIMinter(10);
+		mint(first, NS);
+
+		// A new minter (after a restart, say) starts after the reserved block.
+		BlockReservingURIMinter second = new BlockReservingURIMinter(10);
+		assertEquals(NS + "n" + (FIRST + 10), mint(second, NS));
+	}
+
+	@Test
+	public void namespacesHaveSeparateCounters() throws InsertException {
+		BlockReservingURIMinter minter = new BlockReservingURIMinter(10);
+		mint(minter, NS);
+		assertEquals("http://other/n" + FIRST, mint(minter, "http://other/"));
+	}
+
+	@Test
+	public void counterModelsHaveSeparateBlocks() throws InsertException {
+		BlockReservingURIMinter minter = new BlockReservingURIMinter(10);
+		mint(minter, NS);
+
+		OntModel otherCounterModel = ModelFactory
+				.createOntologyModel(OntModelSpec.OWL_MEM);
+		assertEquals(NS + "n" + FIRST,
+				minter.mintURI(NS, otherCounterModel, fullModel));
+		assertEquals(NS + "n" + (FIRST + 1), mint(minter, NS));
+	}
+
+	@Test
+	public void uriInUseIsSkipped() throws InsertException {
+		setLoggerLevel(BlockReservingURIMinter.class, Level.ERROR);
+		markInUse(FIRST + 1);
+		BlockReservingURIMinter minter = new BlockReservingURIMinter(10);
+		assertEquals(NS + "n" + FIRST, mint(minter, NS));
+		assertEquals(NS + "n" + (FIRST + 2), mint(minter, NS));
+	}
+
+	@Test
+	public void rangeInUseIsSkippedAcrossBlocks() throws InsertException {
+		setLoggerLevel(BlockReservingURIMinter.class, Level.ERROR);
+		for (long value = FIRST; value < FIRST + 25; value++) {
+			markInUse(value);
+		}
+		BlockReservingURIMinter minter = new BlockReservingURIMinter(3);
+		assertEquals(NS + "n" + (FIRST + 25), mint(minter, NS));
+		assertEquals(NS + "n" + (FIRST + 26), mint(minter, NS));
+	}
+
+	@Test
+	public void emptyNamespaceIsRejected() throws InsertException {
+		expectException(InsertException.class, "namespace");
+		mint(new BlockReservingURIMinter(10), "");
+	}
+
+	private void markInUse(long value) {
+		fullModel.add(fullModel.createResource(NS + "n" + value), RDFS.label,
+				"already here");
+	}
+
+	private String mint(BlockReservingURIMinter minter, String namespace)
+			throws InsertException {
+		return minter.mintURI(namespace, counterModel, fullModel);
+	}
+}
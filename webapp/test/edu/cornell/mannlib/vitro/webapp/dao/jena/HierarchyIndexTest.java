@@ -0,0 +1,165 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.dao.jena;
+
+import static edu.cornell.mannlib.vitro.webapp.modelaccess.ModelNames.ABOX_ASSERTIONS;
+import static edu.cornell.mannlib.vitro.webapp.modelaccess.ModelNames.TBOX_ASSERTIONS;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.shared.Lock;
+import com.hp.hpl.jena.vocabulary.RDFS;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.dao.jena.HierarchyIndex.Closure;
+
+public class HierarchyIndexTest extends AbstractTestClass {
+	private static final String NS = "http://test/";
+
+	private Model model;
+
+	@Before
+	public void setup() {
+		model = ModelFactory.createDefaultModel();
+		subClass("B", "A");
+		subClass("C", "B");
+		subClass("D", "B");
+		subClass("E", "D");
+		model.add(resource("C"), RDFS.subClassOf, model.createResource());
+	}
+
+	@Test
+	public void ancestorsAreTransitive() {
+		Closure classes = HierarchyIndex.build(model).getClassHierarchy();
+		assertEqualSets("ancestors", uris("D", "B", "A"),
+				asSet(classes.getAncestors(NS + "E")));
+		assertTrue(classes.isAncestor(NS + "A", NS + "E"));
+		assertFalse(classes.isAncestor(NS + "E", NS + "A"));
+		assertFalse(classes.isAncestor(NS + "C", NS + "E"));
+	}
+
+	@Test
+	public void descendantsAreTransitive() {
+		Closure classes = HierarchyIndex.build(model).getClassHierarchy();
+		assertEqualSets("descendants", uris("B", "C", "D", "E"),
+				asSet(classes.getDescendants(NS + "A")));
+		assertEqualSets("leaf", uris(), asSet(classes.getDescendants(NS + "E")));
+	}
+
+	@Test
+	public void cyclesDoNotIncludeSelf() {
+		subClass("A", "E");
+		Closure classes = HierarchyIndex.build(model).getClassHierarchy();
+		assertEqualSets("ancestors", uris("A", "B", "D"),
+				asSet(classes.getAncestors(NS + "E")));
+	}
+
+	@Test
+	public void unknownUriHasNoRelatives() {
+		Closure classes = HierarchyIndex.build(model).getClassHierarchy();
+		assertFalse(classes.contains(NS + "Z"));
+		assertTrue(classes.getAncestors(NS + "Z").isEmpty());
+	}
+
+	@Test
+	public void propertiesAreSeparateFromClasses() {
+		Property p = model.createProperty(NS + "p");
+		Property q = model.createProperty(NS + "q");
+		model.add(p, RDFS.subPropertyOf, q);
+		HierarchyIndex index = HierarchyIndex.build(model);
+		assertEqualSets("super", uris("q"), asSet(index
+				.getPropertyHierarchy().getAncestors(NS + "p")));
+		assertFalse(index.getClassHierarchy().contains(NS + "p"));
+	}
+
+	@Test
+	public void cacheIsRebuiltOnlyWhenTheHierarchyChanges() {
+		HierarchyIndexCache cache = new HierarchyIndexCache(model);
+		HierarchyIndex first = cache.getIndex();
+		assertSame(first, cache.getIndex());
+
+		cache.addedStatement("<" + NS + "A> <" + RDFS.label.getURI()
+				+ "> \"A\" .", TBOX_ASSERTIONS);
+		cache.addedStatement("<" + NS + "F> <" + RDFS.subClassOf.getURI()
+				+ "> <" + NS + "A> .", ABOX_ASSERTIONS);
+		assertSame(first, cache.getIndex());
+
+		subClass("F", "E");
+		cache.addedStatement("<" + NS + "F> <" + RDFS.subClassOf.getURI()
+				+ "> <" + NS + "E> .", TBOX_ASSERTIONS);
+		HierarchyIndex second = cache.getIndex();
+		assertNotSame(first, second);
+		assertTrue(second.getClassHierarchy().isAncestor(NS + "A", NS + "F"));
+	}
+
+	@Test
+	public void requestsDuringARebuildGetThePreviousIndex()
+			throws InterruptedException {
+		final HierarchyIndexCache cache = new HierarchyIndexCache(model);
+		HierarchyIndex first = cache.getIndex();
+		final HierarchyIndex[] rebuilt = new HierarchyIndex[1];
+
+		Thread builder = new Thread() {
+			@Override
+			public void run() {
+				rebuilt[0] = cache.getIndex();
+			}
+		};
+
+		model.enterCriticalSection(Lock.WRITE);
+		try {
+			subClass("F", "E");
+			cache.addedStatement("<" + NS + "F> <" + RDFS.subClassOf.getURI()
+					+ "> <" + NS + "E> .", TBOX_ASSERTIONS);
+
+			builder.start();
+			while (builder.getState() != Thread.State.WAITING) {
+				Thread.sleep(10);
+			}
+			assertSame("while building", first, cache.getIndex());
+		} finally {
+			model.leaveCriticalSection();
+		}
+		builder.join(10000);
+
+		assertNotSame(first, rebuilt[0]);
+		assertSame("after building", rebuilt[0], cache.getIndex());
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper methods
+	// ----------------------------------------------------------------------
+
+	private Resource resource(String localName) {
+		return model.createResource(NS + localName);
+	}
+
+	private void subClass(String child, String parent) {
+		model.add(resource(child), RDFS.subClassOf, resource(parent));
+	}
+
+	private Set<String> uris(String... localNames) {
+		Set<String> set = new HashSet<>();
+		for (String localName : localNames) {
+			set.add(NS + localName);
+		}
+		return set;
+	}
+
+	private Set<String> asSet(List<String> list) {
+		return new HashSet<>(list);
+	}
+}
@@ -0,0 +1,165 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.dao.jena;
+
+import static edu.cornell.mannlib.vitro.webapp.modelaccess.ModelNames.ABOX_ASSERTIONS;
+import static edu.cornell.mannlib.vitro.webapp.modelaccess.ModelNames.APPLICATION_METADATA;
+import static edu.cornell.mannlib.vitro.webapp.modelaccess.ModelNames.TBOX_ASSERTIONS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.hp.hpl.jena.ontology.OntModel;
+import com.hp.hpl.jena.ontology.OntModelSpec;
+import com.hp.hpl.jena.rdf.listeners.StatementListener;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Statement;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.beans.DataProperty;
+import edu.cornell.mannlib.vitro.webapp.beans.ObjectProperty;
+import edu.cornell.mannlib.vitro.webapp.beans.VClass;
+import edu.cornell.mannlib.vitro.webapp.dao.jena.PropertyMetadataCache.Snapshot;
+
+public class PropertyMetadataCacheTest extends AbstractTestClass {
+	private static final String URI = "http://test/property";
+	private static final String TRIPLE = "<http://test/s> <http://test/p> \"o\" .";
+	private static final List<String> ENGLISH = Arrays.asList("en-US");
+	private static final List<String> SPANISH = Arrays.asList("es");
+
+	private PropertyMetadataCache cache;
+
+	@Before
+	public void setup() {
+		cache = new PropertyMetadataCache();
+	}
+
+	@Test
+	public void cachedBeansAreCopies() {
+		ObjectProperty op = objectProperty("label");
+		cache.getSnapshot().putObjectProperty(URI, ENGLISH, op);
+		op.setDomainPublic("changed after put");
+
+		ObjectProperty first = cache.getSnapshot().getObjectProperty(URI,
+				ENGLISH);
+		first.setDomainPublic("changed after get");
+		ObjectProperty second = cache.getSnapshot().getObjectProperty(URI,
+				ENGLISH);
+
+		assertNotSame(first, second);
+		assertEquals("label", second.getDomainPublic());
+		assertEquals(URI, second.getURI());
+	}
+
+	@Test
+	public void languagesArePartOfTheKey() {
+		cache.getSnapshot().putDataProperty(URI, ENGLISH, dataProperty("name"));
+		assertNotNull(cache.getSnapshot().getDataProperty(URI, ENGLISH));
+		assertNull(cache.getSnapshot().getDataProperty(URI, SPANISH));
+	}
+
+	@Test
+	public void snapshotIsReplacedOnlyWhenTheMetadataChanges() {
+		Snapshot first = cache.getSnapshot();
+		first.putDataProperty(URI, ENGLISH, dataProperty("name"));
+
+		cache.addedStatement(TRIPLE, ABOX_ASSERTIONS);
+		assertSame(first, cache.getSnapshot());
+
+		cache.removedStatement(TRIPLE, TBOX_ASSERTIONS);
+		Snapshot second = cache.getSnapshot();
+		assertNotSame(first, second);
+		assertNull(second.getDataProperty(URI, ENGLISH));
+	}
+
+	@Test
+	public void mintingUrisDoesNotReplaceTheSnapshot() throws Exception {
+		Snapshot first = cache.getSnapshot();
+		OntModel counterModel = ModelFactory
+				.createOntologyModel(OntModelSpec.OWL_MEM);
+		counterModel.register(new StatementListener() {
+			@Override
+			public void addedStatement(Statement s) {
+				cache.addedStatement(serialize(s), APPLICATION_METADATA);
+			}
+
+			@Override
+			public void removedStatement(Statement s) {
+				cache.removedStatement(serialize(s), APPLICATION_METADATA);
+			}
+		});
+
+		new BlockReservingURIMinter(1).mintURI("http://test/", counterModel,
+				ModelFactory.createOntologyModel(OntModelSpec.OWL_MEM));
+		assertSame(first, cache.getSnapshot());
+
+		cache.addedStatement(TRIPLE, APPLICATION_METADATA);
+		assertNotSame(first, cache.getSnapshot());
+	}
+
+	@Test
+	public void cachedBeansDoNotShareTheirClasses() {
+		ObjectProperty op = objectProperty("label");
+		op.setRangeVClass(new VClass("http://test/Range"));
+		cache.getSnapshot().putObjectProperty(URI, ENGLISH, op);
+
+		cache.getSnapshot().getObjectProperty(URI, ENGLISH).getRangeVClass()
+				.setName("changed after get");
+		ObjectProperty second = cache.getSnapshot().getObjectProperty(URI,
+				ENGLISH);
+
+		assertEquals("Range", second.getRangeVClass().getName());
+		assertNull(second.getDomainVClass());
+	}
+
+	@Test
+	public void dataPropertyCloneCopiesTheFields() {
+		DataProperty dp = dataProperty("name");
+		dp.setDisplayTier(3);
+		dp.setRangeDatatypeURI("http://www.w3.org/2001/XMLSchema#string");
+		dp.setExternalId(true);
+
+		DataProperty clone = dp.clone();
+		assertEquals(URI, clone.getURI());
+		assertEquals("name", clone.getPublicName());
+		assertEquals(3, clone.getDisplayTier());
+		assertEquals(dp.getRangeDatatypeURI(), clone.getRangeDatatypeURI());
+		assertEquals(true, clone.isExternalId());
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper methods
+	// ----------------------------------------------------------------------
+
+	private ObjectProperty objectProperty(String label) {
+		ObjectProperty op = new ObjectProperty();
+		op.setURI(URI);
+		op.setDomainPublic(label);
+		return op;
+	}
+
+	private String serialize(Statement s) {
+		Model m = ModelFactory.createDefaultModel();
+		m.add(s);
+		StringWriter writer = new StringWriter();
+		m.write(writer, "N-TRIPLE");
+		return writer.toString();
+	}
+
+	private DataProperty dataProperty(String name) {
+		DataProperty dp = new DataProperty();
+		dp.setURI(URI);
+		dp.setPublicName(name);
+		return dp;
+	}
+}
@@ -0,0 +1,183 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.dao.jena;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.NodeFactory;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.query.Dataset;
+import com.hp.hpl.jena.query.DatasetFactory;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.jena.model.RDFServiceModel;
+
+public class RDFServiceGraphTest extends AbstractTestClass {
+	private static final String GRAPH = "http://test/graph";
+	private static final Node S = NodeFactory.createURI("http://test/s");
+	private static final Node P = NodeFactory.createURI("http://test/p");
+
+	private CountingRDFService rdfService;
+	private RDFServiceGraph graph;
+
+	@Before
+	public void setup() {
+		Dataset dataset = DatasetFactory.createMem();
+		rdfService = new CountingRDFService(dataset);
+		graph = new RDFServiceGraph(rdfService, GRAPH);
+		for (int i = 0; i < 5; i++) {
+			graph.add(triple(i));
+		}
+		rdfService.selects.clear();
+	}
+
+	@Test
+	public void findReadsOrderedPages() {
+		graph.setFindPageSize(2);
+		assertEquals(expected(0, 1, 2, 3, 4), findAll());
+		assertEquals("selects", 3, rdfService.selects.size());
+		for (int i = 0; i < 3; i++) {
+			String select = rdfService.selects.get(i);
+			assertTrue(select, select.contains("ORDER BY ?o"));
+			assertTrue(select, select.contains("LIMIT 2 OFFSET " + (2 * i)));
+		}
+	}
+
+	@Test
+	public void findReadsTheNextPageOnlyWhenNeeded() {
+		graph.setFindPageSize(2);
+		ExtendedIterator<Triple> it = graph.find(S, P, Node.ANY);
+		it.next();
+		it.next();
+		assertEquals("after one page", 1, rdfService.selects.size());
+		it.next();
+		assertEquals("after two pages", 2, rdfService.selects.size());
+		it.close();
+		assertFalse("closed", it.hasNext());
+		assertEquals("after close", 2, rdfService.selects.size());
+	}
+
+	@Test
+	public void findDoesNotQueryUntilAsked() {
+		ExtendedIterator<Triple> it = graph.find(S, P, Node.ANY);
+		assertEquals("before hasNext", 0, rdfService.selects.size());
+		it.next();
+		it.next();
+		assertEquals("after two triples", 1, rdfService.selects.size());
+		it.close();
+		assertFalse("closed", it.hasNext());
+		assertEquals("after close", 1, rdfService.selects.size());
+	}
+
+	@Test
+	public void changingTheGraphDoesNotDisturbAnOpenIterator() {
+		ExtendedIterator<Triple> it = graph.find(S, P, Node.ANY);
+		Set<Triple> found = new HashSet<>();
+		found.add(it.next());
+		graph.add(triple(99));
+		graph.delete(triple(0));
+		while (it.hasNext()) {
+			found.add(it.next());
+		}
+		assertEquals(expected(0, 1, 2, 3, 4), found);
+	}
+
+	@Test
+	public void findSeesPendingChanges() {
+		try (RDFServiceUnitOfWork unit = RDFServiceUnitOfWork.begin()) {
+			graph.delete(triple(1));
+			graph.delete(triple(4));
+			graph.add(triple(7));
+			assertEquals(expected(0, 2, 3, 7), findAll());
+			assertEquals("size", 4, graph.size());
+		}
+		assertEquals(expected(0, 2, 3, 7), findAll());
+	}
+
+	@Test
+	public void sizeIsCountedAndRemembered() {
+		assertEquals(5, graph.size());
+		assertEquals(5, graph.size());
+		assertEquals("selects", 1, rdfService.selects.size());
+		assertTrue(rdfService.selects.get(0).contains("COUNT"));
+
+		graph.add(triple(5));
+		assertEquals("after add", 6, graph.size());
+		graph.delete(triple(0));
+		assertEquals("after delete", 5, graph.size());
+		assertEquals("selects", 3, rdfService.selects.size());
+	}
+
+	@Test
+	public void sizeIsForgottenWhenTheStoreReportsAChange() {
+		RDFServiceGraph otherView = new RDFServiceGraph(rdfService, GRAPH);
+		RDFServiceGraph otherGraph = new RDFServiceGraph(rdfService,
+				"http://test/otherGraph");
+
+		assertEquals(5, graph.size());
+		assertEquals("listening", 1, rdfService.getRegisteredListeners()
+				.size());
+
+		otherGraph.add(triple(5));
+		assertEquals("other graph changed", 5, graph.size());
+		assertEquals("selects", 1, rdfService.selects.size());
+
+		otherView.add(triple(6));
+		assertEquals("not listening", 0, rdfService.getRegisteredListeners()
+				.size());
+		assertEquals("this graph changed", 6, graph.size());
+		assertEquals("selects", 2, rdfService.selects.size());
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper methods and classes
+	// ----------------------------------------------------------------------
+
+	private Triple triple(int i) {
+		return new Triple(S, P, NodeFactory.createLiteral("value" + i));
+	}
+
+	private Set<Triple> expected(int... values) {
+		Set<Triple> set = new HashSet<>();
+		for (int i : values) {
+			set.add(triple(i));
+		}
+		return set;
+	}
+
+	private Set<Triple> findAll() {
+		List<Triple> list = graph.find(S, P, Node.ANY).toList();
+		Set<Triple> set = new HashSet<>(list);
+		assertEquals("no duplicates", list.size(), set.size());
+		return set;
+	}
+
+	private static class CountingRDFService extends RDFServiceModel {
+		final List<String> selects = new ArrayList<>();
+
+		CountingRDFService(Dataset dataset) {
+			super(dataset);
+		}
+
+		@Override
+		public InputStream sparqlSelectQuery(String query,
+				ResultFormat resultFormat) throws RDFServiceException {
+			selects.add(query);
+			return super.sparqlSelectQuery(query, resultFormat);
+		}
+	}
+}
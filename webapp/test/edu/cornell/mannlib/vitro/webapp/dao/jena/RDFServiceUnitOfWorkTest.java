@@ -0,0 +1,151 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.dao.jena;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.hp.hpl.jena.query.Dataset;
+import com.hp.hpl.jena.query.DatasetFactory;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.rdf.model.ResourceFactory;
+import com.hp.hpl.jena.rdf.model.Statement;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeSet;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.jena.model.RDFServiceModel;
+
+public class RDFServiceUnitOfWorkTest extends AbstractTestClass {
+	private static final String GRAPH = "http://test/graph";
+	private static final Resource S = ResourceFactory
+			.createResource("http://test/s");
+	private static final Property P = ResourceFactory
+			.createProperty("http://test/p");
+
+	private Dataset dataset;
+	private CountingRDFService rdfService;
+	private Model model;
+
+	@Before
+	public void setup() {
+		dataset = DatasetFactory.createMem();
+		rdfService = new CountingRDFService(dataset);
+		model = RDFServiceGraph.createRDFServiceModel(new RDFServiceGraph(
+				rdfService, GRAPH));
+	}
+
+	@After
+	public void noUnitIsLeftOpen() {
+		assertNull(RDFServiceUnitOfWork.current());
+	}
+
+	@Test
+	public void withoutAUnitEachChangeIsSentSeparately() {
+		model.add(S, P, "one");
+		model.add(S, P, "two");
+		assertEquals(2, rdfService.changeSets.size());
+	}
+
+	@Test
+	public void changesAreSentAsOneChangeSetWhenClosed() {
+		try (RDFServiceUnitOfWork unit = RDFServiceUnitOfWork.begin()) {
+			model.add(S, P, "one");
+			model.add(S, P, "two");
+			model.remove(S, P, model.createLiteral("one"));
+			assertEquals(0, rdfService.changeSets.size());
+		}
+		assertEquals(1, rdfService.changeSets.size());
+		assertStored("two");
+	}
+
+	@Test
+	public void readsSeePendingChanges() {
+		model.add(S, P, "old");
+		try (RDFServiceUnitOfWork unit = RDFServiceUnitOfWork.begin()) {
+			model.remove(S, P, model.createLiteral("old"));
+			model.add(S, P, "new");
+			assertFalse(model.contains(S, P, "old"));
+			assertTrue(model.contains(S, P, "new"));
+			assertEquals(1, model.listStatements(S, P, (String) null).toList()
+					.size());
+		}
+		assertStored("new");
+	}
+
+	@Test
+	public void innerUnitJoinsOuterUnit() {
+		try (RDFServiceUnitOfWork outer = RDFServiceUnitOfWork.begin()) {
+			try (RDFServiceUnitOfWork inner = RDFServiceUnitOfWork.begin()) {
+				model.add(S, P, "one");
+			}
+			assertEquals(0, rdfService.changeSets.size());
+			model.add(S, P, "two");
+		}
+		assertEquals(1, rdfService.changeSets.size());
+	}
+
+	@Test
+	public void eventsSurroundTheChanges() {
+		try (RDFServiceUnitOfWork unit = RDFServiceUnitOfWork.begin()) {
+			model.notifyEvent("start");
+			model.add(S, P, "one");
+			model.notifyEvent("end");
+		}
+		assertEquals(1, rdfService.changeSets.size());
+		ChangeSet cs = rdfService.changeSets.get(0);
+		assertEquals("start", cs.getPreChangeEvents().get(0));
+		assertEquals("end", cs.getPostChangeEvents().get(0));
+	}
+
+	@Test
+	public void changeAfterPostChangeEventStartsANewChangeSet() {
+		try (RDFServiceUnitOfWork unit = RDFServiceUnitOfWork.begin()) {
+			model.add(S, P, "one");
+			model.notifyEvent("between");
+			model.add(S, P, "two");
+		}
+		assertEquals(2, rdfService.changeSets.size());
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper methods and classes
+	// ----------------------------------------------------------------------
+
+	private void assertStored(String... values) {
+		Set<String> stored = new HashSet<>();
+		for (Statement stmt : dataset.getNamedModel(GRAPH)
+				.listStatements(S, P, (String) null).toList()) {
+			stored.add(stmt.getString());
+		}
+		assertEqualSets("stored values", buildSet(values), stored);
+	}
+
+	private static class CountingRDFService extends RDFServiceModel {
+		final List<ChangeSet> changeSets = new ArrayList<>();
+
+		CountingRDFService(Dataset dataset) {
+			super(dataset);
+		}
+
+		@Override
+		public boolean changeSetUpdate(ChangeSet changeSet)
+				throws RDFServiceException {
+			changeSets.add(changeSet);
+			return super.changeSetUpdate(changeSet);
+		}
+	}
+}
@@ -3,6 +3,10 @@
 package edu.cornell.mannlib.vitro.webapp.dao.jena;
 
 import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -12,8 +16,13 @@ import com.hp.hpl.jena.ontology.OntModel;
 import com.hp.hpl.jena.rdf.model.ModelFactory;
 import com.hp.hpl.jena.rdf.model.ResourceFactory;
 import com.hp.hpl.jena.rdf.model.Statement;
+import com.hp.hpl.jena.vocabulary.OWL;
+import com.hp.hpl.jena.vocabulary.RDF;
 import com.hp.hpl.jena.vocabulary.RDFS;
 
+import edu.cornell.mannlib.vitro.webapp.beans.VClass;
+import edu.cornell.mannlib.vitro.webapp.beans.VClassGroup;
+
 public class VClassGroupCacheTest {
 
     @Before
@@ -74,6 +83,81 @@ public class VClassGroupCacheTest {
         Assert.assertTrue("Expected it to NOT be a name change but it was.",  notNameChange);
     }
 
+    @Test
+    public void testApplyCounts() {
+        List<VClassGroup> groups = buildGroups();
+        Map<String, Long> groupCounts = new HashMap<String, Long>();
+        groupCounts.put("http://example.com/people", 7L);
+        Map<String, Long> classCounts = new HashMap<String, Long>();
+        classCounts.put("http://example.com/Faculty", 5L);
+        classCounts.put("http://example.com/Student", 2L);
+        classCounts.put("http://example.com/NotInAGroup", 99L);
+
+        VClassGroupCache.applyCounts(groups, groupCounts, classCounts);
+
+        VClassGroup people = groups.get(0);
+        Assert.assertEquals(7, people.getIndividualCount());
+        Assert.assertEquals(5, people.get(0).getEntityCount());
+        Assert.assertEquals(2, people.get(1).getEntityCount());
+
+        VClassGroup places = groups.get(1);
+        Assert.assertEquals("group not in facets", 0, places.getIndividualCount());
+        Assert.assertEquals("class not in facets", 0, places.get(0).getEntityCount());
+    }
+
+    @Test
+    public void testCopyGroupsLeavesOriginalsAlone() {
+        List<VClassGroup> groups = buildGroups();
+        List<VClassGroup> copies = VClassGroupCache.copyGroups(groups);
+
+        VClassGroupCache.applyCounts(copies, new HashMap<String, Long>(),
+                new HashMap<String, Long>());
+
+        Assert.assertEquals(2, copies.size());
+        Assert.assertEquals(2, copies.get(0).size());
+        Assert.assertSame(copies.get(0), copies.get(0).get(0).getGroup());
+        Assert.assertEquals(0, copies.get(0).get(0).getEntityCount());
+        Assert.assertEquals(3, groups.get(0).get(0).getEntityCount());
+        Assert.assertEquals(4, groups.get(0).getIndividualCount());
+    }
+
+    @Test
+    public void testIsClassDeclaration() {
+        Statement classDecl = ResourceFactory.createStatement(
+                ResourceFactory.createResource("http://example.com/Faculty"),
+                RDF.type, OWL.Class);
+        Assert.assertTrue(VClassGroupCache.isClassDeclaration(classDecl));
+
+        Statement individualType = ResourceFactory.createStatement(
+                ResourceFactory.createResource("http://example.com/individual1"),
+                RDF.type,
+                ResourceFactory.createResource("http://example.com/Faculty"));
+        Assert.assertFalse(VClassGroupCache.isClassDeclaration(individualType));
+    }
+
+    private List<VClassGroup> buildGroups() {
+        VClassGroup people = new VClassGroup("http://example.com/people", "People");
+        people.setIndividualCount(4);
+        people.add(buildClass("http://example.com/Faculty", people, 3));
+        people.add(buildClass("http://example.com/Student", people, 1));
+
+        VClassGroup places = new VClassGroup("http://example.com/places", "Places");
+        places.setIndividualCount(2);
+        places.add(buildClass("http://example.com/Building", places, 2));
+
+        List<VClassGroup> groups = new ArrayList<VClassGroup>();
+        groups.add(people);
+        groups.add(places);
+        return groups;
+    }
+
+    private VClass buildClass(String uri, VClassGroup group, int count) {
+        VClass vclass = new VClass(uri);
+        vclass.setGroup(group);
+        vclass.setEntityCount(count);
+        return vclass;
+    }
+
     static final String prefixes = 
     "@prefix dc:      <http://purl.org/dc/elements/1.1/> . \n" +
     "@prefix pvs:     <http://vivoweb.org/ontology/provenance-support#> . \n" +
@@ -0,0 +1,126 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.edit.n3editing.VTwo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.edit.n3editing.configuration.validators.AntiXssValidation;
+
+public class EditConfigurationTemplateTest extends AbstractTestClass {
+	private static final String N3 = "?subject ?predicate ?objectVar .";
+	private static final String INVERSE_QUERY = "SELECT ?inverse_property WHERE { ?inverse_property ?p ?predicate }";
+
+	private EditConfigurationVTwo prototype;
+	private AntiXssValidation validator;
+
+	@Before
+	public void setup() {
+		validator = new AntiXssValidation();
+
+		prototype = new EditConfigurationVTwo();
+		prototype.setTemplate("defaultPropertyForm.ftl");
+		prototype.setUrlPatternToReturnTo("/individual");
+		prototype.setVarNameForSubject("subject");
+		prototype.setVarNameForPredicate("predicate");
+		prototype.setVarNameForObject("objectVar");
+		prototype.setN3Required(new ArrayList<String>(Arrays.asList(N3)));
+		prototype.setUrisOnform(new ArrayList<String>(Arrays
+				.asList("objectVar")));
+		Map<String, String> queries = new HashMap<String, String>();
+		queries.put("inverseProp", INVERSE_QUERY);
+		prototype.setSparqlForAdditionalUrisInScope(queries);
+		prototype.addValidator(validator);
+	}
+
+	@Test
+	public void configurationHasThePartsOfThePrototype() {
+		EditConfigurationVTwo config = new EditConfigurationTemplate(prototype)
+				.newConfiguration();
+
+		assertEquals("defaultPropertyForm.ftl", config.getTemplate());
+		assertEquals("/individual", config.getUrlPatternToReturnTo());
+		assertEquals("objectVar", config.getVarNameForObject());
+		assertEquals(Arrays.asList(N3), config.getN3Required());
+		assertEquals(Arrays.asList("objectVar"), config.getUrisOnform());
+		assertEquals(INVERSE_QUERY, config.getSparqlForAdditionalUrisInScope()
+				.get("inverseProp"));
+		assertEquals(1, config.getValidators().size());
+		assertSame(validator, config.getValidators().get(0));
+	}
+
+	@Test
+	public void changingThePrototypeDoesNotChangeTheTemplate() {
+		EditConfigurationTemplate template = new EditConfigurationTemplate(
+				prototype);
+		prototype.getN3Required().add("?subject ?predicate \"extra\" .");
+		prototype.getSparqlForAdditionalUrisInScope().clear();
+
+		EditConfigurationVTwo config = template.newConfiguration();
+		assertEquals(Arrays.asList(N3), config.getN3Required());
+		assertTrue(config.getSparqlForAdditionalUrisInScope().containsKey(
+				"inverseProp"));
+	}
+
+	@Test
+	public void configurationsAreIndependent() {
+		EditConfigurationTemplate template = new EditConfigurationTemplate(
+				prototype);
+		EditConfigurationVTwo first = template.newConfiguration();
+		EditConfigurationVTwo second = template.newConfiguration();
+		assertNotSame(first, second);
+
+		first.setSubjectUri("http://test.com/first");
+		first.getN3Required().clear();
+		first.addUrisOnForm("another");
+		first.addN3Optional("?objectVar ?inverseProp ?subject .");
+		first.addNewResource("newVar", null);
+		first.getSparqlForAdditionalUrisInScope().remove("inverseProp");
+		first.addValidator(new AntiXssValidation());
+
+		assertEquals(null, second.getSubjectUri());
+		assertEquals(Arrays.asList(N3), second.getN3Required());
+		assertEquals(Arrays.asList("objectVar", "another"), first.getUrisOnform());
+		assertEquals(Arrays.asList("objectVar"), second.getUrisOnform());
+		assertTrue(second.getN3Optional().isEmpty());
+		assertTrue(second.getNewResources().isEmpty());
+		assertTrue(second.getSparqlForAdditionalUrisInScope().containsKey(
+				"inverseProp"));
+		assertEquals(1, second.getValidators().size());
+		assertFalse(template.newConfiguration().getN3Required().isEmpty());
+	}
+
+	@Test
+	public void configurationsMayChangeTheirCollectionsInPlace() {
+		EditConfigurationTemplate template = new EditConfigurationTemplate(
+				prototype);
+		EditConfigurationVTwo first = template.newConfiguration();
+		EditConfigurationVTwo second = template.newConfiguration();
+		assertNotSame(first.getUrisOnform(), second.getUrisOnform());
+		assertNotSame(first.getNewResources(), second.getNewResources());
+
+		first.getUrisOnform().add("another");
+		first.getLiteralsOnForm().add("label");
+		first.getFilesOnForm().add("file");
+		first.getNewResources().put("newVar", null);
+
+		assertEquals(Arrays.asList("objectVar", "another"),
+				first.getUrisOnform());
+		assertEquals(Arrays.asList("objectVar"), second.getUrisOnform());
+		assertTrue(second.getLiteralsOnForm().isEmpty());
+		assertTrue(second.getFilesOnForm().isEmpty());
+		assertTrue(template.newConfiguration().getNewResources().isEmpty());
+	}
+}
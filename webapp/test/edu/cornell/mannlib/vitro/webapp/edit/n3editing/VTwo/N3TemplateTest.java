@@ -0,0 +1,179 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.edit.n3editing.VTwo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.hp.hpl.jena.rdf.model.Literal;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.RDFNode;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.rdf.model.ResourceFactory;
+import com.hp.hpl.jena.rdf.model.Statement;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+
+public class N3TemplateTest extends AbstractTestClass {
+	private static final String S = "http://test.com/s";
+	private static final String P = "http://test.com/p";
+	private static final String O1 = "http://test.com/o1";
+	private static final String O2 = "http://test.com/o2";
+
+	@Test
+	public void sameTextGivesSameTemplate() {
+		N3Template t1 = N3Template.compile("?s <" + P + "> ?o .");
+		N3Template t2 = N3Template.compile("?s <" + P + "> ?o .");
+		assertNotNull(t1);
+		assertSame(t1, t2);
+		assertEquals(new HashSet<String>(Arrays.asList("s", "o")),
+				t1.getVariables());
+	}
+
+	@Test
+	public void urisAndLiterals() {
+		N3Template t = N3Template.compile("?s <" + P + "> ?o ; <" + P
+				+ "2> ?label .");
+		Literal label = ResourceFactory.createLangLiteral("a \"label\"", "en");
+		Model m = t.instantiate(new N3Template.Bindings()
+				.addUris(uris("s", S, "o", O1))
+				.addMultiLiterals(literals("label", label)));
+
+		assertNotNull(m);
+		assertEquals(2, m.size());
+		assertTrue(m.contains(res(S), prop(P), res(O1)));
+		assertTrue(m.contains(res(S), prop(P + "2"), label));
+	}
+
+	@Test
+	public void severalObjectValues() {
+		N3Template t = N3Template.compile("?s <" + P + "> ?o .");
+		Model m = t.instantiate(new N3Template.Bindings().addUris(
+				uris("s", S)).addMultiUris(multiUris("o", O1, O2)));
+		assertEquals(2, m.size());
+		assertTrue(m.contains(res(S), prop(P), res(O1)));
+		assertTrue(m.contains(res(S), prop(P), res(O2)));
+	}
+
+	@Test
+	public void severalSubjectValuesProduceNothing() {
+		N3Template t = N3Template.compile("?s <" + P + "> ?o .");
+		assertNull(t.instantiate(new N3Template.Bindings().addUris(
+				uris("o", O1)).addMultiUris(multiUris("s", S, O2))));
+	}
+
+	@Test
+	public void unboundVariableProducesNothing() {
+		N3Template t = N3Template.compile("?s <" + P + "> ?o .");
+		assertNull(t.instantiate(new N3Template.Bindings().addUris(uris(
+				"s", S))));
+	}
+
+	@Test
+	public void literalSubjectProducesNothing() {
+		N3Template t = N3Template.compile("?s <" + P + "> ?o .");
+		assertNull(t.instantiate(new N3Template.Bindings().addUris(
+				uris("o", O1)).addMultiLiterals(
+				literals("s", ResourceFactory.createPlainLiteral("x")))));
+	}
+
+	@Test
+	public void blankNodesAreNewEachTime() {
+		N3Template t = N3Template.compile("?s <" + P + "> [ <" + P
+				+ "> ?o ] .");
+		N3Template.Bindings b = new N3Template.Bindings().addUris(uris("s",
+				S, "o", O1));
+		Statement first = t.instantiate(b).listStatements(res(S), prop(P),
+				(RDFNode) null).next();
+		Statement second = t.instantiate(b).listStatements(res(S), prop(P),
+				(RDFNode) null).next();
+		assertTrue(first.getObject().isAnon());
+		assertFalse(first.getObject().equals(second.getObject()));
+	}
+
+	@Test
+	public void variableInLiteralCantBeCompiled() {
+		assertNull(N3Template.compile("?s <" + P + "> \"about ?o\" ."));
+	}
+
+	@Test
+	public void variableInListCantBeCompiled() {
+		assertNull(N3Template.compile("?s <" + P + "> ( ?o ) ."));
+	}
+
+	@Test
+	public void partOfAVariableNameIsNotCompatible() {
+		N3Template t = N3Template.compile("?s <" + P + "> ?s_label .");
+		assertTrue(t.isCompatibleWith(new HashSet<String>(Arrays.asList(
+				"s_label", "other"))));
+		assertFalse(t.isCompatibleWith(Collections.singleton("s")));
+	}
+
+	@Test
+	public void earlierValuesTakePrecedence() {
+		N3Template t = N3Template.compile("?s <" + P + "> ?o .");
+		Model m = t.instantiate(new N3Template.Bindings()
+				.addUris(uris("s", S, "o", O1))
+				.addUris(uris("o", O2)));
+		assertEquals(1, m.size());
+		assertTrue(m.contains(res(S), prop(P), res(O1)));
+	}
+
+	@Test
+	public void relativeUriIsNotUsable() {
+		assertTrue(new N3Template.Bindings().addUris(uris("s", S))
+				.isUsable());
+		assertFalse(new N3Template.Bindings().addUris(uris("s", "relative"))
+				.isUsable());
+		assertFalse(new N3Template.Bindings().addUris(
+				uris("s", "http://test.com/has space")).isUsable());
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper methods
+	// ----------------------------------------------------------------------
+
+	private static Map<String, String> uris(String... pairs) {
+		Map<String, String> map = new HashMap<String, String>();
+		for (int i = 0; i < pairs.length; i += 2) {
+			map.put(pairs[i], pairs[i + 1]);
+		}
+		return map;
+	}
+
+	private static Map<String, List<String>> multiUris(String var,
+			String... values) {
+		Map<String, List<String>> map = new HashMap<String, List<String>>();
+		map.put(var, Arrays.asList(values));
+		return map;
+	}
+
+	private static Map<String, List<Literal>> literals(String var,
+			Literal... values) {
+		Map<String, List<Literal>> map = new HashMap<String, List<Literal>>();
+		map.put(var, Arrays.asList(values));
+		return map;
+	}
+
+	private static Resource res(String uri) {
+		return ResourceFactory.createResource(uri);
+	}
+
+	private static Property prop(String uri) {
+		return ResourceFactory.createProperty(uri);
+	}
+}
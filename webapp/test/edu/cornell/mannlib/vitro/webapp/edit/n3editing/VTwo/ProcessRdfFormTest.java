@@ -382,6 +382,44 @@ public class ProcessRdfFormTest extends AbstractTestClass{
     }
     
     
+    /* The compiled N3 templates give the same changes as substituting into the text. */
+    @Test
+    public void templatesMatchTextSubstitution() throws Exception{
+        String rdfsLabel = "http://www.w3.org/2000/01/rdf-schema#label";
+        
+        EditConfigurationVTwo config = new EditConfigurationVTwo();
+        config.setEditKey("mockEditKey");
+        config.setN3Required(Arrays.asList("?newRes ?test2 ?test3 ." ));
+        config.setN3Optional(Arrays.asList(
+                "?newRes <" + rdfsLabel + "> ?label .",
+                "?newRes <" + rdfsLabel + "> ?missing ."));
+        config.setUrisOnform(Arrays.asList("test2", "test3"));
+        config.setLiteralsOnForm(Arrays.asList("label"));
+        config.addField(new FieldVTwo().setName("label"));
+        config.addNewResource("newRes", null);
+        
+        Map<String,String[]> values = new HashMap<String, String[]>();
+        values.put("test2", (new String[] {"http://test.com/uri2"}));
+        values.put("test3", (new String[] {"http://test.com/uri3", "http://test.com/uri4"}));
+        values.put("label", (new String[] {"A \"quoted\" label"}));
+        values.put("editKey", (new String[] {"mockEditKey"}));
+        MultiValueEditSubmission submission = new MultiValueEditSubmission(values, config);
+        
+        ProcessRdfForm processor = new ProcessRdfForm(config,getMockNewURIMaker());
+        AdditionsAndRetractions fromTemplates = processor.instantiateN3Templates(
+                config, submission, processor.URIsForNewRsources(config, getMockNewURIMaker()), false);
+        assertNotNull(fromTemplates);
+        
+        List<String>req = config.getN3Required();
+        List<String>opt = config.getN3Optional();
+        processor.subInValuesToN3( config , submission, req, opt, null , null);
+        AdditionsAndRetractions fromText = processor.parseN3ToChange(req, opt, null, null);
+        
+        assertEquals(3, fromText.getAdditions().size());
+        assertTrue(fromText.getAdditions().isIsomorphicWith(fromTemplates.getAdditions()));
+        assertTrue(fromTemplates.getRetractions().isEmpty());
+    }
+    
     String NEWURI_STRING= "http://newURI/n";
     
     public NewURIMaker getMockNewURIMaker(){
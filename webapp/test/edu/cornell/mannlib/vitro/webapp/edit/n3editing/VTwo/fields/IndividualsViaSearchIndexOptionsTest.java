@@ -0,0 +1,180 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.edit.n3editing.VTwo.fields;
+
+import static edu.cornell.mannlib.vitro.webapp.search.VitroSearchTermNames.AC_NAME_UNTOKENIZED;
+import static edu.cornell.mannlib.vitro.webapp.search.VitroSearchTermNames.MOST_SPECIFIC_TYPE_URIS;
+import static edu.cornell.mannlib.vitro.webapp.search.VitroSearchTermNames.NAME_LOWERCASE_SINGLE_VALUED;
+import static edu.cornell.mannlib.vitro.webapp.search.VitroSearchTermNames.NAME_RAW;
+import static edu.cornell.mannlib.vitro.webapp.search.VitroSearchTermNames.RDFTYPE;
+import static edu.cornell.mannlib.vitro.webapp.search.VitroSearchTermNames.URI;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import stubs.edu.cornell.mannlib.vitro.webapp.modules.ApplicationStub;
+import stubs.edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngineStub;
+import stubs.javax.servlet.ServletContextStub;
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngineException;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchFacetField;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchQuery;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchResponse;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchResultDocument;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchResultDocumentList;
+import edu.cornell.mannlib.vitro.webapp.searchengine.base.BaseSearchResponse;
+import edu.cornell.mannlib.vitro.webapp.searchengine.base.BaseSearchResultDocument;
+
+public class IndividualsViaSearchIndexOptionsTest extends AbstractTestClass {
+	private static final String NS = "http://test/";
+	private static final String PERSON = NS + "Person";
+	private static final String ORGANIZATION = NS + "Organization";
+
+	private NameSearchEngine engine;
+
+	@Before
+	public void setup() {
+		engine = new NameSearchEngine();
+		ApplicationStub.setup(new ServletContextStub(), engine);
+	}
+
+	@Test
+	public void pageIsSortedByName() throws Exception {
+		engine.setNames("Adams", "Baker");
+		IndividualsViaSearchIndexOptions options = new IndividualsViaSearchIndexOptions(
+				PERSON);
+		Map<String, String> page = options.getPage(null, 20, 10)
+				.getOptions();
+
+		assertEquals(Arrays.asList("Adams", "Baker"),
+				new ArrayList<>(page.values()));
+		assertEquals(RDFTYPE + ":\"" + PERSON + "\"",
+				engine.lastQuery.getQuery());
+		assertEquals(20, engine.lastQuery.getStart());
+		assertEquals(10, engine.lastQuery.getRows());
+		assertEquals(Collections.singleton(NAME_LOWERCASE_SINGLE_VALUED),
+				engine.lastQuery.getSortFields().keySet());
+		assertEquals(Collections.<String> emptySet(),
+				engine.lastQuery.getFilters());
+	}
+
+	@Test
+	public void pageIsFilteredByNamePrefix() throws Exception {
+		IndividualsViaSearchIndexOptions options = new IndividualsViaSearchIndexOptions(
+				PERSON, ORGANIZATION);
+		options.getPage(" Van \"Der ", 0, 10);
+
+		assertEquals(RDFTYPE + ":\"" + PERSON + "\" OR " + RDFTYPE + ":\""
+				+ ORGANIZATION + "\"", engine.lastQuery.getQuery());
+		assertEquals(Collections.singleton(AC_NAME_UNTOKENIZED
+				+ ":\"Van\\ \\\"Der\""), engine.lastQuery.getFilters());
+	}
+
+	@Test
+	public void typesMayBeFoundInAnotherField() throws Exception {
+		engine.setNumFound(1234);
+		IndividualsViaSearchIndexOptions options = new IndividualsViaSearchIndexOptions(
+				PERSON).setTypeField(MOST_SPECIFIC_TYPE_URIS);
+
+		assertEquals(1234, options.countIndividuals());
+		assertEquals(MOST_SPECIFIC_TYPE_URIS + ":\"" + PERSON + "\"",
+				engine.lastQuery.getQuery());
+		assertEquals(0, engine.lastQuery.getRows());
+	}
+
+	@Test
+	public void optionsStartWithTheDefaultLabel() throws Exception {
+		engine.setNames("Adams");
+		Map<String, String> options = new IndividualsViaSearchIndexOptions(
+				PERSON).setDefaultOptionLabel("Select one").getOptions(null,
+				"objectVar", null);
+
+		assertEquals(Arrays.asList("Select one", "Adams"), new ArrayList<>(
+				options.values()));
+		assertEquals(IndividualsViaSearchIndexOptions.DEFAULT_PAGE_SIZE,
+				engine.lastQuery.getRows());
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper classes
+	// ----------------------------------------------------------------------
+
+	/**
+	 * Answers every query with the same documents, each with a URI and a name,
+	 * and remembers the query.
+	 */
+	static class NameSearchEngine extends SearchEngineStub {
+		private final List<SearchResultDocument> docs = new ArrayList<>();
+		private long numFound;
+		final List<SearchQuery> queries = new ArrayList<>();
+		SearchQuery lastQuery;
+
+		void setNames(String... names) {
+			docs.clear();
+			for (String name : names) {
+				Map<String, Collection<Object>> fields = new HashMap<>();
+				fields.put(URI, Collections.<Object> singleton(NS + name));
+				fields.put(NAME_RAW, Collections.<Object> singleton(name));
+				docs.add(new BaseSearchResultDocument(NS + name, fields));
+			}
+			numFound = names.length;
+		}
+
+		void setNumFound(long numFound) {
+			this.numFound = numFound;
+		}
+
+		@Override
+		public SearchResponse query(SearchQuery query)
+				throws SearchEngineException {
+			queries.add(query);
+			lastQuery = query;
+			List<SearchResultDocument> page = (query.getRows() == 0) ? Collections
+					.<SearchResultDocument> emptyList() : docs;
+			return new BaseSearchResponse(
+					Collections.<String, Map<String, List<String>>> emptyMap(),
+					Collections.<String, SearchFacetField> emptyMap(),
+					new ListOfDocuments(page, numFound));
+		}
+	}
+
+	private static class ListOfDocuments implements SearchResultDocumentList {
+		private final List<SearchResultDocument> docs;
+		private final long numFound;
+
+		ListOfDocuments(List<SearchResultDocument> docs, long numFound) {
+			this.docs = docs;
+			this.numFound = numFound;
+		}
+
+		@Override
+		public Iterator<SearchResultDocument> iterator() {
+			return docs.iterator();
+		}
+
+		@Override
+		public long getNumFound() {
+			return numFound;
+		}
+
+		@Override
+		public int size() {
+			return docs.size();
+		}
+
+		@Override
+		public SearchResultDocument get(int i) {
+			return docs.get(i);
+		}
+	}
+}
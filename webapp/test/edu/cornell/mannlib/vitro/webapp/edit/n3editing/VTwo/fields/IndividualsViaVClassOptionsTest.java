@@ -0,0 +1,140 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.edit.n3editing.VTwo.fields;
+
+import static edu.cornell.mannlib.vitro.webapp.search.VitroSearchTermNames.MOST_SPECIFIC_TYPE_URIS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import stubs.edu.cornell.mannlib.vitro.webapp.dao.IndividualDaoStub;
+import stubs.edu.cornell.mannlib.vitro.webapp.dao.WebappDaoFactoryStub;
+import stubs.edu.cornell.mannlib.vitro.webapp.modules.ApplicationStub;
+import stubs.javax.servlet.ServletContextStub;
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.beans.Individual;
+import edu.cornell.mannlib.vitro.webapp.beans.IndividualImpl;
+import edu.cornell.mannlib.vitro.webapp.beans.ObjectPropertyStatement;
+import edu.cornell.mannlib.vitro.webapp.dao.WebappDaoFactory;
+import edu.cornell.mannlib.vitro.webapp.edit.n3editing.VTwo.fields.IndividualsViaSearchIndexOptionsTest.NameSearchEngine;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchQuery;
+
+public class IndividualsViaVClassOptionsTest extends AbstractTestClass {
+	private static final String NS = "http://test/";
+	private static final String PERSON = NS + "Person";
+
+	private NameSearchEngine engine;
+	private ModelBackedOptions options;
+
+	@Before
+	public void setup() throws Exception {
+		engine = new NameSearchEngine();
+		ApplicationStub.setup(new ServletContextStub(), engine);
+
+		options = new ModelBackedOptions(PERSON);
+		options.setDefaultOptionLabel("Select one");
+		options.setMaxOptions(2);
+	}
+
+	@Test
+	public void fewIndividualsAreReadFromTheModel() throws Exception {
+		engine.setNumFound(2);
+		Map<String, String> result = options.getOptions(null, "objectVar",
+				null);
+
+		assertTrue("read the model", options.readTheModel);
+		assertEquals("Model person", result.get(NS + "fromModel"));
+	}
+
+	@Test
+	public void tooManyIndividualsListTheFirstByNameFromTheIndex()
+			throws Exception {
+		engine.setNames("Adams", "Baker");
+		engine.setNumFound(500000);
+		Map<String, String> result = options.getOptions(null, "objectVar",
+				null);
+
+		assertFalse("read the model", options.readTheModel);
+		assertEquals(Arrays.asList("Select one", "Adams", "Baker"),
+				new ArrayList<>(result.values()));
+		assertEquals(2, engine.lastQuery.getRows());
+	}
+
+	@Test
+	public void noLimitMeansTheIndexIsNotAsked() throws Exception {
+		options.setMaxOptions(0);
+		options.getOptions(null, "objectVar", null);
+
+		assertTrue("read the model", options.readTheModel);
+		assertNull(engine.lastQuery);
+	}
+
+	@Test
+	public void countUsesTheSameTypeFieldAsTheList() throws Exception {
+		engine.setNames("Adams");
+		IndividualsViaSearchQueryOptions byMostSpecificType = new IndividualsViaSearchQueryOptions(
+				NS + "subject", NS + "predicate", null, PERSON);
+		byMostSpecificType.setMaxOptions(2);
+		Map<String, String> result = byMostSpecificType.getOptions(null,
+				"objectVar", daoFactory("subject", "Adams"));
+
+		assertEquals(Collections.singletonMap(NS + "Adams", "Adams"), result);
+		assertEquals("count and list", 2, engine.queries.size());
+		for (SearchQuery query : engine.queries) {
+			assertTrue(query.getQuery(),
+					query.getQuery().startsWith(MOST_SPECIFIC_TYPE_URIS + ":"));
+		}
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper methods
+	// ----------------------------------------------------------------------
+
+	private WebappDaoFactory daoFactory(String... localNames) {
+		IndividualDaoStub individualDao = new IndividualDaoStub();
+		for (String localName : localNames) {
+			IndividualImpl ind = new IndividualImpl(NS + localName);
+			ind.setName(localName);
+			ind.setObjectPropertyStatements(Collections
+					.<ObjectPropertyStatement> emptyList());
+			individualDao.addIndividual(ind);
+		}
+		WebappDaoFactoryStub wadf = new WebappDaoFactoryStub();
+		wadf.setIndividualDao(individualDao);
+		return wadf;
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper classes
+	// ----------------------------------------------------------------------
+
+	/** Pretends to read one individual from the model. */
+	private static class ModelBackedOptions extends IndividualsViaVClassOptions {
+		boolean readTheModel;
+
+		ModelBackedOptions(String... vclassURIs) throws Exception {
+			super(vclassURIs);
+		}
+
+		@Override
+		protected Map<String, Individual> getIndividualsForClass(
+				String vclassURI, WebappDaoFactory wDaoFact) {
+			readTheModel = true;
+			Individual ind = new IndividualImpl(NS + "fromModel");
+			ind.setName("Model person");
+			Map<String, Individual> map = new HashMap<>();
+			map.put(ind.getURI(), ind);
+			return map;
+		}
+	}
+}
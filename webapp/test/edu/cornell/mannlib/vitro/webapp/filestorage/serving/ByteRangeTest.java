@@ -0,0 +1,63 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.filestorage.serving;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+
+public class ByteRangeTest extends AbstractTestClass {
+	private static final long LENGTH = 1000;
+
+	@Test
+	public void noHeaderMeansTheWholeFile() {
+		assertNull(ByteRange.parse(null, LENGTH));
+		assertNull(ByteRange.parse("items=0-10", LENGTH));
+	}
+
+	@Test
+	public void explicitRange() {
+		assertRange(ByteRange.parse("bytes=100-199", LENGTH), 100, 199);
+	}
+
+	@Test
+	public void openEndedRange() {
+		assertRange(ByteRange.parse("bytes=900-", LENGTH), 900, 999);
+	}
+
+	@Test
+	public void endIsLimitedToTheFile() {
+		assertRange(ByteRange.parse("bytes=900-5000", LENGTH), 900, 999);
+	}
+
+	@Test
+	public void suffixRange() {
+		assertRange(ByteRange.parse("bytes=-100", LENGTH), 900, 999);
+		assertRange(ByteRange.parse("bytes=-5000", LENGTH), 0, 999);
+	}
+
+	@Test
+	public void rangeBeyondTheFileIsUnsatisfiable() {
+		assertSame(ByteRange.UNSATISFIABLE,
+				ByteRange.parse("bytes=1000-1100", LENGTH));
+		assertSame(ByteRange.UNSATISFIABLE,
+				ByteRange.parse("bytes=-0", LENGTH));
+	}
+
+	@Test
+	public void multipleOrMalformedRangesMeanTheWholeFile() {
+		assertNull(ByteRange.parse("bytes=0-10,20-30", LENGTH));
+		assertNull(ByteRange.parse("bytes=abc-", LENGTH));
+		assertNull(ByteRange.parse("bytes=200-100", LENGTH));
+	}
+
+	private void assertRange(ByteRange range, long start, long end) {
+		assertEquals("start", start, range.getStart());
+		assertEquals("end", end, range.getEnd());
+		assertEquals("length", end - start + 1, range.getLength());
+	}
+}
@@ -0,0 +1,85 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.filestorage.serving;
+
+import static edu.cornell.mannlib.vitro.webapp.modelaccess.ModelNames.ABOX_ASSERTIONS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.filestorage.model.FileInfo;
+
+public class FileInfoCacheTest extends AbstractTestClass {
+	private static final String NS = "http://test/individual/";
+
+	private FileInfoCache cache;
+
+	@Before
+	public void setup() {
+		cache = new FileInfoCache(2);
+	}
+
+	@Test
+	public void changeToTheBytestreamDiscardsTheEntry() {
+		FileInfo info = fileInfo("1");
+		cache.put("/file/b1/one.jpg", info, cache.getTicket());
+		assertSame(info, cache.get("/file/b1/one.jpg"));
+
+		cache.addedStatement("<" + NS + "other> <" + NS + "p> \"x\" .",
+				ABOX_ASSERTIONS);
+		assertSame(info, cache.get("/file/b1/one.jpg"));
+
+		cache.removedStatement("<" + NS + "b1> <" + NS + "aliasUrl> \"x\" .",
+				ABOX_ASSERTIONS);
+		assertNull(cache.get("/file/b1/one.jpg"));
+	}
+
+	@Test
+	public void changeToTheSurrogateDiscardsTheEntry() {
+		cache.put("/file/b1/one.jpg", fileInfo("1"), cache.getTicket());
+		cache.addedStatement("<" + NS + "other> <" + NS + "p> <" + NS
+				+ "f1> .", ABOX_ASSERTIONS);
+		assertNull(cache.get("/file/b1/one.jpg"));
+	}
+
+	@Test
+	public void lookupDuringAChangeToTheFileIsNotStored() {
+		long ticket = cache.getTicket();
+		cache.addedStatement("<" + NS + "f1> <" + NS + "p> \"x\" .",
+				ABOX_ASSERTIONS);
+		cache.put("/file/b1/one.jpg", fileInfo("1"), ticket);
+		assertNull(cache.get("/file/b1/one.jpg"));
+	}
+
+	@Test
+	public void lookupDuringAnUnrelatedChangeIsStored() {
+		long ticket = cache.getTicket();
+		cache.addedStatement("<" + NS + "other> <" + NS + "p> \"x\" .",
+				ABOX_ASSERTIONS);
+		cache.put("/file/b1/one.jpg", fileInfo("1"), ticket);
+		assertEquals(NS + "f1", cache.get("/file/b1/one.jpg").getUri());
+	}
+
+	@Test
+	public void leastRecentlyUsedIsDiscarded() {
+		cache.put("one", fileInfo("1"), cache.getTicket());
+		cache.put("two", fileInfo("2"), cache.getTicket());
+		cache.get("one");
+		cache.put("three", fileInfo("3"), cache.getTicket());
+
+		assertEquals(2, cache.size());
+		assertNull(cache.get("two"));
+		assertEquals(NS + "f1", cache.get("one").getUri());
+	}
+
+	private FileInfo fileInfo(String id) {
+		return new FileInfo.Builder().setUri(NS + "f" + id)
+				.setBytestreamUri(NS + "b" + id).setFilename("file.jpg")
+				.setMimeType("image/jpeg")
+				.setBytestreamAliasUrl("/file/b" + id + "/file.jpg").build();
+	}
+}
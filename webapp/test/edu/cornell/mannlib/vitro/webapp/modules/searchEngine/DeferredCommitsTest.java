@@ -0,0 +1,78 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.modules.searchEngine;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import stubs.edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngineStub;
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+
+/**
+ * A search engine that doesn't implement DeferredCommitSearchEngine still gets
+ * its changes committed.
+ */
+public class DeferredCommitsTest extends AbstractTestClass {
+	private RecordingSearchEngine engine;
+
+	@Before
+	public void setup() {
+		engine = new RecordingSearchEngine();
+	}
+
+	@Test
+	public void plainEngineCommitsWhenACommitIsAskedFor()
+			throws SearchEngineException {
+		DeferredCommits.deleteById(engine, Arrays.asList("a", "b"), 5000);
+		assertEquals(Arrays.asList("deleteById", "commit(false)"), engine.calls);
+	}
+
+	@Test
+	public void plainEngineDoesNotCommitWhenNoCommitIsAskedFor()
+			throws SearchEngineException {
+		DeferredCommits.deleteByQuery(engine, "*:*", -1);
+		assertEquals(Arrays.asList("deleteByQuery"), engine.calls);
+	}
+
+	@Test
+	public void plainEngineMakesAFullCommitInsteadOfASoftOne()
+			throws SearchEngineException {
+		DeferredCommits.softCommit(engine);
+		assertEquals(Arrays.asList("commit"), engine.calls);
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper classes
+	// ----------------------------------------------------------------------
+
+	private static class RecordingSearchEngine extends SearchEngineStub {
+		final List<String> calls = new ArrayList<>();
+
+		@Override
+		public void deleteById(Collection<String> ids) {
+			calls.add("deleteById");
+		}
+
+		@Override
+		public void deleteByQuery(String query) {
+			calls.add("deleteByQuery");
+		}
+
+		@Override
+		public void commit() {
+			calls.add("commit");
+		}
+
+		@Override
+		public void commit(boolean wait) {
+			calls.add("commit(" + wait + ")");
+		}
+	}
+}
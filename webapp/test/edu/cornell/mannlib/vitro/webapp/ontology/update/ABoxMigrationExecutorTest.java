@@ -0,0 +1,225 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.ontology.update;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.query.Dataset;
+import com.hp.hpl.jena.query.DatasetFactory;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.vocabulary.RDF;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.jena.model.RDFServiceModel;
+
+public class ABoxMigrationExecutorTest extends AbstractTestClass {
+	private static final String NS = "http://test/";
+	private static final String GRAPH1 = NS + "abox1";
+	private static final String GRAPH2 = NS + "abox2";
+	private static final String TBOX = NS + "tbox";
+
+	private static final Resource OLD_CLASS = resource("OldClass");
+	private static final Resource NEW_CLASS = resource("NewClass");
+	private static final Property OLD_PROP = property("oldProp");
+	private static final Property NEW_PROP = property("newProp");
+	private static final Property INVERSE_PROP = property("inverseProp");
+
+	private Dataset dataset;
+	private Model graph1;
+	private Model graph2;
+	private Model tbox;
+	private RecordingChangeRecord record;
+	private ABoxMigrationExecutor executor;
+
+	@Before
+	public void setup() {
+		dataset = DatasetFactory.createMem();
+		dataset.addNamedModel(GRAPH1, ModelFactory.createDefaultModel());
+		dataset.addNamedModel(GRAPH2, ModelFactory.createDefaultModel());
+		dataset.addNamedModel(TBOX, ModelFactory.createDefaultModel());
+		graph1 = dataset.getNamedModel(GRAPH1);
+		graph2 = dataset.getNamedModel(GRAPH2);
+		tbox = dataset.getNamedModel(TBOX);
+
+		record = new RecordingChangeRecord();
+		executor = new ABoxMigrationExecutor(new RDFServiceModel(dataset),
+				dataset, record);
+		executor.setChunkSize(2);
+	}
+
+	@After
+	public void shutdown() {
+		executor.close();
+	}
+
+	@Test
+	public void onlyUpdatableGraphs() {
+		assertEquals(new HashSet<>(Arrays.asList(GRAPH1, GRAPH2)),
+				new HashSet<>(executor.getUpdatableGraphs()));
+	}
+
+	@Test
+	public void retypeInChunksInEachGraph() {
+		for (int i = 0; i < 5; i++) {
+			graph1.add(resource("ind" + i), RDF.type, OLD_CLASS);
+		}
+		graph2.add(resource("other"), RDF.type, OLD_CLASS);
+		tbox.add(resource("tboxInd"), RDF.type, OLD_CLASS);
+
+		Map<String, Long> counts = executor.replace(null, RDF.type.asNode(),
+				node(OLD_CLASS), ABoxMigrationExecutor.newObject(node(NEW_CLASS)));
+
+		assertEquals("graph order", executor.getUpdatableGraphs(),
+				new ArrayList<>(counts.keySet()));
+		assertEquals(Long.valueOf(5), counts.get(GRAPH1));
+		assertEquals(Long.valueOf(1), counts.get(GRAPH2));
+		assertEquals(5, graph1.listStatements(null, RDF.type, NEW_CLASS)
+				.toList().size());
+		assertFalse(graph1.contains(null, RDF.type, OLD_CLASS));
+		assertTrue(graph2.contains(resource("other"), RDF.type, NEW_CLASS));
+		assertTrue("tbox untouched",
+				tbox.contains(resource("tboxInd"), RDF.type, OLD_CLASS));
+
+		assertEquals(6, record.retractions.size());
+		assertEquals(6, record.additions.size());
+	}
+
+	@Test
+	public void renamePredicateIncludingBlankNodes() {
+		Resource blank = graph1.createResource();
+		graph1.add(resource("a"), OLD_PROP, "literal");
+		graph1.add(blank, OLD_PROP, resource("b"));
+		graph1.add(resource("c"), OLD_PROP, blank);
+
+		Map<String, Long> counts = executor.replace(null, node(OLD_PROP),
+				null, ABoxMigrationExecutor.newPredicate(node(NEW_PROP)));
+
+		assertEquals(Long.valueOf(3), counts.get(GRAPH1));
+		assertFalse(graph1.contains(null, OLD_PROP));
+		assertEquals(3, graph1.listStatements(null, NEW_PROP, (String) null)
+				.toList().size());
+	}
+
+	@Test
+	public void renameToItselfStops() {
+		graph1.add(resource("a"), OLD_PROP, resource("b"));
+
+		executor.replace(null, node(OLD_PROP), null,
+				ABoxMigrationExecutor.newPredicate(node(OLD_PROP)));
+
+		assertTrue(graph1.contains(resource("a"), OLD_PROP, resource("b")));
+	}
+
+	@Test
+	public void addInversesSkipsLiteralsAndExistingInverses() {
+		graph1.add(resource("a"), INVERSE_PROP, resource("b"));
+		graph1.add(resource("c"), INVERSE_PROP, resource("d"));
+		graph1.add(resource("e"), INVERSE_PROP, resource("f"));
+		graph1.add(resource("f"), NEW_PROP, resource("e"));
+		graph1.add(resource("g"), INVERSE_PROP, "literal");
+
+		Map<String, Long> counts = executor.addInverses(node(NEW_PROP),
+				node(INVERSE_PROP));
+
+		assertEquals(Long.valueOf(2), counts.get(GRAPH1));
+		assertTrue(graph1.contains(resource("b"), NEW_PROP, resource("a")));
+		assertTrue(graph1.contains(resource("d"), NEW_PROP, resource("c")));
+		assertEquals(1, executor.findLiteralObjects(GRAPH1, node(INVERSE_PROP))
+				.size());
+		assertEquals(2, record.additions.size());
+	}
+
+	@Test
+	public void deleteIndividualsFromEveryGraph() {
+		for (int i = 0; i < 3; i++) {
+			Resource ind = resource("ind" + i);
+			graph1.add(ind, RDF.type, OLD_CLASS);
+			graph1.add(ind, OLD_PROP, "label" + i);
+			graph2.add(resource("ref" + i), OLD_PROP, ind);
+		}
+		graph1.add(resource("keep"), RDF.type, NEW_CLASS);
+
+		long[] counts = executor.deleteIndividualsOfType(GRAPH1,
+				node(OLD_CLASS));
+
+		assertEquals("individuals", 3, counts[0]);
+		assertEquals("references", 3, counts[1]);
+		assertEquals(1, graph1.size());
+		assertTrue(graph2.isEmpty());
+		assertEquals(9, record.retractions.size());
+	}
+
+	@Test
+	public void changesShareTheThreadsUntilClosed() {
+		graph1.add(resource("ind"), RDF.type, OLD_CLASS);
+		for (int i = 0; i < 3; i++) {
+			assertEquals(Long.valueOf(1),
+					executor.count(null, RDF.type.asNode(), node(OLD_CLASS))
+							.get(GRAPH1));
+		}
+		executor.close();
+		try {
+			executor.count(null, RDF.type.asNode(), node(OLD_CLASS));
+			fail("closed executor should refuse work");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper methods and classes
+	// ----------------------------------------------------------------------
+
+	private static Resource resource(String localName) {
+		return ModelFactory.createDefaultModel().createResource(NS + localName);
+	}
+
+	private static Property property(String localName) {
+		return ModelFactory.createDefaultModel().createProperty(NS + localName);
+	}
+
+	private static Node node(Resource r) {
+		return r.asNode();
+	}
+
+	private static class RecordingChangeRecord implements ChangeRecord {
+		final Model additions = ModelFactory.createDefaultModel();
+		final Model retractions = ModelFactory.createDefaultModel();
+
+		@Override
+		public void recordAdditions(Model incrementalAdditions) {
+			additions.add(incrementalAdditions);
+		}
+
+		@Override
+		public void recordRetractions(Model incrementalRetractions) {
+			retractions.add(incrementalRetractions);
+		}
+
+		@Override
+		public void writeChanges() {
+			// nothing to write
+		}
+
+		@Override
+		public boolean hasRecordedChanges() {
+			return !additions.isEmpty() || !retractions.isEmpty();
+		}
+	}
+}
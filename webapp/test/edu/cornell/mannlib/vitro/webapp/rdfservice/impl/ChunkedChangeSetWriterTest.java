@@ -0,0 +1,277 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.rdfservice.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Level;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.hp.hpl.jena.query.Dataset;
+import com.hp.hpl.jena.query.DatasetFactory;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.RDFNode;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.shared.JenaException;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeSet;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ModelChange;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.ChunkedChangeSetWriter.Operation;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.jena.model.RDFServiceModel;
+
+public class ChunkedChangeSetWriterTest extends AbstractTestClass {
+	private static final String GRAPH = "http://test/graph";
+	private static final String NS = "http://test/";
+	private static final String BEGIN = "begin";
+	private static final String END = "end";
+
+	private Dataset dataset;
+	private RecordingRDFService rdfService;
+	private ChunkedChangeSetWriter writer;
+
+	@Before
+	public void setup() {
+		setLoggerLevel(ChunkedChangeSetWriter.class, Level.OFF);
+		dataset = DatasetFactory.createMem();
+		rdfService = new RecordingRDFService(dataset);
+		writer = new ChunkedChangeSetWriter(rdfService, GRAPH, Operation.ADD)
+				.setChunkSize(2).setEvents(BEGIN, END);
+	}
+
+	@Test
+	public void readsInChunksBetweenEvents() throws Exception {
+		long count = writer.read(ntriples(5), null, "N-TRIPLE");
+
+		assertEquals(5, count);
+		assertEquals(5, graph().size());
+		assertEquals("change sets", 3, rdfService.changeSets.size());
+		assertEquals("pre-events", list(BEGIN), rdfService.preEvents);
+		assertEquals("post-events", list(END), rdfService.postEvents);
+		assertEquals(list(BEGIN), rdfService.changeSets.get(0)
+				.getPreChangeEvents());
+		assertEquals(list(END), rdfService.changeSets.get(2)
+				.getPostChangeEvents());
+	}
+
+	@Test
+	public void blankNodesStayTogether() throws Exception {
+		String n3 = "@prefix t: <" + NS + "> . "
+				+ "t:a t:p [ t:q \"one\" ; t:q \"two\" ] . "
+				+ "t:b t:p t:c . t:d t:p t:e . t:f t:p t:g . ";
+		writer.read(source(n3), null, "N3");
+
+		Model graph = graph();
+		assertEquals(6, graph.size());
+		Resource blank = graph.getProperty(resource("a"), property("p"))
+				.getResource();
+		assertTrue(blank.isAnon());
+		assertEquals(2, graph.listStatements(blank, property("q"),
+				(String) null).toList().size());
+	}
+
+	@Test
+	public void blankNodeGroupIsWrittenWhenComplete() throws Exception {
+		String n3 = "@prefix t: <" + NS + "> . "
+				+ "t:a t:p [ t:q \"one\" ; t:q [ t:r \"two\" ] ] . "
+				+ "t:b t:p t:c . t:d t:p t:e . t:f t:p t:g . t:h t:p t:i . ";
+		writer.read(source(n3), null, "N3");
+
+		assertEquals(8, graph().size());
+		assertEquals("blank node group", 4, size(rdfService.changeSets.get(0)));
+		Resource blank = graph().getProperty(resource("a"), property("p"))
+				.getResource();
+		assertEquals(2, graph().listStatements(blank, property("q"),
+				(RDFNode) null).toList().size());
+	}
+
+	@Test
+	public void emptyStreamStillSendsBothEvents() throws Exception {
+		writer.read(source(""), null, "N-TRIPLE");
+
+		assertEquals(1, rdfService.changeSets.size());
+		assertEquals(list(BEGIN), rdfService.preEvents);
+		assertEquals(list(END), rdfService.postEvents);
+	}
+
+	@Test
+	public void parseErrorWritesNothing() throws Exception {
+		String text = "<http://test/a> <http://test/p> <http://test/b> .\n"
+				+ "<http://test/c> <http://test/p> <http://test/d> .\n"
+				+ "<http://test/e> <http://test/p> <http://test/f> .\n"
+				+ "this is not RDF\n";
+		try {
+			writer.read(source(text), null, "N-TRIPLE");
+			fail("Expected a parse error");
+		} catch (JenaException e) {
+			// expected
+		}
+		assertEquals(0, graph().size());
+		assertEquals(0, rdfService.changeSets.size());
+	}
+
+	@Test
+	public void writeFailureSendsEndEventAndSaysWhatWasWritten()
+			throws Exception {
+		rdfService.failAfter = 1;
+		try {
+			writer.read(ntriples(5), null, "N-TRIPLE");
+			fail("Expected the write to fail");
+		} catch (RuntimeException e) {
+			assertTrue(e.getMessage(),
+					e.getMessage().contains("after 2 triple(s)"));
+		}
+		assertEquals(2, graph().size());
+		assertEquals(list(BEGIN), rdfService.preEvents);
+		assertEquals(list(END), rdfService.postEvents);
+	}
+
+	@Test
+	public void streamIsReadOnlyOnce() throws Exception {
+		String text = "<http://test/a> <http://test/p> _:b1 .\n"
+				+ "_:b1 <http://test/q> \"one\" .\n";
+		long count = writer.read(new ByteArrayInputStream(text.getBytes()),
+				null, "N-TRIPLE");
+
+		assertEquals(2, count);
+		assertEquals(2, graph().size());
+	}
+
+	@Test
+	public void sourceThatChangesIsAnError() throws Exception {
+		final String first = "<http://test/a> <http://test/p> _:b1 .\n"
+				+ "_:b1 <http://test/q> \"one\" .\n";
+		final String second = "<http://test/a> <http://test/p> _:b1 .\n";
+		ChunkedChangeSetWriter.Source changing = new ChunkedChangeSetWriter.Source() {
+			private int reads;
+
+			@Override
+			public InputStream openStream() {
+				String text = (reads++ == 0) ? first : second;
+				return new ByteArrayInputStream(text.getBytes());
+			}
+		};
+		try {
+			writer.read(changing, null, "N-TRIPLE");
+			fail("Expected the change to be noticed");
+		} catch (IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("changed"));
+		}
+		assertEquals(0, graph().size());
+		assertEquals(0, rdfService.changeSets.size());
+	}
+
+	@Test
+	public void removesAModelInChunks() throws Exception {
+		writer.read(ntriples(5), null, "N-TRIPLE");
+		Model toRemove = ModelFactory.createDefaultModel();
+		toRemove.add(resource("s0"), property("p"), resource("o0"));
+		toRemove.add(resource("s1"), property("p"), resource("o1"));
+		toRemove.add(resource("s2"), property("p"), resource("o2"));
+		rdfService.changeSets.clear();
+
+		long count = new ChunkedChangeSetWriter(rdfService, GRAPH,
+				Operation.REMOVE).setChunkSize(2).write(toRemove);
+
+		assertEquals(3, count);
+		assertEquals(2, graph().size());
+		assertEquals("change sets", 2, rdfService.changeSets.size());
+	}
+
+	@Test
+	public void languageNames() {
+		assertEquals("RDF/XML", ChunkedChangeSetWriter.toLang(null).getName());
+		assertEquals("RDF/XML",
+				ChunkedChangeSetWriter.toLang("RDF/XML-ABBREV").getName());
+		assertEquals("N-Triples",
+				ChunkedChangeSetWriter.toLang("N-TRIPLE").getName());
+		assertEquals("Turtle", ChunkedChangeSetWriter.toLang("TTL").getName());
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper methods and classes
+	// ----------------------------------------------------------------------
+
+	private Model graph() {
+		return dataset.getNamedModel(GRAPH);
+	}
+
+	private static int size(ChangeSet changeSet) throws Exception {
+		Model model = ModelFactory.createDefaultModel();
+		for (ModelChange change : changeSet.getModelChanges()) {
+			change.getSerializedModel().reset();
+			model.read(change.getSerializedModel(), null, "N-TRIPLE");
+		}
+		return (int) model.size();
+	}
+
+	private static ChunkedChangeSetWriter.Source ntriples(int howMany) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < howMany; i++) {
+			sb.append("<" + NS + "s" + i + "> <" + NS + "p> <" + NS + "o" + i
+					+ "> .\n");
+		}
+		return source(sb.toString());
+	}
+
+	private static ChunkedChangeSetWriter.Source source(final String text) {
+		return new ChunkedChangeSetWriter.Source() {
+			@Override
+			public InputStream openStream() {
+				return new ByteArrayInputStream(text.getBytes());
+			}
+		};
+	}
+
+	private static Resource resource(String localName) {
+		return ModelFactory.createDefaultModel().createResource(NS + localName);
+	}
+
+	private static Property property(String localName) {
+		return ModelFactory.createDefaultModel().createProperty(NS + localName);
+	}
+
+	private static List<Object> list(Object... objects) {
+		List<Object> list = new ArrayList<>();
+		for (Object o : objects) {
+			list.add(o);
+		}
+		return list;
+	}
+
+	private static class RecordingRDFService extends RDFServiceModel {
+		final List<ChangeSet> changeSets = new ArrayList<>();
+		final List<Object> preEvents = new ArrayList<>();
+		final List<Object> postEvents = new ArrayList<>();
+		int failAfter = Integer.MAX_VALUE;
+
+		RecordingRDFService(Dataset dataset) {
+			super(dataset);
+		}
+
+		@Override
+		public boolean changeSetUpdate(ChangeSet changeSet)
+				throws RDFServiceException {
+			if (!changeSet.getModelChanges().isEmpty()
+					&& changeSets.size() >= failAfter) {
+				throw new RDFServiceException("Failing as requested.");
+			}
+			changeSets.add(changeSet);
+			preEvents.addAll(changeSet.getPreChangeEvents());
+			postEvents.addAll(changeSet.getPostChangeEvents());
+			return super.changeSetUpdate(changeSet);
+		}
+	}
+}
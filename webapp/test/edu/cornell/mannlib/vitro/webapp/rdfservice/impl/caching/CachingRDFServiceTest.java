@@ -0,0 +1,198 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.rdfservice.impl.caching;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.Resource;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeSet;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService.ResultFormat;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.RDFServiceUtils;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.jena.model.RDFServiceModel;
+
+public class CachingRDFServiceTest extends AbstractTestClass {
+	private static final String NS = "http://test/";
+	private static final String NAME_QUERY = "SELECT ?o WHERE { <" + NS
+			+ "s1> <" + NS + "name> ?o }";
+	private static final String ASK_QUERY = "ASK { <" + NS + "s1> <" + NS
+			+ "name> ?o }";
+
+	private Model model;
+	private RDFService inner;
+	private QueryResultCache cache;
+	private RDFService caching;
+
+	@Before
+	public void setup() throws RDFServiceException {
+		model = ModelFactory.createDefaultModel();
+		inner = new RDFServiceModel(model);
+		cache = new QueryResultCache("test", 1024 * 1024);
+		inner.registerListener(cache);
+		caching = new CachingRDFService(inner, cache);
+	}
+
+	@Test
+	public void repeatedQueryIsAnsweredFromTheCache() throws Exception {
+		addToModel("s1", "name", "Smith");
+		String first = select(NAME_QUERY);
+		String second = select(NAME_QUERY);
+
+		assertEquals(first, second);
+		assertTrue(first.contains("Smith"));
+		assertEquals("hits", 1, cache.getStatistics().getHits());
+		assertEquals("misses", 1, cache.getStatistics().getMisses());
+	}
+
+	@Test
+	public void updateWithSamePredicateDiscardsTheResult() throws Exception {
+		addToModel("s1", "name", "Smith");
+		assertTrue(select(NAME_QUERY).contains("Smith"));
+
+		update("<" + NS + "s1> <" + NS + "name> \"Jones\" .");
+
+		assertTrue(select(NAME_QUERY).contains("Jones"));
+		assertEquals("invalidations", 1, cache.getStatistics()
+				.getInvalidations());
+	}
+
+	@Test
+	public void updateWithOtherPredicateKeepsTheResult() throws Exception {
+		addToModel("s1", "name", "Smith");
+		select(NAME_QUERY);
+
+		update("<" + NS + "s1> <" + NS + "age> \"42\" .");
+
+		select(NAME_QUERY);
+		assertEquals("hits", 1, cache.getStatistics().getHits());
+		assertEquals("invalidations", 0, cache.getStatistics()
+				.getInvalidations());
+	}
+
+	@Test
+	public void askResultsAreCachedAndDiscarded() throws Exception {
+		assertFalse(caching.sparqlAskQuery(ASK_QUERY));
+		assertFalse(caching.sparqlAskQuery(ASK_QUERY));
+		assertEquals("hits", 1, cache.getStatistics().getHits());
+
+		update("<" + NS + "s1> <" + NS + "name> \"Jones\" .");
+		assertTrue(caching.sparqlAskQuery(ASK_QUERY));
+	}
+
+	@Test
+	public void leastRecentlyUsedIsEvicted() throws Exception {
+		cache = new QueryResultCache("small", 16 * 1024);
+		inner.registerListener(cache);
+		caching = new CachingRDFService(inner, cache);
+		for (int i = 0; i < 60; i++) {
+			select("SELECT ?o WHERE { <" + NS + "s" + i + "> <" + NS
+					+ "name> ?o }");
+		}
+		assertTrue("evictions", cache.getStatistics().getEvictions() > 0);
+		assertTrue("bytes", cache.getStatistics().getWeight() <= 16 * 1024);
+	}
+
+	@Test
+	public void resultComputedDuringAChangeIsNotStored() {
+		long ticket = cache.getTicket();
+		cache.addedStatement("<" + NS + "a> <" + NS + "name> <" + NS
+				+ "c> .", null);
+		cache.put("key", new byte[10], 10,
+				QueryDependencies.analyze(NAME_QUERY), ticket);
+		assertEquals(0, cache.getStatistics().getEntries());
+	}
+
+	@Test
+	public void resultComputedDuringAnUnrelatedChangeIsStored() {
+		long ticket = cache.getTicket();
+		cache.addedStatement("<" + NS + "a> <" + NS + "b> <" + NS + "c> .",
+				null);
+		cache.put("key", new byte[10], 10,
+				QueryDependencies.analyze(NAME_QUERY), ticket);
+		assertEquals(1, cache.getStatistics().getEntries());
+	}
+
+	@Test
+	public void resultTooLargeToCacheIsStillReturnedWhole() throws Exception {
+		cache = new QueryResultCache("small", 16 * 1024);
+		inner.registerListener(cache);
+		caching = new CachingRDFService(inner, cache);
+		for (int i = 0; i < 100; i++) {
+			addToModel("s1", "name", "A fairly long name, number " + i);
+		}
+
+		String result = select(NAME_QUERY);
+		assertTrue("larger than an entry may be",
+				result.length() > cache.getMaxEntryBytes());
+		assertTrue(result.contains("number 0\""));
+		assertTrue(result.contains("number 99\""));
+		assertEquals("entries", 0, cache.getStatistics().getEntries());
+	}
+
+	@Test
+	public void changesAreMatchedByGraphAndPredicate() {
+		QueryDependencies inGraph = QueryDependencies.analyze("SELECT ?o "
+				+ "WHERE { GRAPH <" + NS + "g1> { ?s <" + NS + "name> ?o } }");
+		QueryDependencies anyPredicate = QueryDependencies.analyze("SELECT ?o "
+				+ "WHERE { GRAPH <" + NS + "g1> { ?s ?p ?o } }");
+		cache.put("inGraph", new byte[10], 10, inGraph, cache.getTicket());
+		cache.put("anyPredicate", new byte[10], 10, anyPredicate,
+				cache.getTicket());
+
+		cache.addedStatement("<" + NS + "a> <" + NS + "name> \"x\" .", NS
+				+ "g2");
+		assertEquals("other graph", 2, cache.getStatistics().getEntries());
+
+		for (int i = 0; i < 3; i++) {
+			cache.addedStatement("<" + NS + "a> <" + NS + "age> \"" + i
+					+ "\" .", NS + "g1");
+		}
+		assertEquals("other predicate", 1, cache.getStatistics().getEntries());
+		assertTrue(cache.get("inGraph") != null);
+
+		cache.addedStatement("<" + NS + "a> <" + NS + "name> \"x\" .", null);
+		assertEquals("unknown graph", 0, cache.getStatistics().getEntries());
+		assertEquals("invalidations", 2, cache.getStatistics()
+				.getInvalidations());
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper methods
+	// ----------------------------------------------------------------------
+
+	private void addToModel(String subject, String predicate, String value) {
+		Resource s = model.createResource(NS + subject);
+		Property p = model.createProperty(NS + predicate);
+		model.add(s, p, value);
+	}
+
+	private String select(String query) throws RDFServiceException,
+			IOException {
+		try (InputStream in = caching.sparqlSelectQuery(query,
+				ResultFormat.JSON)) {
+			return IOUtils.toString(in, "UTF-8");
+		}
+	}
+
+	private void update(String n3) throws RDFServiceException {
+		ChangeSet cs = caching.manufactureChangeSet();
+		cs.addAddition(RDFServiceUtils.toInputStream(n3),
+				RDFService.ModelSerializationFormat.N3, null);
+		caching.changeSetUpdate(cs);
+	}
+}
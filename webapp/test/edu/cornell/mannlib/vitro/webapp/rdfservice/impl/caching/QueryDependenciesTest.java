@@ -0,0 +1,112 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.rdfservice.impl.caching;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+
+public class QueryDependenciesTest extends AbstractTestClass {
+	private static final String G1 = "http://test/g1";
+	private static final String G2 = "http://test/g2";
+	private static final String P1 = "http://test/p1";
+	private static final String P2 = "http://test/p2";
+
+	@Test
+	public void defaultGraphReadsEveryGraph() {
+		QueryDependencies deps = analyze("SELECT ?s WHERE { ?s <" + P1
+				+ "> ?o }");
+		assertTrue(deps.isAffectedBy(G1, P1));
+		assertTrue(deps.isAffectedBy(G2, P1));
+		assertFalse(deps.isAffectedBy(G1, P2));
+	}
+
+	@Test
+	public void namedGraphReadsOnlyThatGraph() {
+		QueryDependencies deps = analyze("SELECT ?s WHERE { GRAPH <" + G1
+				+ "> { ?s <" + P1 + "> ?o } }");
+		assertTrue(deps.isAffectedBy(G1, P1));
+		assertFalse(deps.isAffectedBy(G2, P1));
+		assertFalse(deps.isAffectedBy(G1, P2));
+	}
+
+	@Test
+	public void fromClauseLimitsTheDefaultGraph() {
+		QueryDependencies deps = analyze("SELECT ?s FROM <" + G2
+				+ "> WHERE { ?s <" + P1 + "> ?o }");
+		assertTrue(deps.isAffectedBy(G2, P1));
+		assertFalse(deps.isAffectedBy(G1, P1));
+	}
+
+	@Test
+	public void variablePredicateReadsEveryPredicate() {
+		QueryDependencies deps = analyze("ASK { GRAPH <" + G1
+				+ "> { ?s ?p ?o } }");
+		assertTrue(deps.isAffectedBy(G1, P2));
+		assertFalse(deps.isAffectedBy(G2, P2));
+	}
+
+	@Test
+	public void propertyPathReadsEveryPredicate() {
+		QueryDependencies deps = analyze("SELECT ?s WHERE { ?s <" + P1
+				+ ">/<" + P2 + "> ?o }");
+		assertTrue(deps.isAffectedBy(G1, "http://test/other"));
+	}
+
+	@Test
+	public void optionalUnionAndSubqueryAreIncluded() {
+		QueryDependencies deps = analyze("CONSTRUCT { ?s <" + P1
+				+ "> ?o } WHERE { { ?s <" + P1 + "> ?o } UNION { ?s <" + P2
+				+ "> ?o } OPTIONAL { { SELECT ?o WHERE { ?o <"
+				+ "http://test/p3> ?x } } } }");
+		assertTrue(deps.isAffectedBy(G1, P1));
+		assertTrue(deps.isAffectedBy(G1, P2));
+		assertTrue(deps.isAffectedBy(G1, "http://test/p3"));
+		assertFalse(deps.isAffectedBy(G1, "http://test/p4"));
+	}
+
+	@Test
+	public void filterExistsReadsEverything() {
+		QueryDependencies deps = analyze("SELECT ?s WHERE { GRAPH <" + G1
+				+ "> { ?s <" + P1 + "> ?o } FILTER NOT EXISTS { ?s <" + P2
+				+ "> ?x } }");
+		assertTrue(deps.isAffectedBy(G2, "http://test/other"));
+	}
+
+	@Test
+	public void unknownGraphOrPredicateMatches() {
+		QueryDependencies deps = analyze("SELECT ?s WHERE { GRAPH <" + G1
+				+ "> { ?s <" + P1 + "> ?o } }");
+		assertTrue(deps.isAffectedBy(null, P1));
+		assertTrue(deps.isAffectedBy(G1, null));
+	}
+
+	@Test
+	public void whitespaceAndCommentsAreNormalized() {
+		String q1 = "SELECT ?s WHERE { ?s <" + P1 + "> ?o }";
+		String q2 = "# a comment\nSELECT   ?s\n  WHERE {\n ?s <" + P1
+				+ ">   ?o\n}";
+		assertEquals(analyze(q1).getNormalizedQuery(), analyze(q2)
+				.getNormalizedQuery());
+	}
+
+	@Test
+	public void uncacheableQueries() {
+		assertNull("syntax error", QueryDependencies.analyze("SELECT WHERE"));
+		assertNull("describe", QueryDependencies.analyze("DESCRIBE <" + G1
+				+ ">"));
+		assertNull("service", QueryDependencies.analyze("SELECT ?s WHERE { "
+				+ "SERVICE <http://remote/sparql> { ?s ?p ?o } }"));
+	}
+
+	private QueryDependencies analyze(String query) {
+		QueryDependencies deps = QueryDependencies.analyze(query);
+		assertTrue("cacheable: " + query, deps != null);
+		return deps;
+	}
+}
@@ -0,0 +1,308 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.rdfservice.impl.jena.tdb;
+
+import static edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService.ModelSerializationFormat.N3;
+import static edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService.ResultFormat.CSV;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Level;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeListener;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeSet;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
+
+public class RDFServiceTDBTest extends AbstractTestClass {
+	private static final String GRAPH = "http://test.com/graph";
+	private static final int WRITERS = 20;
+
+	private File tdbDir;
+	private RDFServiceTDB rdfService;
+	private List<String> notified;
+
+	@Before
+	public void setup() throws Exception {
+		// TDB remembers each location, so don't re-use them.
+		tdbDir = createTempDirectory("RDFServiceTDBTest-" + System.nanoTime());
+		rdfService = new RDFServiceTDB(tdbDir.getPath(), 5, 20L);
+		notified = Collections.synchronizedList(new ArrayList<String>());
+		rdfService.registerListener(new RecordingListener());
+	}
+
+	@After
+	public void cleanup() throws Exception {
+		rdfService.close();
+		FileUtils.deleteDirectory(tdbDir);
+	}
+
+	@Test
+	public void concurrentChangesAreAllCommittedAndNotified() throws Exception {
+		List<Future<Boolean>> results = runConcurrently(new ChangeFactory() {
+			@Override
+			public ChangeSet changeFor(int i) {
+				return addition("<http://test.com/s" + i
+						+ "> <http://test.com/p> \"" + i + "\" .");
+			}
+		});
+		for (Future<Boolean> result : results) {
+			assertTrue(result.get());
+		}
+
+		assertEquals(WRITERS, countTriples());
+		assertEquals(WRITERS, notified.size());
+	}
+
+	@Test
+	public void badChangeFailsOnlyItsOwnCaller() throws Exception {
+		setLoggerLevel(RDFServiceTDB.class, Level.OFF);
+		setLoggerLevel("org.apache.jena.riot", Level.OFF);
+
+		List<Future<Boolean>> results = runConcurrently(new ChangeFactory() {
+			@Override
+			public ChangeSet changeFor(int i) {
+				if (i == 3) {
+					return addition("This is not N3");
+				}
+				return addition("<http://test.com/s" + i
+						+ "> <http://test.com/p> \"" + i + "\" .");
+			}
+		});
+
+		for (int i = 0; i < results.size(); i++) {
+			try {
+				results.get(i).get();
+				if (i == 3) {
+					fail("Expected the bad change to fail");
+				}
+			} catch (Exception e) {
+				if (i != 3) {
+					throw e;
+				}
+				assertTrue(e.getCause() instanceof RDFServiceException);
+			}
+		}
+		assertEquals(WRITERS - 1, countTriples());
+	}
+
+	@Test
+	public void listenerMayWriteWhileBeingNotified() throws Exception {
+		rdfService.registerListener(new ChangeListener() {
+			@Override
+			public void addedStatement(String serializedTriple, String graphURI) {
+				if (serializedTriple.contains("trigger")) {
+					try {
+						rdfService.changeSetUpdate(addition("<http://test.com/s> "
+								+ "<http://test.com/p> \"response\" ."));
+					} catch (RDFServiceException e) {
+						throw new RuntimeException(e);
+					}
+				}
+			}
+
+			@Override
+			public void removedStatement(String serializedTriple,
+					String graphURI) {
+				// Nothing to do.
+			}
+
+			@Override
+			public void notifyEvent(String graphURI, Object event) {
+				// Nothing to do.
+			}
+		});
+
+		rdfService.changeSetUpdate(addition("<http://test.com/s> "
+				+ "<http://test.com/p> \"trigger\" ."));
+		assertEquals(2, countTriples());
+	}
+
+	@Test
+	public void listenersAreNotifiedOnTheCallersThread() throws Exception {
+		final List<Thread> threads = Collections
+				.synchronizedList(new ArrayList<Thread>());
+		rdfService.registerListener(new RecordingListener() {
+			@Override
+			public void addedStatement(String serializedTriple, String graphURI) {
+				threads.add(Thread.currentThread());
+			}
+		});
+
+		rdfService.changeSetUpdate(addition("<http://test.com/s> "
+				+ "<http://test.com/p> \"value\" ."));
+		assertEquals(Collections.singletonList(Thread.currentThread()),
+				threads);
+	}
+
+	@Test
+	public void listenersHearOfConcurrentWritesInCommitOrder()
+			throws Exception {
+		final CountDownLatch firstIsBeingNotified = new CountDownLatch(1);
+		final CountDownLatch releaseFirst = new CountDownLatch(1);
+		rdfService.registerListener(new RecordingListener() {
+			@Override
+			public void addedStatement(String serializedTriple, String graphURI) {
+				if (serializedTriple.contains("first")) {
+					firstIsBeingNotified.countDown();
+					try {
+						releaseFirst.await(10, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			}
+		});
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<Boolean> first = executor.submit(writer("first"));
+			assertTrue(firstIsBeingNotified.await(10, TimeUnit.SECONDS));
+			Future<Boolean> second = executor.submit(writer("second"));
+
+			// The second is committed, but must wait for the first.
+			waitForTriples(2);
+			Thread.sleep(200);
+			assertEquals("notified", 1, notified.size());
+
+			releaseFirst.countDown();
+			assertTrue(first.get());
+			assertTrue(second.get());
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(2, notified.size());
+		assertTrue(notified.get(0), notified.get(0).contains("first"));
+		assertTrue(notified.get(1), notified.get(1).contains("second"));
+	}
+
+	@Test
+	public void closeWaitsForTheWriterAndRefusesNewChanges() throws Exception {
+		rdfService.changeSetUpdate(addition("<http://test.com/s> "
+				+ "<http://test.com/p> \"value\" ."));
+		rdfService.close();
+		rdfService.close();
+
+		try {
+			rdfService.changeSetUpdate(addition("<http://test.com/s> "
+					+ "<http://test.com/p> \"late\" ."));
+			fail("Expected the closed service to refuse the change");
+		} catch (RDFServiceException e) {
+			// expected
+		}
+
+		// Re-open it, so the cleanup can close it again.
+		rdfService = new RDFServiceTDB(tdbDir.getPath(), 5, 20L);
+		assertEquals(1, countTriples());
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper methods
+	// ----------------------------------------------------------------------
+
+	private interface ChangeFactory {
+		ChangeSet changeFor(int i);
+	}
+
+	private List<Future<Boolean>> runConcurrently(final ChangeFactory factory)
+			throws Exception {
+		final CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(WRITERS);
+		try {
+			List<Future<Boolean>> results = new ArrayList<>();
+			for (int i = 0; i < WRITERS; i++) {
+				final ChangeSet changeSet = factory.changeFor(i);
+				results.add(executor.submit(new Callable<Boolean>() {
+					@Override
+					public Boolean call() throws Exception {
+						start.await();
+						return rdfService.changeSetUpdate(changeSet);
+					}
+				}));
+			}
+			start.countDown();
+			for (Future<Boolean> result : results) {
+				try {
+					result.get();
+				} catch (Exception e) {
+					// The caller will look at it.
+				}
+			}
+			return results;
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private Callable<Boolean> writer(final String value) {
+		return new Callable<Boolean>() {
+			@Override
+			public Boolean call() throws Exception {
+				return rdfService.changeSetUpdate(addition("<http://test.com/s> "
+						+ "<http://test.com/p> \"" + value + "\" ."));
+			}
+		};
+	}
+
+	private void waitForTriples(int count) throws Exception {
+		long deadline = System.currentTimeMillis() + 10000;
+		while (countTriples() < count) {
+			if (System.currentTimeMillis() > deadline) {
+				fail("Expected " + count + " triples, but found "
+						+ countTriples());
+			}
+			Thread.sleep(10);
+		}
+	}
+
+	private ChangeSet addition(String n3) {
+		ChangeSet changeSet = rdfService.manufactureChangeSet();
+		changeSet.addAddition(new ByteArrayInputStream(n3.getBytes()), N3,
+				GRAPH);
+		return changeSet;
+	}
+
+	private int countTriples() throws Exception {
+		String query = "SELECT ?s WHERE { GRAPH <" + GRAPH + "> { ?s ?p ?o } }";
+		try (InputStream in = rdfService.sparqlSelectQuery(query, CSV)) {
+			// Ignore the header line.
+			return IOUtils.readLines(in).size() - 1;
+		}
+	}
+
+	private class RecordingListener implements ChangeListener {
+		@Override
+		public void addedStatement(String serializedTriple, String graphURI) {
+			notified.add(serializedTriple);
+		}
+
+		@Override
+		public void removedStatement(String serializedTriple, String graphURI) {
+			notified.add(serializedTriple);
+		}
+
+		@Override
+		public void notifyEvent(String graphURI, Object event) {
+			// Nothing to do.
+		}
+	}
+}
@@ -0,0 +1,227 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.reasoner;
+
+import static com.hp.hpl.jena.rdf.model.ResourceFactory.createResource;
+import static com.hp.hpl.jena.rdf.model.ResourceFactory.createStatement;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.mem.GraphMem;
+import com.hp.hpl.jena.query.DatasetFactory;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.rdf.model.Statement;
+import com.hp.hpl.jena.shared.Lock;
+import com.hp.hpl.jena.vocabulary.RDF;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.dao.jena.RDFServiceGraph;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeListener;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.jena.model.RDFServiceModel;
+
+public class BufferedInferenceWriterTest extends AbstractTestClass {
+	private static final String NS = "http://test.vivo/";
+
+	private static final Resource IND = createResource(NS + "individual");
+	private static final Statement TYPE_1 = createStatement(IND, RDF.type,
+			createResource(NS + "Type1"));
+	private static final Statement TYPE_2 = createStatement(IND, RDF.type,
+			createResource(NS + "Type2"));
+	private static final Statement TYPE_3 = createStatement(IND, RDF.type,
+			createResource(NS + "Type3"));
+
+	private int containsCount;
+	private Model model;
+	private BufferedInferenceWriter writer;
+
+	@Before
+	public void setup() {
+		model = ModelFactory.createModelForGraph(new GraphMem() {
+			@Override
+			public boolean graphBaseContains(Triple t) {
+				containsCount++;
+				return super.graphBaseContains(t);
+			}
+		});
+		model.add(TYPE_3);
+		writer = new BufferedInferenceWriter(model, 1000, 60000, 1000);
+	}
+
+	@Test
+	public void theModelIsNotLockedWhileListenersAreNotified()
+			throws Exception {
+		final RDFService rdfService = new RDFServiceModel(
+				DatasetFactory.createMem());
+		final Model rdfServiceModel = RDFServiceGraph
+				.createRDFServiceModel(new RDFServiceGraph(rdfService,
+						NS + "inferences"));
+		final List<Boolean> couldRead = new ArrayList<>();
+		rdfService.registerListener(new ChangeListener() {
+			@Override
+			public void addedStatement(String serializedTriple, String graphURI) {
+				couldRead.add(readFromAnotherThread(rdfServiceModel));
+			}
+
+			@Override
+			public void removedStatement(String serializedTriple,
+					String graphURI) {
+				// Nothing to do.
+			}
+
+			@Override
+			public void notifyEvent(String graphURI, Object event) {
+				// Nothing to do.
+			}
+		});
+
+		writer = new BufferedInferenceWriter(rdfServiceModel, 1000, 60000, 1000);
+		try (BufferedInferenceWriter.Scope scope = writer.begin()) {
+			writer.add(TYPE_1);
+		}
+		assertEquals(Arrays.asList(Boolean.TRUE), couldRead);
+	}
+
+	@Test
+	public void withoutAScopeChangesAreWrittenImmediately() {
+		writer.add(TYPE_1);
+		writer.remove(TYPE_3);
+		assertTrue(model.contains(TYPE_1));
+		assertFalse(model.contains(TYPE_3));
+	}
+
+	@Test
+	public void changesAreWrittenWhenTheScopeCloses() {
+		try (BufferedInferenceWriter.Scope scope = writer.begin()) {
+			writer.add(TYPE_1);
+			writer.remove(TYPE_3);
+			assertFalse(model.contains(TYPE_1));
+			assertTrue(model.contains(TYPE_3));
+		}
+		assertTrue(model.contains(TYPE_1));
+		assertFalse(model.contains(TYPE_3));
+	}
+
+	@Test
+	public void nestedScopesAreWrittenWhenTheOutermostCloses() {
+		try (BufferedInferenceWriter.Scope outer = writer.begin()) {
+			try (BufferedInferenceWriter.Scope inner = writer.begin()) {
+				writer.add(TYPE_1);
+			}
+			assertFalse(model.contains(TYPE_1));
+		}
+		assertTrue(model.contains(TYPE_1));
+	}
+
+	@Test
+	public void containsSeesThePendingChanges() {
+		try (BufferedInferenceWriter.Scope scope = writer.begin()) {
+			writer.add(TYPE_1);
+			writer.remove(TYPE_3);
+			assertTrue(writer.contains(TYPE_1));
+			assertFalse(writer.contains(TYPE_3));
+			assertFalse(writer.contains(TYPE_2));
+
+			writer.remove(TYPE_1);
+			assertFalse(writer.contains(TYPE_1));
+		}
+		assertFalse(model.contains(TYPE_1));
+	}
+
+	@Test
+	public void containsRemembersWhatItHasRead() {
+		try (BufferedInferenceWriter.Scope scope = writer.begin()) {
+			containsCount = 0;
+			assertTrue(writer.contains(TYPE_3));
+			assertFalse(writer.contains(TYPE_2));
+			assertTrue(writer.contains(TYPE_3));
+			assertFalse(writer.contains(TYPE_2));
+			assertEquals("reads", 2, containsCount);
+
+			writer.forgetCachedStatements();
+			assertTrue(writer.contains(TYPE_3));
+			assertEquals("reads after forgetting", 3, containsCount);
+		}
+	}
+
+	@Test
+	public void writesWhenTooManyChangesArePending() {
+		writer = new BufferedInferenceWriter(model, 2, 60000, 1000);
+		try (BufferedInferenceWriter.Scope scope = writer.begin()) {
+			writer.add(TYPE_1);
+			assertFalse(model.contains(TYPE_1));
+			writer.add(TYPE_2);
+			assertTrue(model.contains(TYPE_1));
+			assertTrue(model.contains(TYPE_2));
+		}
+	}
+
+	@Test
+	public void writesWhenChangesHaveWaitedTooLong() throws InterruptedException {
+		writer = new BufferedInferenceWriter(model, 1000, 10, 1000);
+		try (BufferedInferenceWriter.Scope scope = writer.begin()) {
+			writer.add(TYPE_1);
+			assertFalse(model.contains(TYPE_1));
+			Thread.sleep(20);
+			writer.add(TYPE_2);
+			assertTrue(model.contains(TYPE_1));
+			assertTrue(model.contains(TYPE_2));
+		}
+	}
+
+	@Test
+	public void otherThreadsWriteImmediately() throws InterruptedException {
+		try (BufferedInferenceWriter.Scope scope = writer.begin()) {
+			writer.add(TYPE_1);
+			Thread other = new Thread() {
+				@Override
+				public void run() {
+					writer.add(TYPE_2);
+				}
+			};
+			other.start();
+			other.join();
+			assertFalse(model.contains(TYPE_1));
+			assertTrue(model.contains(TYPE_2));
+		}
+	}
+
+	/**
+	 * Like a SimpleReasoner listener: take a read lock on another thread. Give
+	 * up if it takes too long.
+	 */
+	private static boolean readFromAnotherThread(final Model m) {
+		final CountDownLatch read = new CountDownLatch(1);
+		Thread reader = new Thread() {
+			@Override
+			public void run() {
+				m.enterCriticalSection(Lock.READ);
+				try {
+					read.countDown();
+				} finally {
+					m.leaveCriticalSection();
+				}
+			}
+		};
+		reader.setDaemon(true);
+		reader.start();
+		try {
+			return read.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,94 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.reasoner;
+
+import static com.hp.hpl.jena.rdf.model.ResourceFactory.createResource;
+import static com.hp.hpl.jena.rdf.model.ResourceFactory.createStatement;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.vocabulary.OWL;
+import com.hp.hpl.jena.vocabulary.RDFS;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+
+public class SameAsIndexTest extends AbstractTestClass {
+	private static final String NS = "http://test.vivo/";
+
+	private static final Resource A = createResource(NS + "a");
+	private static final Resource B = createResource(NS + "b");
+	private static final Resource C = createResource(NS + "c");
+	private static final Resource D = createResource(NS + "d");
+	private static final Resource E = createResource(NS + "e");
+
+	private Model model;
+	private SameAsIndex index;
+
+	@Before
+	public void setup() {
+		model = ModelFactory.createDefaultModel();
+		model.add(A, OWL.sameAs, B);
+		model.add(C, OWL.sameAs, B);
+		model.add(D, RDFS.seeAlso, E);
+		index = new SameAsIndex(model);
+	}
+
+	@Test
+	public void classesAreBuiltFromTheModel() {
+		assertSameAs(A, B, C);
+		assertSameAs(C, A, B);
+		assertSameAs(D);
+	}
+
+	@Test
+	public void onlyIndividualsInSameAsStatementsMayHaveSameAs() {
+		assertTrue(index.mayHaveSameAs(A));
+		assertTrue(index.mayHaveSameAs(C));
+		assertFalse(index.mayHaveSameAs(D));
+		assertTrue(index.mayHaveSameAs(createResource()));
+	}
+
+	@Test
+	public void addedStatementsJoinClasses() {
+		index.mayHaveSameAs(A);
+		model.add(D, OWL.sameAs, E);
+		model.add(E, OWL.sameAs, A);
+		index.addSameAs(createStatement(D, OWL.sameAs, E));
+		index.addSameAs(createStatement(E, OWL.sameAs, A));
+		assertSameAs(D, A, B, C, E);
+		assertSameAs(B, A, C, D, E);
+	}
+
+	@Test
+	public void otherStatementsAreIgnored() {
+		index.addSameAs(createStatement(D, RDFS.seeAlso, A));
+		assertFalse(index.mayHaveSameAs(D));
+	}
+
+	@Test
+	public void statementsAddedBeforeTheIndexIsBuiltAreNotLost() {
+		model.add(D, OWL.sameAs, E);
+		index.addSameAs(createStatement(D, OWL.sameAs, E));
+		assertSameAs(D, E);
+		assertSameAs(A, B, C);
+	}
+
+	private void assertSameAs(Resource individual, Resource... expected) {
+		HashSet<String> expectedUris = new HashSet<>();
+		for (Resource r : Arrays.asList(expected)) {
+			expectedUris.add(r.getURI());
+		}
+		assertEquals("same as " + individual, expectedUris,
+				index.getSameAs(individual.getURI()));
+	}
+}
@@ -0,0 +1,197 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.searchengine.solr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Level;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.modules.ComponentStartupStatus;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchFacetField;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchInputDocument;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchResponse;
+
+/**
+ * Run the embedded engine against a copy of the Vitro Solr configuration. The
+ * Lucene JARs come from the Solr webapp, as they do for the build's "test"
+ * target.
+ */
+public class EmbeddedSolrSearchEngineTest extends AbstractTestClass {
+	private static final File SOLR_HOME_TEMPLATE = new File(
+			"../solr/homeDirectoryTemplate");
+
+	private File solrHome;
+	private EmbeddedSolrSearchEngine engine;
+	private RecordingStartupStatus status;
+
+	@Before
+	public void startEngine() throws Exception {
+		setLoggerLevel("org.apache.solr", Level.OFF);
+
+		solrHome = createTempDirectory("EmbeddedSolrSearchEngineTest-"
+				+ System.nanoTime());
+		FileUtils.copyDirectory(SOLR_HOME_TEMPLATE, solrHome);
+
+		engine = new EmbeddedSolrSearchEngine();
+		status = new RecordingStartupStatus();
+		engine.startup(solrHome.toPath(), status);
+		assertEquals("fatal messages", new ArrayList<String>(), status.fatals);
+	}
+
+	@After
+	public void stopEngine() throws Exception {
+		engine.shutdown(null);
+		FileUtils.deleteDirectory(solrHome);
+	}
+
+	@Test
+	public void missingSolrXmlIsFatal() throws Exception {
+		File empty = createTempDirectory("EmbeddedSolrSearchEngineTest-empty-"
+				+ System.nanoTime());
+		try {
+			RecordingStartupStatus emptyStatus = new RecordingStartupStatus();
+			new EmbeddedSolrSearchEngine().startup(empty.toPath(), emptyStatus);
+			assertEquals(1, emptyStatus.fatals.size());
+		} finally {
+			FileUtils.deleteDirectory(empty);
+		}
+	}
+
+	@Test
+	public void addedDocumentsAreFoundAfterCommit() throws Exception {
+		engine.add(document("one", "Person"), document("two", "Person"),
+				document("three", "Organization"));
+		engine.commit();
+
+		assertEquals(3, engine.documentCount());
+		assertEquals(2, numFound("type:Person"));
+	}
+
+	@Test
+	public void softCommitMakesDocumentsVisible() throws Exception {
+		engine.add(document("one", "Person"));
+		engine.softCommit();
+
+		assertEquals(1, numFound("type:Person"));
+	}
+
+	@Test
+	public void commitWithoutWaitingMakesDocumentsVisibleSoon()
+			throws Exception {
+		engine.add(document("one", "Person"));
+		engine.commit(false);
+
+		long giveUp = System.currentTimeMillis() + 5000;
+		while (numFound("type:Person") == 0
+				&& System.currentTimeMillis() < giveUp) {
+			Thread.sleep(50);
+		}
+		assertEquals(1, numFound("type:Person"));
+	}
+
+	@Test
+	public void facetsAreCounted() throws Exception {
+		engine.add(document("one", "Person"), document("two", "Person"),
+				document("three", "Organization"));
+		engine.commit();
+
+		SearchResponse response = engine.query(engine.createQuery("*:*")
+				.addFacetFields("type").setFacetMinCount(1));
+		SearchFacetField facet = response.getFacetField("type");
+		assertEquals(2, facet.getValues().size());
+		for (SearchFacetField.Count count : facet.getValues()) {
+			if (count.getName().equals("Person")) {
+				assertEquals(2, count.getCount());
+			} else {
+				assertEquals(1, count.getCount());
+			}
+		}
+	}
+
+	@Test
+	public void deleteByQueryRemovesOnlyTheMatches() throws Exception {
+		engine.add(document("one", "Person"), document("two", "Person"),
+				document("three", "Organization"));
+		engine.commit();
+
+		engine.deleteByQuery("type:Person");
+		engine.commit();
+
+		assertEquals(1, engine.documentCount());
+		assertEquals(0, numFound("type:Person"));
+	}
+
+	@Test
+	public void theIndexSurvivesARestart() throws Exception {
+		engine.add(document("one", "Person"));
+		engine.commit();
+		engine.shutdown(null);
+
+		engine = new EmbeddedSolrSearchEngine();
+		engine.startup(solrHome.toPath(), status);
+		assertTrue("restarted", status.fatals.isEmpty());
+		assertEquals(1, engine.documentCount());
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper methods and classes
+	// ----------------------------------------------------------------------
+
+	private SearchInputDocument document(String id, String type) {
+		SearchInputDocument doc = engine.createInputDocument();
+		doc.addField("DocId", id);
+		doc.addField("URI", "http://test/" + id);
+		doc.addField("type", type);
+		return doc;
+	}
+
+	private long numFound(String query) throws Exception {
+		return engine.query(engine.createQuery(query)).getResults()
+				.getNumFound();
+	}
+
+	private static class RecordingStartupStatus implements
+			ComponentStartupStatus {
+		final List<String> fatals = new ArrayList<>();
+
+		@Override
+		public void info(String message) {
+			// Nothing to record.
+		}
+
+		@Override
+		public void info(String message, Throwable cause) {
+			// Nothing to record.
+		}
+
+		@Override
+		public void warning(String message) {
+			// Nothing to record.
+		}
+
+		@Override
+		public void warning(String message, Throwable cause) {
+			// Nothing to record.
+		}
+
+		@Override
+		public void fatal(String message) {
+			fatals.add(message);
+		}
+
+		@Override
+		public void fatal(String message, Throwable cause) {
+			fatals.add(message + ": " + cause);
+		}
+	}
+}
@@ -0,0 +1,172 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.searchindex;
+
+import static edu.cornell.mannlib.vitro.webapp.modelaccess.ModelNames.ABOX_ASSERTIONS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.log4j.Level;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.hp.hpl.jena.rdf.model.Statement;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.modules.Application;
+import edu.cornell.mannlib.vitro.webapp.modules.ComponentStartupStatus;
+import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexer;
+import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerStatus;
+
+public class IndexingChangeListenerTest extends AbstractTestClass {
+	private static final String NS = "http://test/individual/";
+
+	private RecordingSearchIndexer indexer;
+	private IndexingChangeListener listener;
+
+	@Before
+	public void setup() {
+		setLoggerLevel(IndexingChangeListener.class, Level.ERROR);
+		indexer = new RecordingSearchIndexer();
+		listener = new IndexingChangeListener(indexer, 5);
+	}
+
+	@After
+	public void shutdown() {
+		listener.shutdown();
+	}
+
+	@Test
+	public void repeatedChangesAreDeduplicated() {
+		listener.addedStatement(triple("s1", "p", "<" + NS + "o1>"),
+				ABOX_ASSERTIONS);
+		listener.removedStatement(triple("s1", "p", "<" + NS + "o1>"),
+				ABOX_ASSERTIONS);
+		listener.addedStatement(triple("s1", "p", "<" + NS + "o2>"),
+				ABOX_ASSERTIONS);
+		assertEquals(2, listener.pendingChangeCount());
+	}
+
+	@Test
+	public void literalValuesAreDeduplicated() {
+		listener.addedStatement(triple("s1", "label", "\"one\""),
+				ABOX_ASSERTIONS);
+		listener.addedStatement(triple("s1", "label", "\"two\""),
+				ABOX_ASSERTIONS);
+		listener.addedStatement(triple("s2", "label", "\"one\""),
+				ABOX_ASSERTIONS);
+		assertEquals(2, listener.pendingChangeCount());
+	}
+
+	@Test
+	public void changesAreSentWhenTheyStopComingIn()
+			throws InterruptedException {
+		listener.addedStatement(triple("s1", "label", "\"one\""),
+				ABOX_ASSERTIONS);
+		listener.addedStatement(triple("s1", "label", "\"two\""),
+				ABOX_ASSERTIONS);
+		indexer.waitForActivity();
+
+		assertEquals(1, indexer.statements.size());
+		assertEquals("one", indexer.statements.get(0).getString());
+		assertEquals(0, indexer.rebuilds);
+	}
+
+	@Test
+	public void tooManyChangesCauseARebuild() throws InterruptedException {
+		for (int i = 0; i < 10; i++) {
+			listener.addedStatement(triple("s" + i, "label", "\"x\""),
+					ABOX_ASSERTIONS);
+		}
+		assertEquals(0, listener.pendingChangeCount());
+		indexer.waitForActivity();
+
+		assertTrue(indexer.statements.isEmpty());
+		assertEquals(1, indexer.rebuilds);
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper methods and classes
+	// ----------------------------------------------------------------------
+
+	private String triple(String subject, String predicate, String object) {
+		return "<" + NS + subject + "> <http://test/" + predicate + "> "
+				+ object + " .";
+	}
+
+	private static class RecordingSearchIndexer implements SearchIndexer {
+		final List<Statement> statements = new ArrayList<>();
+		int rebuilds;
+
+		synchronized void waitForActivity() throws InterruptedException {
+			long limit = System.currentTimeMillis() + 10000;
+			while (statements.isEmpty() && rebuilds == 0
+					&& System.currentTimeMillis() < limit) {
+				wait(100);
+			}
+		}
+
+		@Override
+		public synchronized void scheduleUpdatesForStatements(
+				List<Statement> changes) {
+			statements.addAll(changes);
+			notifyAll();
+		}
+
+		@Override
+		public synchronized void rebuildIndex() {
+			rebuilds++;
+			notifyAll();
+		}
+
+		@Override
+		public void addListener(Listener l) {
+			// Nothing to do.
+		}
+
+		@Override
+		public void startup(Application app, ComponentStartupStatus ss) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void scheduleUpdatesForUris(Collection<String> uris) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void pause() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void pauseInAnticipationOfRebuild() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void unpause() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public SearchIndexerStatus getStatus() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void removeListener(Listener l) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void shutdown(Application app) {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -0,0 +1,176 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.searchindex.commitPolicy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.apache.log4j.Level;
+import org.junit.Before;
+import org.junit.Test;
+
+import stubs.edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngineStub;
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngineException;
+
+/**
+ * Check when each commit policy commits.
+ */
+public class CommitPolicyTest extends AbstractTestClass {
+	private CountingSearchEngine engine;
+	private CountingListener listener;
+
+	@Before
+	public void setup() {
+		engine = new CountingSearchEngine();
+		listener = new CountingListener();
+	}
+
+	@Test
+	public void immediateCommitsAtEveryCheckpoint() {
+		ImmediateCommitPolicy policy = new ImmediateCommitPolicy();
+		policy.startup(engine, listener);
+		assertEquals("commitWithin", -1, policy.getCommitWithinMillis());
+
+		policy.documentsChanged(1);
+		assertEquals("before checkpoint", 0, engine.commits);
+		policy.checkpoint();
+		policy.checkpoint();
+		assertEquals("after checkpoints", 2, engine.commits);
+		assertNotNull("last commit", policy.getLastCommit());
+		assertEquals("listener told", 2, listener.commits);
+	}
+
+	@Test
+	public void commitWithinLeavesCommitsToTheEngine() {
+		CommitWithinPolicy policy = new CommitWithinPolicy();
+		policy.setCommitWithinMillis("5000");
+		policy.validate();
+		policy.startup(engine, listener);
+		assertEquals("commitWithin", 5000, policy.getCommitWithinMillis());
+
+		policy.documentsChanged(3);
+		policy.checkpoint();
+		assertEquals("commits", 0, engine.commits);
+		assertNull("last commit", policy.getLastCommit());
+		assertEquals("listener not told yet", 0, listener.commits);
+	}
+
+	@Test
+	public void commitWithinTellsTheListenerWhenTheTimeHasPassed()
+			throws InterruptedException {
+		CommitWithinPolicy policy = new CommitWithinPolicy();
+		policy.setCommitWithinMillis("50");
+		policy.validate();
+		policy.startup(engine, listener);
+
+		policy.checkpoint();
+		policy.documentsChanged(2);
+		policy.checkpoint();
+		policy.checkpoint();
+		listener.waitForCommits(1);
+		Thread.sleep(200);
+		assertEquals("once for the changes", 1, listener.commits);
+		policy.shutdown();
+	}
+
+	@Test
+	public void countCommitsWhenEnoughChangesAccumulate() {
+		CountCommitPolicy policy = new CountCommitPolicy();
+		policy.setCommitAfterChanges("3");
+		policy.validate();
+		policy.startup(engine, listener);
+
+		policy.documentsChanged(1);
+		policy.documentsChanged(1);
+		policy.checkpoint();
+		assertEquals("below the limit", 0, engine.commits);
+		policy.documentsChanged(1);
+		assertEquals("at the limit", 1, engine.commits);
+		policy.documentsChanged(2);
+		assertEquals("counter was reset", 1, engine.commits);
+	}
+
+	@Test
+	public void shutdownCommitsPendingChanges() {
+		CountCommitPolicy policy = new CountCommitPolicy();
+		policy.setCommitAfterChanges("100");
+		policy.validate();
+		policy.startup(engine, listener);
+
+		policy.shutdown();
+		assertEquals("nothing pending", 0, engine.commits);
+
+		policy.documentsChanged(1);
+		policy.shutdown();
+		assertEquals("something pending", 1, engine.commits);
+	}
+
+	@Test
+	public void failedCommitLeavesChangesPending() {
+		CountCommitPolicy policy = new CountCommitPolicy();
+		policy.setCommitAfterChanges("100");
+		policy.validate();
+		policy.startup(engine, listener);
+
+		engine.failing = true;
+		policy.documentsChanged(1);
+		setLoggerLevel(AbstractCommitPolicy.class, Level.OFF);
+		policy.shutdown();
+		assertNull("last commit", policy.getLastCommit());
+		assertEquals("listener not told", 0, listener.commits);
+
+		engine.failing = false;
+		policy.shutdown();
+		assertEquals("retried", 1, engine.commits);
+		assertEquals("listener told", 1, listener.commits);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void intervalRequiresAnInterval() {
+		new IntervalCommitPolicy().validate();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void countMustBePositive() {
+		CountCommitPolicy policy = new CountCommitPolicy();
+		policy.setCommitAfterChanges("0");
+		policy.validate();
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper classes
+	// ----------------------------------------------------------------------
+
+	private static class CountingSearchEngine extends SearchEngineStub {
+		int commits;
+		boolean failing;
+
+		@Override
+		public void commit() throws SearchEngineException {
+			if (failing) {
+				throw new SearchEngineException("commit failed");
+			}
+			commits++;
+		}
+	}
+
+	private static class CountingListener implements CommitPolicy.Listener {
+		int commits;
+
+		@Override
+		public synchronized void changesCommitted() {
+			commits++;
+			notifyAll();
+		}
+
+		synchronized void waitForCommits(int count)
+				throws InterruptedException {
+			long limit = System.currentTimeMillis() + 10000;
+			while (commits < count && System.currentTimeMillis() < limit) {
+				wait(100);
+			}
+		}
+	}
+}
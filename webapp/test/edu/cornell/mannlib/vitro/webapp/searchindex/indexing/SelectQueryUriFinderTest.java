@@ -9,6 +9,7 @@ import static com.hp.hpl.jena.rdf.model.ResourceFactory.createStatement;
 import static edu.cornell.mannlib.vitro.webapp.modelaccess.ModelAccess.WhichService.CONTENT;
 import static org.junit.Assert.assertEquals;
 
+import java.io.InputStream;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
@@ -29,6 +30,7 @@ import com.hp.hpl.jena.rdf.model.Resource;
 
 import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.jena.model.RDFServiceModel;
 
 /**
@@ -74,8 +76,13 @@ public class SelectQueryUriFinderTest extends AbstractTestClass {
 	private static final String QUERY2 = "SELECT ?partner WHERE {?object <"
 			+ FRIEND_URI + "> ?partner}";
 
+	private static final String OPTIONAL_QUERY = "SELECT ?friend WHERE {?subject <"
+			+ SEES_URI + "> ?seen OPTIONAL {?object <" + FRIEND_URI
+			+ "> ?friend}}";
+
 	private Model m;
 	private RDFService rdfService;
+	private int queryCount;
 	private SelectQueryUriFinder finder;
 	private List<String> foundUris;
 
@@ -85,7 +92,14 @@ public class SelectQueryUriFinderTest extends AbstractTestClass {
 		m.add(createStatement(BOB, FRIEND, BETTY));
 		m.add(createStatement(DICK, FRIEND, JANE));
 
-		rdfService = new RDFServiceModel(m);
+		rdfService = new RDFServiceModel(m) {
+			@Override
+			public InputStream sparqlSelectQuery(String query,
+					ResultFormat resultFormat) throws RDFServiceException {
+				queryCount++;
+				return super.sparqlSelectQuery(query, resultFormat);
+			}
+		};
 
 		ContextModelAccessStub models = new ContextModelAccessStub();
 		models.setRDFService(CONTENT, rdfService);
@@ -131,6 +145,44 @@ public class SelectQueryUriFinderTest extends AbstractTestClass {
 		assertExpectedUris(BETTY_URI);
 	}
 
+	@Test
+	public void batch_oneQueryEachForAllStatements() {
+		setPredicateRestrictions();
+		foundUris = finder.findAdditionalURIsToIndex(Arrays.asList(
+				createStatement(BOB, SEES, DICK),
+				createStatement(DICK, SEES, BOB),
+				createStatement(BOB, SEES, DICK)));
+		assertExpectedUris(BETTY_URI, JANE_URI);
+		assertEquals("query count", 2, queryCount);
+	}
+
+	@Test
+	public void batch_restrictionsAndNonUriNodesAreRespected() {
+		setPredicateRestrictions(SEES_URI);
+		foundUris = finder.findAdditionalURIsToIndex(Arrays.asList(
+				createStatement(createResource(), SEES, DICK),
+				createStatement(DICK, FRIEND, BOB),
+				createStatement(BOB, SEES, createPlainLiteral("Bogus"))));
+		assertExpectedUris(BETTY_URI, JANE_URI);
+	}
+
+	@Test
+	public void batch_unbatchableQueryIsRunForEachStatement() {
+		finder = new SelectQueryUriFinder();
+		ContextModelAccessStub models = new ContextModelAccessStub();
+		models.setRDFService(CONTENT, rdfService);
+		finder.setContextModels(models);
+		finder.addQuery(OPTIONAL_QUERY);
+		m.add(createStatement(BOB, SEES, DICK));
+		m.add(createStatement(DICK, SEES, BOB));
+
+		foundUris = finder.findAdditionalURIsToIndex(Arrays.asList(
+				createStatement(BOB, SEES, DICK),
+				createStatement(DICK, SEES, BOB)));
+		assertExpectedUris(BETTY_URI, JANE_URI);
+		assertEquals("query count", 2, queryCount);
+	}
+
 	// ----------------------------------------------------------------------
 	// Helper methods
 	// ----------------------------------------------------------------------
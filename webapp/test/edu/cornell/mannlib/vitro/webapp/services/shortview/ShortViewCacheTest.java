@@ -0,0 +1,177 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.services.shortview;
+
+import static edu.cornell.mannlib.vitro.webapp.modelaccess.ModelNames.ABOX_ASSERTIONS;
+import static edu.cornell.mannlib.vitro.webapp.modelaccess.ModelNames.TBOX_ASSERTIONS;
+import static edu.cornell.mannlib.vitro.webapp.services.shortview.ShortViewService.ShortViewContext.BROWSE;
+import static edu.cornell.mannlib.vitro.webapp.services.shortview.ShortViewService.ShortViewContext.SEARCH;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.services.shortview.ShortViewCache.Key;
+
+public class ShortViewCacheTest extends AbstractTestClass {
+	private static final String NS = "http://test/individual/";
+	private static final String TEMPLATE = "view-browse-default.ftl";
+
+	private ShortViewCache cache;
+
+	@Before
+	public void setup() {
+		cache = new ShortViewCache(2);
+	}
+
+	@Test
+	public void missThenHit() {
+		Key key = key("i1", "Person");
+		assertNull(cache.get(key));
+		cache.put(key, "<p>one</p>", noUris(), cache.getTicket());
+		assertEquals("<p>one</p>", cache.get(key));
+
+		assertEquals(1, cache.getStatistics().getHits());
+		assertEquals(1, cache.getStatistics().getMisses());
+		assertEquals(0.5, cache.getStatistics().getHitRatio(), 0.0001);
+	}
+
+	@Test
+	public void keyIncludesSimpleModelValuesAndContext() {
+		cache.put(key("i1", "Person"), "<p>person</p>", noUris(), cache.getTicket());
+		assertNull(cache.get(key("i1", "Faculty")));
+		assertNull(cache.get(new Key(NS + "i1", SEARCH, TEMPLATE,
+				Locale.ENGLISH, modelMap("Person"))));
+		assertEquals("<p>person</p>", cache.get(key("i1", "Person")));
+	}
+
+	@Test
+	public void leastRecentlyUsedIsEvicted() {
+		cache.put(key("i1", "P"), "one", noUris(), cache.getTicket());
+		cache.put(key("i2", "P"), "two", noUris(), cache.getTicket());
+		cache.get(key("i1", "P"));
+		cache.put(key("i3", "P"), "three", noUris(), cache.getTicket());
+
+		assertEquals("one", cache.get(key("i1", "P")));
+		assertNull(cache.get(key("i2", "P")));
+		assertEquals("three", cache.get(key("i3", "P")));
+		assertEquals(1, cache.getStatistics().getEvictions());
+	}
+
+	@Test
+	public void changeToIndividualInvalidates() {
+		cache.put(key("i1", "P"), "one", noUris(), cache.getTicket());
+		cache.put(key("i2", "P"), "two", noUris(), cache.getTicket());
+
+		cache.addedStatement(triple("i1", "<http://test/label>", "\"new\""),
+				ABOX_ASSERTIONS);
+
+		assertNull(cache.get(key("i1", "P")));
+		assertEquals("two", cache.get(key("i2", "P")));
+	}
+
+	@Test
+	public void changeToDependencyInvalidates() {
+		cache.put(key("i1", "P"), "one", Arrays.asList(NS + "org"),
+				cache.getTicket());
+		cache.put(key("i2", "P"), "two", noUris(), cache.getTicket());
+
+		cache.removedStatement(
+				triple("org", "<http://test/label>", "\"old name\""),
+				ABOX_ASSERTIONS);
+
+		assertNull(cache.get(key("i1", "P")));
+		assertEquals("two", cache.get(key("i2", "P")));
+	}
+
+	@Test
+	public void changeToObjectInvalidates() {
+		cache.put(key("i1", "P"), "one", noUris(), cache.getTicket());
+		cache.addedStatement(
+				triple("other", "<http://test/knows>", "<" + NS + "i1>"),
+				ABOX_ASSERTIONS);
+		assertNull(cache.get(key("i1", "P")));
+	}
+
+	@Test
+	public void renderingThatOverlapsAChangeIsNotCached() {
+		long ticket = cache.getTicket();
+		cache.addedStatement(
+				triple("i1", "<http://test/label>", "\"New name\""),
+				ABOX_ASSERTIONS);
+		cache.put(key("i1", "P"), "stale", noUris(), ticket);
+		assertNull(cache.get(key("i1", "P")));
+	}
+
+	@Test
+	public void renderingThatOverlapsAnUnrelatedChangeIsCached() {
+		long ticket = cache.getTicket();
+		cache.addedStatement(
+				triple("i2", "<http://test/label>", "\"New name\""),
+				ABOX_ASSERTIONS);
+		cache.put(key("i1", "P"), "fresh", noUris(), ticket);
+		assertEquals("fresh", cache.get(key("i1", "P")));
+	}
+
+	@Test
+	public void changeToTboxClearsEverything() {
+		cache.put(key("i1", "P"), "one", noUris(), cache.getTicket());
+		cache.put(key("i2", "P"), "two", noUris(), cache.getTicket());
+
+		cache.addedStatement(
+				triple("SomeClass", "<http://test/label>", "\"Class\""),
+				TBOX_ASSERTIONS);
+
+		assertEquals(0, cache.getStatistics().getEntries());
+	}
+
+	@Test
+	public void findUrisInDataGetterResults() {
+		Map<String, String> row = new HashMap<>();
+		row.put("org", "http://test/individual/org");
+		row.put("label", "Some Organization");
+		List<Map<String, String>> rows = new ArrayList<>();
+		rows.add(row);
+		Map<String, Object> data = new HashMap<>();
+		data.put("orgs", rows);
+
+		assertEqualSets("uris", buildSet("http://test/individual/org"),
+				ShortViewCache.findUris(data));
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper methods
+	// ----------------------------------------------------------------------
+
+	private Key key(String localName, String vclass) {
+		return new Key(NS + localName, BROWSE, TEMPLATE, Locale.ENGLISH,
+				modelMap(vclass));
+	}
+
+	private Map<String, Object> modelMap(String vclass) {
+		Map<String, Object> map = new HashMap<>();
+		map.put("vclass", vclass);
+		map.put("individual", new Object());
+		return map;
+	}
+
+	private List<String> noUris() {
+		return Collections.emptyList();
+	}
+
+	private String triple(String subjectLocalName, String predicate,
+			String object) {
+		return "<" + NS + subjectLocalName + "> " + predicate + " " + object
+				+ " .";
+	}
+}
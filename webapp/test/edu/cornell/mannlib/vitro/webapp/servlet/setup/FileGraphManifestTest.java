@@ -0,0 +1,160 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.servlet.setup;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.log4j.Level;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.hp.hpl.jena.query.QueryExecutionFactory;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.vocabulary.RDFS;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+
+public class FileGraphManifestTest extends AbstractTestClass {
+	private static final String GRAPH_A = FileGraphSetup.FILEGRAPH_URI_ROOT
+			+ "abox/a.n3";
+	private static final String GRAPH_B = FileGraphSetup.FILEGRAPH_URI_ROOT
+			+ "abox/b.n3";
+
+	private static final List<String> NO_SAMPLE = Collections.emptyList();
+
+	private File tempDir;
+	private Path manifestPath;
+
+	@Before
+	public void setup() throws IOException {
+		tempDir = createTempDirectory("FileGraphManifestTest");
+		manifestPath = tempDir.toPath().resolve("rdf").resolve("manifest");
+	}
+
+	@After
+	public void cleanup() {
+		purgeDirectoryRecursively(tempDir);
+	}
+
+	@Test
+	public void missingManifestHasNoEntries() {
+		FileGraphManifest manifest = new FileGraphManifest(manifestPath);
+		assertFalse(manifest.hasHash(GRAPH_A, "abc"));
+		assertFalse(manifest.isUnchanged(GRAPH_A, "abc", 0L));
+	}
+
+	@Test
+	public void recordedEntriesAreReadBack() {
+		FileGraphManifest first = new FileGraphManifest(manifestPath);
+		first.record(GRAPH_A, "abc", 12L, NO_SAMPLE);
+		first.save();
+
+		FileGraphManifest second = new FileGraphManifest(manifestPath);
+		assertTrue(second.hasHash(GRAPH_A, "abc"));
+		assertTrue(second.isUnchanged(GRAPH_A, "abc", 12L));
+		assertFalse(second.isUnchanged(GRAPH_A, "abc", 11L));
+		assertFalse(second.isUnchanged(GRAPH_A, "abd", 12L));
+	}
+
+	@Test
+	public void onlyEntriesRecordedSinceReadingAreSaved() {
+		FileGraphManifest first = new FileGraphManifest(manifestPath);
+		first.record(GRAPH_A, "abc", 12L, NO_SAMPLE);
+		first.record(GRAPH_B, "def", 3L, NO_SAMPLE);
+		first.save();
+
+		FileGraphManifest second = new FileGraphManifest(manifestPath);
+		second.record(GRAPH_B, "def", 3L, NO_SAMPLE);
+		second.save();
+
+		FileGraphManifest third = new FileGraphManifest(manifestPath);
+		assertFalse(third.hasHash(GRAPH_A, "abc"));
+		assertTrue(third.isUnchanged(GRAPH_B, "def", 3L));
+	}
+
+	@Test
+	public void unreadableManifestIsIgnored() throws IOException {
+		setLoggerLevel(FileGraphManifest.class, Level.ERROR);
+		File rdfDir = manifestPath.getParent().toFile();
+		rdfDir.mkdirs();
+		createFile(rdfDir, "manifest", "\\u00zz = broken");
+
+		FileGraphManifest manifest = new FileGraphManifest(manifestPath);
+		assertFalse(manifest.hasHash(GRAPH_A, "abc"));
+	}
+
+	@Test
+	public void sampleIsReadBack() {
+		Model model = ModelFactory.createDefaultModel();
+		Resource s = model.createResource("http://test/s");
+		model.add(s, RDFS.label, "two\nlines", "en");
+		List<String> sample = FileGraphManifest.sample(model);
+
+		FileGraphManifest first = new FileGraphManifest(manifestPath);
+		first.record(GRAPH_A, "abc", 1L, sample);
+		first.save();
+
+		FileGraphManifest second = new FileGraphManifest(manifestPath);
+		assertEquals(sample, second.getSample(GRAPH_A));
+		assertEquals(NO_SAMPLE, second.getSample(GRAPH_B));
+	}
+
+	@Test
+	public void sampleIsLimitedAndLeavesOutBlankNodes() {
+		Model model = ModelFactory.createDefaultModel();
+		for (int i = 0; i < 100; i++) {
+			Resource s = model.createResource("http://test/s" + i);
+			model.add(s, RDFS.label, "label " + i);
+			model.add(s, RDFS.seeAlso, model.createResource());
+		}
+		List<String> sample = FileGraphManifest.sample(model);
+		assertEquals(FileGraphManifest.SAMPLE_SIZE, sample.size());
+		for (String triple : sample) {
+			assertFalse(triple, triple.contains("_:"));
+		}
+	}
+
+	@Test
+	public void sampleCanBeFoundByAQuery() {
+		Model model = ModelFactory.createDefaultModel();
+		Resource s = model.createResource("http://test/s");
+		model.add(s, RDFS.label, "two\nlines \"quoted\"", "en");
+		model.add(s, RDFS.comment, model.createTypedLiteral(42));
+		model.add(s, RDFS.seeAlso, model.createResource("http://test/o"));
+
+		StringBuilder query = new StringBuilder("ASK { ");
+		for (String triple : FileGraphManifest.sample(model)) {
+			query.append(triple).append(" . ");
+		}
+		query.append("}");
+		assertTrue(QueryExecutionFactory.create(query.toString(), model)
+				.execAsk());
+
+		model.removeAll(s, RDFS.comment, null);
+		assertFalse(QueryExecutionFactory.create(query.toString(), model)
+				.execAsk());
+	}
+
+	@Test
+	public void hashReflectsTheFileContents() throws IOException {
+		File one = createFile(tempDir, "one.n3", "<a:s> <a:p> <a:o> .");
+		File two = createFile(tempDir, "two.n3", "<a:s> <a:p> <a:o> .");
+		File three = createFile(tempDir, "three.n3", "<a:s> <a:p> <a:x> .");
+		assertEquals(FileGraphManifest.hashFile(one.toPath()),
+				FileGraphManifest.hashFile(two.toPath()));
+		assertNotEquals(FileGraphManifest.hashFile(one.toPath()),
+				FileGraphManifest.hashFile(three.toPath()));
+	}
+}
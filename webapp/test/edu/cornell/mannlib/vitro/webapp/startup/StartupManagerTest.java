@@ -8,6 +8,8 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
@@ -21,6 +23,7 @@ import org.junit.Test;
 
 import stubs.javax.servlet.ServletContextStub;
 import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.startup.StartupStatus.ListenerTiming;
 import edu.cornell.mannlib.vitro.webapp.startup.StartupStatus.StatusItem;
 
 /**
@@ -168,6 +171,98 @@ public class StartupManagerTest extends AbstractTestClass {
 				+ PrivateConstructor.class.getName() + "' failed.");
 	}
 
+	@Test
+	public void parallelBlockRunsConcurrently() {
+		MeetsTheOther.latch = new CountDownLatch(2);
+		assertStartupSucceeds(parallel(MeetsTheOther.class,
+				AlsoMeetsTheOther.class));
+		assertEquals("both ran", 0, MeetsTheOther.latch.getCount());
+		assertEquals("no waiting", 0, ss.getWarningItems().size());
+	}
+
+	@Test
+	public void listenersAreTimed() {
+		assertStartupSucceeds(joinClassNames(new Class<?>[] { SucceedsWithInfo.class })
+				+ parallel(SucceedsWithWarning.class, BasicListener.class));
+
+		List<ListenerTiming> timings = ss.getListenerTimings();
+		assertEquals("how many", 3, timings.size());
+		assertEquals("sequential first", SucceedsWithInfo.class.getName(),
+				timings.get(0).getSourceName());
+		assertTrue("parallel on other threads", timings.get(1)
+				.getThreadName().startsWith("StartupManager-"));
+	}
+
+	@Test
+	public void dontExecuteAfterFailureInParallelBlock() {
+		assertStartupFails(parallel(InitThrowsException.class,
+				SucceedsWithWarning.class)
+				+ joinClassNames(new Class<?>[] { SucceedsWithInfo.class }));
+
+		List<StatusItem> items = ss.getItemsForListener(new SucceedsWithInfo());
+		assertEquals("how many", 1, items.size());
+		assertEquals("not executed", StatusItem.Level.NOT_EXECUTED, items
+				.get(0).getLevel());
+	}
+
+	@Test
+	public void destroyAfterParallelBlockInReverseOrder() {
+		assertStartupSucceeds(parallel(SucceedsWithInfo.class,
+				SucceedsWithWarning.class));
+		sm.contextDestroyed(sce);
+
+		List<StatusItem> items = ss.getStatusItems();
+		assertEquals("how many", 4, items.size());
+		assertEquals("destroy order 1", SucceedsWithWarning.class.getName(),
+				items.get(2).getSourceName());
+		assertEquals("destroy order 2", SucceedsWithInfo.class.getName(),
+				items.get(3).getSourceName());
+	}
+
+	@Test
+	public void listenerInParallelBlockWaitsForItsPrerequisite() {
+		FinishesSlowly.finished = false;
+		assertStartupSucceeds(StartupManager.PARALLEL_BLOCK_START + "\n"
+				+ FinishesSlowly.class.getName() + "\n"
+				+ after(NeedsTheSlowOne.class, FinishesSlowly.class)
+				+ StartupManager.PARALLEL_BLOCK_END + "\n");
+		assertEquals("no warnings", 0, ss.getWarningItems().size());
+	}
+
+	@Test
+	public void prerequisiteMustAppearEarlier() {
+		assertStartupFails(StartupManager.PARALLEL_BLOCK_START + "\n"
+				+ after(NeedsTheSlowOne.class, FinishesSlowly.class)
+				+ FinishesSlowly.class.getName() + "\n"
+				+ StartupManager.PARALLEL_BLOCK_END + "\n");
+	}
+
+	@Test
+	public void prerequisitesNeedTheKeyword() {
+		assertStartupFails(joinClassNames(new Class<?>[] { FinishesSlowly.class })
+				+ NeedsTheSlowOne.class.getName() + " before "
+				+ FinishesSlowly.class.getName() + "\n");
+	}
+
+	@Test
+	public void parallelBlockNotClosed() {
+		assertStartupFails(StartupManager.PARALLEL_BLOCK_START + "\n"
+				+ joinClassNames(new Class<?>[] { SucceedsWithInfo.class }));
+	}
+
+	@Test
+	public void parallelBlocksNested() {
+		assertStartupFails(StartupManager.PARALLEL_BLOCK_START + "\n"
+				+ parallel(SucceedsWithInfo.class)
+				+ StartupManager.PARALLEL_BLOCK_END + "\n");
+	}
+
+	@Test
+	public void parallelBlockEndWithoutStart() {
+		assertStartupFails(joinClassNames(new Class<?>[] { SucceedsWithInfo.class })
+				+ StartupManager.PARALLEL_BLOCK_END + "\n");
+	}
+
 	// ----------------------------------------------------------------------
 	// Helper classes
 	// ----------------------------------------------------------------------
@@ -263,6 +358,55 @@ public class StartupManagerTest extends AbstractTestClass {
 		}
 	}
 
+	/**
+	 * Each of these waits for the other to start. If they ran one at a time,
+	 * the first would wait until the latch timed out, and issue a warning.
+	 */
+	public static class MeetsTheOther extends BasicListener {
+		static CountDownLatch latch;
+
+		@Override
+		public void contextInitialized(ServletContextEvent sce) {
+			latch.countDown();
+			try {
+				if (!latch.await(5, TimeUnit.SECONDS)) {
+					StartupStatus.getBean(sce.getServletContext()).warning(
+							this, "The other listener never started.");
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	public static class AlsoMeetsTheOther extends MeetsTheOther {
+		// no methods
+	}
+
+	public static class FinishesSlowly extends BasicListener {
+		static volatile boolean finished;
+
+		@Override
+		public void contextInitialized(ServletContextEvent sce) {
+			try {
+				Thread.sleep(200);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			finished = true;
+		}
+	}
+
+	public static class NeedsTheSlowOne extends BasicListener {
+		@Override
+		public void contextInitialized(ServletContextEvent sce) {
+			if (!FinishesSlowly.finished) {
+				StartupStatus.getBean(sce.getServletContext()).warning(this,
+						"Started before its prerequisite finished.");
+			}
+		}
+	}
+
 	// ----------------------------------------------------------------------
 	// Helper methods
 	// ----------------------------------------------------------------------
@@ -307,6 +451,21 @@ public class StartupManagerTest extends AbstractTestClass {
 		return result.toString();
 	}
 
+	private String parallel(Class<?>... classes) {
+		return StartupManager.PARALLEL_BLOCK_START + "\n"
+				+ joinClassNames(classes) + StartupManager.PARALLEL_BLOCK_END
+				+ "\n";
+	}
+
+	private String after(Class<?> listener, Class<?>... prerequisites) {
+		StringBuilder result = new StringBuilder(listener.getName()).append(
+				' ').append(StartupManager.AFTER);
+		for (Class<?> prerequisite : prerequisites) {
+			result.append(' ').append(prerequisite.getName());
+		}
+		return result.append('\n').toString();
+	}
+
 	private void dumpStatus() {
 		List<StatusItem> items = ss.getStatusItems();
 		log.debug("-------------- " + items.size() + " items");
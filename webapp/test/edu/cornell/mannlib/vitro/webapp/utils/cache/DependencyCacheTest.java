@@ -0,0 +1,82 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.utils.cache;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+
+public class DependencyCacheTest extends AbstractTestClass {
+	private DependencyCache<String, String> cache;
+
+	@Before
+	public void setup() {
+		cache = new DependencyCache<>("test", 10);
+	}
+
+	@Test
+	public void changeDiscardsOnlyTheDependentEntries() {
+		cache.put("one", "1", 1, asList("a", "b"), cache.getTicket());
+		cache.put("two", "2", 1, asList("c"), cache.getTicket());
+
+		cache.changed("b");
+		assertNull(cache.get("one"));
+		assertEquals("2", cache.get("two"));
+		assertEquals(1, cache.getStatistics().getInvalidations());
+	}
+
+	@Test
+	public void valueIsNotStoredIfADependencyChangedAfterTheTicket() {
+		long ticket = cache.getTicket();
+		cache.changed("a");
+		assertFalse(cache.put("one", "1", 1, asList("a"), ticket));
+		assertNull(cache.get("one"));
+		assertEquals(1, cache.getStatistics().getStaleValues());
+	}
+
+	@Test
+	public void valueIsStoredIfOtherThingsChangedAfterTheTicket() {
+		long ticket = cache.getTicket();
+		cache.changed("b");
+		assertTrue(cache.put("one", "1", 1, asList("a"), ticket));
+		assertEquals("1", cache.get("one"));
+	}
+
+	@Test
+	public void afterChangedAllNoEarlierTicketIsTrusted() {
+		cache.put("one", "1", 1, asList("a"), cache.getTicket());
+		long ticket = cache.getTicket();
+		cache.changedAll();
+
+		assertNull(cache.get("one"));
+		assertFalse(cache.put("two", "2", 1, asList("b"), ticket));
+		assertTrue(cache.put("two", "2", 1, asList("b"), cache.getTicket()));
+	}
+
+	@Test
+	public void leastRecentlyUsedAreDiscardedToKeepUnderTheWeight() {
+		cache.put("one", "1", 4, asList("a"), cache.getTicket());
+		cache.put("two", "2", 4, asList("b"), cache.getTicket());
+		cache.get("one");
+		cache.put("three", "3", 4, asList("c"), cache.getTicket());
+
+		assertNull(cache.get("two"));
+		assertEquals("1", cache.get("one"));
+		assertEquals("3", cache.get("three"));
+		assertEquals(8, cache.getStatistics().getWeight());
+		assertEquals(1, cache.getStatistics().getEvictions());
+	}
+
+	@Test
+	public void valueHeavierThanTheCacheIsNotStored() {
+		assertFalse(cache.put("one", "1", 11, asList("a"), cache.getTicket()));
+		assertEquals(0, cache.size());
+	}
+}
@@ -0,0 +1,226 @@
+/* $This file is distributed under the terms of the license in /doc/license.txt$ */
+
+package edu.cornell.mannlib.vitro.webapp.utils.searchengine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import stubs.edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngineStub;
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngineException;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchFacetField;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchQuery;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchQuery.Order;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchResponse;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchResultDocument;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchResultDocumentList;
+import edu.cornell.mannlib.vitro.webapp.searchengine.base.BaseSearchResponse;
+import edu.cornell.mannlib.vitro.webapp.searchengine.base.BaseSearchResultDocument;
+
+public class SearchCursorPagerTest extends AbstractTestClass {
+	private static final int PAGE_SIZE = 10;
+	private static final int DOC_COUNT = 1000;
+
+	private CursorSearchEngine engine;
+	private SearchCursorPager pager;
+
+	@Before
+	public void setup() {
+		engine = new CursorSearchEngine();
+		pager = new SearchCursorPager(3, 5, 60000, 10);
+	}
+
+	@Test
+	public void firstPagesAreFetchedByOffset() throws SearchEngineException {
+		assertPage(3, query());
+		assertEquals("offset", 20, engine.lastQuery.getStart());
+		assertNull("cursor", engine.lastQuery.getCursor());
+	}
+
+	@Test
+	public void deepPageIsSoughtFromTheStart() throws SearchEngineException {
+		assertPage(5, query());
+		assertEquals("queries", 2, engine.queryCount);
+		assertEquals("rows read", 50, engine.rowsRead);
+		assertEquals("cursor", "after:40", engine.lastQuery.getCursor());
+	}
+
+	@Test
+	public void nextPageUsesTheRememberedCursor() throws SearchEngineException {
+		assertPage(5, query());
+		assertPage(6, query());
+		assertPage(7, query());
+		assertEquals("queries", 4, engine.queryCount);
+		assertEquals("rows read", 70, engine.rowsRead);
+	}
+
+	@Test
+	public void skipAheadSeeksFromTheNearestCursor()
+			throws SearchEngineException {
+		for (int page = 4; page < 60; page++) {
+			assertPage(page, query());
+		}
+		engine.rowsRead = 0;
+		assertPage(64, query());
+		assertEquals("rows read", 40 + PAGE_SIZE, engine.rowsRead);
+	}
+
+	@Test
+	public void tooFarFromACursorFallsBackToOffset()
+			throws SearchEngineException {
+		assertPage(50, query());
+		assertEquals("queries", 1, engine.queryCount);
+		assertEquals("offset", 490, engine.lastQuery.getStart());
+	}
+
+	@Test
+	public void firstPagesRememberTheCursorForTheNextPage()
+			throws SearchEngineException {
+		for (int page = 1; page <= 4; page++) {
+			assertPage(page, query());
+		}
+		assertEquals("queries", 4, engine.queryCount);
+		assertEquals("rows read", 40, engine.rowsRead);
+		assertEquals("cursor", "after:30", engine.lastQuery.getCursor());
+	}
+
+	@Test
+	public void usingACursorKeepsItFresh() throws Exception {
+		pager = new SearchCursorPager(3, 5, 500, 10);
+		assertPage(5, query());
+		for (int i = 0; i < 3; i++) {
+			Thread.sleep(300);
+			engine.rowsRead = 0;
+			assertPage(6, query());
+			assertEquals("rows read", PAGE_SIZE, engine.rowsRead);
+		}
+	}
+
+	@Test
+	public void unusedCursorIsForgotten() throws Exception {
+		pager = new SearchCursorPager(3, 5, 100, 10);
+		assertPage(5, query());
+		Thread.sleep(300);
+		engine.rowsRead = 0;
+		assertPage(6, query());
+		assertEquals("rows read", 60, engine.rowsRead);
+	}
+
+	@Test
+	public void differentQueriesHaveDifferentCursors()
+			throws SearchEngineException {
+		assertPage(5, query());
+		assertPage(6, query().addFilterQuery("other"));
+		assertEquals("queries", 4, engine.queryCount);
+	}
+
+	@Test
+	public void unsortedQueryIsFetchedByOffset() throws SearchEngineException {
+		pager.query(engine, engine.createQuery("text"), 5, PAGE_SIZE);
+		assertEquals("offset", 40, engine.lastQuery.getStart());
+		assertNull("cursor", engine.lastQuery.getCursor());
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper methods
+	// ----------------------------------------------------------------------
+
+	private SearchQuery query() {
+		return engine.createQuery("text").addSortField("name", Order.ASC);
+	}
+
+	private void assertPage(int page, SearchQuery query)
+			throws SearchEngineException {
+		SearchResultDocumentList docs = pager.query(engine, query, page,
+				PAGE_SIZE).getResults();
+		assertEquals("size of page " + page, PAGE_SIZE, docs.size());
+		assertEquals("first of page " + page, docId((page - 1) * PAGE_SIZE),
+				docs.get(0).getUniqueId());
+	}
+
+	private static String docId(int i) {
+		return String.format("doc%04d", i);
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper classes
+	// ----------------------------------------------------------------------
+
+	/**
+	 * Serves a sorted list of documents, by offset or by cursor. The cursor
+	 * is "after:" and the number of documents before the page.
+	 */
+	private static class CursorSearchEngine extends SearchEngineStub {
+		int queryCount;
+		int rowsRead;
+		SearchQuery lastQuery;
+
+		@Override
+		public SearchResponse query(SearchQuery query)
+				throws SearchEngineException {
+			queryCount++;
+			lastQuery = query;
+
+			String cursor = query.getCursor();
+			int from;
+			if (cursor == null) {
+				from = query.getStart();
+			} else if (cursor.equals(SearchQuery.CURSOR_START)) {
+				from = 0;
+			} else {
+				from = Integer.parseInt(cursor.substring("after:".length()));
+			}
+			int to = Math.min(DOC_COUNT, from + query.getRows());
+			rowsRead += to - from;
+
+			List<SearchResultDocument> docs = new ArrayList<>();
+			for (int i = from; i < to; i++) {
+				docs.add(new BaseSearchResultDocument(docId(i), Collections
+						.<String, Collection<Object>> emptyMap()));
+			}
+			String nextCursor = (cursor == null) ? null : "after:" + to;
+			return new BaseSearchResponse(
+					Collections.<String, Map<String, List<String>>> emptyMap(),
+					Collections.<String, SearchFacetField> emptyMap(),
+					new ListOfDocuments(docs), nextCursor);
+		}
+	}
+
+	private static class ListOfDocuments implements SearchResultDocumentList {
+		private final List<SearchResultDocument> docs;
+
+		ListOfDocuments(List<SearchResultDocument> docs) {
+			this.docs = docs;
+		}
+
+		@Override
+		public Iterator<SearchResultDocument> iterator() {
+			return docs.iterator();
+		}
+
+		@Override
+		public long getNumFound() {
+			return DOC_COUNT;
+		}
+
+		@Override
+		public int size() {
+			return docs.size();
+		}
+
+		@Override
+		public SearchResultDocument get(int i) {
+			return docs.get(i);
+		}
+	}
+}
@@ -57,4 +57,11 @@ public class SearchResponseStub implements SearchResponse {
 				"SearchResponseStub.getFacetFields() not implemented.");
 	}
 
+	@Override
+	public String getNextCursor() {
+		// TODO Auto-generated method stub
+		throw new RuntimeException(
+				"SearchResponseStub.getNextCursor() not implemented.");
+	}
+
 }
@@ -25,6 +25,17 @@
     <#else>
         <h3>The search indexer status is: ${status.statusType}
     </#if>
+
+    <#if commitPolicy??>
+        <p>
+            Commit policy: ${commitPolicy}.
+            <#if lastCommit??>
+                Last commit ${lastCommit?datetime}.
+            <#else>
+                No commits since startup.
+            </#if>
+        </p>
+    </#if>
     
     
     <form action="${rebuildUrl}" method="POST">
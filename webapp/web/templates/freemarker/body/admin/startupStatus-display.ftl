@@ -66,3 +66,24 @@ ${stylesheets.add('<link rel="stylesheet" href="${urls.base}/css/startupStatus.c
           <@statusItem item=item />
       </#list>
 </ul>
+
+<#if status.listenerTimings?has_content>
+    <h2>${i18n().startup_timings}</h2>
+
+    <p>${i18n().startup_timings_explained}</p>
+
+    <table id="startup-timings" cellspacing="0">
+        <tr>
+            <th>${i18n().startup_listener}</th>
+            <th>${i18n().startup_elapsed_ms}</th>
+            <th>${i18n().startup_thread}</th>
+        </tr>
+        <#list status.listenerTimings as timing>
+        <tr>
+            <td title="${timing.sourceName}">${timing.shortSourceName}</td>
+            <td class="elapsed">${timing.elapsedMillis?c}</td>
+            <td>${timing.threadName}</td>
+        </tr>
+        </#list>
+    </table>
+</#if>